@@ -0,0 +1,120 @@
+package gratum.bench;
+
+import gratum.csv.CSVFile;
+import gratum.csv.CSVReader;
+import gratum.csv.MappedCSVFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and writing csv files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmark {
+
+    @Param({ "100000" })
+    public int rows;
+
+    private File file;
+    private File output;
+    private List<Map<String,Object>> data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Datasets.csv( rows );
+        data = Datasets.rows( rows );
+        output = File.createTempFile( "write", ".csv" );
+        output.deleteOnExit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public int parse( Blackhole blackhole ) throws IOException {
+        return new CSVFile( file, "," ).parse( new Consumer( blackhole ) );
+    }
+
+    @Benchmark
+    public int parseBuffered( Blackhole blackhole ) throws IOException {
+        CSVFile csv = new CSVFile( file, "," );
+        csv.setBuffered( true );
+        return csv.parse( new Consumer( blackhole ) );
+    }
+
+    @Benchmark
+    public int parseMapped( Blackhole blackhole ) throws IOException {
+        return new MappedCSVFile( file, ",", Runtime.getRuntime().availableProcessors() ).parse( new Consumer( blackhole ) );
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        StringWriter buffer = new StringWriter( rows * 80 );
+        CSVFile out = new CSVFile( new PrintWriter( buffer ), "," );
+        for( Map<String,Object> row : data ) {
+            out.write( row );
+        }
+        out.flush();
+        return buffer.getBuffer().length();
+    }
+
+    @Benchmark
+    public long writeFile() throws IOException {
+        CSVFile out = new CSVFile( output, "," );
+        for( Map<String,Object> row : data ) {
+            out.write( row );
+        }
+        out.close();
+        return output.length();
+    }
+
+    @Benchmark
+    public int writeUnique() throws IOException {
+        CSVFile out = new CSVFile( output, "," );
+        out.setAllowDuplicateRows( false );
+        for( Map<String,Object> row : data ) {
+            out.write( row );
+        }
+        out.close();
+        return out.getRows();
+    }
+
+    private static class Consumer implements CSVReader {
+        private final Blackhole blackhole;
+
+        Consumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void processHeaders(List<String> header) {
+            blackhole.consume( header );
+        }
+
+        @Override
+        public boolean processRow(List<String> header, List<String> row) {
+            blackhole.consume( row );
+            return false;
+        }
+
+        @Override
+        public void afterProcessing() {
+        }
+    }
+}
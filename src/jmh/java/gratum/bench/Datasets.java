@@ -0,0 +1,133 @@
+package gratum.bench;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates the datasets used by the benchmarks.  Every dataset is generated from a fixed seed so each run (and
+ * each release) benchmarks exactly the same data.
+ */
+public final class Datasets {
+
+    public static final long SEED = 20210207L;
+
+    public static final String[] COLUMNS = { "id", "name", "state", "city", "amount", "quantity", "date", "active" };
+
+    private static final String[] STATES = { "AL", "AZ", "CA", "CO", "FL", "GA", "IL", "MA", "NY", "OR", "TX", "WA" };
+    private static final String[] CITIES = { "Springfield", "Franklin", "Greenville", "Bristol", "Clinton", "Fairview", "Salem", "Madison" };
+    private static final String[] NAMES = { "Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace", "Heidi", "Ivan", "Judy" };
+
+    private Datasets() {
+    }
+
+    /**
+     * @return rows with the {@link #COLUMNS} where every value is a String, like the rows produced by a csv file.
+     */
+    public static List<Map<String,Object>> rows( int count ) {
+        Random random = new Random( SEED );
+        List<Map<String,Object>> rows = new ArrayList<>( count );
+        for( int i = 0; i < count; i++ ) {
+            Map<String,Object> row = new LinkedHashMap<>();
+            row.put( "id", String.valueOf( i ) );
+            row.put( "name", NAMES[ random.nextInt( NAMES.length ) ] + " \"" + NAMES[ random.nextInt( NAMES.length ) ] + "\", " + i );
+            row.put( "state", STATES[ random.nextInt( STATES.length ) ] );
+            row.put( "city", CITIES[ random.nextInt( CITIES.length ) ] );
+            row.put( "amount", String.format( Locale.ROOT, "%.2f", random.nextDouble() * 1000 ) );
+            row.put( "quantity", String.valueOf( random.nextInt( 100 ) ) );
+            row.put( "date", String.format( "2020-%02d-%02d", 1 + random.nextInt( 12 ), 1 + random.nextInt( 28 ) ) );
+            row.put( "active", String.valueOf( random.nextBoolean() ) );
+            rows.add( row );
+        }
+        return rows;
+    }
+
+    /**
+     * Writes count rows to a temporary csv file with a header row.  Names contain quotes and commas so the quoting
+     * paths of the parser are exercised.
+     */
+    public static File csv( int count ) throws IOException {
+        File file = File.createTempFile( "gratum-bench", ".csv" );
+        file.deleteOnExit();
+        try( Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+            out.write( String.join( ",", COLUMNS ) );
+            out.write( "\n" );
+            for( Map<String,Object> row : rows( count ) ) {
+                StringBuilder line = new StringBuilder();
+                for( String column : COLUMNS ) {
+                    if( line.length() > 0 ) line.append( ',' );
+                    String value = row.get( column ).toString();
+                    if( value.indexOf( ',' ) >= 0 || value.indexOf( '"' ) >= 0 ) {
+                        line.append( '"' ).append( value.replace( "\"", "\"\"" ) ).append( '"' );
+                    } else {
+                        line.append( value );
+                    }
+                }
+                out.write( line.append( '\n' ).toString() );
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes count rows to a temporary xlsx file with a header row.  Numeric columns are written as numeric cells.
+     */
+    public static File xlsx( int count ) throws IOException {
+        File file = File.createTempFile( "gratum-bench", ".xlsx" );
+        file.deleteOnExit();
+        SXSSFWorkbook workbook = new SXSSFWorkbook( 1000 );
+        try {
+            Sheet sheet = workbook.createSheet( "data" );
+            Row header = sheet.createRow( 0 );
+            for( int c = 0; c < COLUMNS.length; c++ ) {
+                header.createCell( c ).setCellValue( COLUMNS[c] );
+            }
+            int r = 1;
+            for( Map<String,Object> row : rows( count ) ) {
+                Row sheetRow = sheet.createRow( r++ );
+                for( int c = 0; c < COLUMNS.length; c++ ) {
+                    String value = row.get( COLUMNS[c] ).toString();
+                    if( COLUMNS[c].equals( "amount" ) || COLUMNS[c].equals( "quantity" ) ) {
+                        sheetRow.createCell( c ).setCellValue( Double.parseDouble( value ) );
+                    } else {
+                        sheetRow.createCell( c ).setCellValue( value );
+                    }
+                }
+            }
+            try( OutputStream out = new FileOutputStream( file ) ) {
+                workbook.write( out );
+            }
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return size bytes of text that compresses about as well as a csv file.
+     */
+    public static byte[] text( int size ) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( size );
+        byte[] newline = "\n".getBytes( StandardCharsets.UTF_8 );
+        Iterator<Map<String,Object>> rows = rows( Math.max( 1, size / 48 ) ).iterator();
+        while( out.size() < size && rows.hasNext() ) {
+            byte[] line = String.join( ",", toStrings( rows.next().values() ) ).getBytes( StandardCharsets.UTF_8 );
+            out.write( line, 0, line.length );
+            out.write( newline, 0, newline.length );
+        }
+        return Arrays.copyOf( out.toByteArray(), size );
+    }
+
+    private static List<String> toStrings( Collection<Object> values ) {
+        List<String> strings = new ArrayList<>( values.size() );
+        for( Object value : values ) {
+            strings.add( value.toString() );
+        }
+        return strings;
+    }
+}
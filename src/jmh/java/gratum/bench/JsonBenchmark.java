@@ -0,0 +1,107 @@
+package gratum.bench;
+
+import gratum.etl.LoadStatistic;
+import gratum.json.JsonParser;
+import gratum.json.JsonWriter;
+import gratum.source.JsonSource;
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing newline delimited JSON with {@link JsonSource} and {@link JsonWriter} compared to parsing
+ * each line with JsonSlurper and writing each row with JsonOutput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({ "100000" })
+    public int rows;
+
+    private File file;
+    private List<Map<String,Object>> data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = Datasets.rows( rows );
+        file = File.createTempFile( "rows", ".ndjson" );
+        file.deleteOnExit();
+        try( JsonWriter out = new JsonWriter( new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+            for( Map<String,Object> row : data ) {
+                out.writeRow( row, null );
+                out.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public LoadStatistic read() {
+        return JsonSource.json( file, null ).go();
+    }
+
+    @Benchmark
+    public int parse( Blackhole blackhole ) throws IOException {
+        int count = 0;
+        try( JsonParser parser = new JsonParser( new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+            JsonParser.Token token;
+            while( (token = parser.next()) != JsonParser.Token.END ) {
+                blackhole.consume( parser.readValue( token ) );
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int readSlurper( Blackhole blackhole ) throws IOException {
+        int count = 0;
+        JsonSlurper slurper = new JsonSlurper();
+        try( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+            String line;
+            while( (line = reader.readLine()) != null ) {
+                blackhole.consume( slurper.parseText( line ) );
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        StringWriter buffer = new StringWriter( rows * 120 );
+        JsonWriter out = new JsonWriter( buffer );
+        for( Map<String,Object> row : data ) {
+            out.writeRow( row, null );
+            out.newLine();
+        }
+        out.flush();
+        return buffer.getBuffer().length();
+    }
+
+    @Benchmark
+    public int writeJsonOutput() {
+        StringWriter buffer = new StringWriter( rows * 120 );
+        for( Map<String,Object> row : data ) {
+            buffer.write( JsonOutput.toJson( row ) );
+            buffer.write( '\n' );
+        }
+        return buffer.getBuffer().length();
+    }
+}
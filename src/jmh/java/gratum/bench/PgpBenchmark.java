@@ -0,0 +1,72 @@
+package gratum.bench;
+
+import gratum.pgp.PgpContext;
+import gratum.pgp.PgpKeyBuilder;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypting and decrypting a file with {@link PgpContext}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PgpBenchmark {
+
+    private static final char[] PASSPHRASE = "benchmark".toCharArray();
+
+    @Param({ "8388608" })
+    public int size;
+
+    private byte[] plain;
+    private byte[] encrypted;
+    private PGPSecretKeyRingCollection keys;
+    private PgpContext decryptor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keys = new PGPSecretKeyRingCollection( Collections.singletonList( PgpKeyBuilder.identity( "Bench", "bench@example.com", PASSPHRASE ).build() ) );
+        plain = Datasets.text( size );
+        encrypted = encrypt();
+        decryptor = new PgpContext().addSecretKeys( keys ).identity( "bench@example.com", PASSPHRASE );
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( size );
+        new PgpContext()
+                .addSecretKeys( keys )
+                .identities( Collections.singletonList( "Bench <bench@example.com>" ) )
+                .encrypt( "data.csv", new Date(), new ByteArrayInputStream( plain ), out );
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int decrypt() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( size );
+        new PgpContext()
+                .addSecretKeys( keys )
+                .identity( "bench@example.com", PASSPHRASE )
+                .decrypt( new ByteArrayInputStream( encrypted ), out );
+        return out.size();
+    }
+
+    /**
+     * Decrypting with the same context for every file like a Pipeline does, so the private key is only extracted once.
+     */
+    @Benchmark
+    public int decryptReused() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( size );
+        decryptor.decrypt( new ByteArrayInputStream( encrypted ), out );
+        return out.size();
+    }
+}
@@ -0,0 +1,215 @@
+package gratum.bench;
+
+import gratum.etl.Condition;
+import gratum.etl.LoadStatistic;
+import gratum.etl.Pipeline;
+import gratum.source.CollectionSource;
+import groovy.lang.Closure;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The per row cost of Pipeline.process, a typical cleaning chain of built in steps, filtering with a Condition, and
+ * the stateful operations (join, sort, groupBy, and unique with each KeySet store) over a whole dataset.  branch and
+ * asyncBranch split the dataset into 3 files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({ "10000" })
+    public int rows;
+
+    private List<Map> data;
+    private Condition condition;
+    private File[] files;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new ArrayList<>( Datasets.rows( rows ) );
+
+        Map<String,Object> filter = new LinkedHashMap<>();
+        filter.put( "state", Arrays.asList( "CA", "OR", "WA" ) );
+        filter.put( "active", "true" );
+        filter.put( "name", Pattern.compile( "^(Alice|Bob)" ) );
+        condition = new Condition( filter );
+    }
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        files = new File[3];
+        for( int i = 0; i < files.length; i++ ) {
+            files[i] = File.createTempFile( "branch" + i, ".csv" );
+            files[i].deleteOnExit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        for( File file : files ) file.delete();
+    }
+
+    @Benchmark
+    public boolean process( Steps steps ) {
+        return steps.pipeline.process( steps.row );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int clean( Cleaning cleaning ) {
+        for( int i = 0; i < 1000; i++ ) {
+            cleaning.pipeline.process( data.get( i % data.size() ) );
+        }
+        return cleaning.pipeline.getStatistic().getLoaded();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int conditionMatches() {
+        int matches = 0;
+        for( int i = 0; i < 1000; i++ ) {
+            if( condition.matches( data.get( i % data.size() ) ) ) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public LoadStatistic join() {
+        return CollectionSource.from( data ).join( CollectionSource.from( data ), Arrays.asList( "id" ), false ).go();
+    }
+
+    @Benchmark
+    public LoadStatistic sort() {
+        return CollectionSource.from( data ).sort( "state", "amount" ).go();
+    }
+
+    @Benchmark
+    public LoadStatistic groupBy() {
+        return CollectionSource.from( data ).groupBy( "state", "city" ).go();
+    }
+
+    @Benchmark
+    public LoadStatistic unique( Stores stores ) {
+        return CollectionSource.from( data ).unique( stores.options, "id" ).go();
+    }
+
+    @Benchmark
+    public LoadStatistic branch() {
+        return CollectionSource.from( data )
+                .branch( new SaveTo( files[0] ) )
+                .branch( new SaveTo( files[1] ) )
+                .branch( new SaveTo( files[2] ) )
+                .go();
+    }
+
+    @Benchmark
+    public LoadStatistic asyncBranch() {
+        return CollectionSource.from( data )
+                .asyncBranch( new SaveTo( files[0] ) )
+                .asyncBranch( new SaveTo( files[1] ) )
+                .asyncBranch( new SaveTo( files[2] ) )
+                .go();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Steps {
+        @Param({ "1", "5", "20" })
+        public int steps;
+
+        Pipeline pipeline;
+        Map<String,Object> row;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            row = Datasets.rows( 1 ).get( 0 );
+            pipeline = new Pipeline( "benchmark" );
+            for( int i = 0; i < steps; i++ ) {
+                pipeline.addStep( "step " + i, new Step( "column" + i ) );
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Stores {
+        @Param({ "heap", "hashed", "bloom" })
+        public String store;
+
+        Map<String,Object> options;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            options = Collections.singletonMap( "store", store );
+        }
+    }
+
+    /**
+     * Twelve steps that clean up a row, all but one of them built in steps.
+     */
+    @State(Scope.Benchmark)
+    public static class Cleaning {
+        Pipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String,Object> active = new HashMap<>();
+            active.put( "active", Arrays.asList( "true", "false" ) );
+            pipeline = new Pipeline( "cleaning" )
+                    .trim()
+                    .asInt( "id" )
+                    .asInt( "quantity" )
+                    .asDouble( "amount" )
+                    .filter( active )
+                    .defaultValues( Collections.singletonMap( "city", "Unknown" ) )
+                    .renameFields( Collections.singletonMap( "name", "fullName" ) )
+                    .renameFields( Collections.singletonMap( "date", "orderDate" ) )
+                    .setField( "source", "benchmark" )
+                    .setField( "batch", 1 )
+                    .addStep( "total", new Step( "total" ) )
+                    .defaultValues( Collections.singletonMap( "state", "NA" ) );
+        }
+    }
+
+    /**
+     * Configures a branch to save its rows to a file.
+     */
+    private static class SaveTo extends Closure<Pipeline> {
+        private final File file;
+
+        SaveTo(File file) {
+            super( null );
+            this.file = file;
+        }
+
+        public Pipeline doCall( Pipeline pipeline ) {
+            return pipeline.save( file.getAbsolutePath(), ",", null );
+        }
+    }
+
+    /**
+     * A step that does a small amount of work on each row so the overhead of calling steps is what's measured.
+     */
+    private static class Step extends Closure<Map> {
+        private final String column;
+
+        Step(String column) {
+            super( null );
+            this.column = column;
+        }
+
+        // steps are given raw Maps
+        @SuppressWarnings("unchecked")
+        public Map doCall( Map row ) {
+            row.put( column, row.get( "quantity" ) );
+            return row;
+        }
+    }
+}
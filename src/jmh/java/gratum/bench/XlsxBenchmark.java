@@ -0,0 +1,46 @@
+package gratum.bench;
+
+import gratum.etl.LoadStatistic;
+import gratum.source.XlsxSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a single sheet xlsx file with {@link XlsxSource}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class XlsxBenchmark {
+
+    @Param({ "50000" })
+    public int rows;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Datasets.xlsx( rows );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public LoadStatistic read() {
+        return XlsxSource.xlsx( file ).into().go();
+    }
+
+    @Benchmark
+    public LoadStatistic readTyped() {
+        return XlsxSource.xlsx( file ).typed().into().go();
+    }
+}
@@ -0,0 +1,42 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Sets a column to the value a closure computes from the row.  If the closure returns a {@link Rejection} the row is
+ * rejected.
+ */
+@CompileStatic
+class AddFieldOperator implements Operator, ColumnUsage {
+
+    final String column
+    final Closure closure
+
+    AddFieldOperator(String column, Closure closure) {
+        this.column = column
+        this.closure = closure
+    }
+
+    @Override
+    Object apply(Map row) {
+        Object value = closure.call( row )
+        if( value instanceof Rejection ) return value
+        row.put( column, value )
+        return row
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return null
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    String toString() {
+        return "addField(${column})"
+    }
+}
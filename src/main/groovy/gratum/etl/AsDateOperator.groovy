@@ -0,0 +1,51 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+import java.text.ParseException
+import java.text.SimpleDateFormat
+
+/**
+ * Parses a column into a java.util.Date with a SimpleDateFormat.  Empty values are left alone, and values that can't
+ * be parsed are rejected.
+ */
+@CompileStatic
+class AsDateOperator implements Operator, ColumnUsage {
+
+    final String column
+    final String format
+    private final ThreadLocal<SimpleDateFormat> dateFormat
+
+    AsDateOperator(String column, String format) {
+        this.column = column
+        this.format = format
+        this.dateFormat = ThreadLocal.withInitial { new SimpleDateFormat(format) }
+    }
+
+    @Override
+    Object apply(Map row) {
+        Object value = row.get( column )
+        String text = value?.toString()
+        try {
+            if( text ) row.put( column, dateFormat.get().parse( text ) )
+            return row
+        } catch( ParseException ex ) {
+            return new Rejection( "${value} could not be parsed by format ${format}".toString(), RejectionCategory.INVALID_FORMAT )
+        }
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    String toString() {
+        return "asDate(${column}, ${format})"
+    }
+}
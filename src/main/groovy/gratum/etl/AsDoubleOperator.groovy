@@ -0,0 +1,45 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Parses a column into a java.lang.Double.  Empty values are left alone, and values that can't be parsed are
+ * rejected.
+ */
+@CompileStatic
+class AsDoubleOperator implements Operator, ColumnUsage {
+
+    final String column
+
+    AsDoubleOperator(String column) {
+        this.column = column
+    }
+
+    @Override
+    Object apply(Map row) {
+        Object value = row.get( column )
+        if( value instanceof Double ) return row
+        String text = value?.toString()
+        try {
+            if( text ) row.put( column, Double.parseDouble( text ) )
+            return row
+        } catch( NumberFormatException ex ) {
+            return new Rejection( "Could not parse ${text} as a Double".toString(), RejectionCategory.INVALID_FORMAT )
+        }
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    String toString() {
+        return "asDouble(${column})"
+    }
+}
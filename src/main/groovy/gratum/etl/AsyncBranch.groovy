@@ -0,0 +1,112 @@
+package gratum.etl
+
+import gratum.csv.HaltPipelineException
+
+/**
+ * Runs a branch of a {@link Pipeline} on its own thread (see {@link Pipeline#asyncBranch(int, groovy.lang.Closure)}).
+ * Rows are copied on the thread submitting them and handed to the branch's thread in small batches through a
+ * {@link RingBuffer}, so the submitting thread only blocks when the branch falls more than a buffer behind.  Handing
+ * off batches instead of single rows keeps the threads from waking each other up for every row.
+ *
+ * The branch's thread processes every row, then starts the branch's tail so its after callbacks (closing files,
+ * flushing sorts, etc) run on the branch's thread too.  Closing every branch as soon as the Source finishes lets
+ * the branches finish concurrently, and {@link #join()} waits for the branch and rethrows any failure.
+ */
+class AsyncBranch {
+
+    static final int BATCH_SIZE = 64
+
+    final Pipeline branch
+    final Pipeline tail
+    final RingBuffer<List<Map>> buffer
+    final int batchSize
+
+    private List<Map> batch
+    private Thread thread
+    private volatile Throwable failure
+    private volatile boolean halted
+
+    AsyncBranch(Pipeline branch, Pipeline tail, int bufferSize) {
+        this.branch = branch
+        this.tail = tail
+        this.batchSize = Math.max( 1, Math.min( BATCH_SIZE, bufferSize.intdiv( 4 ) as int ) )
+        this.buffer = new RingBuffer<>( Math.max( 2, bufferSize.intdiv( batchSize ) as int ) )
+    }
+
+    /**
+     * Hands a copy of the row to the branch, waiting while the branch's buffer is full.  Rows are dropped once the
+     * branch halts.
+     */
+    void submit(Map row) {
+        if( thread == null ) start()
+        if( halted ) return
+        if( batch == null ) batch = new ArrayList<>( batchSize )
+        batch.add( Pipeline.copyOf( row ) )
+        if( batch.size() >= batchSize ) flush()
+    }
+
+    private void flush() {
+        List<Map> rows = batch
+        batch = null
+        if( rows && !halted && !buffer.put( rows ) ) rethrow()
+    }
+
+    /**
+     * Tells the branch no more rows are coming.
+     */
+    void close() {
+        if( thread == null ) start()
+        flush()
+        buffer.close()
+    }
+
+    /**
+     * Waits for the branch to finish and rethrows its failure if it failed.
+     */
+    void join() {
+        close()
+        thread.join()
+        rethrow()
+    }
+
+    /**
+     * Stops the branch without finishing it.  Used when the Pipeline feeding it fails.
+     */
+    void abort() {
+        buffer.abort()
+    }
+
+    private void start() {
+        thread = new Thread( this.&run, "gratum-${branch.name}-branch" )
+        thread.daemon = true
+        thread.start()
+    }
+
+    private void run() {
+        try {
+            try {
+                List<Map> rows
+                while( (rows = buffer.take()) != null ) {
+                    for( Map row : rows ) {
+                        branch.processOwned( row, -1 )
+                    }
+                }
+            } catch( HaltPipelineException ex ) {
+                halted = true
+                // keep draining so a producer waiting on a full buffer isn't stuck
+                while( buffer.take() != null ) { }
+            }
+            if( !buffer.aborted ) tail.start()
+        } catch( Throwable t ) {
+            failure = t
+            buffer.abort()
+        }
+    }
+
+    private void rethrow() {
+        Throwable t = failure
+        if( t instanceof RuntimeException ) throw (RuntimeException)t
+        if( t instanceof Error ) throw (Error)t
+        if( t ) throw new RuntimeException( "Branch ${branch.name} failed", t )
+    }
+}
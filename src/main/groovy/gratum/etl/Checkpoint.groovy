@@ -0,0 +1,111 @@
+package gratum.etl
+
+import gratum.source.ResumableSource
+import groovy.transform.CompileStatic
+
+/**
+ * Periodically saves where a Pipeline's {@link ResumableSource} is and the state of its {@link Checkpointed} steps
+ * to a file, so a run that fails can be resumed from the last checkpoint instead of from the beginning (see
+ * {@link Pipeline#checkpoint(java.util.Map)}).
+ *
+ * A checkpoint is only taken between rows, after the row has been through every step, so the position of the
+ * Source and the state of the steps always agree.  The file is written with {@link StateFile} so a failure while
+ * writing leaves the previous checkpoint intact.  Steps that keep more state than fits in the checkpoint (ie the keys
+ * seen by unique) write it to sidecar files next to the checkpoint.  The checkpoint and its sidecars are deleted
+ * once the Pipeline finishes.
+ */
+class Checkpoint {
+
+    final File file
+    final long every
+    boolean resume = false
+
+    private List<String> names = []
+    private List<Checkpointed> steps = []
+    private final List<File> sidecars = []
+    private ResumableSource source
+    private long rows = 0
+
+    Checkpoint(File file, long every) {
+        this.file = file
+        this.every = every
+    }
+
+    /**
+     * @return a file next to the checkpoint for a step to keep its state in
+     */
+    File sidecar( String name ) {
+        File sidecar = new File( file.absoluteFile.parentFile, "${file.name}.${name.replaceAll( /[^A-Za-z0-9._-]/, '_' )}" )
+        sidecars << sidecar
+        return sidecar
+    }
+
+    /**
+     * Restores the Source and the steps from the checkpoint file if resuming and it exists, otherwise starts them
+     * from the beginning.  Steps are matched to their saved state by their position in the list, so the Pipeline
+     * must be built the same way to resume it.
+     *
+     * @param source the Pipeline's Source
+     * @param names the name of each step with state, used to check the checkpoint belongs to the same Pipeline
+     * @param steps the state of each step
+     */
+    void begin( ResumableSource source, List<String> names, List<Checkpointed> steps ) {
+        this.source = source
+        this.names = names
+        this.steps = steps
+        Map saved = resume ? StateFile.read( file ) : null
+        if( saved != null && saved.steps != names ) {
+            throw new IllegalStateException( "Checkpoint ${file} was saved by a Pipeline with different steps: ${saved.steps}" )
+        }
+        rows = saved != null ? saved.rows as long : 0
+        source.resumeFrom( saved?.position )
+        List<Object> states = (List<Object>)saved?.states
+        steps.eachWithIndex { Checkpointed step, int i ->
+            step.restore( this, states?.get(i) )
+        }
+    }
+
+    /**
+     * Called after each row from the Source has been processed.
+     */
+    @CompileStatic
+    void processed() {
+        if( ++rows % every == 0 ) save()
+    }
+
+    /**
+     * Saves the Source's position and the state of every step.
+     */
+    void save() {
+        Map<String,Object> saved = [
+            rows: rows,
+            position: source.position,
+            steps: names,
+            states: steps*.snapshot()
+        ]
+        StateFile.write( file, saved )
+    }
+
+    /**
+     * @return the rows processed since the beginning (not just since resuming)
+     */
+    long getRows() {
+        return rows
+    }
+
+    /**
+     * Closes the steps' state.
+     */
+    void close() {
+        steps*.close()
+    }
+
+    /**
+     * Deletes the checkpoint and its sidecars once the Pipeline has finished.
+     */
+    void finish() {
+        close()
+        file.delete()
+        sidecars*.delete()
+    }
+}
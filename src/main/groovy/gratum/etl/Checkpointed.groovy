@@ -0,0 +1,29 @@
+package gratum.etl
+
+/**
+ * The state of a step that has to be saved in a {@link Checkpoint} for the Pipeline to resume where it left off (ie
+ * a counter, the keys already seen, or how much of a file has been written).
+ */
+interface Checkpointed {
+
+    /**
+     * Anything the step has written must be on disk before this returns, since the Pipeline can be resumed from
+     * this point.
+     *
+     * @return the state to save.  It's written with {@link RowOutputStream}.
+     */
+    Object snapshot()
+
+    /**
+     * Called before the Source is started.
+     *
+     * @param checkpoint the Checkpoint being run, ie for {@link Checkpoint#sidecar(java.lang.String)}
+     * @param state the state returned by {@link #snapshot()} when resuming, or null when starting from the beginning.
+     */
+    void restore(Checkpoint checkpoint, Object state)
+
+    /**
+     * Called when the Pipeline stops, whether it finished or not.
+     */
+    void close()
+}
@@ -0,0 +1,43 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Replaces each row with a row containing only the given columns.
+ */
+@CompileStatic
+class ClipOperator implements Operator, ColumnUsage {
+
+    final List<String> columns
+    private final Set<Object> retained
+
+    ClipOperator(List<String> columns) {
+        this.columns = columns
+        this.retained = new HashSet<Object>( columns )
+    }
+
+    @Override
+    Object apply(Map row) {
+        Map result = new LinkedHashMap()
+        for( Object entry : row.entrySet() ) {
+            Map.Entry e = (Map.Entry)entry
+            if( retained.contains( e.key ) ) result.put( e.key, e.value )
+        }
+        return result
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return columns
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return null
+    }
+
+    @Override
+    String toString() {
+        return "clip(${columns.join(',')})"
+    }
+}
@@ -0,0 +1,21 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Runs a user supplied closure as a step.
+ */
+@CompileStatic
+class ClosureOperator implements Operator {
+
+    final Closure closure
+
+    ClosureOperator(Closure closure) {
+        this.closure = closure
+    }
+
+    @Override
+    Object apply(Map row) {
+        return closure.call(row)
+    }
+}
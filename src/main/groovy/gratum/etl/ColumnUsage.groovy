@@ -0,0 +1,19 @@
+package gratum.etl
+
+/**
+ * Implemented by {@link Operator}s that know which columns they use.  {@link Plan} uses this to decide which steps
+ * a filter can be moved ahead of, and which columns a Source has to read.  Operators that don't implement it are
+ * assumed to read and write every column.
+ */
+interface ColumnUsage {
+
+    /**
+     * @return the columns this step reads, or null if it could read any column.
+     */
+    Collection<String> getReads()
+
+    /**
+     * @return the columns this step sets, changes, or removes, or null if it could change any column.
+     */
+    Collection<String> getWrites()
+}
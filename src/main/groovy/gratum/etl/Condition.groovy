@@ -4,26 +4,50 @@ import groovy.transform.CompileStatic
 
 import java.util.regex.Pattern
 
+/**
+ * Matches rows against a Map of columns to values (see {@link Pipeline#filter(java.util.Map)}).  Every column must
+ * match for the row to match.
+ *
+ * When adaptive the Condition counts how often each column matches, and every {@link #REORDER_EVERY} rows it
+ * reorders the columns so the ones rejecting the most rows are tested first.  Only the equals, Collection and Pattern
+ * columns are reordered.  Closure columns are always tested last in the order they were given since they could rely
+ * on the other columns having matched.  The counts are updated without synchronization so they're approximate when
+ * the Condition is shared between threads.
+ */
 @CompileStatic
 class Condition {
 
+    static final int REORDER_EVERY = 1024
+
     List<Closure<Boolean>> comparators
+    List<String> columns
+    boolean adaptive = false
+
+    private volatile Term[] terms
+    private long evaluated = 0
 
     Condition(Map<String,Object> filterColumns) {
         comparators = new ArrayList<>(filterColumns.size())
+        columns = new ArrayList<>(filterColumns.size())
+        List<Term> declared = new ArrayList<>(filterColumns.size())
 
         for( String col : filterColumns.keySet() ) {
             Object comp = filterColumns[col]
+            Closure<Boolean> comparator
             if( comp instanceof Collection ) {
-                comparators.add(createInCollectionCallback(col, comp))
+                comparator = createInCollectionCallback(col, comp)
             } else if( comp instanceof Pattern ) {
-                comparators.add( createPatternCallback( col, comp) )
+                comparator = createPatternCallback( col, comp)
             } else if( comp instanceof Closure ) {
-                comparators.add( createClosureCallback( col, comp ) )
+                comparator = createClosureCallback( col, comp )
             } else {
-                comparators.add( createEqualsCallback( col, comp ) )
+                comparator = createEqualsCallback( col, comp )
             }
+            comparators.add( comparator )
+            columns.add( col )
+            declared.add( new Term( col, comparator, !(comp instanceof Closure) ) )
         }
+        terms = declared as Term[]
     }
 
     private Closure<Boolean> createInCollectionCallback(String col, Collection<?> comp) {
@@ -31,12 +55,43 @@ class Condition {
     }
 
     boolean matches(Map row ) {
-        for( Closure c : comparators ) {
-            if( !c(row) ) return false
+        Term[] current = terms
+        if( !adaptive ) {
+            for( Term term : current ) {
+                if( !term.comparator.call(row) ) return false
+            }
+            return true
+        }
+        if( ++evaluated % REORDER_EVERY == 0 ) current = reorder()
+        for( Term term : current ) {
+            term.tested++
+            if( !term.comparator.call(row) ) return false
+            term.passed++
         }
         return true
     }
 
+    /**
+     * @return the columns in the order they're currently tested.
+     */
+    List<String> getOrder() {
+        return terms.collect { Term term -> term.column }
+    }
+
+    private Term[] reorder() {
+        List<Term> fixed = []
+        List<Term> closures = []
+        for( Term term : terms ) {
+            (term.reorderable ? fixed : closures).add( term )
+        }
+        // sort is stable so columns that match equally often keep their order
+        fixed.sort { Term a, Term b -> Double.compare( a.passRate(), b.passRate() ) }
+        fixed.addAll( closures )
+        Term[] reordered = fixed as Term[]
+        terms = reordered
+        return reordered
+    }
+
     Closure<Boolean> createClosureCallback(String col, Closure closure) {
         return { Map row -> (Boolean)closure(row[col]) }
     }
@@ -48,4 +103,22 @@ class Condition {
     Closure<Boolean> createPatternCallback(String col, Pattern pattern) {
         return { Map row -> (row[col] =~ pattern).find() }
     }
+
+    private static class Term {
+        final String column
+        final Closure<Boolean> comparator
+        final boolean reorderable
+        long tested
+        long passed
+
+        Term(String column, Closure<Boolean> comparator, boolean reorderable) {
+            this.column = column
+            this.comparator = comparator
+            this.reorderable = reorderable
+        }
+
+        double passRate() {
+            return tested == 0 ? 1.0d : (double)passed / tested
+        }
+    }
 }
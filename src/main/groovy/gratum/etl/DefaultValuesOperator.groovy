@@ -0,0 +1,47 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Sets columns that are null or empty to a default value.
+ */
+@CompileStatic
+class DefaultValuesOperator implements Operator, ColumnUsage {
+
+    final String[] columns
+    final Object[] values
+
+    DefaultValuesOperator(Map<String,Object> defaults) {
+        columns = new String[ defaults.size() ]
+        values = new Object[ defaults.size() ]
+        int i = 0
+        for( Map.Entry<String,Object> entry : defaults.entrySet() ) {
+            columns[i] = entry.key
+            values[i] = entry.value
+            i++
+        }
+    }
+
+    @Override
+    Object apply(Map row) {
+        for( int i = 0; i < columns.length; i++ ) {
+            if( !row.get( columns[i] ) ) row.put( columns[i], values[i] )
+        }
+        return row
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return Arrays.asList( columns )
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Arrays.asList( columns )
+    }
+
+    @Override
+    String toString() {
+        return "defaultValues(${(0..<columns.length).collect { int i -> columns[i] + ': ' + values[i].inspect() }.join(', ')})"
+    }
+}
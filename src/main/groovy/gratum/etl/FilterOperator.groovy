@@ -0,0 +1,40 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Passes rows matching a {@link Condition} and rejects the rest.
+ */
+@CompileStatic
+class FilterOperator implements Operator, ColumnUsage {
+
+    final Condition condition
+    final String reason
+    private final String description
+
+    FilterOperator(Map<String,Object> columns) {
+        this.condition = new Condition( columns )
+        this.reason = "Row did not match the filter ${columns}".toString()
+        this.description = "filter(${columns.inspect()})".toString()
+    }
+
+    @Override
+    Object apply(Map row) {
+        return condition.matches( row ) ? row : new Rejection( reason, RejectionCategory.IGNORE_ROW )
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return condition.columns
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Collections.<String>emptyList()
+    }
+
+    @Override
+    String toString() {
+        return description
+    }
+}
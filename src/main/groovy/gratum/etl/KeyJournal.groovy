@@ -0,0 +1,68 @@
+package gratum.etl
+
+/**
+ * Checkpoints a {@link KeySet} by appending every key added to it to a sidecar file of the {@link Checkpoint}.  When
+ * resuming, the file is cut back to its length at the checkpoint and the keys are added to the KeySet again.  The
+ * keys are written as they're added so a checkpoint only has to flush the file instead of writing the whole set.
+ */
+class KeyJournal implements Checkpointed {
+
+    final String name
+    final KeySet keys
+
+    private FileOutputStream stream
+    private RowOutputStream out
+    private long count = 0
+
+    KeyJournal(String name, KeySet keys) {
+        this.name = name
+        this.keys = keys
+    }
+
+    /**
+     * @return true if the key wasn't already in the set
+     */
+    boolean add( CompositeKey key ) {
+        if( !keys.add( key ) ) return false
+        if( out != null ) {
+            List<Object> values = new ArrayList<>( key.size() )
+            for( int i = 0; i < key.size(); i++ ) values << key.get( i )
+            out.writeValue( values )
+            count++
+        }
+        return true
+    }
+
+    @Override
+    Object snapshot() {
+        out.flush()
+        stream.getFD().sync()
+        return [ length: stream.channel.position(), count: count ]
+    }
+
+    @Override
+    void restore(Checkpoint checkpoint, Object state) {
+        File file = checkpoint.sidecar( name )
+        Map saved = (Map)state
+        if( saved != null ) {
+            new RandomAccessFile( file, "rw" ).withCloseable { RandomAccessFile raf -> raf.setLength( saved.length as long ) }
+            count = saved.count as long
+            RowInputStream input = new RowInputStream( file )
+            try {
+                for( long i = 0; i < count; i++ ) {
+                    keys.add( CompositeKey.exact( ((List)input.readValue()).toArray() ) )
+                }
+            } finally {
+                input.close()
+            }
+        }
+        stream = new FileOutputStream( file, saved != null )
+        out = new RowOutputStream( new BufferedOutputStream( stream, 64 * 1024 ) )
+    }
+
+    @Override
+    void close() {
+        out?.close()
+        out = null
+    }
+}
@@ -1,20 +1,46 @@
 package gratum.etl
 
+import javax.management.InstanceAlreadyExistsException
+import javax.management.MBeanServer
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
 /**
  * This object contains the statistics on how many items were processed by the Pipeline.  The name of the 
  * {@link gratum.etl.Pipeline} is contained in the name property.  Things included in this object are
  * number of rows loaded, number of rows rejected, categories and count of each row rejected, the total
  * time spent processing the {@link gratum.etl.Pipeline}, and the time each step took to process the rows.
+ *
+ * Each step's timings are kept in a {@link StepMetrics} (see {@link #getSteps()}), and can be reported while the
+ * Pipeline runs using {@link Pipeline#instrument(java.util.Map)}.
  */
-class LoadStatistic {
+class LoadStatistic implements LoadStatisticMBean {
+    private static final AtomicInteger runs = new AtomicInteger()
+
     String name
     Map<RejectionCategory, Map<String,Integer>> rejectionsByCategory = [:]
-    Map<String,Long> stepTimings = [:]
     Integer loaded = 0
     Long start = 0
     Long end = 0
     Long marker = 0
 
+    /** Time every sampleEvery-th row passed to each step */
+    int sampleEvery = 1
+    /** Called every reportInterval ms while the Pipeline runs */
+    MetricsReporter reporter
+    long reportInterval = 10000
+    /** Register MBeans for this statistic and its steps while the Pipeline runs */
+    boolean jmx = false
+
+    private final Map<String,StepMetrics> ownSteps = new LinkedHashMap<>()
+    private final List<LoadStatistic> upstream = []
+    private ScheduledExecutorService reporting
+    private final List<ObjectName> registered = []
+
     public Duration getDuration() {
         return new Duration(end - start)
     }
@@ -34,6 +60,7 @@ class LoadStatistic {
     void setStart(Long start) {
         this.start = start
         mark()
+        updateRun()
     }
 
     Long getEnd() {
@@ -42,6 +69,74 @@ class LoadStatistic {
 
     void setEnd(Long end) {
         this.end = end
+        updateRun()
+    }
+
+    private synchronized void updateRun() {
+        for( StepMetrics metrics : ownSteps.values() ) {
+            metrics.setRun( start, end )
+        }
+    }
+
+    /**
+     * Returns the metrics for the step with the given name, creating it if needed.  Steps hold onto the returned
+     * instance so each row's timing doesn't look the step up by name.
+     */
+    public synchronized StepMetrics metricsFor( String stepName ) {
+        StepMetrics metrics = ownSteps.get( stepName )
+        if( metrics == null ) {
+            metrics = new StepMetrics( stepName, sampleEvery )
+            metrics.setRun( start, end )
+            ownSteps.put( stepName, metrics )
+        }
+        return metrics
+    }
+
+    /**
+     * Includes the steps of the given statistic in this statistic's steps (ie the steps of a Pipeline that feeds
+     * this Pipeline).
+     */
+    public synchronized void addUpstream( LoadStatistic statistic ) {
+        if( !upstream.contains( statistic ) ) upstream << statistic
+    }
+
+    /**
+     * @return the metrics of every step by name, starting with the steps of the upstream Pipelines.
+     */
+    public synchronized Map<String,StepMetrics> getSteps() {
+        Map<String,StepMetrics> steps = new LinkedHashMap<>()
+        for( LoadStatistic statistic : upstream ) {
+            steps.putAll( statistic.getSteps() )
+        }
+        steps.putAll( ownSteps )
+        return steps
+    }
+
+    /**
+     * @return the estimated total time in milliseconds spent in each step that was given a row.
+     */
+    public Map<String,Long> getStepTimings() {
+        Map<String,Long> timings = new LinkedHashMap<>()
+        getSteps().each { String step, StepMetrics metrics ->
+            if( metrics.calls > 0 ) timings.put( step, metrics.totalMillis )
+        }
+        return timings
+    }
+
+    public synchronized void setSampleEvery( int sampleEvery ) {
+        this.sampleEvery = sampleEvery
+        for( StepMetrics metrics : ownSteps.values() ) {
+            metrics.setSampleEvery( sampleEvery )
+        }
+        for( LoadStatistic statistic : upstream ) {
+            statistic.setSampleEvery( sampleEvery )
+        }
+    }
+
+    public double getRowsPerSecond() {
+        if( !start ) return 0.0
+        long finish = end ?: System.currentTimeMillis()
+        return loaded * 1000.0 / Math.max( 1L, finish - start )
     }
 
     public Integer getLoaded() {
@@ -54,7 +149,11 @@ class LoadStatistic {
         }
     }
 
-    public void reject(Rejection rejection) {
+    public synchronized void incrementLoaded(int count = 1) {
+        loaded += count
+    }
+
+    public synchronized void reject(Rejection rejection) {
         RejectionCategory category = rejection?.category ?: RejectionCategory.REJECTION
         if( !rejectionsByCategory[category] ) {
             rejectionsByCategory[category] = [(rejection.step): 0]
@@ -65,6 +164,19 @@ class LoadStatistic {
         rejectionsByCategory[category][rejection.step] = count
     }
 
+    /**
+     * Adds the rejections of the given statistic to this statistic's rejections.
+     */
+    public synchronized void addRejections( LoadStatistic statistic ) {
+        statistic.rejectionsByCategory.each { RejectionCategory cat, Map<String,Integer> steps ->
+            Map<String,Integer> counts = rejectionsByCategory[cat]
+            if( counts == null ) rejectionsByCategory[cat] = counts = [:]
+            steps.each { String step, Integer count ->
+                counts[step] = (counts[step] ?: 0) + count
+            }
+        }
+    }
+
     public Map<RejectionCategory, Map<String,Integer>> getRejectionsByCategory() {
         return rejectionsByCategory
     }
@@ -82,17 +194,81 @@ class LoadStatistic {
     }
 
     public Object timed( String stepName, Closure c ) {
-        if( !stepTimings.containsKey(stepName) ) stepTimings.put( stepName, 0L )
-        long start = System.currentTimeMillis()
-        def ret = c.call()
-        long duration = System.currentTimeMillis() - start
-        stepTimings[stepName] += duration
-        return ret
+        StepMetrics metrics = metricsFor( stepName )
+        if( !metrics.sample() ) return c.call()
+        long start = System.nanoTime()
+        try {
+            return c.call()
+        } finally {
+            metrics.record( System.nanoTime() - start )
+        }
     }
 
+    /**
+     * @return the average time in milliseconds the step took to process a row.
+     */
     public double avg( String step ) {
-        double avg = stepTimings[step] / (loaded + rejections)
-        return avg
+        StepMetrics metrics = getSteps().get( step )
+        return metrics ? metrics.meanNanos / 1_000_000d : 0.0d
+    }
+
+    /**
+     * Starts the reporter and registers the MBeans configured by {@link Pipeline#instrument(java.util.Map)}.
+     */
+    void startInstrumentation() {
+        if( jmx ) register()
+        if( reporter && reportInterval > 0 ) {
+            reporting = Executors.newSingleThreadScheduledExecutor { Runnable r ->
+                Thread t = new Thread( r, "gratum-metrics-${name}" )
+                t.daemon = true
+                return t
+            }
+            reporting.scheduleAtFixedRate( {
+                try {
+                    reporter.report( this, false )
+                } catch( Exception ignore ) {
+                    // a failing reporter shouldn't stop the next report
+                }
+            } as Runnable, reportInterval, reportInterval, TimeUnit.MILLISECONDS )
+        }
+    }
+
+    /**
+     * Stops the reporter, sends the final report, and unregisters any MBeans.
+     */
+    void stopInstrumentation() {
+        if( reporting ) {
+            reporting.shutdownNow()
+            reporting.awaitTermination( reportInterval, TimeUnit.MILLISECONDS )
+            reporting = null
+        }
+        reporter?.report( this, true )
+        if( registered ) {
+            MBeanServer server = ManagementFactory.platformMBeanServer
+            registered.each { ObjectName objectName ->
+                if( server.isRegistered( objectName ) ) server.unregisterMBean( objectName )
+            }
+            registered.clear()
+        }
+    }
+
+    private void register() {
+        MBeanServer server = ManagementFactory.platformMBeanServer
+        String pipeline = ObjectName.quote( name ?: "null" )
+        int run = runs.incrementAndGet()
+        register( server, new ObjectName( "gratum:type=Pipeline,name=${pipeline},run=${run}" ), this )
+        getSteps().each { String step, StepMetrics metrics ->
+            register( server, new ObjectName( "gratum:type=Step,pipeline=${pipeline},run=${run},name=${ObjectName.quote( step ?: "null" )}" ), metrics )
+        }
+    }
+
+    private void register( MBeanServer server, ObjectName objectName, Object mbean ) {
+        try {
+            server.registerMBean( mbean, objectName )
+            registered << objectName
+        } catch( InstanceAlreadyExistsException ignore ) {
+            // a step with the same name was already registered
+        }
     }
 
     public String toString() {
@@ -105,8 +281,8 @@ class LoadStatistic {
         if( timings ) {
             pw.println("\n----")
             pw.println("Step Timings")
-            this.stepTimings.each { String step, Long totalTime ->
-                pw.printf("%s: %,.2f ms%n", step, this.avg(step) )
+            this.steps.values().each { StepMetrics step ->
+                if( step.calls > 0 ) pw.println( step )
             }
         }
 
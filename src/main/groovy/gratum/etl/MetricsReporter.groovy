@@ -0,0 +1,16 @@
+package gratum.etl
+
+/**
+ * Receives the live {@link LoadStatistic} of a running Pipeline at a fixed interval, and once more when the Pipeline
+ * finishes.  See {@link Pipeline#instrument(java.util.Map)}.  Reporters are called from a background thread while
+ * the Pipeline is running, and must not modify the statistic.
+ */
+interface MetricsReporter {
+
+    /**
+     * @param statistic the statistic of the Pipeline.  {@link LoadStatistic#getSteps()} includes the steps of the
+     * Pipelines upstream of it.
+     * @param finished true when the Pipeline has finished and this is the last report.
+     */
+    void report( LoadStatistic statistic, boolean finished )
+}
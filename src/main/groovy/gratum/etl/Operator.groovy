@@ -0,0 +1,16 @@
+package gratum.etl
+
+/**
+ * The work done by a single step of a {@link Pipeline}.  The built in steps (filter, setField, asInt, etc) are
+ * statically compiled Operators, and closures given to {@link Pipeline#addStep(java.lang.String, groovy.lang.Closure)}
+ * are wrapped in a {@link ClosureOperator}.  The built in Operators describe themselves and their arguments in
+ * toString() so a change to them changes the Pipeline's fingerprint (see {@link Pipeline#getFingerprint()}).
+ */
+interface Operator {
+
+    /**
+     * @param row The row to process
+     * @return The row to pass to the next step, or null or a {@link Rejection} to reject the row.
+     */
+    Object apply(Map row)
+}
@@ -0,0 +1,236 @@
+package gratum.etl
+
+import gratum.csv.HaltPipelineException
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * Runs the steps of a {@link Pipeline} on a pool of worker threads.  Rows handed to {@link Pipeline#process(java.util.Map, int)}
+ * are collected into batches on the calling thread (typically the thread running the {@link gratum.source.Source}) and each
+ * batch is handed to a worker.
+ *
+ * The step chain is split at the first serial step (see {@link Pipeline#addSerialStep(java.lang.String, groovy.lang.Closure)}).
+ * Every step before it runs concurrently across batches.  The serial step and everything after it runs one batch at a time
+ * so stateful steps like save(), unique(), or sort() only ever see a single row at a time.  When ordered is true batches take
+ * their turn through the serial steps in the order they were read from the Source.
+ */
+class ParallelProcessor {
+
+    final Pipeline pipeline
+    final int threads
+    final int batchSize
+    final boolean ordered
+
+    private ExecutorService executor
+    private Semaphore inFlight
+    private int serialIndex
+    private ThreadLocal<StepMetrics[]> localMetrics
+
+    private List<Map> rows
+    private int[] lines
+    private long nextSequence = 0
+
+    private final Object turnLock = new Object()
+    private long turn = 0
+    private final ReentrantLock serialLock = new ReentrantLock()
+
+    private volatile Throwable failure
+    private volatile HaltPipelineException halt
+
+    ParallelProcessor(Pipeline pipeline, int threads, boolean ordered, int batchSize) {
+        this.pipeline = pipeline
+        this.threads = threads
+        this.ordered = ordered
+        this.batchSize = batchSize
+    }
+
+    /**
+     * Adds the row to the current batch, and dispatches the batch to the workers once it's full.  This will block
+     * the caller when the workers fall behind.  The row must already be a copy the Pipeline owns.
+     *
+     * @return true if the pipeline has been halted and the Source should stop sending rows.
+     */
+    synchronized boolean submit(Map row, int lineNumber) {
+        rethrow( failure )
+        if( halt ) return true
+        if( executor == null ) open()
+        if( rows == null ) {
+            rows = new ArrayList<>(batchSize)
+            lines = new int[batchSize]
+        }
+        lines[rows.size()] = lineNumber
+        rows.add( row )
+        if( rows.size() >= batchSize ) dispatch()
+        return halt != null
+    }
+
+    /**
+     * Dispatches any partial batch, waits for all workers to finish, and rethrows the first failure encountered by
+     * any worker.  Afterwards the processor is ready for another run of the Pipeline.
+     */
+    synchronized void finish() {
+        try {
+            if( rows && failure == null && halt == null ) dispatch()
+        } finally {
+            shutdown()
+        }
+        Throwable t = failure
+        HaltPipelineException h = halt
+        reset()
+        rethrow( t )
+        if( h ) throw h
+    }
+
+    /**
+     * Stops the workers without processing any partial batch.  Used when the Source fails.
+     */
+    synchronized void abort() {
+        rows = null
+        shutdown()
+        reset()
+    }
+
+    /**
+     * Clears the state of the last run so the Pipeline can be run again.
+     */
+    private void reset() {
+        rows = null
+        lines = null
+        failure = null
+        halt = null
+        nextSequence = 0
+        synchronized (turnLock) {
+            turn = 0
+        }
+    }
+
+    private void open() {
+        serialIndex = pipeline.chain.findIndexOf { Step step -> step.serial }
+        if( serialIndex < 0 ) serialIndex = pipeline.chain.size()
+        // each worker times steps into its own metrics, merged into the steps' metrics after each batch
+        localMetrics = ThreadLocal.withInitial { pipeline.processChain.collect { Step step -> step.metrics.newLocal() } as StepMetrics[] }
+        inFlight = new Semaphore( threads * 2 )
+        AtomicInteger count = new AtomicInteger()
+        String prefix = "gratum-${pipeline.name}-worker-"
+        executor = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable r) {
+                Thread thread = new Thread( r, prefix + count.incrementAndGet() )
+                thread.setDaemon( true )
+                return thread
+            }
+        })
+    }
+
+    private void shutdown() {
+        if( executor ) {
+            executor.shutdown()
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS )
+            executor = null
+        }
+    }
+
+    private void dispatch() {
+        long sequence = nextSequence++
+        List<Map> batch = rows
+        int[] batchLines = lines
+        rows = null
+        lines = null
+        inFlight.acquire()
+        try {
+            executor.execute {
+                try {
+                    run( sequence, batch, batchLines )
+                } finally {
+                    inFlight.release()
+                }
+            }
+        } catch( Throwable t ) {
+            inFlight.release()
+            throw t
+        }
+    }
+
+    private void run(long sequence, List<Map> batch, int[] batchLines) {
+        StepMetrics[] metrics = localMetrics.get()
+        List<Map> survivors = new ArrayList<>( batch.size() )
+        int[] survivorLines = new int[ batch.size() ]
+        try {
+            for( int i = 0; i < batch.size() && !stopped(); i++ ) {
+                Map current = pipeline.runSteps( batch[i], batchLines[i], 0, serialIndex, metrics )
+                if( current != null ) {
+                    survivorLines[ survivors.size() ] = batchLines[i]
+                    survivors.add( current )
+                }
+            }
+        } catch( Throwable t ) {
+            fail( t )
+        }
+
+        awaitTurn( sequence )
+        int loaded = 0
+        try {
+            for( int i = 0; i < survivors.size() && !stopped(); i++ ) {
+                if( pipeline.runSteps( survivors[i], survivorLines[i], serialIndex, pipeline.chain.size(), metrics ) != null ) {
+                    loaded++
+                }
+            }
+        } catch( Throwable t ) {
+            fail( t )
+        } finally {
+            for( int i = 0; i < metrics.length; i++ ) {
+                pipeline.processChain[i].metrics.merge( metrics[i] )
+            }
+            pipeline.statistic.incrementLoaded( loaded )
+            endTurn()
+        }
+    }
+
+    private boolean stopped() {
+        return failure != null || halt != null
+    }
+
+    private void fail(Throwable t) {
+        if( t instanceof HaltPipelineException ) {
+            if( halt == null ) halt = (HaltPipelineException)t
+        } else if( failure == null ) {
+            failure = t
+        }
+    }
+
+    private void awaitTurn(long sequence) {
+        if( ordered ) {
+            synchronized (turnLock) {
+                while( turn != sequence ) {
+                    turnLock.wait()
+                }
+            }
+        } else {
+            serialLock.lock()
+        }
+    }
+
+    private void endTurn() {
+        if( ordered ) {
+            synchronized (turnLock) {
+                turn++
+                turnLock.notifyAll()
+            }
+        } else {
+            serialLock.unlock()
+        }
+    }
+
+    private static void rethrow(Throwable t) {
+        if( t instanceof RuntimeException ) throw (RuntimeException)t
+        if( t instanceof Error ) throw (Error)t
+        if( t ) throw new RuntimeException( t )
+    }
+}
@@ -5,21 +5,51 @@ import gratum.pgp.PgpContext
 import gratum.source.AbstractSource
 import gratum.csv.HaltPipelineException
 import gratum.source.ChainedSource
+import gratum.source.CacheSource
 import gratum.source.ClosureSource
+import gratum.source.CommittableSource
+import gratum.source.FingerprintedSource
+import gratum.source.ProjectableSource
+import gratum.source.ResumableSource
 import gratum.source.Source
-import groovy.json.JsonOutput
-
-import java.text.ParseException
-import java.text.SimpleDateFormat
+import gratum.json.JsonWriter
+import gratum.util.ProducerInputStream
+import groovy.sql.Sql
+import groovy.transform.CompileStatic
+
+import java.nio.charset.StandardCharsets
+import java.sql.Connection
+import java.sql.SQLException
 import java.util.regex.Pattern
+import java.util.zip.GZIPOutputStream
 
 class Step {
     public String name
-    public Closure step
+    public Operator operator
+    public boolean serial
+    public StepMetrics metrics
+    public int index
+    public Step[] fused
+
+    Step(String name, Closure step, boolean serial = false) {
+        this( name, new ClosureOperator( step ), serial )
+    }
 
-    Step(String name, Closure step) {
+    Step(String name, Operator operator, boolean serial = false) {
         this.name = name
-        this.step = step
+        this.operator = operator
+        this.serial = serial
+    }
+
+    /**
+     * Creates a step that runs the given adjacent steps one after another in a single pass.  Each of the steps keeps
+     * its own name and {@link StepMetrics}.
+     */
+    static Step fuse(List<Step> steps) {
+        Step step = new Step( steps.collect { it.name }.join(" -> "), (Operator)null, false )
+        step.index = steps[0].index
+        step.fused = steps as Step[]
+        return step
     }
 }
 
@@ -71,9 +101,19 @@ public class Pipeline {
     LoadStatistic statistic
     Source src
     List<Step> processChain = []
+    boolean optimizing = false
+    private Plan plan
+    private List<Step> chain
     List<Closure> doneChain = []
     Pipeline rejections
     boolean complete = false
+    ParallelProcessor parallelism
+    List<AsyncBranch> asyncBranches = []
+    Checkpoint checkpoint
+    private List<String> checkpointNames = []
+    private List<Checkpointed> checkpointed = []
+    private Pipeline branchOf
+    private boolean asyncBranched = false
 
     Pipeline(String name) {
         this.statistic = new LoadStatistic([name: name])
@@ -115,14 +155,165 @@ public class Pipeline {
      */
     public Pipeline addStep( String name = null, @DelegatesTo(Pipeline) Closure<Map> step ) {
         step.delegate = this
-        processChain << new Step( name, step )
-        return this
+        return appendStep( new Step( name, step ) )
     }
 
     public Pipeline addStep(GString name, @DelegatesTo(Pipeline) Closure<Map> step) {
         this.addStep( name.toString(), step )
     }
 
+    /**
+     * Adds a step to the pipeline that's implemented by the given {@link Operator}.  This works exactly like
+     * {@link #addStep(java.lang.String, groovy.lang.Closure)}, but avoids the overhead of calling a closure for each
+     * row.  All of the built in steps (filter, setField, asInt, trim, etc) are Operators.
+     *
+     * @param name The step name
+     * @param operator The Operator used to process each row processed by the Pipeline.
+     * @return this Pipeline.
+     */
+    public Pipeline addStep( String name, Operator operator ) {
+        return appendStep( new Step( name, operator ) )
+    }
+
+    private Pipeline appendStep( Step step ) {
+        step.index = processChain.size()
+        step.metrics = statistic.metricsFor( step.name )
+        processChain << step
+        plan = null
+        chain = null
+        return this
+    }
+
+    /**
+     * Adds a step to the pipeline that must only process one row at a time.  This works exactly like
+     * {@link #addStep(java.lang.String, groovy.lang.Closure)} when the Pipeline runs on a single thread.  When the
+     * Pipeline is running in {@link #parallel(int, boolean, int)} mode this step and all steps after it are run by
+     * a single thread at a time.  Use this for any step that keeps state between rows (counters, files, caches, etc).
+     *
+     * @param name The step name
+     * @param step The code used to process each row processed by the Pipeline.
+     * @return this Pipeline.
+     */
+    public Pipeline addSerialStep( String name = null, @DelegatesTo(Pipeline) Closure<Map> step ) {
+        step.delegate = this
+        return appendStep( new Step( name, step, true ) )
+    }
+
+    /**
+     * Runs the steps of this Pipeline on a pool of worker threads.  The thread running the Source collects rows into
+     * batches of batchSize and hands them to the workers.  Every step up to the first serial step
+     * (see {@link #addSerialStep(java.lang.String, groovy.lang.Closure)}) runs concurrently so those steps must be
+     * thread safe.  Built in steps that keep state (save, json, sort, unique, limit, etc) are serial steps and will only
+     * see one row at a time.  If ordered is true the serial steps will see rows in the same order the Source produced
+     * them, otherwise rows arrive at the serial steps in whatever order the workers finish.
+     *
+     * @param threads The number of worker threads to use
+     * @param ordered true if the serial steps should receive rows in the order they were read (default false)
+     * @param batchSize The number of rows handed to a worker at a time (default 1000)
+     * @return this Pipeline
+     */
+    public Pipeline parallel( int threads, boolean ordered = false, int batchSize = 1000 ) {
+        if( threads > 1 ) {
+            parallelism = new ParallelProcessor( this, threads, ordered, batchSize )
+        } else {
+            parallelism = null
+        }
+        return this
+    }
+
+    /**
+     * Configures how the steps are timed and reported while this Pipeline runs.  Each step counts every row it's
+     * given, and times rows using System.nanoTime() into a latency histogram (see {@link StepMetrics}).  The
+     * metrics are available from {@link LoadStatistic#getSteps()}, and include the steps of the Pipelines feeding
+     * this one.  For example:
+     *
+     * <pre>
+     *     csv("large.csv")
+     *       .addStep("clean") { Map row -> ... }
+     *       .sort("id")
+     *       .instrument( sampleEvery: 16, reporter: new PrintStreamReporter(), interval: 5000, jmx: true )
+     *       .go()
+     * </pre>
+     *
+     * @param options <ul>
+     *     <li>sampleEvery - only time every Nth row given to each step (default 1, time every row).  Rows are still
+     *     counted and totals are estimated from the timed rows.</li>
+     *     <li>reporter - a {@link MetricsReporter} called with the live {@link LoadStatistic} while running and once
+     *     when finished</li>
+     *     <li>interval - the milliseconds between reports (default 10000)</li>
+     *     <li>jmx - true to register MBeans for the Pipeline and each step in the "gratum" domain while running
+     *     (default false)</li>
+     * </ul>
+     * @return this Pipeline
+     */
+    public Pipeline instrument( Map options ) {
+        if( options.containsKey("sampleEvery") ) statistic.setSampleEvery( options.sampleEvery as int )
+        if( options.containsKey("reporter") ) statistic.reporter = options.reporter as MetricsReporter
+        if( options.containsKey("interval") ) statistic.reportInterval = options.interval as long
+        if( options.containsKey("jmx") ) statistic.jmx = options.jmx as boolean
+        return this
+    }
+
+    /**
+     * Lets the Pipeline run its steps in a different order than they were declared, and skip reading columns it
+     * doesn't use.  Filters on columns ({@link #filter(java.util.Map)}) are moved ahead of the steps before them that
+     * don't change the filtered columns, so fewer rows are converted or computed only to be thrown away.  The filters
+     * test the columns that reject the most rows first.  When the steps before a {@link #clip(java.lang.String[])}
+     * only use known columns, the Source only reads those columns (see {@link gratum.source.ProjectableSource}).
+     * For example:
+     *
+     * <pre>
+     *     csv("people.csv")
+     *       .asDate("birthday")
+     *       .addField("name") { Map row -> "${row.first} ${row.last}" }
+     *       .filter( state: ["GA","FL"] )
+     *       .clip("name", "birthday", "state")
+     *       .optimize()
+     *       .explain()
+     *       .go()
+     * </pre>
+     *
+     * Only the birthday, first, last and state columns are read, and the filter runs first.  Since rows are filtered
+     * before the other steps see them, a row that is rejected by both a filter and an earlier step is rejected by the
+     * filter.  Rows aren't pruned when there is an {@link #onRejection(groovy.lang.Closure)} Pipeline since it's given
+     * the whole row.  Use {@link #explain(java.io.PrintStream)} to see the resulting plan.
+     *
+     * @return this Pipeline
+     */
+    public Pipeline optimize() {
+        optimizing = true
+        plan = null
+        chain = null
+        return this
+    }
+
+    /**
+     * Prints the steps of this Pipeline, and the Pipelines feeding it, in the order they'll run.  Steps run in the same
+     * pass over a row (see {@link #getChain()}) share a number.  Filters moved ahead of other steps by
+     * {@link #optimize()} show the step they were moved ahead of, and the columns read by the Source are shown when
+     * they're pruned.
+     *
+     * @param out where to print the plan (default System.out)
+     * @return this Pipeline
+     */
+    public Pipeline explain( PrintStream out = System.out ) {
+        if( src instanceof ChainedSource ) ((ChainedSource)src).parent.explain( out )
+        Collection<String> columns = projection
+        out.println( "${name}${optimizing ? ' (optimized)' : ''}" )
+        out.println( "  source ${src?.class?.simpleName ?: 'none'}${columns != null ? ' reading ' + columns.join(', ') : ''}" )
+        int pass = 0
+        for( Step step : getChain() ) {
+            pass++
+            for( Step member : (step.fused ?: [step] as Step[]) ) {
+                String note = member.serial ? " serial" : ""
+                if( getPlan().moved.containsKey( member ) ) note += " moved ahead of ${getPlan().moved[member].name}"
+                if( member.operator instanceof FilterOperator && optimizing ) note += " testing ${((FilterOperator)member.operator).condition.order.join(', ')}"
+                out.println( "  ${pass.toString().padLeft(3)}. ${member.name}${note}" )
+            }
+        }
+        return this
+    }
+
     /**
      * Adds a closure to the end of the Pipeline.  This is called after all rows are processed.  This closure is
      * invoked without any arguments.
@@ -166,7 +357,7 @@ public class Pipeline {
         Pipeline original = this
         this.after {
             int line = 0
-            src.addStep("concat(${src.name})") { Map row ->
+            src.addSerialStep("concat(${src.name})") { Map row ->
                 line++
                 original.process( row, line )
                 return row
@@ -216,14 +407,7 @@ public class Pipeline {
      * @return A pipeline that only includes the rows matching the given filter.
      */
     public Pipeline filter( Map columns ) {
-        Condition condition = new Condition( columns )
-        addStep( "filter ${ nameOf(columns) }" ) { Map row ->
-            if( condition.matches(row) ) {
-                return row
-            } else {
-                return reject("Row did not match the filter ${columns}", RejectionCategory.IGNORE_ROW )
-            }
-        }
+        addStep( "filter ${ nameOf(columns) }".toString(), new FilterOperator( columns ) )
         return this
     }
 
@@ -249,10 +433,7 @@ public class Pipeline {
      * @return Pipeline where all columns of each row has white space removed.
      */
     public Pipeline trim() {
-        addStep("trim()") { Map row ->
-            row.each { String key, Object value -> row[key] = (value as String)?.trim() }
-            return row
-        }
+        addStep("trim()", new TrimOperator() )
     }
 
     /**
@@ -264,10 +445,11 @@ public class Pipeline {
      */
     public Pipeline branch( Closure<Pipeline> split) {
         Pipeline branch = new Pipeline( name )
+        branch.branchOf = this
 
         Pipeline tail = split( branch )
 
-        addStep( "branch()" ) { Map row ->
+        addSerialStep( "branch()" ) { Map row ->
             branch.process( row )
             return row
         }
@@ -288,10 +470,11 @@ public class Pipeline {
      */
     public Pipeline branch(Map<String,Object> condition, Closure<Pipeline> split) {
         Pipeline branch = new Pipeline( name )
+        branch.branchOf = this
         Pipeline tail = split(branch)
 
         Condition selection = new Condition( condition )
-        addStep( "branch(${condition})" ) { Map row ->
+        addSerialStep( "branch(${condition})" ) { Map row ->
             if( selection.matches( row )) {
                 branch.process( row )
             }
@@ -303,59 +486,183 @@ public class Pipeline {
         }
     }
 
+    /**
+     * Copies all rows on this Pipeline to another Pipeline that runs on its own thread.  Otherwise this works like
+     * {@link #branch(groovy.lang.Closure)}.  Each row is copied and handed to the branch through a buffer of
+     * bufferSize rows, and this Pipeline only waits on the branch when the buffer is full.  Several async branches
+     * run concurrently so splitting rows to several files takes about as long as the slowest branch instead of all
+     * of them together.  For example:
+     *
+     * <pre>
+     *     csv("orders.csv")
+     *       .asyncBranch( [status: "open"] ) { Pipeline p -> p.save("open.csv") }
+     *       .asyncBranch( [status: "closed"] ) { Pipeline p -> p.save("closed.csv") }
+     *       .go()
+     * </pre>
+     *
+     * The branch's steps and after callbacks run on the branch's thread.  The copy of each row is a shallow copy, so
+     * values that are changed in place (ie Lists or Maps) must not be changed by either side.  When all rows have been
+     * sent every branch is told to finish, and this Pipeline's after callback for the branch waits for it to finish and
+     * rethrows any failure.  If the branch halts (ie limit()) only the branch stops.
+     *
+     * @param bufferSize The number of rows buffered for the branch (default 1024)
+     * @param split The closure that is passed a new Pipeline where all the rows from this Pipeline are copied onto.
+     * @return this Pipeline
+     */
+    public Pipeline asyncBranch( int bufferSize = 1024, Closure<Pipeline> split ) {
+        return asyncBranch( (Map<String,Object>)null, bufferSize, split )
+    }
+
+    /**
+     * Copies the rows on this Pipeline where the given condition is true to another Pipeline that runs on its own
+     * thread.  See {@link #asyncBranch(int, groovy.lang.Closure)} and {@link #branch(java.util.Map, groovy.lang.Closure)}.
+     *
+     * @param condition The conditions that must be equal in order for the row to be copied to the branch.
+     * @param bufferSize The number of rows buffered for the branch (default 1024)
+     * @param split The closure that is passed the branch Pipeline.
+     * @return this Pipeline
+     */
+    public Pipeline asyncBranch( Map<String,Object> condition, int bufferSize = 1024, Closure<Pipeline> split ) {
+        getRoot().asyncBranched = true
+        Pipeline branch = new Pipeline( name )
+        Pipeline tail = split( branch )
+        AsyncBranch async = new AsyncBranch( branch, tail, bufferSize )
+        asyncBranches << async
+
+        Condition selection = condition != null ? new Condition( condition ) : null
+        addSerialStep( condition != null ? "asyncBranch(${condition})" : "asyncBranch()" ) { Map row ->
+            if( selection == null || selection.matches( row ) ) {
+                async.submit( row )
+            }
+            return row
+        }
+
+        after {
+            async.join()
+        }
+    }
+
     /**
      * Returns Pipeline that joins the columns from this Pipeline with the given Pipeline where the columns are
      * equal.  It will perform a left or right join depending on the left parameter.  A left join will return the
      * row even if it doesn't find a match row on the right (also known as a left join).  A right join (ie left = false) will not return a
      * row if it doesn't find a matching row on the right (Also known as an inner join).  Default is left = false.
      *
+     * Columns are matched using a {@link CompositeKey} so numbers of different types match, and numeric Strings (ie
+     * from a CSV file) match the same number.  The right side is held in memory until it exceeds a quarter of the max heap, then
+     * it's partitioned to disk (see {@link #join(java.util.Map, gratum.etl.Pipeline, java.lang.Object, boolean)}).
+     *
      * @param other The right side Pipeline to use for the join
      * @param columns The columns to join on
      * @param left perform a left join (ie true) or a right join (false)
      * @return A Pipeline where the rows contain all columns from the this Pipeline and right Pipeline joined on the given columns.
      */
     public Pipeline join( Pipeline other, def columns, boolean left = false ) {
-        Map<String,List<Map>> cache =[:]
-        other.addStep("join(${other.name}, ${columns}).cache") { Map row ->
-            String key = keyOf(row, rightColumn(columns) )
-            if( !cache.containsKey(key) ) cache.put(key, [])
-            cache[key] << row
-            return row
-        }
+        return join( [:], other, columns, left )
+    }
 
-        return inject("join(${this.name}, ${columns})") { Map row ->
-            if( !other.complete ) {
-                other.go()
-            }
-            String key = keyOf( row, leftColumn(columns) )
+    /**
+     * Returns Pipeline that joins the columns from this Pipeline with the given Pipeline where the columns are
+     * equal using the given join strategy.  For example:
+     *
+     * <pre>
+     *     csv("orders.csv").join( csv("customers.csv"), ["customerId": "id"], true, memory: 256 * 1024 * 1024 )
+     *     csv("orders_by_customer.csv").join( csv("customers_by_id.csv"), ["customerId": "id"], strategy: "merge" )
+     * </pre>
+     *
+     * The hash strategy (the default) reads the entire right side before the first row of this Pipeline is joined.
+     * When the right side exceeds the memory budget it's split into partitions on disk (see {@link HashJoin}), and
+     * rows from this Pipeline that match a partition on disk are joined after all rows have been read.  The merge
+     * strategy requires both Pipelines already be sorted by the join columns (ie using sort()), and streams both
+     * sides at the same time, reading the right side on another thread (see {@link SortMergeJoin}).
+     *
+     * @param options <ul>
+     *     <li>strategy - "hash" (default) or "merge"</li>
+     *     <li>memory - the approximate number of bytes of right rows to keep in memory for the hash strategy (default 1/4 of the max heap)</li>
+     *     <li>partitions - the number of partitions the right side is split into for the hash strategy (default 32)</li>
+     *     <li>spillDir - the directory to write partitions to (default java.io.tmpdir)</li>
+     * </ul>
+     * @param other The right side Pipeline to use for the join
+     * @param columns The columns to join on
+     * @param left perform a left join (ie true) or a right join (false)
+     * @return A Pipeline where the rows contain all columns from the this Pipeline and right Pipeline joined on the given columns.
+     */
+    public Pipeline join( Map options, Pipeline other, def columns, boolean left = false ) {
+        String name = "join(${this.name}, ${columns})"
+        Pipeline next = new Pipeline(name)
+        next.src = new ChainedSource( this )
 
+        Closure<List<Object>> rightColumns
+        Closure<Void> emit = { Map row -> ((ChainedSource)next.src).process( row ) }
+        Closure<Void> unmatched = { Map row ->
             if( left ) {
-                if( cache.containsKey(key) ) {
-                    return cache[key].collect { Map k ->
-                        Map j = (Map)k.clone()
-                        j.putAll(row)
-                        return j
-                    }
-                } else {
-                    // make sure we add columns even if they are null so sources write out columns we expect.
-                    if( !cache.isEmpty() ) {
-                        String c = cache.keySet().first()
-                        cache[c].first().each { String i, Object v ->
-                            if( !row.containsKey(i) ) row[i] = null
+                // make sure we add columns even if they are null so sources write out columns we expect.
+                rightColumns()?.each { Object i ->
+                    if( !row.containsKey(i) ) row[i] = null
+                }
+                ((ChainedSource)next.src).process( row )
+            } else {
+                next.doRejections( reject("Could not join on ${columns}", RejectionCategory.IGNORE_ROW ), row, name, -1 )
+            }
+        }
+
+        String strategy = options.strategy ?: "hash"
+        if( strategy == "merge" ) {
+            SortMergeJoin engine = new SortMergeJoin( rightColumn(columns), leftColumn(columns) )
+            rightColumns = { -> engine.columns }
+            Thread reader = null
+            other.addSerialStep("join(${other.name}, ${columns}).stream") { Map row ->
+                engine.put( row )
+                return row
+            }
+            addSerialStep(name) { Map row ->
+                if( reader == null ) {
+                    reader = Thread.startDaemon("gratum-join-${other.name}") {
+                        try {
+                            other.go()
+                            engine.end()
+                        } catch( Throwable t ) {
+                            engine.fail( t )
                         }
                     }
-                    return [row]
                 }
-            } else if( cache.containsKey(key) ) {
-                return cache[key].collect { Map k ->
-                    Map j = (Map)k.clone()
-                    j.putAll(row)
-                    return j
+                engine.probe( row, emit, unmatched )
+                return row
+            }
+            after {
+                if( reader ) {
+                    engine.finish()
+                    reader.join()
                 }
-            } else {
-                reject("Could not join on ${columns}", RejectionCategory.IGNORE_ROW )
+                null
             }
+        } else if( strategy == "hash" ) {
+            long memory = (options.memory ?: Runtime.getRuntime().maxMemory() / 4) as long
+            int partitions = (options.partitions ?: HashJoin.DEFAULT_PARTITIONS) as int
+            HashJoin engine = new HashJoin( rightColumn(columns), leftColumn(columns), memory, partitions, options.spillDir as File )
+            rightColumns = { -> engine.columns }
+            other.addSerialStep("join(${other.name}, ${columns}).cache") { Map row ->
+                engine.build( row )
+                return row
+            }
+            addSerialStep(name) { Map row ->
+                if( !other.complete ) {
+                    other.go()
+                    engine.finishBuild()
+                }
+                engine.probe( row, emit, unmatched )
+                return row
+            }
+            after {
+                engine.finish( emit, unmatched )
+                null
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown join strategy ${strategy}.  Expected hash or merge.")
         }
+
+        next.copyStatistics( this )
+        return next
     }
 
     /**
@@ -368,7 +675,7 @@ public class Pipeline {
      */
     public Pipeline fillDownBy( Closure<Boolean> decider ) {
         Map previousRow = null
-        addStep("fillDownBy()") { Map row ->
+        addSerialStep("fillDownBy()") { Map row ->
             if( previousRow && decider( row, previousRow ) ) {
                 row.each { String col, Object value ->
                     // todo refactor valid_to out for excluded
@@ -390,13 +697,7 @@ public class Pipeline {
      * @return A Pipeline where all of the columns in the keys of the Map are renamed to the Map's corresponding values.
      */
     public Pipeline renameFields( Map fieldNames ) {
-        addStep("renameFields(${fieldNames}") { Map row ->
-            for( String src : fieldNames.keySet() ) {
-                String dest = fieldNames.get( src )
-                row[dest] = row.remove( src )
-            }
-            return row
-        }
+        addStep("renameFields(${fieldNames}".toString(), new RenameOperator( fieldNames ) )
         return this
     }
 
@@ -404,7 +705,9 @@ public class Pipeline {
      * Return a Pipeline where all of the rows from this Pipeline and adds a single column
      * "included" with a true/false value depending on whether the current row is occurs
      * in the given Pipeline and the values of the specified columns are equal in both 
-     * Pipelines.
+     * Pipelines.  Numbers of different types are equal when they hold the same number (ie 1 and 1L), and a
+     * String matches a number when it's how the number prints, but "2.50" doesn't match "2.5" (see
+     * {@link CompositeKey#exactOf(java.util.Map, java.util.List)}).
      *
      * @param other Pipeline to verify if the rows where the columns of those rows are equal 
      * to the rows in this Pipeline
@@ -413,26 +716,68 @@ public class Pipeline {
      * included is added based on if this row according to the given columns also occurs in 
      * the other Pipeline
      */
-
     public Pipeline intersect( Pipeline other, def columns ) {
-        Map <String,List<Map>> cache = [:]
-        other.addStep("intersect(${other.name}, ${columns}).cache") { Map row ->
-            String key = keyOf(row, rightColumn(columns) )
-            if( !cache.containsKey(key) ) cache.put(key, [])
-            cache[key] << row
+        return intersect( [:], other, columns )
+    }
+
+    /**
+     * Same as {@link #intersect(gratum.etl.Pipeline, java.lang.Object)}, but with a choice of where the keys of the
+     * other Pipeline are kept.  Only the keys are kept, never the rows.  For example:
+     *
+     * <pre>
+     *     csv("orders.csv").intersect( store: "hashed", csv("customers.csv"), ["customerId": "id"] )
+     *     csv("events.csv").intersect( store: "bloom", expected: 200_000_000, falsePositiveRate: 0.001, csv("seen.csv"), "id" )
+     * </pre>
+     *
+     * The options are:
+     *
+     * <ul>
+     *     <li>store - "heap" (default), "hashed" or "bloom" (see {@link KeySet})</li>
+     *     <li>memory - the approximate number of bytes of hashes to keep in memory for the hashed store (default 1/4 of the max heap)</li>
+     *     <li>spillDir - the directory to write hashes to for the hashed store (default java.io.tmpdir)</li>
+     *     <li>expected - the number of keys the bloom store is sized for (default 1,000,000)</li>
+     *     <li>falsePositiveRate - the chance the bloom store marks a row included that isn't (default 0.01)</li>
+     * </ul>
+     *
+     * @param options the options for storing the keys
+     * @param other Pipeline to check the rows of this Pipeline against
+     * @param columns the columns to check against (either Map or Collection)
+     * @return A Pipeline where each row of this Pipeline has an included column
+     */
+    public Pipeline intersect( Map options, Pipeline other, def columns ) {
+        KeySet cache = keySet( options )
+        List<String> rightColumns = rightColumn(columns)
+        other.addSerialStep("intersect(${other.name}, ${columns}).cache") { Map row ->
+            cache.add( CompositeKey.exactOf( row, rightColumns ) )
             return row
         }.start()
 
+        List<String> leftColumns = leftColumn(columns)
         addStep("intersect(${this.name}, ${columns})") { Map row ->
-            String key = keyOf( row, leftColumn(columns) )
-            row.included = cache.containsKey(key)
+            row.included = cache.contains( CompositeKey.exactOf( row, leftColumns ) )
             return row
-//            return cache.containsKey(key) ? row : null
+        }
+        after {
+            cache.close()
+            return
         }
 
         return this
     }
 
+    private static KeySet keySet( Map options ) {
+        String store = options.store ?: "heap"
+        if( store == "heap" ) {
+            return new HeapKeySet()
+        } else if( store == "hashed" ) {
+            return new HashedKeySet( (options.memory ?: Runtime.getRuntime().maxMemory() / 4) as long, options.spillDir as File )
+        } else if( store == "bloom" ) {
+            return new BloomKeySet( (options.expected ?: 1_000_000) as long, (options.falsePositiveRate ?: 0.01) as double )
+        } else {
+            throw new IllegalArgumentException("Unknown store ${store}.  Expected heap, hashed or bloom.")
+        }
+    }
+
     private List<String> leftColumn(def columns) {
         if( columns instanceof Collection ) {
             return ((Collection)columns).toList()
@@ -469,7 +814,7 @@ public class Pipeline {
      */
     public Pipeline groupBy( String... columns ) {
         Map cache = [:]
-        addStep("groupBy(${columns.join(',')})") { Map row ->
+        addSerialStep("groupBy(${columns.join(',')})") { Map row ->
             Map current = cache
             columns.eachWithIndex { String col, int i ->
                 if( !current.containsKey(row[col]) ) {
@@ -501,15 +846,92 @@ public class Pipeline {
         return other
     }
 
+    /**
+     * Return a Pipeline with one row per distinct combination of the key columns.  Each row contains the key columns
+     * followed by a column for each aggregate.  Only a running value per aggregate is kept for each group so the rows
+     * themselves are never held in memory.  For example:
+     *
+     * <pre>
+     *     import static gratum.etl.Aggregate.*
+     *
+     *     csv("sales.csv")
+     *       .aggregate( ["state", "year"], [total: sum("amount"), orders: count(), largest: max("amount")] )
+     *       .save("totals.csv")
+     *       .go()
+     * </pre>
+     *
+     * @param keys The columns to group rows by.  An empty list computes the aggregates over all rows.
+     * @param aggregates A Map of result column name to the {@link Aggregate} that computes it
+     * @return A Pipeline that yields one row per group
+     */
+    public Pipeline aggregate( List<String> keys, Map<String,Aggregate> aggregates ) {
+        return aggregate( [:], keys, aggregates )
+    }
+
+    /**
+     * Same as {@link #aggregate(java.util.List, java.util.Map)}, but when the groups exceed the memory budget
+     * their partial results are written to disk and merged once all rows have been received (see {@link HashAggregator}).
+     * Groups are emitted in the order they were first seen unless they were written to disk.
+     *
+     * @param options <ul>
+     *     <li>memory - the approximate number of bytes of groups to keep in memory (default 1/4 of the max heap)</li>
+     *     <li>partitions - the number of partitions groups are written to (default 32)</li>
+     *     <li>spillDir - the directory to write partitions to (default java.io.tmpdir)</li>
+     * </ul>
+     * @param keys The columns to group rows by.
+     * @param aggregates A Map of result column name to the {@link Aggregate} that computes it
+     * @return A Pipeline that yields one row per group
+     */
+    public Pipeline aggregate( Map options, List<String> keys, Map<String,Aggregate> aggregates ) {
+        long memory = (options.memory ?: Runtime.getRuntime().maxMemory() / 4) as long
+        int partitions = (options.partitions ?: HashAggregator.DEFAULT_PARTITIONS) as int
+        HashAggregator aggregator = new HashAggregator( keys, aggregates, memory, partitions, options.spillDir as File )
+        addSerialStep("aggregate(${keys.join(',')})") { Map row ->
+            aggregator.add( row )
+            return row
+        }
+
+        Pipeline next = new Pipeline(statistic.name)
+        next.src = new ChainedSource( this )
+        after {
+            aggregator.finish { Map row -> ((ChainedSource)next.src).process( row ) }
+            null
+        }
+        next.copyStatistics( this )
+        return next
+    }
+
     /**
      * Return a Pipeline where the rows are ordered by the given columns.  The value of
-     * each column is compared using the <=> operator.
+     * each column is compared using the <=> operator.  Rows are sorted in memory unless they
+     * exceed a quarter of the max heap, then they are sorted externally (see {@link #sort(java.util.Map, java.lang.String[])}).
      * @param columns to sort by
      * @return a Pipeline that where it's rows are ordered according to the given columns.
      */
     public Pipeline sort(String... columns) {
-        // todo sort externally
+        return sort( [:], columns )
+    }
 
+    /**
+     * Return a Pipeline where the rows are ordered by the given columns.  The value of each column is compared using
+     * the <=> operator.  Rows are held in memory until their estimated size exceeds the memory budget, then they are
+     * sorted and written to temporary files that are merged together once all rows have been received.  For example:
+     *
+     * <pre>
+     *     csv("big.csv").sort(memory: 512 * 1024 * 1024, spillDir: new File("/scratch"), threads: 2, "state", "zip")
+     * </pre>
+     *
+     * Spilled values must be Strings, numbers, dates, booleans, Lists, Maps, or otherwise Serializable.
+     *
+     * @param options <ul>
+     *     <li>memory - the approximate number of bytes of rows to keep in memory (default 1/4 of the max heap)</li>
+     *     <li>spillDir - the directory to write temporary files to (default java.io.tmpdir)</li>
+     *     <li>threads - the number of threads to sort and write temporary files with while rows are received (default 0)</li>
+     * </ul>
+     * @param columns to sort by
+     * @return a Pipeline that where it's rows are ordered according to the given columns.
+     */
+    public Pipeline sort(Map options, String... columns) {
         Comparator<Map> comparator = new Comparator<Map>() {
             @Override
             int compare(Map o1, Map o2) {
@@ -521,21 +943,27 @@ public class Pipeline {
             }
         }
 
-        List<Map> ordered = []
-        addStep("sort(${columns})") { Map row ->
-            //int index = Collections.binarySearch( ordered, row, comparator )
-            //ordered.add( Math.abs(index + 1), row )
-            ordered << row
+        long memory = (options.memory ?: Runtime.getRuntime().maxMemory() / 4) as long
+        File spillDir = options.spillDir as File
+        int threads = (options.threads ?: 0) as int
+        ExternalSort sorter = null
+        addSerialStep("sort(${columns})") { Map row ->
+            if( sorter == null ) sorter = new ExternalSort( comparator, memory, spillDir, threads )
+            sorter.add( row )
             return row
         }
 
         Pipeline next = new Pipeline(statistic.name)
         next.src = new ChainedSource( this )
+        next.statistic.addUpstream( this.statistic )
         after {
             next.statistic.rejectionsByCategory = this.statistic.rejectionsByCategory
             next.statistic.start = this.statistic.start
-            ordered.sort( comparator )
-            ((ChainedSource)next.src).process( ordered )
+            if( sorter ) {
+                ExternalSort rows = sorter
+                sorter = null
+                rows.drain { Map row -> ((ChainedSource)next.src).process( row ) }
+            }
             null
         }
 
@@ -548,15 +976,7 @@ public class Pipeline {
      * @return A Pipeline where all rows contains a java.lang.Double at the given column
      */
     Pipeline asDouble(String column) {
-        addStep("asDouble(${column})") { Map row ->
-            String value = row[column] as String
-            try {
-                if (value) row[column] = Double.parseDouble(value)
-                return row
-            } catch( NumberFormatException ex) {
-                reject("Could not parse ${value} as a Double", RejectionCategory.INVALID_FORMAT)
-            }
-        }
+        addStep("asDouble(${column})".toString(), new AsDoubleOperator( column ) )
     }
 
     /**
@@ -565,15 +985,7 @@ public class Pipeline {
      * @return A Pipeline where all rows contain a java.lang.Integer at given column
      */
     Pipeline asInt(String column) {
-        addStep("asInt(${column})") { Map row ->
-            String value = row[column] as String
-            try {
-                if( value ) row[column] = Integer.parseInt(value)
-                return row
-            } catch( NumberFormatException ex ) {
-                reject("Could not parse ${value} to an integer.", RejectionCategory.INVALID_FORMAT)
-            }
-        }
+        addStep("asInt(${column})".toString(), new AsIntOperator( column ) )
     }
 
     /**
@@ -627,16 +1039,7 @@ public class Pipeline {
      * @return A Pipeline where all rows contain a java.util.Date at given field name
      */
     Pipeline asDate(String column, String format = "yyyy-MM-dd") {
-        SimpleDateFormat dateFormat = new SimpleDateFormat(format)
-        addStep("asDate(${column}, ${format})") { Map row ->
-            String val = row[column] as String
-            try {
-                if (val) row[column] = dateFormat.parse(val)
-                return row
-            } catch( ParseException ex ) {
-                reject( "${row[column]} could not be parsed by format ${format}", RejectionCategory.INVALID_FORMAT )
-            }
-        }
+        addStep("asDate(${column}, ${format})".toString(), new AsDateOperator( column, format ) )
         return this
     }
 
@@ -650,9 +1053,51 @@ public class Pipeline {
      * @return A Pipeline that returns a row for the csv file.
      */
     public Pipeline save( String filename, String separator = ",", List<String> columns = null ) {
+        return save( [:], filename, separator, columns )
+    }
+
+    /**
+     * Same as {@link #save(java.lang.String, java.lang.String, java.util.List)}, but with options to drop duplicate
+     * rows or control quoting.  For example:
+     *
+     * <pre>
+     *     csv("orders.csv")
+     *       .save( unique: true, memory: 64 * 1024 * 1024, "customers.csv", ",", ["customerId", "name"] )
+     *       .go()
+     * </pre>
+     *
+     * Duplicate rows are found by hashing each written row with a 128 bit hash (see {@link gratum.util.Murmur3}) so
+     * the rows themselves are never held in memory.  The options are:
+     *
+     * <ul>
+     *     <li>unique - only write the first of any identical rows (default false)</li>
+     *     <li>memory - the approximate number of bytes of row hashes to keep in memory before they're written to disk (default 1/4 of the max heap)</li>
+     *     <li>spillDir - the directory to write row hashes to (default java.io.tmpdir)</li>
+     *     <li>quoteAll - quote every field instead of only fields containing the separator, a quote, or a new line (default false)</li>
+     * </ul>
+     *
+     * @param options the options for writing the file
+     * @param filename the filename to write the CSV file to
+     * @param separator the field separator to use between each field value (default ",")
+     * @param columns the list of fields to write from each row.  (default null)
+     * @return A Pipeline that returns a row for the csv file.
+     */
+    public Pipeline save( Map options, String filename, String separator = ",", List<String> columns = null ) {
         CSVFile out = new CSVFile( filename, separator )
         if( columns ) out.setColumnHeaders( columns )
-        addStep("Save to ${out.file.name}") { Map row ->
+        if( options.unique ) {
+            out.setAllowDuplicateRows( false )
+            out.setDeduplicationMemory( (options.memory ?: Runtime.getRuntime().maxMemory() / 4) as long, options.spillDir as File )
+        }
+        if( options.quoteAll ) out.setQuoteAll( true )
+        checkpointed( "Save to ${out.file.name}", [
+            snapshot: { -> [ length: out.checkpoint(), rows: out.rows ] },
+            restore: { Checkpoint checkpoint, Object state ->
+                if( state ) out.resume( state.length as long, state.rows as int )
+            },
+            close: { -> }
+        ] as Checkpointed )
+        addSerialStep("Save to ${out.file.name}") { Map row ->
             out.write( row )
             return row
         }
@@ -668,7 +1113,233 @@ public class Pipeline {
     }
 
     /**
-     * Write out the rows produced to JSON file.
+     * Saves the rows that reach this point to a binary cache file, and returns a Pipeline that reads them.  The next
+     * time the same Source and steps are run the cached rows are read instead, and this Pipeline (including its
+     * Source) isn't run at all.  It's meant for developing a Pipeline (ie in the groovy shell) where the expensive
+     * part (downloading, decrypting, parsing) doesn't change between runs.
+     *
+     * <pre>
+     *     Pipeline orders = csv("orders.csv").asDate("orderDate").cache("orders")
+     *     orders.filter( state: "OR" ).printRow().go()   // reads orders.csv and caches it
+     *     orders.filter( state: "WA" ).printRow().go()   // reads the cache
+     * </pre>
+     *
+     * See {@link #cache(java.util.Map, java.lang.String)} for how cached rows are matched.
+     *
+     * @param name the name of the cache
+     * @return A Pipeline of the rows at this point, read from the cache when possible
+     */
+    public Pipeline cache( String name ) {
+        return cache( [:], name )
+    }
+
+    /**
+     * Same as {@link #cache(java.lang.String)} with options.  Cached rows are reused when this Pipeline's fingerprint
+     * matches: the Source's (ie the file's path, size and modified time, or the query) and every step up to this
+     * point, the built in steps with their arguments and the rest by name (see {@link #getFingerprint()}).  Changing
+     * the code of a closure without changing its step's name isn't noticed, so use refresh: true, or rename the step.
+     * A filter using a closure is never reused.  A Source without a fingerprint (ie a
+     * collection or a stream) is never cached.  Rows that can't be written (ie holding an InputStream) aren't cached
+     * either, but still pass through.
+     *
+     * When the cache directory exceeds its maximum size the least recently used caches are deleted.  The options are:
+     *
+     * <ul>
+     *     <li>dir - the directory to keep caches in (default java.io.tmpdir/gratum-cache)</li>
+     *     <li>maxSize - the number of bytes of caches to keep (default 10GB)</li>
+     *     <li>refresh - ignore an existing cache and run the Pipeline again (default false)</li>
+     * </ul>
+     *
+     * @param options the options for the cache
+     * @param name the name of the cache
+     * @return A Pipeline of the rows at this point, read from the cache when possible
+     */
+    public Pipeline cache( Map options, String name ) {
+        File dir = (options.dir ?: new File( System.getProperty("java.io.tmpdir"), "gratum-cache" )) as File
+        long maxSize = (options.maxSize ?: 10L * 1024 * 1024 * 1024) as long
+        CacheSource cache = new CacheSource( this, name, dir, maxSize, options.refresh as boolean )
+        addSerialStep("cache(${name})") { Map row ->
+            cache.write( row )
+            return row
+        }
+        after {
+            cache.commit()
+            return
+        }
+
+        Pipeline next = new Pipeline( name )
+        next.src = cache
+        next.copyStatistics( this )
+        return next
+    }
+
+    /**
+     * Periodically saves how far this Pipeline has read and the state of its steps so a run that fails can be
+     * continued with {@link #resume()} instead of starting over.  For example:
+     *
+     * <pre>
+     *     Pipeline load = csv("orders.csv")
+     *         .checkpoint( file: "orders.checkpoint", every: 1_000_000 )
+     *         .asInt("id")
+     *         .unique("id")
+     *         .save("cleaned.csv")
+     *
+     *     load.go()       // fails at row 180M
+     *     load.resume()   // continues after row 180M
+     * </pre>
+     *
+     * The Source must be a {@link gratum.source.ResumableSource}: a CSV file (resumed from a byte offset), a query
+     * using {@link gratum.source.JdbcSource#resumeBy(java.lang.String)} (resumed after the last key), or an archive
+     * (resumed after the last entry).  A checkpoint is taken after every N rows from the Source have been through
+     * every step.  The built in steps that keep state save it in the checkpoint: limit's count, unique's keys, and
+     * how much of each file save has written, which is cut back to the checkpoint when resuming so no row is written
+     * twice.  Other steps that keep state between rows can add it with {@link #checkpointed(java.lang.String, gratum.etl.Checkpointed)}.
+     * Steps in a {@link #branch(groovy.lang.Closure)} are checkpointed with the rest of the Pipeline.  Steps that read
+     * every row before passing them on (sort, groupBy, etc), asyncBranch, and parallel processing aren't supported.
+     *
+     * The checkpoint is deleted once the Pipeline finishes.  The options are:
+     *
+     * <ul>
+     *     <li>file - the file to save the checkpoint in (required)</li>
+     *     <li>every - the number of rows between checkpoints (default 100,000)</li>
+     * </ul>
+     *
+     * @param options the options for checkpoints
+     * @return this Pipeline
+     */
+    public Pipeline checkpoint( Map options ) {
+        if( !options.file ) throw new IllegalArgumentException( "checkpoint() requires a file option" )
+        Pipeline root = getRoot()
+        if( !(root.src instanceof ResumableSource) ) {
+            throw new IllegalStateException( "${root.src?.getClass()?.simpleName} can't be resumed so ${root.name} can't be checkpointed" )
+        }
+        root.checkpoint = new Checkpoint( options.file as File, (options.every ?: 100_000) as long )
+        return this
+    }
+
+    /**
+     * Same as {@link #go()}, but continues from the last checkpoint (see {@link #checkpoint(java.util.Map)}) if a
+     * previous run didn't finish.  If there's no checkpoint it starts from the beginning.  The LoadStatistic only
+     * counts the rows processed since resuming.
+     *
+     * @return The LoadStatistic instance from this Pipeline.
+     */
+    public LoadStatistic resume() {
+        Pipeline root = getRoot()
+        if( root.checkpoint == null ) throw new IllegalStateException( "${root.name} isn't checkpointed.  Call checkpoint() before resume()." )
+        root.checkpoint.resume = true
+        try {
+            return go()
+        } finally {
+            root.checkpoint.resume = false
+        }
+    }
+
+    /**
+     * Adds state kept by a step between rows to the checkpoints of this Pipeline (see {@link #checkpoint(java.util.Map)}).
+     * It's ignored unless the Pipeline is checkpointed.
+     *
+     * @param name the name of the step the state belongs to
+     * @param state saves and restores the step's state
+     * @return this Pipeline
+     */
+    public Pipeline checkpointed( String name, Checkpointed state ) {
+        Pipeline root = getRoot()
+        root.checkpointNames << "${root.checkpointed.size()}: ${name}".toString()
+        root.checkpointed << state
+        return this
+    }
+
+    /**
+     * @return the Pipeline at the start of the chain this Pipeline belongs to, ie the one reading from the Source.  A
+     * branch belongs to the chain of the Pipeline it was split from, since its rows are processed by that Pipeline's
+     * steps.
+     */
+    private Pipeline getRoot() {
+        Pipeline root = this
+        while( root.src instanceof ChainedSource || root.branchOf != null ) {
+            root = root.src instanceof ChainedSource ? ((ChainedSource)root.src).parent : root.branchOf
+        }
+        return root
+    }
+
+    /**
+     * Inserts each row into the given database table using JDBC batches (see {@link JdbcBatchWriter}).  The row's value
+     * for each column is used as the value of the column with the same name.  Rows the database refuses (ie a
+     * constraint violation) are rejected, and the remaining rows are still inserted.
+     *
+     * <pre>
+     *     csv("titanic.csv")
+     *       .toDatabase( sql, "passengers", ["PassengerId", "Name", "Age"], 5000 )
+     *       .go()
+     * </pre>
+     *
+     * @param sql the database to insert into
+     * @param table the name of the table to insert into
+     * @param columns the columns to insert
+     * @param batchSize the number of rows sent to the database at a time (default 1000)
+     * @return A Pipeline that returns a single row with the table, the number of rows inserted, and the number that failed.
+     */
+    public Pipeline toDatabase( Sql sql, String table, List<String> columns, int batchSize = 1000 ) {
+        return toDatabase( [:], sql, table, columns, batchSize )
+    }
+
+    /**
+     * Same as {@link #toDatabase(groovy.sql.Sql, java.lang.String, java.util.List, int)}, but with options to control
+     * how the rows are written.
+     *
+     * @param options <ul>
+     *     <li>rowsPerStatement - the number of rows in each INSERT statement (default 1).  Some databases (ie MySQL and
+     *     Postgres) insert much faster with multi-row statements.</li>
+     *     <li>commitEvery - the number of batches between commits, or 0 to leave committing to the caller (default 1)</li>
+     *     <li>async - execute batches on a background thread so the pipeline keeps producing rows while the database
+     *     works (default true)</li>
+     * </ul>
+     * @param sql the database to insert into
+     * @param table the name of the table to insert into
+     * @param columns the columns to insert
+     * @param batchSize the number of rows sent to the database at a time (default 1000)
+     * @return A Pipeline that returns a single row with the table, the number of rows inserted, and the number that failed.
+     */
+    public Pipeline toDatabase( Map options, Sql sql, String table, List<String> columns, int batchSize = 1000 ) {
+        int rowsPerStatement = (options.rowsPerStatement ?: 1) as int
+        int commitEvery = (options.containsKey("commitEvery") ? options.commitEvery : 1) as int
+        boolean async = options.containsKey("async") ? options.async as boolean : true
+        String stepName = "toDatabase(${table})"
+        Connection connection = null
+        boolean ownsConnection = false
+        JdbcBatchWriter writer = null
+        addSerialStep( stepName ) { Map row ->
+            if( writer == null ) {
+                connection = sql.connection
+                if( connection == null ) {
+                    connection = sql.dataSource.connection
+                    ownsConnection = true
+                }
+                writer = new JdbcBatchWriter( connection, table, columns, batchSize, rowsPerStatement, commitEvery, async, { Map failed, SQLException ex ->
+                    doRejections( reject("Could not insert into ${table}: ${ex.message}", RejectionCategory.REJECTION), failed, stepName, -1 )
+                } as JdbcBatchWriter.FailureHandler )
+            }
+            writer.write( row )
+            return row
+        }
+
+        Pipeline next = new Pipeline( table )
+        next.src = new ChainedSource( this )
+        after {
+            try {
+                writer?.close()
+            } finally {
+                if( ownsConnection ) connection.close()
+            }
+            next.process([ table: table, rows: writer?.rowsWritten ?: 0L, failed: writer?.rowsFailed ?: 0L ])
+            return
+        }
+        return next
+    }
+
+    /**
+     * Write out the rows produced to JSON file as an array of objects.
      * @param filename the filename to save the JSON into.
      * @param columns Optional list of columns to use clip out certain columns you want to include in the output.  If left
      * off all columns are included.
@@ -676,27 +1347,66 @@ public class Pipeline {
      */
     public Pipeline json(String filename, List<String> columns = null) {
         File file = new File( filename )
-        Writer writer = file.newWriter("UTF-8")
-        writer.writeLine("[")
-        if( columns ) {
-            addStep("Json to ${file.name}") { Map row ->
-                String json = JsonOutput.toJson( row.subMap( columns ) )
-                writer.write( json )
-                writer.write(",\n")
-                return row
-            }
-        } else {
-            addStep("Json to ${file.name}") { Map row ->
-                String json = JsonOutput.toJson( row )
-                writer.write( json )
-                writer.write(",\n")
-                return row
-            }
+        JsonWriter writer = new JsonWriter( file.newWriter("UTF-8") )
+        boolean first = true
+        addSerialStep("Json to ${file.name}") { Map row ->
+            writer.append( first ? "[\n" : ",\n" )
+            first = false
+            writer.writeRow( row, columns )
+            return row
+        }
+
+        after {
+            writer.append( first ? "[]\n" : "\n]\n" )
+            writer.close()
+        }
+        return this
+    }
+
+    /**
+     * Write out the rows produced as newline delimited JSON (NDJSON / JSON Lines), one object per line.  It can be read
+     * back with {@link gratum.source.JsonSource}.
+     * @param filename the filename to save the JSON into.  If it ends with .gz the file is gzipped.
+     * @param columns Optional list of columns to include in the output.  If left off all columns are included.
+     * @return A Pipeline unmodified.
+     */
+    public Pipeline ndjson(String filename, List<String> columns = null) {
+        return ndjson( [:], filename, columns )
+    }
+
+    /**
+     * Same as {@link #ndjson(java.lang.String, java.util.List)} with options.  For example:
+     *
+     * <pre>
+     *     csv("events.csv")
+     *       .ndjson( gzip: true, "events.ndjson" )
+     *       .go()
+     * </pre>
+     *
+     * The options are:
+     *
+     * <ul>
+     *     <li>gzip - gzip the file (default true if the filename ends with .gz)</li>
+     * </ul>
+     *
+     * @param options the options for writing the file
+     * @param filename the filename to save the JSON into.
+     * @param columns Optional list of columns to include in the output.  If left off all columns are included.
+     * @return A Pipeline unmodified.
+     */
+    public Pipeline ndjson(Map options, String filename, List<String> columns = null) {
+        File file = new File( filename )
+        boolean gzip = options.containsKey("gzip") ? options.gzip as boolean : filename.endsWith(".gz")
+        OutputStream stream = new FileOutputStream( file )
+        if( gzip ) stream = new GZIPOutputStream( stream, 64 * 1024 )
+        JsonWriter writer = new JsonWriter( new OutputStreamWriter( stream, StandardCharsets.UTF_8 ) )
+        addSerialStep("NDJson to ${file.name}") { Map row ->
+            writer.writeRow( row, columns )
+            writer.newLine()
+            return row
         }
 
         after {
-            writer.write("\n]")
-            writer.flush()
             writer.close()
         }
         return this
@@ -708,7 +1418,7 @@ public class Pipeline {
      * @return this Pipeline
      */
     public Pipeline printRow(String... columns) {
-        addStep("print()") { Map row ->
+        addSerialStep("print()") { Map row ->
             if( columns ) {
                 println( "[ ${columns.toList().collect { row[it] }.join(',')} ]" )
             } else {
@@ -721,7 +1431,7 @@ public class Pipeline {
 
     public Pipeline progress( int col = 50 ) {
         int line = 1
-        addStep("progress()") { Map row ->
+        addSerialStep("progress()") { Map row ->
             line++
             printf(".")
             if( line % col ) println()
@@ -736,10 +1446,7 @@ public class Pipeline {
      * @return The Pipeline where each row has a fieldname set to the given value
      */
     public Pipeline setField(String fieldName, Object value ) {
-        addStep("setField(${fieldName})") { Map row ->
-            row[fieldName] = value
-            return row
-        }
+        addStep("setField(${fieldName})".toString(), new SetFieldOperator( fieldName, value ) )
         return this
     }
     /**
@@ -750,12 +1457,7 @@ public class Pipeline {
      */
     public Pipeline addField(String fieldName, @DelegatesTo(Pipeline) Closure fieldValue) {
         fieldValue.delegate = this
-        addStep("addField(${fieldName})") { Map row ->
-            Object value = fieldValue(row)
-            if( value instanceof Rejection ) return value
-            row[fieldName] = value
-            return row
-        }
+        addStep("addField(${fieldName})".toString(), new AddFieldOperator( fieldName, fieldValue ) )
         return this
     }
 
@@ -786,31 +1488,48 @@ public class Pipeline {
      * @return The pipeline where only the given columns are returned
      */
     public Pipeline clip(String... columns) {
-        addStep( "clip(${columns.join(",")}") { Map row ->
-            Map result = [:]
-            for( String key : row.keySet() ) {
-                if( columns.contains(key) ) {
-                    result[key] = row[key]
-                }
-            }
-            return result
-        }
+        addStep( "clip(${columns.join(",")}".toString(), new ClipOperator( columns as List<String> ) )
         return this
     }
 
     /**
-     * Only allows rows that are unique per the given column.
+     * Only allows rows that are unique per the given column.  Values are compared the same way as
+     * {@link #intersect(gratum.etl.Pipeline, java.lang.Object)}.
      *
      * @param column The column name to use for checking uniqueness
      * @return A Pipeline that only contains the unique rows for the given column
      */
     Pipeline unique(String column) {
-        Set<Object> unique = [:] as HashSet
-        addStep("unique(${column})") { Map row ->
-            if( unique.contains(row[column]) ) return reject("Non-unique row returned", RejectionCategory.IGNORE_ROW)
-            unique.add( row[column] )
+        return unique( [:], column )
+    }
+
+    /**
+     * Same as {@link #unique(java.lang.String)}, but with a choice of where the values already seen are kept.  For
+     * example:
+     *
+     * <pre>
+     *     csv("clicks.csv").unique( store: "hashed", memory: 512 * 1024 * 1024, "sessionId" )
+     * </pre>
+     *
+     * With the bloom store a small fraction of unique rows (about the false positive rate) are rejected as
+     * non-unique.  The options are the same as {@link #intersect(java.util.Map, gratum.etl.Pipeline, java.lang.Object)}.
+     *
+     * @param options the options for storing the values
+     * @param column The column name to use for checking uniqueness
+     * @return A Pipeline that only contains the unique rows for the given column
+     */
+    Pipeline unique(Map options, String column) {
+        KeyJournal unique = new KeyJournal( "unique-${column}", keySet( options ) )
+        List<String> columns = [column]
+        checkpointed( "unique(${column})", unique )
+        addSerialStep("unique(${column})") { Map row ->
+            if( !unique.add( CompositeKey.exactOf( row, columns ) ) ) return reject("Non-unique row returned", RejectionCategory.IGNORE_ROW)
             return row
         }
+        after {
+            unique.keys.close()
+            return
+        }
         return this
     }
 
@@ -826,7 +1545,7 @@ public class Pipeline {
         Pipeline next = new Pipeline(name)
         next.src = new ChainedSource( this )
         closure.delegate = this
-        addStep(name) { Map row ->
+        addSerialStep(name) { Map row ->
             def result = closure( row )
             if( result instanceof Rejection ) {
                 next.doRejections((Rejection)result, row, name, -1)
@@ -845,26 +1564,13 @@ public class Pipeline {
      * Registers an after closure onto this Pipeline to copy the start time and rejections from the src pipeline to this
      * pipeline's statistics.  The start time is overwritten, but the rejections are added together.  This results in a
      * consistent statistics over the whole chain of pipelines.  The rows loaded by this pipeline are not modified.
+     * The src pipeline's step metrics are included in this pipeline's steps.
      */
     void copyStatistics(Pipeline src) {
+        this.statistic.addUpstream( src.statistic )
         after {
             this.statistic.start = src.statistic.start
-            for( RejectionCategory cat : src.statistic.rejectionsByCategory.keySet() ) {
-                if( !this.statistic.rejectionsByCategory.containsKey(cat) ) {
-                    this.statistic.rejectionsByCategory[ cat ] = [:]
-                }
-                for( String step : src.statistic.rejectionsByCategory[cat].keySet() ) {
-                    if( !this.statistic.rejectionsByCategory[cat].containsKey(step) ) {
-                        this.statistic.rejectionsByCategory[cat][step] = 0
-                    }
-                    this.statistic.rejectionsByCategory[cat][ step ] = this.statistic.rejectionsByCategory[ cat ][step] + src.statistic.rejectionsByCategory[ cat ][step]
-                }
-            }
-
-            Map<String,Long> timings = [:]
-            timings.putAll( src.statistic.stepTimings )
-            timings.putAll( this.statistic.stepTimings )
-            this.statistic.stepTimings = timings
+            this.statistic.addRejections( src.statistic )
             return
         }
     }
@@ -872,7 +1578,12 @@ public class Pipeline {
     /**
      * This takes a closure that returns a Pipeline which is used to feed the returned Pipeline.  The closure will be called
      * for each row emitted from this Pipeline so the closure could create multiple Pipelines, and all data from every Pipeline
-     * will be fed into the returned Pipeline.
+     * will be fed into the returned Pipeline.  The rejections of each Pipeline are added to the returned Pipeline's
+     * statistics.
+     *
+     * When this Pipeline runs in parallel (ie a file source's {@link gratum.source.AbstractFileSource#parallel(int)})
+     * the Pipelines returned from the closure run at the same time on the worker threads, and their rows are handed
+     * to the returned Pipeline one at a time as they're produced.
      *
      * @param closure A closure that takes a Map and returns a pipeline that it's data will be fed on to the returned pipeline.
      *
@@ -881,13 +1592,17 @@ public class Pipeline {
     public Pipeline exchange(Closure<Pipeline> closure) {
         Pipeline next = new Pipeline( name )
         next.src = new ChainedSource(this)
+        Object bridge = new Object()
         addStep("exchange(${next.name})") { Map row ->
             Pipeline pipeline = closure( row )
             pipeline.addStep("Exchange Bridge(${pipeline.name})") { Map current ->
-                next.process( current )
+                synchronized( bridge ) {
+                    next.process( current )
+                }
                 return current
             }
             pipeline.start()
+            next.statistic.addRejections( pipeline.statistic )
             return row
         }
         next.copyStatistics( this )
@@ -911,12 +1626,7 @@ public class Pipeline {
      * column is empty.
      */
     public Pipeline defaultValues( Map<String,Object> defaults ) {
-        this.addStep("defaultValues for ${defaults.keySet()}") { Map row ->
-            defaults.each { String column, Object value ->
-                if( !row[column] ) row[column] = value
-            }
-            return row
-        }
+        this.addStep("defaultValues for ${defaults.keySet()}".toString(), new DefaultValuesOperator( defaults ) )
     }
 
     /**
@@ -946,7 +1656,12 @@ public class Pipeline {
      */
     public Pipeline limit(long limit, boolean halt = true) {
         int current = 0
-        this.addStep("Limit(${limit})") { Map row ->
+        checkpointed( "Limit(${limit})", [
+            snapshot: { -> current },
+            restore: { Checkpoint checkpoint, Object state -> current = (state ?: 0) as int },
+            close: { -> }
+        ] as Checkpointed )
+        this.addSerialStep("Limit(${limit})") { Map row ->
             current++
             if( current > limit ) {
                 if( halt ) {
@@ -969,8 +1684,51 @@ public class Pipeline {
      * @param configure The Closure that is passed the PgpContext used to configure how the stream will be encrypted.
      */
     public Pipeline encryptPgp(String streamProperty, Closure configure ) {
+        return encryptPgp( [:], streamProperty, configure )
+    }
+
+    /**
+     * Encrypts using PGP a stream on the Pipeline the same as {@link #encryptPgp(java.lang.String, groovy.lang.Closure)}.
+     * With the streaming option the encrypted stream isn't written to a temporary file first.  Instead the
+     * streamProperty holds an InputStream that is encrypted on another thread as it's read, and only gets ahead of the
+     * reader by a fixed number of buffers.  The row's file is set to null and .gpg is added to its filename.  The stream
+     * must be read or closed by a later step, and an error encrypting is thrown when reading it.
+     *
+     * <pre>
+     *     files("outbound")
+     *         .encryptPgp( streaming: true, "stream" ) { PgpContext pgp -> ... }
+     *         .save( sftp, "stream" )
+     * </pre>
+     *
+     * @param options The options: streaming true to encrypt as the stream is read (defaults to false), buffers the
+     * number of 64K buffers encryption can get ahead of the reader (defaults to 16).
+     * @param streamProperty The property that holds a stream object to be encrypted.
+     * @param configure The Closure that is passed the PgpContext used to configure how the stream will be encrypted.
+     */
+    public Pipeline encryptPgp(Map options, String streamProperty, Closure configure ) {
         PgpContext pgp = new PgpContext()
         configure.call( pgp )
+        if( options.streaming ) {
+            int buffers = (options.buffers ?: 16) as int
+            return addStep("encrypt(${streamProperty})") { Map row ->
+                InputStream stream = row[streamProperty] as InputStream
+                File original = row.file as File
+                String filename = (String) row.filename
+                row[streamProperty] = new ProducerInputStream( "gratum-pgp-encrypt", ProducerInputStream.DEFAULT_CHUNK_SIZE, buffers, { OutputStream out ->
+                    try {
+                        pgp.encrypt( filename, new Date(), stream, out )
+                    } finally {
+                        stream.close()
+                    }
+                    if( pgp.isOverwrite() ) {
+                        original?.delete()
+                    }
+                } as ProducerInputStream.Producer )
+                row.file = null
+                row.filename = filename ? "${filename}.gpg".toString() : null
+                return row
+            }
+        }
         addStep("encrypt(${streamProperty})") { Map row ->
             File encryptedTemp = File.createTempFile("pgp-encrypted-output-${streamProperty}".toString(), ".gpg")
             InputStream stream = row[streamProperty] as InputStream
@@ -1002,8 +1760,42 @@ public class Pipeline {
      * @return a Pipeline where the streamProperty contains decrypted stream.
      */
     public Pipeline decryptPgp(String streamProperty, Closure configure ) {
+        return decryptPgp( [:], streamProperty, configure )
+    }
+
+    /**
+     * Decrypts using PGP a stream on the Pipeline the same as {@link #decryptPgp(java.lang.String, groovy.lang.Closure)}.
+     * With the streaming option the decrypted stream isn't written to a temporary file first.  Instead the
+     * streamProperty holds an InputStream that is decrypted on another thread as it's read, and only gets ahead of the
+     * reader by a fixed number of buffers.  The row's file is set to null and a .gpg, .pgp, or .asc extension is removed
+     * from its filename.  The stream must be read or closed by a later step, and an error decrypting (ie a failed
+     * integrity check) is thrown when reading it.
+     *
+     * @param options The options: streaming true to decrypt as the stream is read (defaults to false), buffers the
+     * number of 64K buffers decryption can get ahead of the reader (defaults to 16).
+     * @param streamProperty The property within the row on the Pipeline that stores a stream.
+     * @param configure The closure called with a PgpContext object to further configure how it will decrypt the stream.
+     * @return a Pipeline where the streamProperty contains decrypted stream.
+     */
+    public Pipeline decryptPgp(Map options, String streamProperty, Closure configure ) {
         PgpContext pgp = new PgpContext()
         configure.call( pgp )
+        if( options.streaming ) {
+            int buffers = (options.buffers ?: 16) as int
+            return addStep("decrypt(${streamProperty})") { Map row ->
+                InputStream stream = row[streamProperty] as InputStream
+                row[streamProperty] = new ProducerInputStream( "gratum-pgp-decrypt", ProducerInputStream.DEFAULT_CHUNK_SIZE, buffers, { OutputStream out ->
+                    try {
+                        pgp.decrypt( stream, out )
+                    } finally {
+                        stream.close()
+                    }
+                } as ProducerInputStream.Producer )
+                row.file = null
+                row.filename = (row.filename as String)?.replaceFirst( /(?i)\.(gpg|pgp|asc)$/, "" )
+                return row
+            }
+        }
         addStep("decrypt(${streamProperty})") { Map row ->
             InputStream stream = row[streamProperty] as InputStream
             File decryptedFile = File.createTempFile("pgp-decrypted-output-${streamProperty}", "out")
@@ -1029,16 +1821,43 @@ public class Pipeline {
     public void start() {
         try {
             statistic.start = System.currentTimeMillis()
-            src?.start(this)
+            statistic.startInstrumentation()
+            Collection<String> columns = projection
+            if( columns != null ) ((ProjectableSource)src).project( columns )
+            if( checkpoint ) {
+                if( parallelism ) throw new IllegalStateException( "A checkpointed Pipeline can't process rows in parallel" )
+                if( asyncBranched ) throw new IllegalStateException( "A checkpointed Pipeline can't have an asyncBranch since its rows may not be saved when the checkpoint is taken" )
+                checkpoint.begin( (ResumableSource)src, checkpointNames, checkpointed )
+            }
+            if( parallelism ) {
+                try {
+                    src?.start(this)
+                } catch( Throwable t ) {
+                    parallelism.abort()
+                    throw t
+                }
+                parallelism.finish()
+            } else {
+                src?.start(this)
+            }
             statistic.end = System.currentTimeMillis()
+            // every row has been sent so let all the async branches finish at the same time
+            asyncBranches*.close()
 
             statistic.timed("Done Callbacks") {
                 doneChain.each { Closure current ->
                     current()
                 }
             }
+            if( src instanceof CommittableSource ) ((CommittableSource)src).commit()
+            checkpoint?.finish()
         } catch( HaltPipelineException ex ) {
             // ignore as we were asked to halt.
+            checkpoint?.finish()
+        } finally {
+            asyncBranches*.abort()
+            checkpoint?.close()
+            statistic.stopInstrumentation()
         }
         complete = true
     }
@@ -1062,27 +1881,167 @@ public class Pipeline {
      * @param lineNumber The lineNumber from the {@link gratum.source.Source} to use when tracking this row through the Pipeline
      */
     public boolean process(Map row, int lineNumber = -1) {
-        Map current = new LinkedHashMap(row)
-        for (Step step : processChain) {
+        boolean stop = processOwned( copyOf(row), lineNumber )
+        if( checkpoint != null ) checkpoint.processed()
+        return stop
+    }
+
+    /**
+     * Same as {@link #process(java.util.Map, int)} except the row isn't copied first.  The caller gives up the row,
+     * ie it's already a copy made with {@link #copyOf(java.util.Map)}.
+     */
+    boolean processOwned(Map row, int lineNumber) {
+        if( parallelism ) {
+            return parallelism.submit( row, lineNumber )
+        }
+        Map current = runSteps( row, lineNumber, 0, getChain().size(), null )
+        if( current != null ) statistic.incrementLoaded()
+        return false // don't stop!
+    }
+
+    /**
+     * Copies the row so the steps can modify it without changing the Source's row.  A {@link SchemaRow} is copied by
+     * cloning its values array so the copy shares the Source's {@link Schema}.
+     */
+    static Map copyOf(Map row) {
+        return row instanceof SchemaRow ? ((SchemaRow)row).clone() : new LinkedHashMap(row)
+    }
+
+    /**
+     * @return the order the steps are run in.  This is processChain unless the Pipeline is optimized.
+     */
+    @CompileStatic
+    Plan getPlan() {
+        Plan current = plan
+        if( current == null ) {
+            current = optimizing ? Plan.optimize( processChain ) : Plan.declared( processChain )
+            plan = current
+        }
+        return current
+    }
+
+    /**
+     * @return the columns the Source needs to read, or null if it has to read every column.
+     */
+    Collection<String> getProjection() {
+        return optimizing && rejections == null && src instanceof ProjectableSource ? getPlan().columns : null
+    }
+
+    /**
+     * @return a description of the Source and the steps of this Pipeline used to decide if cached rows can be reused
+     * (see {@link #cache(java.lang.String)}), or null if the Source can't describe itself.  The built in steps are
+     * described by their {@link Operator} with their arguments (ie setField's value), and steps running a closure by
+     * their name.
+     */
+    String getFingerprint() {
+        String source = src instanceof FingerprintedSource ? ((FingerprintedSource)src).fingerprint : null
+        if( source == null ) return null
+        Collection<String> columns = projection
+        List<String> steps = processChain.collect { Step step -> step.operator instanceof ClosureOperator ? step.name : step.operator.toString() }
+        return "${source}\n${steps.join('\n')}${columns != null ? '\nreading ' + columns.join(',') : ''}"
+    }
+
+    /**
+     * The steps as they're run.  Runs of adjacent steps that aren't serial steps are fused into a single step
+     * (see {@link Step#fuse(java.util.List)}) so each row makes one pass through them and timing is shared between
+     * them.  Serial steps are never fused so the chain can still be split at the first serial step when running in
+     * parallel.
+     *
+     * @return the fused steps of processChain
+     */
+    @CompileStatic
+    List<Step> getChain() {
+        List<Step> current = chain
+        if( current == null ) {
+            List<Step> processChain = getPlan().steps
+            current = new ArrayList<>()
+            int i = 0
+            while( i < processChain.size() ) {
+                int end = i + 1
+                if( !processChain.get(i).serial ) {
+                    while( end < processChain.size() && !processChain.get(end).serial ) end++
+                }
+                current.add( end - i > 1 ? Step.fuse( processChain.subList(i, end) ) : processChain.get(i) )
+                i = end
+            }
+            chain = current
+        }
+        return current
+    }
+
+    /**
+     * Runs the steps of {@link #getChain()} from index from (inclusive) to index to (exclusive) on the given row.
+     * When metrics is given each step's timing is recorded in metrics at the step's index in processChain instead
+     * of the step's own {@link StepMetrics} (ie by a worker thread).
+     *
+     * @return The row returned by the last step, or null if the row was rejected.
+     */
+    @CompileStatic
+    protected Map runSteps(Map current, int lineNumber, int from, int to, StepMetrics[] metrics) {
+        List<Step> steps = getChain()
+        for( int i = from; i < to; i++ ) {
+            Step step = steps.get(i)
+            if( step.fused != null ) {
+                current = runFused( step.fused, current, lineNumber, metrics )
+                if( current == null ) return null
+                continue
+            }
+            StepMetrics stepMetrics = metrics != null ? metrics[step.index] : step.metrics
             try {
-                boolean stop = statistic.timed(step.name) {
-                    def ret = step.step(current)
-                    if (ret == null || ret instanceof Rejection) {
-                        doRejections((Rejection) ret, current, step.name, lineNumber)
-                        return true
-                    }
-                    current = ret
-                    return false
+                Object ret
+                if( stepMetrics.sample() ) {
+                    long start = System.nanoTime()
+                    ret = step.operator.apply(current)
+                    stepMetrics.record( System.nanoTime() - start )
+                } else {
+                    ret = step.operator.apply(current)
                 }
-                if (stop) return false
+                if (ret == null || ret instanceof Rejection) {
+                    doRejections((Rejection) ret, current, step.name, lineNumber)
+                    return null
+                }
+                current = (Map)ret
             } catch( HaltPipelineException ex ) {
                 throw ex
             } catch (Exception ex) {
-                throw new RuntimeException("Line ${lineNumber > 0 ? lineNumber : row}: Error encountered in step ${statistic.name}.${step.name}", ex)
+                throw new RuntimeException("Line ${lineNumber > 0 ? lineNumber : current}: Error encountered in step ${statistic.name}.${step.name}".toString(), ex)
             }
         }
-        statistic.loaded++
-        return false // don't stop!
+        return current
+    }
+
+    /**
+     * Runs fused steps on the row.  The first step decides if the row is timed, and when it is the clock is read
+     * once between each step instead of before and after every step.
+     */
+    @CompileStatic
+    private Map runFused(Step[] steps, Map current, int lineNumber, StepMetrics[] metrics) {
+        Step step = steps[0]
+        boolean timed = (metrics != null ? metrics[step.index] : step.metrics).sample()
+        long start = timed ? System.nanoTime() : 0L
+        try {
+            for( int j = 0; j < steps.length; j++ ) {
+                step = steps[j]
+                StepMetrics stepMetrics = metrics != null ? metrics[step.index] : step.metrics
+                if( j > 0 ) stepMetrics.count()
+                Object ret = step.operator.apply(current)
+                if( timed ) {
+                    long now = System.nanoTime()
+                    stepMetrics.record( now - start )
+                    start = now
+                }
+                if (ret == null || ret instanceof Rejection) {
+                    doRejections((Rejection) ret, current, step.name, lineNumber)
+                    return null
+                }
+                current = (Map)ret
+            }
+        } catch( HaltPipelineException ex ) {
+            throw ex
+        } catch (Exception ex) {
+            throw new RuntimeException("Line ${lineNumber > 0 ? lineNumber : current}: Error encountered in step ${statistic.name}.${step.name}".toString(), ex)
+        }
+        return current
     }
 
     private void doRejections(Rejection ret, Map current, String stepName, int lineNumber) {
@@ -1092,11 +2051,11 @@ public class Pipeline {
         current.rejectionReason = rejection.reason
         current.rejectionStep = rejection.step
         statistic.reject( rejection )
-        rejections?.process(current, lineNumber)
-    }
-
-    private String keyOf( Map row, List<String> columns ) {
-        return columns.collect { key -> row[key] }.join(":")
+        if( rejections ) {
+            synchronized (rejections) {
+                rejections.process(current, lineNumber)
+            }
+        }
     }
 
     /**
@@ -0,0 +1,75 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * The order a Pipeline runs its steps in.  Without optimizing the plan is the steps in the order they were declared.
+ * When optimizing (see {@link Pipeline#optimize()}) the declared steps are rewritten by a few rules:
+ *
+ * <ul>
+ *     <li>Filters (see {@link Pipeline#filter(java.util.Map)}) are moved ahead of earlier steps that don't change any
+ *     of the filter's columns, so rows are thrown away before any work is done on them.  Filters are never moved
+ *     ahead of serial steps, other filters, or steps that don't describe their columns (see {@link ColumnUsage}).</li>
+ *     <li>The filters' {@link Condition}s are made adaptive so they test their most selective columns first.</li>
+ *     <li>If the steps are followed by a clip() and every step before it describes the columns it reads, then only
+ *     those columns are read from the Source (see {@link #getColumns()}).</li>
+ * </ul>
+ */
+@CompileStatic
+class Plan {
+
+    final List<Step> steps
+    /** The step each moved filter was moved ahead of */
+    final Map<Step,Step> moved
+    final Set<String> columns
+
+    private Plan(List<Step> steps, Map<Step,Step> moved, Set<String> columns) {
+        this.steps = steps
+        this.moved = moved
+        this.columns = columns
+    }
+
+    static Plan declared(List<Step> steps) {
+        return new Plan( new ArrayList<Step>( steps ), Collections.<Step,Step>emptyMap(), null )
+    }
+
+    static Plan optimize(List<Step> declared) {
+        List<Step> steps = new ArrayList<>( declared )
+        Map<Step,Step> moved = new LinkedHashMap<>()
+        for( int i = 0; i < steps.size(); i++ ) {
+            Step step = steps.get(i)
+            if( !(step.operator instanceof FilterOperator) ) continue
+            FilterOperator filter = (FilterOperator)step.operator
+            filter.condition.adaptive = true
+            int to = i
+            while( to > 0 && canMoveAhead( filter.reads, steps.get( to - 1 ) ) ) to--
+            if( to < i ) {
+                moved.put( step, steps.get( to ) )
+                steps.remove( i )
+                steps.add( to, step )
+            }
+        }
+        return new Plan( steps, moved, sourceColumns( steps ) )
+    }
+
+    private static boolean canMoveAhead(Collection<String> reads, Step step) {
+        if( step.serial || step.operator instanceof FilterOperator || !(step.operator instanceof ColumnUsage) ) return false
+        Collection<String> writes = ((ColumnUsage)step.operator).writes
+        return writes != null && Collections.disjoint( writes, reads )
+    }
+
+    /**
+     * @return the columns read by the steps up to the first clip(), or null if every column could be needed.
+     */
+    private static Set<String> sourceColumns(List<Step> steps) {
+        Set<String> columns = new LinkedHashSet<>()
+        for( Step step : steps ) {
+            if( step.serial || !(step.operator instanceof ColumnUsage) ) return null
+            Collection<String> reads = ((ColumnUsage)step.operator).reads
+            if( reads == null ) return null
+            columns.addAll( reads )
+            if( step.operator instanceof ClipOperator ) return columns
+        }
+        return null
+    }
+}
@@ -0,0 +1,32 @@
+package gratum.etl
+
+/**
+ * A {@link MetricsReporter} that prints the rows per second of the Pipeline and the latencies of each step.
+ *
+ * <pre>
+ *     csv("large.csv")
+ *       .instrument( reporter: new PrintStreamReporter(System.err), interval: 5000 )
+ *       ...
+ *       .go()
+ * </pre>
+ */
+class PrintStreamReporter implements MetricsReporter {
+
+    PrintStream out
+
+    PrintStreamReporter(PrintStream out = System.out) {
+        this.out = out
+    }
+
+    @Override
+    void report(LoadStatistic statistic, boolean finished) {
+        StringBuilder report = new StringBuilder()
+        report.append( String.format( "==> %s %s: loaded %,d rejected %,d (%,.1f rows/s)%n", statistic.name,
+                finished ? "finished" : "running", statistic.loaded, statistic.rejections, statistic.rowsPerSecond ) )
+        statistic.steps.values().each { StepMetrics step ->
+            if( step.calls > 0 ) report.append( "\t" ).append( step.toString() ).append( String.format( "%n" ) )
+        }
+        out.print( report )
+        out.flush()
+    }
+}
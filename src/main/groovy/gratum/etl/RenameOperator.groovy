@@ -0,0 +1,47 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Renames columns of every row.
+ */
+@CompileStatic
+class RenameOperator implements Operator, ColumnUsage {
+
+    final String[] sources
+    final String[] destinations
+
+    RenameOperator(Map fieldNames) {
+        sources = new String[ fieldNames.size() ]
+        destinations = new String[ fieldNames.size() ]
+        int i = 0
+        for( Object src : fieldNames.keySet() ) {
+            sources[i] = src as String
+            destinations[i] = fieldNames.get( src ) as String
+            i++
+        }
+    }
+
+    @Override
+    Object apply(Map row) {
+        for( int i = 0; i < sources.length; i++ ) {
+            row.put( destinations[i], row.remove( sources[i] ) )
+        }
+        return row
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return Arrays.asList( sources )
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Arrays.asList( sources ) + Arrays.asList( destinations )
+    }
+
+    @Override
+    String toString() {
+        return "renameFields(${(0..<sources.length).collect { int i -> sources[i] + ': ' + destinations[i] }.join(', ')})"
+    }
+}
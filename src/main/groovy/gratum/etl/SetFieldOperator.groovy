@@ -0,0 +1,39 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Sets a column of every row to the same value.
+ */
+@CompileStatic
+class SetFieldOperator implements Operator, ColumnUsage {
+
+    final String column
+    final Object value
+
+    SetFieldOperator(String column, Object value) {
+        this.column = column
+        this.value = value
+    }
+
+    @Override
+    Object apply(Map row) {
+        row.put( column, value )
+        return row
+    }
+
+    @Override
+    Collection<String> getReads() {
+        return Collections.<String>emptyList()
+    }
+
+    @Override
+    Collection<String> getWrites() {
+        return Collections.singletonList( column )
+    }
+
+    @Override
+    String toString() {
+        return "setField(${column}, ${value.inspect()})"
+    }
+}
@@ -0,0 +1,41 @@
+package gratum.etl
+
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Reads and writes a Map of state kept between runs (ie a {@link Checkpoint} or a watermark) with
+ * {@link RowOutputStream} so the values keep their types.  Writes go to a temporary file that's synced and renamed
+ * over the previous state, so a failure while writing leaves the previous state intact.
+ */
+class StateFile {
+
+    /**
+     * @return the state saved in the file, or null if it doesn't exist
+     */
+    static Map read( File file ) {
+        if( !file.exists() ) return null
+        RowInputStream input = new RowInputStream( file )
+        try {
+            return input.readRow()
+        } finally {
+            input.close()
+        }
+    }
+
+    static void write( File file, Map state ) {
+        File dir = file.absoluteFile.parentFile
+        dir.mkdirs()
+        File partial = new File( dir, "${file.name}.partial" )
+        FileOutputStream stream = new FileOutputStream( partial )
+        try {
+            RowOutputStream out = new RowOutputStream( new BufferedOutputStream( stream ) )
+            out.writeRow( state )
+            out.flush()
+            stream.getFD().sync()
+        } finally {
+            stream.close()
+        }
+        Files.move( partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE )
+    }
+}
@@ -0,0 +1,24 @@
+package gratum.etl
+
+import groovy.transform.CompileStatic
+
+/**
+ * Removes the leading and trailing white space of every column.  Values are converted to Strings.
+ */
+@CompileStatic
+class TrimOperator implements Operator {
+
+    @Override
+    Object apply(Map row) {
+        for( Map.Entry entry : (Set<Map.Entry>)row.entrySet() ) {
+            Object value = entry.value
+            if( value != null ) entry.setValue( value.toString().trim() )
+        }
+        return row
+    }
+
+    @Override
+    String toString() {
+        return "trim()"
+    }
+}
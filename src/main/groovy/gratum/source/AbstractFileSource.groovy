@@ -0,0 +1,41 @@
+package gratum.source
+
+import gratum.etl.Pipeline
+
+/**
+ * Base class of the Sources that produce a row per file (ie {@link FileSystemSource}, {@link ZipSource}, and
+ * {@link ArchivedSource}).  These can process their files in parallel (see {@link #parallel(int)}).
+ */
+abstract class AbstractFileSource extends AbstractSource {
+
+    int threads = 1
+
+    /**
+     * Processes the files on a pool of threads instead of one at a time.  Each file is handed to a worker on its own
+     * (see {@link Pipeline#parallel(int, boolean, int)}), so the steps for different files run at the same time,
+     * and rows from the per-file Pipelines of {@link Pipeline#exchange(groovy.lang.Closure)} are merged into the
+     * returned Pipeline as they're produced.  For example:
+     *
+     * <pre>
+     *     files( dir ).glob("*.csv.gz").parallel( 8 ).into()
+     *         .exchange { Map row -> csv( row.file.name, new GZIPInputStream( row.stream as InputStream ) ) }
+     *         .save("merged.csv")
+     * </pre>
+     *
+     * The steps before exchange must be thread safe.  Rows from different files arrive interleaved.
+     *
+     * @param threads the number of files processed at the same time
+     * @return this Source
+     */
+    AbstractFileSource parallel( int threads ) {
+        this.threads = threads
+        return this
+    }
+
+    @Override
+    Pipeline into() {
+        Pipeline pipeline = super.into()
+        if( threads > 1 ) pipeline.parallel( threads, false, 1 )
+        return pipeline
+    }
+}
@@ -2,6 +2,8 @@ package gratum.source
 
 import gratum.etl.Pipeline
 import gratum.util.UncloseableInputStream
+import gratum.util.Utilities
+import org.apache.commons.io.IOUtils
 import org.apache.commons.compress.archivers.ArchiveEntry
 import org.apache.commons.compress.archivers.ArchiveInputStream
 import org.apache.commons.compress.archivers.ArchiveStreamFactory
@@ -47,12 +49,22 @@ import org.apache.commons.compress.archivers.ArchiveStreamFactory
  *     ...
  *     .go()
  * </code>
+ *
+ * The entries can be processed in parallel (see {@link #parallel(int)}).  Archives are read front to back so in
+ * parallel the archive is still decompressed on one thread, and each entry is read into memory before it's handed to a
+ * worker.  Only use it when the entries are small enough to hold a few per thread in memory.
+ *
+ * A checkpointed Pipeline (see {@link gratum.etl.Pipeline#checkpoint(java.util.Map)}) resumes after the last entry
+ * it processed by skipping the entries before it.
  */
-class ArchivedSource extends AbstractSource {
+class ArchivedSource extends AbstractFileSource implements FingerprintedSource, ResumableSource {
 
     File file
     String format
 
+    private int skip = 0
+    private int entries = 0
+
     ArchivedSource(File file) {
         this.name = file.name
         this.file = file
@@ -75,16 +87,42 @@ class ArchivedSource extends AbstractSource {
         return this
     }
 
+    @Override
+    String getFingerprint() {
+        return "archive ${format ?: ''}\n${Utilities.fingerprint( file )}"
+    }
+
+    @Override
+    void resumeFrom(Object position) {
+        this.skip = (position ?: 0) as int
+    }
+
+    /**
+     * @return the number of entries processed
+     */
+    @Override
+    Object getPosition() {
+        return entries
+    }
+
     @Override
     void start(Pipeline pipeline) {
         int line = 1
+        entries = 0
         this.file.withInputStream { InputStream stream ->
             ArchiveInputStream archive = getArchiveInputStream(stream)
             try {
                 ArchiveEntry entry
-                while ((entry = archive.getNextEntry()) != null) {
+                boolean halted = false
+                while (!halted && (entry = archive.getNextEntry()) != null) {
                     if (!entry.isDirectory() && archive.canReadEntryData(entry)) {
-                        pipeline.process([filename: file.name, file: file, entry: entry, stream: new UncloseableInputStream(archive)], line++)
+                        if( ++entries <= skip ) {
+                            line++
+                            continue
+                        }
+                        // the archive moves on to the next entry before a worker reads this one
+                        InputStream entryStream = threads > 1 ? new ByteArrayInputStream( IOUtils.toByteArray( archive ) ) : new UncloseableInputStream(archive)
+                        halted = pipeline.process([filename: file.name, file: file, entry: entry, stream: entryStream], line++)
                     }
                 }
             } finally {
@@ -0,0 +1,149 @@
+package gratum.source
+
+import gratum.etl.Pipeline
+import gratum.etl.RowInputStream
+import gratum.etl.RowOutputStream
+import gratum.util.Murmur3
+
+/**
+ * Reads the rows cached by {@link gratum.etl.Pipeline#cache(java.util.Map, java.lang.String)}.  Caches are files of
+ * rows written with {@link gratum.etl.RowOutputStream} named after the cache and a 128 bit hash of the parent
+ * Pipeline's fingerprint, so a change to the source or the steps before the cache picks a different file.
+ *
+ * If the file exists the rows are read from it without starting the parent Pipeline.  Otherwise the parent is
+ * started and each row is written to a temporary file as it passes through, which only replaces the cache once the
+ * parent finishes.  Reading a cache marks it as recently used, and the least recently used caches are deleted when
+ * the directory grows beyond its maximum size.
+ */
+class CacheSource extends AbstractSource implements FingerprintedSource {
+
+    static final String SUFFIX = ".rows"
+
+    final Pipeline parent
+    final File directory
+    final long maxSize
+    final boolean refresh
+
+    private Pipeline delegate
+    private RowOutputStream out
+    private File partial
+    private File target
+    private int line = 1
+
+    CacheSource(Pipeline parent, String name, File directory, long maxSize, boolean refresh) {
+        this.name = name
+        this.parent = parent
+        this.directory = directory
+        this.maxSize = maxSize
+        this.refresh = refresh
+    }
+
+    @Override
+    String getFingerprint() {
+        return parent.fingerprint
+    }
+
+    /**
+     * @return the cache file for the parent's current fingerprint, or null if it doesn't have one.
+     */
+    File getFile() {
+        String fingerprint = parent.fingerprint
+        if( fingerprint == null ) return null
+        Murmur3 hash = new Murmur3().putString( fingerprint ).finish()
+        String safe = name.replaceAll( /[^A-Za-z0-9._-]/, "_" )
+        return new File( directory, String.format( "%s-%016x%016x%s", safe, hash.h1, hash.h2, SUFFIX ) )
+    }
+
+    @Override
+    void start(Pipeline pipeline) {
+        delegate = pipeline
+        line = 1
+        File file = getFile()
+        if( file != null && file.exists() && !refresh ) {
+            file.setLastModified( System.currentTimeMillis() )
+            parent.statistic.start = System.currentTimeMillis()
+            replay( file, pipeline )
+            return
+        }
+
+        if( file != null ) {
+            directory.mkdirs()
+            target = file
+            partial = File.createTempFile( file.name, ".partial", directory )
+            out = new RowOutputStream( partial )
+        }
+        try {
+            parent.start()
+        } finally {
+            // the parent didn't finish (ie it was halted or failed) so the cache is incomplete
+            discard()
+        }
+    }
+
+    private void replay( File file, Pipeline pipeline ) {
+        RowInputStream input = new RowInputStream( file )
+        try {
+            Map row
+            while( (row = input.readRow()) != null ) {
+                if( pipeline.process( row, line++ ) ) break
+            }
+        } finally {
+            input.close()
+        }
+    }
+
+    /**
+     * Writes the row to the cache being built, and passes it on.  If the row can't be written the cache is abandoned
+     * and the rows keep passing through.
+     */
+    void write( Map row ) {
+        if( out != null ) {
+            try {
+                out.writeRow( row )
+            } catch( IOException ex ) {
+                discard()
+            }
+        }
+        delegate.process( row, line++ )
+    }
+
+    /**
+     * Called once the parent has finished to replace the cache with the rows written, and delete the least recently
+     * used caches if the directory is over its maximum size.
+     */
+    void commit() {
+        if( out == null ) return
+        out.close()
+        out = null
+        target.delete()
+        if( !partial.renameTo( target ) ) {
+            partial.delete()
+            return
+        }
+        partial = null
+        evict( target )
+    }
+
+    private void discard() {
+        if( out != null ) {
+            try {
+                out.close()
+            } catch( IOException ignore ) {
+            }
+            out = null
+        }
+        partial?.delete()
+        partial = null
+    }
+
+    private void evict( File keep ) {
+        File[] caches = directory.listFiles( { File f -> f.name.endsWith( SUFFIX ) } as FileFilter )
+        long total = caches*.length().sum( 0L ) as long
+        for( File cache : caches.sort { it.lastModified() } ) {
+            if( total <= maxSize ) break
+            if( cache == keep ) continue
+            total -= cache.length()
+            cache.delete()
+        }
+    }
+}
@@ -2,7 +2,7 @@ package gratum.source;
 
 import gratum.etl.Pipeline;
 
-public class ChainedSource extends AbstractSource {
+public class ChainedSource extends AbstractSource implements FingerprintedSource {
 
     private Pipeline parent
     private Pipeline delegate
@@ -13,6 +13,18 @@ public class ChainedSource extends AbstractSource {
         this.parent = parent
     }
 
+    Pipeline getParent() {
+        return parent
+    }
+
+    /**
+     * @return the parent Pipeline's fingerprint, which covers its source and its steps.
+     */
+    @Override
+    String getFingerprint() {
+        return parent.fingerprint
+    }
+
     @Override
     void start(Pipeline pipeline) {
         this.delegate = pipeline
@@ -0,0 +1,14 @@
+package gratum.source
+
+/**
+ * A Source that remembers what it has read between runs (ie a watermark), and only saves it once the Pipeline has
+ * finished with every row it read.  If the Pipeline fails or halts it isn't committed, so the next run reads the
+ * same rows again.
+ */
+interface CommittableSource {
+
+    /**
+     * Called after the Pipeline's after() callbacks have finished.
+     */
+    void commit()
+}
@@ -2,7 +2,7 @@ package gratum.source
 
 import gratum.etl.Pipeline
 
-class ConcatSource extends AbstractSource {
+class ConcatSource extends AbstractSource implements FingerprintedSource {
 
     List<Source> sources = []
 
@@ -24,6 +24,12 @@ class ConcatSource extends AbstractSource {
         return this
     }
 
+    @Override
+    String getFingerprint() {
+        List<String> parts = sources.collect { Source src -> src instanceof FingerprintedSource ? ((FingerprintedSource)src).fingerprint : null }
+        return parts.contains( null ) ? null : "concat\n${parts.join('\n')}"
+    }
+
     @Override
     void start(Pipeline pipeline) {
         sources.each { Source src ->
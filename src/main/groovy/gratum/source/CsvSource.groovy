@@ -1,8 +1,16 @@
 package gratum.source
 
+import gratum.csv.CSVBufferParser
 import gratum.csv.CSVFile
 import gratum.csv.CSVReader
+import gratum.csv.MappedCSVFile
 import gratum.etl.Pipeline
+import gratum.etl.Schema
+import gratum.etl.SchemaRow
+import gratum.util.Utilities
+import org.apache.commons.io.input.BOMInputStream
+
+import java.nio.charset.StandardCharsets
 
 
 /**
@@ -34,13 +42,40 @@ import gratum.etl.Pipeline
  * <pre>
  *     csv( "External InputStream", stream, "|" ).filter( [ someColumn: "someValue" ] ).go()
  * </pre>
+ *
+ * Using the buffered parser (see {@link gratum.csv.CSVBufferParser}) for large files:
+ *
+ * <pre>
+ *     CsvSource.of("/resources/large_file.csv", "|").buffered().into().go()
+ * </pre>
+ *
+ * Memory mapping a large local file and parsing it on several threads (see {@link gratum.csv.MappedCSVFile}):
+ *
+ * <pre>
+ *     CsvSource.of("/resources/large_file.csv", "|").mapped(4).into().go()
+ * </pre>
+ *
+ * A CsvSource created from a File can be resumed from the byte offset of the last checkpointed row (see
+ * {@link gratum.etl.Pipeline#checkpoint(java.util.Map)}).  Checkpointed files are always read with the buffered
+ * parser on a single thread, and must be UTF-8.
  */
-public class CsvSource extends AbstractSource {
+public class CsvSource extends AbstractSource implements ProjectableSource, FingerprintedSource, ResumableSource {
 
     CSVFile csvFile
 
     Closure<Void> headerClosure = null
 
+    int mappedThreads = 0
+
+    long mappedChunkSize = MappedCSVFile.DEFAULT_CHUNK_SIZE
+    Set<String> projection
+
+    private boolean resumable = false
+    private Map resumePosition
+    private CSVBufferParser parser
+    private List<String> parsedHeaders
+    private int line
+
     CsvSource(File file, String separator = ",", List<String> headers = null) {
         this.name = file.name
         csvFile = new CSVFile( file, separator );
@@ -78,9 +113,68 @@ public class CsvSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Parse using the {@link gratum.csv.CSVBufferParser} instead of reading line by line.  This is faster on large
+     * files, and it supports quoted values containing line breaks.
+     *
+     * @param buffered true to use the buffered parser (default true)
+     * @return this CsvSource
+     */
+    public CsvSource buffered( boolean buffered = true ) {
+        csvFile.setBuffered( buffered )
+        return this
+    }
+
+    /**
+     * Memory map the file and parse it in chunks on multiple threads using {@link gratum.csv.MappedCSVFile}.  Rows
+     * are still sent to the Pipeline in file order on the thread calling start().  This only applies to CsvSources
+     * created from a File; Readers are always parsed sequentially.
+     *
+     * @param threads the number of threads parsing chunks (default is the number of processors)
+     * @param chunkSize the approximate number of bytes parsed by each thread at a time
+     * @return this CsvSource
+     */
+    public CsvSource mapped( int threads = Runtime.getRuntime().availableProcessors(), long chunkSize = MappedCSVFile.DEFAULT_CHUNK_SIZE ) {
+        this.mappedThreads = threads
+        this.mappedChunkSize = chunkSize
+        return this
+    }
+
+    /**
+     * Only keeps the given columns of each line.  The header closure is still given every column.
+     */
+    @Override
+    void project(Collection<String> columns) {
+        this.projection = columns != null ? new HashSet<String>( columns ) : null
+    }
+
+    @Override
+    String getFingerprint() {
+        if( !csvFile.file ) return null
+        return "csv ${csvFile.separator} ${csvFile.columnHeaders ?: ''}\n${Utilities.fingerprint( csvFile.file )}"
+    }
+
+    @Override
+    void resumeFrom(Object position) {
+        if( !csvFile.file ) throw new IllegalStateException( "Only a CsvSource reading a File can be resumed" )
+        this.resumable = true
+        this.resumePosition = (Map)position
+    }
+
+    /**
+     * @return the byte offset of the end of the current row, its line number, and the headers.
+     */
+    @Override
+    Object getPosition() {
+        return [ offset: parser.byteOffset, line: line, headers: parsedHeaders ]
+    }
+
     @Override
     void start(Pipeline pipeline) {
-        int line = 1
+        line = resumePosition ? resumePosition.line as int : 1
+        Schema schema = null
+        int[] indexes = null
+        int width = 0
         CSVReader csvReader = new CSVReader() {
             @Override
             void processHeaders(List<String> header) {
@@ -91,14 +185,28 @@ public class CsvSource extends AbstractSource {
 
             @Override
             boolean processRow(List<String> header, List<String> row) {
-                Map obj = [:]
-                for( int i = 0; i < row.size(); i++ ) {
-                    obj[header[i]] = row[i]
+                if( schema == null ) {
+                    schema = new Schema()
+                    if( projection == null ) {
+                        indexes = schema.indexesOf( header )
+                    } else {
+                        // columns that aren't projected get an index of -1 and are skipped
+                        indexes = new int[ header.size() ]
+                        for( int i = 0; i < indexes.length; i++ ) {
+                            indexes[i] = projection.contains( header[i] ) ? schema.indexOf( header[i], true ) : -1
+                        }
+                    }
+                    width = schema.size()
                 }
-
-                if( header.size() > row.size() ) {
-                    for( int j = row.size(); j < header.size(); j++ ) {
-                        obj[header[j]] = null
+                Object[] values = new Object[ width ]
+                int count = Math.min( indexes.length, row.size() )
+                for( int i = 0; i < count; i++ ) {
+                    if( indexes[i] >= 0 ) values[ indexes[i] ] = row[i]
+                }
+                SchemaRow obj = schema.row( values )
+                if( projection == null ) {
+                    for( int i = count; i < row.size(); i++ ) {
+                        obj[ (Object)null ] = row[i]
                     }
                 }
 
@@ -111,6 +219,48 @@ public class CsvSource extends AbstractSource {
             }
         }
 
-        csvFile.parse(csvReader)
+        if( resumable ) {
+            parseFrom( resumePosition, csvReader )
+        } else if( mappedThreads > 0 && csvFile.file ) {
+            MappedCSVFile mappedFile = new MappedCSVFile( csvFile.file, csvFile.separator, mappedThreads )
+            mappedFile.setColumnHeaders( csvFile.columnHeaders )
+            mappedFile.setChunkSize( mappedChunkSize )
+            mappedFile.parse( csvReader )
+        } else {
+            csvFile.parse(csvReader)
+        }
+    }
+
+    /**
+     * Parses the file from the offset in the position, or from the beginning if it's null.
+     */
+    private void parseFrom( Map position, CSVReader csvReader ) {
+        long offset = position ? position.offset as long : 0
+        List<String> headers = position ? (List<String>)position.headers : csvFile.columnHeaders
+        FileInputStream input = new FileInputStream( csvFile.file )
+        Reader reader
+        if( offset > 0 ) {
+            input.channel.position( offset )
+            reader = new InputStreamReader( input, StandardCharsets.UTF_8 )
+        } else {
+            BOMInputStream bom = new BOMInputStream( input )
+            if( bom.hasBOM() ) offset = bom.getBOM().length()
+            reader = new InputStreamReader( bom, StandardCharsets.UTF_8 )
+        }
+        parser = new CSVBufferParser( reader, csvFile.separator.charAt(0) )
+        parser.trackBytes( offset )
+        if( headers == null ) {
+            if( !parser.next() ) {
+                parser.close()
+                return
+            }
+            headers = new ArrayList<>( parser.row() )
+            csvReader.processHeaders( headers )
+        } else if( position && csvFile.columnHeaders == null ) {
+            // the headers were read from the file before resuming
+            csvReader.processHeaders( headers )
+        }
+        parsedHeaders = headers
+        parser.parse( headers, csvReader )
     }
 }
@@ -2,8 +2,17 @@ package gratum.source
 
 import gratum.etl.FileOpenable
 import gratum.etl.Pipeline
-import groovy.io.FileType
+import gratum.etl.StateFile
+import gratum.util.Utilities
 
+import java.nio.file.FileSystems
+import java.nio.file.FileVisitOption
+import java.nio.file.FileVisitResult
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.PathMatcher
+import java.nio.file.SimpleFileVisitor
+import java.nio.file.attribute.BasicFileAttributes
 import java.util.regex.Pattern
 
 /**
@@ -11,13 +20,19 @@ import java.util.regex.Pattern
  * a Pipeline that produces a Map object with keys file and value of
  * {@link java.io.File}.  It enumerates only Files (i.e. File.isFile() == true),
  * but recursively visits all subdirectories.  You can include an optional
- * filter to match files.
+ * filter, or glob, to match files.  Files can be processed in parallel (see {@link #parallel(int)}).  In incremental mode only files that are new or have changed since the last run are
+ * produced (see {@link #incremental(java.io.File)}).
  */
-class FileSystemSource extends AbstractSource {
+class FileSystemSource extends AbstractFileSource implements FingerprintedSource, CommittableSource {
 
     File file
     Pattern filter = ~/.*/
+    String glob
     int line = 1
+    File stateFile
+
+    private Map<String,Object> manifest
+    private Map<String,Object> seen
 
     FileSystemSource(File file) {
         this.name = file.name
@@ -28,8 +43,40 @@ class FileSystemSource extends AbstractSource {
         return new FileSystemSource( directory )
     }
 
+    /**
+     * Only produces the files that are new, or whose size or modified time have changed, since the last run.  The
+     * size and modified time of each file is kept in the state file, and only saved once the Pipeline finishes so
+     * the files of a failed run are produced again.  Delete the state file to produce every file again.
+     *
+     * @param stateFile the file the size and modified time of each file is kept in
+     * @return this FileSystemSource
+     */
+    FileSystemSource incremental( File stateFile ) {
+        this.stateFile = stateFile
+        return this
+    }
+
+    /**
+     * Saves the size and modified time of every file seen for the next run.
+     */
+    @Override
+    void commit() {
+        if( stateFile ) StateFile.write( stateFile, [ files: seen ] )
+    }
+
+    @Override
+    String getFingerprint() {
+        // the files produced depend on the state file
+        if( stateFile ) return null
+        return "files ${filter} ${glob ?: ''}\n${Utilities.fingerprint( file )}"
+    }
+
     @Override
     void start(Pipeline pipeline) {
+        if( stateFile ) {
+            manifest = (Map<String,Object>)StateFile.read( stateFile )?.files ?: [:]
+            seen = [:]
+        }
         process( file, pipeline )
     }
 
@@ -38,11 +85,39 @@ class FileSystemSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Only produces the files matching the glob (see {@link java.nio.file.FileSystem#getPathMatcher(java.lang.String)}).
+     * A glob without a / is matched against the file's name (ie *.csv.gz), otherwise it's matched against the file's
+     * path relative to the directory (ie 2024/&#42;&#42;/*.csv).  This is used together with the filter.
+     *
+     * @param glob the glob files must match
+     * @return this FileSystemSource
+     */
+    FileSystemSource glob( String glob ) {
+        this.glob = glob
+        return this
+    }
+
     void process(File file, Pipeline pipeline) {
-        file.eachFileRecurse(FileType.FILES) { File current ->
-            if( current.name =~ filter ) {
-                pipeline.process([file: current, stream: new FileOpenable(current)], line++)
+        Path root = file.toPath()
+        PathMatcher matcher = glob ? FileSystems.default.getPathMatcher( "glob:${glob}" ) : null
+        boolean byName = glob && !glob.contains("/")
+        Files.walkFileTree( root, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if( !attrs.isRegularFile() ) return FileVisitResult.CONTINUE
+                if( matcher && !matcher.matches( byName ? path.fileName : root.relativize( path ) ) ) return FileVisitResult.CONTINUE
+                File current = path.toFile()
+                if( !(current.name =~ filter) ) return FileVisitResult.CONTINUE
+                if( stateFile ) {
+                    String key = current.absolutePath
+                    String version = "${attrs.size()}:${attrs.lastModifiedTime().toMillis()}".toString()
+                    seen[key] = version
+                    if( manifest[key] == version ) return FileVisitResult.CONTINUE
+                }
+                boolean halted = pipeline.process([file: current, stream: new FileOpenable(current)], line++)
+                return halted ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE
             }
-        }
+        })
     }
 }
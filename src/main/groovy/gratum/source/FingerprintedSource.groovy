@@ -0,0 +1,14 @@
+package gratum.source
+
+/**
+ * A Source that can describe what it reads, so the rows it produced before can be reused when nothing has changed
+ * (see {@link gratum.etl.Pipeline#cache(java.lang.String)}).
+ */
+interface FingerprintedSource {
+
+    /**
+     * @return a String that changes whenever the rows this Source produces could change (ie the file's path, size
+     * and modified time), or null if it can't tell.
+     */
+    String getFingerprint()
+}
@@ -3,6 +3,20 @@ package gratum.source
 import static groovyx.net.http.HttpBuilder.configure
 
 import gratum.etl.Pipeline
+import gratum.json.JsonParser
+import gratum.json.JsonParser.Token
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * A source that retrieves data from a URL.  For example,
@@ -18,12 +32,39 @@ import gratum.etl.Pipeline
  *
  * To configure the http connection pass a closure that will pass
  * to {@link groovyx.net.http.HttpBuilder#configure(Closure)}.
+ *
+ * Large responses and paginated APIs are streamed into rows instead by giving the path of the array of rows
+ * (see {@link #rows(java.lang.String)}) and how the API pages its results (see {@link #paginate(java.util.Map)}).
+ * The body of each response is read with the incremental {@link JsonParser} the same as {@link JsonSource} so only
+ * the row being read is built:
+ *
+ * <pre>
+ *  http("https://api.example.com/people")
+ *     .header("Authorization", "Bearer ${token}")
+ *     .rows("data")
+ *     .paginate( offset: "offset", limit: "limit", size: 500, concurrency: 4 )
+ *     .retry( 5, 1000 )
+ *     .rateLimit( 10 )
+ *     .into()
+ *     .save("people.csv")
+ *     .go()
+ * </pre>
  */
-class HttpSource extends AbstractSource {
+class HttpSource extends AbstractSource implements FingerprintedSource {
 
     String url
     Closure configuration
 
+    String rowsPath
+    Map<String,String> headers = [:]
+    Map<String,Object> pagination
+    int concurrency = 1
+    int retries = 3
+    long backoff = 500
+    double requestsPerSecond = 0
+
+    private long nextRequest = 0
+
     public HttpSource(String url, Closure configuration) {
         this.name = url
         this.url = url
@@ -38,8 +79,112 @@ class HttpSource extends AbstractSource {
         return new HttpSource(url, configuration)
     }
 
+    /**
+     * Streams the rows out of each response instead of producing the whole response as a single row.  The path is
+     * the dot separated field names leading to the array of rows (ie data.items).  Without a path each object in a
+     * top level array is a row.
+     *
+     * @param path the path to the rows in each response
+     * @return this HttpSource
+     */
+    public HttpSource rows(String path) {
+        this.rowsPath = path ?: ""
+        return this
+    }
+
+    /**
+     * Adds a header to every request when streaming rows.
+     *
+     * @return this HttpSource
+     */
+    public HttpSource header(String name, String value) {
+        this.headers[name] = value
+        return this
+    }
+
+    /**
+     * Requests every page of the results and streams the rows of each page (see {@link #rows(java.lang.String)}).
+     * The options pick how the API pages its results:
+     *
+     * <ul>
+     *     <li>offset - the parameter holding the index of the first row of a page, with limit the parameter holding
+     *     the number of rows per page, and size the number of rows to ask for (defaults to 100).  Without limit,
+     *     size is required and must be the server's page size.  Size must not be more than the server allows per
+     *     page, otherwise offsets skip rows.</li>
+     *     <li>page - the parameter holding the page number, with start the first page (defaults to 1), and
+     *     optionally limit and size like offset</li>
+     *     <li>cursor - the parameter holding the cursor, with next the path to the next cursor in each response.
+     *     The last page has no next cursor.</li>
+     *     <li>link - true to follow the next link of the Link header (RFC 8288) until there isn't one.</li>
+     * </ul>
+     *
+     * concurrency is the number of pages fetched at the same time.  Offset and page pagination request the following
+     * pages at the same time, and stop at the first page without any rows (or that repeats the page before it), so up
+     * to concurrency requests past the last page are wasted.  Cursor and link pagination only know the next page once
+     * the current page has been fetched, so concurrency is how many pages are fetched ahead of the Pipeline.  Rows are
+     * always produced in page order.
+     *
+     * @param options how to page through the results
+     * @return this HttpSource
+     */
+    public HttpSource paginate(Map options) {
+        if( !options.offset && !options.page && !options.cursor && !options.link ) {
+            throw new IllegalArgumentException( "paginate() requires an offset, page, cursor or link option" )
+        }
+        if( options.offset && !options.limit && !options.size ) {
+            throw new IllegalArgumentException( "Offset pagination without a limit option requires the size of the server's pages" )
+        }
+        if( options.cursor && !options.next ) {
+            throw new IllegalArgumentException( "Cursor pagination requires the next option with the path to the next cursor" )
+        }
+        this.pagination = new LinkedHashMap<>( options )
+        this.concurrency = Math.max( 1, (options.concurrency ?: 1) as int )
+        if( rowsPath == null ) rowsPath = ""
+        return this
+    }
+
+    /**
+     * Retries requests that fail to connect, fail while reading a page, or are answered with 429 or a 5xx status.
+     * A response streamed without pagination isn't retried once its rows have been sent to the Pipeline.  Each retry waits twice as long
+     * as the one before it starting with backoff milliseconds, or as long as the Retry-After header asks.
+     *
+     * @param retries the number of times a request is retried (defaults to 3)
+     * @param backoff the milliseconds to wait before the first retry (defaults to 500)
+     * @return this HttpSource
+     */
+    public HttpSource retry(int retries, long backoff = 500) {
+        this.retries = retries
+        this.backoff = backoff
+        return this
+    }
+
+    /**
+     * Limits the requests sent to the server, across all the concurrent page fetches.
+     *
+     * @param requestsPerSecond the most requests started per second
+     * @return this HttpSource
+     */
+    public HttpSource rateLimit(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond
+        return this
+    }
+
+    /**
+     * The url.  A closure configuring the request can't be compared so those requests have no fingerprint.
+     */
+    @Override
+    String getFingerprint() {
+        if( configuration ) return null
+        if( rowsPath == null ) return "http ${url}"
+        return "http ${url}\nrows ${rowsPath}\n${pagination ?: ''}\n${headers}"
+    }
+
     @Override
     void start(Pipeline pipeline) {
+        if( rowsPath != null ) {
+            stream( pipeline )
+            return
+        }
         def response = configure {
             request.uri = url
             if( configuration ) {
@@ -50,4 +195,277 @@ class HttpSource extends AbstractSource {
 
         pipeline.process( (Map)response, 1 )
     }
+
+    private void stream(Pipeline pipeline) {
+        if( configuration ) throw new IllegalStateException( "A configuration closure can't be used when streaming rows from ${url}, use header() instead" )
+        JsonSource.Reading reading = new JsonSource.Reading( name, null, rowsPath ? rowsPath.split("\\.") : new String[0], null, pipeline )
+        if( !pagination ) {
+            try {
+                request( url ) { HttpURLConnection connection ->
+                    int before = reading.line
+                    try {
+                        read( reading, connection.inputStream )
+                    } catch( IOException ex ) {
+                        // retrying would repeat the rows already sent to the Pipeline
+                        if( reading.line != before ) throw new UncheckedIOException( ex )
+                        throw ex
+                    }
+                }
+            } catch( UncheckedIOException ex ) {
+                throw ex.cause
+            }
+        } else if( pagination.offset || pagination.page ) {
+            streamNumbered( reading )
+        } else {
+            streamChained( reading )
+        }
+    }
+
+    /**
+     * Fetches offset or page numbered pages concurrently, and reads them in order until a page is empty or repeats
+     * the page before it.  A short page isn't taken as the last one since servers may cap, or ignore, the page size
+     * asked for.
+     */
+    private void streamNumbered(JsonSource.Reading reading) {
+        int size = (pagination.size ?: 100) as int
+        long start = (pagination.start ?: 1) as long
+        ExecutorService executor = Executors.newFixedThreadPool( concurrency, threads() )
+        try {
+            Deque<Future<Page>> window = new ArrayDeque<>()
+            long index = 0
+            byte[] previous = null
+            while( true ) {
+                while( window.size() < concurrency ) {
+                    Map<String,Object> parameters = [:]
+                    if( pagination.offset ) {
+                        parameters[ (String)pagination.offset ] = index * size
+                    } else {
+                        parameters[ (String)pagination.page ] = start + index
+                    }
+                    if( pagination.limit ) parameters[ (String)pagination.limit ] = size
+                    String pageUrl = withParameters( url, parameters )
+                    window << executor.submit( { fetch( pageUrl ) } as Callable<Page> )
+                    index++
+                }
+                Page page = get( window.poll() )
+                // some servers answer every page past the end with the last page
+                if( Arrays.equals( page.body, previous ) ) return
+                previous = page.body
+                int before = reading.line
+                if( !read( reading, new ByteArrayInputStream( page.body ) ) ) return
+                if( reading.line == before ) return
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Fetches cursor or link pages on another thread, up to concurrency pages ahead of the Pipeline.
+     */
+    private void streamChained(JsonSource.Reading reading) {
+        BlockingQueue<Object> pages = new ArrayBlockingQueue<>( concurrency )
+        Object end = new Object()
+        ExecutorService executor = Executors.newSingleThreadExecutor( threads() )
+        AtomicBoolean stopped = new AtomicBoolean()
+        try {
+            executor.submit {
+                Object last = end
+                try {
+                    String next = url
+                    while( next != null && !stopped.get() ) {
+                        Page page = fetch( next )
+                        if( !offer( pages, page, stopped ) ) return
+                        next = page.next
+                    }
+                } catch( Throwable t ) {
+                    last = t
+                }
+                offer( pages, last, stopped )
+            }
+            while( true ) {
+                Object page = pages.take()
+                if( page.is( end ) ) return
+                if( page instanceof Throwable ) throw (Throwable)page
+                if( !read( reading, new ByteArrayInputStream( ((Page)page).body ) ) ) return
+            }
+        } finally {
+            stopped.set( true )
+            executor.shutdownNow()
+        }
+    }
+
+    private static boolean offer(BlockingQueue<Object> queue, Object value, AtomicBoolean stopped) {
+        while( !queue.offer( value, 100, TimeUnit.MILLISECONDS ) ) {
+            if( stopped.get() ) return false
+        }
+        return true
+    }
+
+    /**
+     * @return false if the Pipeline asked to stop
+     */
+    private static boolean read(JsonSource.Reading reading, InputStream body) {
+        JsonParser parser = new JsonParser( JsonSource.reader( body ) )
+        try {
+            reading.parser = parser
+            Token token
+            while( (token = parser.next()) != Token.END ) {
+                if( !reading.emit( token, 0 ) ) return false
+            }
+            return true
+        } finally {
+            parser.close()
+        }
+    }
+
+    /**
+     * Fetches the whole body of a page, and finds the next page for cursor and link pagination.
+     */
+    private Page fetch(String pageUrl) {
+        return request( pageUrl ) { HttpURLConnection connection ->
+            Page page = new Page()
+            page.body = connection.inputStream.bytes
+            if( pagination.link ) {
+                String link = nextLink( connection.getHeaderField("Link") )
+                if( link ) page.next = new URL( new URL( pageUrl ), link ).toString()
+            } else if( pagination.cursor ) {
+                Object cursor = valueAt( page.body, ((String)pagination.next).split("\\.") )
+                if( cursor != null && cursor.toString() ) page.next = withParameters( url, [ ((String)pagination.cursor): cursor ] )
+            }
+            return page
+        }
+    }
+
+    /**
+     * Sends the request and hands the connection to handle once the server answers with a successful status.  The
+     * request is retried if it couldn't connect, the server answered with 429 or a 5xx status, or handle failed
+     * with an IOException.
+     *
+     * @return what handle returns
+     */
+    private <T> T request(String requestUrl, Closure<T> handle) {
+        for( int attempt = 0; ; attempt++ ) {
+            throttle()
+            HttpURLConnection connection = (HttpURLConnection)new URL( requestUrl ).openConnection()
+            connection.setRequestProperty( "Accept", "application/json" )
+            headers.each { String header, String value -> connection.setRequestProperty( header, value ) }
+            IOException failure
+            boolean retryable = true
+            String retryAfter = null
+            try {
+                int status = connection.responseCode
+                if( status < 400 ) return handle.call( connection )
+                retryable = status == 429 || status >= 500
+                retryAfter = connection.getHeaderField("Retry-After")
+                failure = new IOException( "${requestUrl} returned ${status} ${connection.responseMessage}" )
+            } catch( IOException ex ) {
+                failure = ex
+            } finally {
+                connection.disconnect()
+            }
+            if( !retryable || attempt >= retries ) throw failure
+            pause( attempt, retryAfter )
+        }
+    }
+
+    private void pause(int attempt, String retryAfter) {
+        long delay = backoff << Math.min( attempt, 16 )
+        if( retryAfter?.isLong() ) delay = Math.max( delay, retryAfter.toLong() * 1000 )
+        Thread.sleep( delay )
+    }
+
+    /**
+     * Waits until the next request is allowed by the rate limit.
+     */
+    private void throttle() {
+        if( requestsPerSecond <= 0 ) return
+        long interval = (long)(1_000_000_000L / requestsPerSecond)
+        long wait
+        synchronized( this ) {
+            long now = System.nanoTime()
+            wait = nextRequest - now
+            nextRequest = Math.max( now, nextRequest ) + interval
+        }
+        if( wait > 0 ) Thread.sleep( TimeUnit.NANOSECONDS.toMillis( wait ), (int)(wait % 1_000_000) )
+    }
+
+    private ThreadFactory threads() {
+        AtomicInteger count = new AtomicInteger()
+        return new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable r) {
+                Thread thread = new Thread( r, "gratum-http-${count.incrementAndGet()}" )
+                thread.setDaemon( true )
+                return thread
+            }
+        }
+    }
+
+    private static Page get(Future<Page> future) {
+        try {
+            return future.get()
+        } catch( ExecutionException ex ) {
+            throw ex.cause
+        }
+    }
+
+    static String withParameters(String url, Map<String,Object> parameters) {
+        StringBuilder builder = new StringBuilder( url )
+        String separator = url.contains("?") ? "&" : "?"
+        parameters.each { String parameter, Object value ->
+            builder.append( separator ).append( URLEncoder.encode( parameter, "UTF-8" ) ).append( "=" ).append( URLEncoder.encode( value.toString(), "UTF-8" ) )
+            separator = "&"
+        }
+        return builder.toString()
+    }
+
+    /**
+     * @return the url of the next link in a Link header, or null if there isn't one
+     */
+    static String nextLink(String header) {
+        if( !header ) return null
+        for( String link : header.split(",(?=\\s*<)") ) {
+            def match = link =~ /<([^>]*)>(.*)/
+            if( !match.find() ) continue
+            def rel = match.group(2) =~ /(?i);\s*rel\s*=\s*"?([^";]+)"?/
+            if( rel.find() && rel.group(1).toLowerCase().split(/\s+/).contains("next") ) {
+                return match.group(1)
+            }
+        }
+        return null
+    }
+
+    /**
+     * @return the value at the path within the JSON, skipping everything else, or null if it isn't there
+     */
+    static Object valueAt(byte[] body, String[] path) {
+        JsonParser parser = new JsonParser( JsonSource.reader( new ByteArrayInputStream( body ) ) )
+        try {
+            Token token = parser.next()
+            for( String field : path ) {
+                if( token != Token.START_OBJECT ) return null
+                Token value = null
+                while( parser.next() != Token.END_OBJECT ) {
+                    String name = parser.text
+                    Token current = parser.next()
+                    if( name == field ) {
+                        value = current
+                        break
+                    }
+                    parser.skipValue( current )
+                }
+                if( value == null ) return null
+                token = value
+            }
+            return parser.readValue( token )
+        } finally {
+            parser.close()
+        }
+    }
+
+    static class Page {
+        byte[] body
+        String next
+    }
 }
@@ -1,10 +1,22 @@
 package gratum.source
 
 import gratum.etl.Pipeline
-import groovy.sql.GroovyResultSet
+import gratum.etl.ResultSetReader
+import gratum.etl.Schema
+import gratum.etl.StateFile
 import groovy.sql.Sql
 
-import java.sql.ResultSetMetaData
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.DatabaseMetaData
+import java.sql.DriverManager
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
 /**
  * A source that uses a database query for the source of the rows it feeds through the pipeline.
@@ -16,11 +28,56 @@ import java.sql.ResultSetMetaData
  *      .into("Age")
  *      .go()
  * </pre>
+ *
+ * Rows are read with a forward only cursor.  Large results should set a fetchSize so the driver streams the rows
+ * instead of reading the whole result into memory:
+ *
+ * <pre>
+ *     database( sql )
+ *      .query("select * from Orders")
+ *      .fetchSize( 5000 )
+ *      .partitionBy( "id", 4 )
+ *      .into()
+ *      .go()
+ * </pre>
+ *
+ * partitionBy splits the query into ranges of a numeric column, and reads each range on its own connection in
+ * parallel (see {@link #partitionBy(java.lang.String, int)}).
+ *
+ * resumeBy orders the query by a unique column so a checkpointed Pipeline can continue after the last row it
+ * processed (see {@link #resumeBy(java.lang.String)}).
+ *
+ * incremental only reads the rows added or changed since the last run by remembering the highest value of a column
+ * between runs (see {@link #incremental(java.lang.String, java.io.File)}):
+ *
+ * <pre>
+ *     database( sql )
+ *      .query("select * from Orders")
+ *      .incremental( "updated_at", new File("orders.watermark") )
+ *      .into()
+ *      .go()
+ * </pre>
  */
-class JdbcSource extends AbstractSource {
+class JdbcSource extends AbstractSource implements ProjectableSource, FingerprintedSource, ResumableSource, CommittableSource {
+
+    static final int BATCH_SIZE = 512
 
     Sql db
     GString query
+    int fetchSize = 0
+    String partitionColumn
+    int partitions = 1
+    Collection<String> projection
+    String resumeColumn
+    String incrementalColumn
+    File stateFile
+
+    private Object lastKey
+    private Object watermark
+    private Object highest
+    private String url
+    private String username
+    private String password
 
     JdbcSource(Sql db) {
         this.name = "jdbc"
@@ -29,6 +86,9 @@ class JdbcSource extends AbstractSource {
 
     JdbcSource(String url, String username, String password) {
         this.name = url
+        this.url = url
+        this.username = username
+        this.password = password
         db = Sql.newInstance(url, username, password)
     }
 
@@ -36,6 +96,10 @@ class JdbcSource extends AbstractSource {
         return new JdbcSource(sql)
     }
 
+    static JdbcSource database( DataSource dataSource ) {
+        return new JdbcSource(new Sql(dataSource))
+    }
+
     static JdbcSource database(String url, String username, String password) {
         return new JdbcSource(url, username, password)
     }
@@ -45,20 +109,361 @@ class JdbcSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Sets the number of rows the driver fetches from the database at a time.  Postgres only streams rows inside a
+     * transaction so auto commit is turned off while the query runs.  MySQL only streams rows when the fetch size
+     * is Integer.MIN_VALUE (or useCursorFetch=true is added to the url).
+     *
+     * @param fetchSize the number of rows fetched at a time, or 0 for the driver's default
+     * @return this JdbcSource
+     */
+    JdbcSource fetchSize( int fetchSize ) {
+        this.fetchSize = fetchSize
+        return this
+    }
+
+    /**
+     * Reads the query in parallel by splitting it into count ranges of the given numeric column.  The min and max of
+     * the column are queried first, then each range is read on its own connection and thread.  Rows are sent to the
+     * Pipeline on the thread calling start(), but rows from different ranges are interleaved so they aren't in the
+     * order of the query.  Rows with a null value in the column are read with the first range.
+     *
+     * A connection is opened for each range so this requires a JdbcSource created from a url or a DataSource.
+     *
+     * @param column a numeric column of the query, ideally indexed, used to split the query
+     * @param count the number of ranges to read in parallel
+     * @return this JdbcSource
+     */
+    JdbcSource partitionBy( String column, int count ) {
+        this.partitionColumn = column
+        this.partitions = count
+        return this
+    }
+
+    /**
+     * Orders the query by the given column so it can be resumed after the last row processed (see
+     * {@link gratum.etl.Pipeline#checkpoint(java.util.Map)}).  The column must be unique, and ideally indexed, since
+     * resuming queries for the rows with a greater value.  It can't be used with partitionBy.
+     *
+     * @param column a unique column of the query, named as it appears in the rows
+     * @return this JdbcSource
+     */
+    JdbcSource resumeBy( String column ) {
+        this.resumeColumn = column
+        return this
+    }
+
+    /**
+     * Only reads the rows where the given column is greater than the highest value read by the last run.  The
+     * highest value (the watermark) is kept in the state file, and only saved once the Pipeline finishes so a failed
+     * run is read again.  The condition is added to the query so the database can use an index on the column:
+     *
+     * <pre>
+     *     select * from (query) where column &gt; :watermark
+     * </pre>
+     *
+     * The column should only ever increase (ie an auto increment id, or a last updated timestamp).  Rows changed
+     * with a value at or below the watermark after it was read are missed.  Delete the state file to read everything
+     * again.
+     *
+     * @param column a column of the query, named as it appears in the rows
+     * @param stateFile the file the watermark is kept in
+     * @return this JdbcSource
+     */
+    JdbcSource incremental( String column, File stateFile ) {
+        this.incrementalColumn = column
+        this.stateFile = stateFile
+        return this
+    }
+
+    /**
+     * @return the watermark the last run saved, or null if there wasn't one
+     */
+    Object readWatermark() {
+        Map saved = StateFile.read( stateFile )
+        if( saved != null && saved.column != incrementalColumn ) {
+            throw new IllegalStateException( "${stateFile} holds the watermark of ${saved.column} instead of ${incrementalColumn}" )
+        }
+        return saved?.watermark
+    }
+
+    /**
+     * Saves the highest value of the incremental column read for the next run.
+     */
+    @Override
+    void commit() {
+        if( incrementalColumn && highest != null && highest != watermark ) {
+            StateFile.write( stateFile, [ column: incrementalColumn, watermark: highest ] )
+            watermark = highest
+        }
+    }
+
+    @Override
+    void resumeFrom(Object position) {
+        if( !resumeColumn ) throw new IllegalStateException( "Call resumeBy() with a unique column before checkpointing ${query}" )
+        if( partitions > 1 ) throw new IllegalStateException( "A query using partitionBy can't be resumed" )
+        this.lastKey = position
+    }
+
+    /**
+     * @return the value of the resumeBy column of the current row
+     */
+    @Override
+    Object getPosition() {
+        return lastKey
+    }
+
+    /**
+     * Only reads the given columns of the query's results.  The query itself isn't changed, so select only the
+     * columns needed when possible.
+     */
+    @Override
+    void project(Collection<String> columns) {
+        this.projection = columns
+    }
+
+    /**
+     * The url, the user and the query.  Changes to the rows in the database can't be seen, so a cached query is only
+     * read again once the query (or one of its parameters) changes.  A JdbcSource created from a Sql or a DataSource
+     * uses the url and user its connection reports, and has no fingerprint if the driver doesn't report the url.
+     */
+    @Override
+    String getFingerprint() {
+        // the rows depend on the watermark, and replaying them wouldn't move it
+        if( incrementalColumn ) return null
+        String database = url ? "${url} ${username ?: ''}" : connectedTo()
+        if( database == null ) return null
+        return "jdbc ${database}\n${toSql( query )}\n${query.values.toList()}\n${projection ?: ''}"
+    }
+
+    /**
+     * @return the url and user of the database db is connected to, or null if the driver can't say
+     */
+    private String connectedTo() {
+        String database = null
+        try {
+            db.cacheConnection { Connection connection ->
+                DatabaseMetaData meta = connection.metaData
+                if( meta.URL ) database = "${meta.URL} ${meta.userName ?: ''}"
+            }
+        } catch( SQLException ex ) {
+            return null
+        }
+        return database
+    }
+
     @Override
     void start(Pipeline pipeline) {
-        List<String> columns = []
+        String sql = toSql( query )
+        List<Object> params = query.values as List
+        Schema schema = new Schema()
+        if( incrementalColumn ) {
+            watermark = readWatermark()
+            highest = watermark
+            if( watermark != null ) {
+                sql = "select * from (${sql}) gratum_incremental where ${incrementalColumn} > ?"
+                params = params + [ watermark ]
+            }
+        }
+        if( resumeColumn ) {
+            readResumable( pipeline, sql, params, schema )
+        } else if( partitionColumn && partitions > 1 ) {
+            readPartitions( pipeline, sql, params, schema )
+        } else {
+            int line = 1
+            db.cacheConnection { Connection connection ->
+                read( connection, sql, params, schema, readColumns ) { Map row ->
+                    track( row )
+                    pipeline.process( row, line++ )
+                }
+            }
+        }
+    }
+
+    private void readResumable( Pipeline pipeline, String sql, List<Object> params, Schema schema ) {
+        String ordered = "select * from (${sql}) gratum_resume"
+        if( lastKey != null ) {
+            ordered += " where ${resumeColumn} > ?"
+            params = params + [ lastKey ]
+        }
+        ordered += " order by ${resumeColumn}"
         int line = 1
-        db.eachRow( query, { ResultSetMetaData md ->
-            for( int i = 1; i <= md.columnCount; i++ ) {
-                columns << md.getColumnName(i)
+        db.cacheConnection { Connection connection ->
+            read( connection, ordered, params, schema, readColumns ) { Map row ->
+                lastKey = row[ resumeColumn ]
+                track( row )
+                pipeline.process( row, line++ )
+            }
+        }
+    }
+
+    private void readPartitions( Pipeline pipeline, String sql, List<Object> params, Schema schema ) {
+        if( !db.dataSource && !url ) {
+            throw new IllegalStateException( "partitionBy needs a JdbcSource created from a url or a DataSource so it can open a connection for each partition" )
+        }
+        String subQuery = "select * from (${sql}) gratum_partition"
+        Number lo = null, hi = null
+        db.cacheConnection { Connection connection ->
+            read( connection, "select min(${partitionColumn}), max(${partitionColumn}) from (${sql}) gratum_partition", params, new Schema(), null ) { Map row ->
+                List<Object> range = row.values() as List
+                lo = range[0] as Number
+                hi = range[1] as Number
+            }
+        }
+        if( lo == null ) {
+            // nothing to split, but nulls can still be present
+            readRanges( pipeline, schema, [ new Range( "${subQuery} where ${partitionColumn} is null", params ) ] )
+            return
+        }
+
+        long low = Math.floor( lo.doubleValue() ) as long
+        long high = Math.ceil( hi.doubleValue() ) as long
+        int count = Math.max( 1L, Math.min( (long)partitions, high - low + 1 ) ) as int
+        long step = Math.max( 1L, Math.ceil( ((double)high - (double)low + 1d) / count ) as long )
+        List<Range> ranges = []
+        for( int i = 0; i < count; i++ ) {
+            long lower = low + i * step
+            if( count == 1 ) {
+                ranges << new Range( subQuery, params )
+            } else if( i == 0 ) {
+                ranges << new Range( "${subQuery} where ${partitionColumn} < ? or ${partitionColumn} is null", params + [ lower + step ] )
+            } else if( i == count - 1 ) {
+                ranges << new Range( "${subQuery} where ${partitionColumn} >= ?", params + [ lower ] )
+            } else {
+                ranges << new Range( "${subQuery} where ${partitionColumn} >= ? and ${partitionColumn} < ?", params + [ lower, lower + step ] )
             }
-        } ) { GroovyResultSet row ->
-            Map result = [:]
-            columns.eachWithIndex { String col, int index ->
-                result[col] = row[index]
+        }
+        readRanges( pipeline, schema, ranges )
+    }
+
+    private void readRanges( Pipeline pipeline, Schema schema, List<Range> ranges ) {
+        Object end = new Object()
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>( ranges.size() * 4 )
+        ExecutorService executor = Executors.newFixedThreadPool( ranges.size() ) { Runnable r ->
+            Thread t = new Thread( r, "gratum-jdbc-${name}" )
+            t.daemon = true
+            return t
+        }
+        try {
+            ranges.each { Range range ->
+                executor.execute {
+                    try {
+                        Connection connection = openConnection()
+                        try {
+                            List<Map> batch = new ArrayList<>( BATCH_SIZE )
+                            read( connection, range.sql, range.params, schema, readColumns ) { Map row ->
+                                batch << row
+                                if( batch.size() >= BATCH_SIZE ) {
+                                    queue.put( batch )
+                                    batch = new ArrayList<>( BATCH_SIZE )
+                                }
+                            }
+                            if( batch ) queue.put( batch )
+                            queue.put( end )
+                        } finally {
+                            connection.close()
+                        }
+                    } catch( InterruptedException ignore ) {
+                        // the pipeline stopped reading
+                    } catch( Throwable t ) {
+                        queue.put( t )
+                    }
+                }
+            }
+
+            int line = 1
+            int finished = 0
+            while( finished < ranges.size() ) {
+                Object item = queue.take()
+                if( item.is( end ) ) {
+                    finished++
+                } else if( item instanceof Throwable ) {
+                    throw new RuntimeException( "Could not read ${query} partitioned by ${partitionColumn}", (Throwable)item )
+                } else {
+                    for( Map row : (List<Map>)item ) {
+                        track( row )
+                        pipeline.process( row, line++ )
+                    }
+                }
             }
-            pipeline.process( result, line )
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private void read( Connection connection, String sql, List<Object> params, Schema schema, Collection<String> columns, Closure<Void> each ) {
+        boolean autoCommit = connection.autoCommit
+        if( fetchSize > 0 && autoCommit ) connection.autoCommit = false
+        try {
+            PreparedStatement statement = connection.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY )
+            try {
+                if( fetchSize != 0 ) statement.fetchSize = fetchSize
+                for( int i = 0; i < params.size(); i++ ) {
+                    statement.setObject( i + 1, params[i] )
+                }
+                ResultSet rs = statement.executeQuery()
+                try {
+                    ResultSetReader reader = new ResultSetReader( schema, rs.metaData, columns )
+                    while( rs.next() ) {
+                        each( reader.read( rs ) )
+                    }
+                } finally {
+                    rs.close()
+                }
+            } finally {
+                statement.close()
+            }
+        } finally {
+            if( connection.autoCommit != autoCommit ) connection.autoCommit = autoCommit
+        }
+    }
+
+    /**
+     * @return the projection plus the columns needed to resume or track the watermark, or null for every column
+     */
+    private Collection<String> getReadColumns() {
+        if( projection == null ) return null
+        Collection<String> columns = new LinkedHashSet<String>( projection )
+        if( resumeColumn ) columns << resumeColumn
+        if( incrementalColumn ) columns << incrementalColumn
+        return columns
+    }
+
+    private void track( Map row ) {
+        if( !incrementalColumn ) return
+        Object value = row[ incrementalColumn ]
+        if( value != null && (highest == null || ((Comparable)value) > highest) ) highest = value
+    }
+
+    private Connection openConnection() {
+        if( db.dataSource ) return db.dataSource.connection
+        return DriverManager.getConnection( url, username, password )
+    }
+
+    /**
+     * Replaces the GString's values with ? parameters.  Like {@link Sql}, quotes around a value ('${value}') are
+     * removed since the value becomes a parameter.
+     */
+    private static String toSql( GString query ) {
+        String[] strings = query.strings
+        StringBuilder sql = new StringBuilder()
+        for( int i = 0; i < strings.length; i++ ) {
+            String s = strings[i]
+            if( i > 0 && s.startsWith("'") && strings[i - 1].endsWith("'") ) s = s.substring( 1 )
+            if( i < query.valueCount && s.endsWith("'") && i + 1 < strings.length && strings[i + 1].startsWith("'") ) s = s.substring( 0, s.length() - 1 )
+            sql.append( s )
+            if( i < query.valueCount ) sql.append( "?" )
+        }
+        return sql.toString()
+    }
+
+    private static class Range {
+        final String sql
+        final List<Object> params
+
+        Range(CharSequence sql, List<Object> params) {
+            this.sql = sql.toString()
+            this.params = params
         }
     }
 }
@@ -0,0 +1,191 @@
+package gratum.source
+
+import gratum.etl.Pipeline
+import gratum.etl.Schema
+import gratum.etl.SchemaRow
+import gratum.json.JsonParser
+import gratum.json.JsonParser.Token
+import gratum.util.Utilities
+import groovy.transform.CompileStatic
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPInputStream
+
+/**
+ * Streams rows out of JSON using the incremental {@link gratum.json.JsonParser}, so only the row being read is held in
+ * memory no matter how large the document is.  Each object in a top level array becomes a row:
+ *
+ * <pre>
+ *     json("orders.json").filter([status: "open"]).go()
+ * </pre>
+ *
+ * Newline delimited JSON (NDJSON / JSON Lines), or any series of top level objects, produces a row per object:
+ *
+ * <pre>
+ *     json("events.ndjson.gz").go()
+ * </pre>
+ *
+ * An array nested inside a document is read by giving the dot separated path of field names leading to it.  Every
+ * other part of the document is skipped without being built:
+ *
+ * <pre>
+ *     json("response.json", "data.items").printRow().go()
+ * </pre>
+ *
+ * If the value at the path is an object instead of an array it's a single row.  Gzipped input is detected and
+ * decompressed automatically.
+ */
+class JsonSource extends AbstractSource implements ProjectableSource, FingerprintedSource {
+
+    Closure<Reader> open
+    String[] path
+    Set<String> projection
+    File file
+
+    JsonSource(String name, String path, Closure<Reader> open) {
+        this.name = name
+        this.path = path ? path.split("\\.") : new String[0]
+        this.open = open
+    }
+
+    JsonSource(File file, String path = null) {
+        this( file.name, path, { -> reader( new FileInputStream( file ) ) } )
+        this.file = file
+    }
+
+    public static JsonSource of(File file, String path = null) {
+        return new JsonSource( file, path )
+    }
+
+    public static JsonSource of(String filename, String path = null) {
+        return of( new File( filename ), path )
+    }
+
+    public static Pipeline json( File file, String path = null ) {
+        return new JsonSource( file, path ).into()
+    }
+
+    public static Pipeline json( String filename, String path = null ) {
+        return new JsonSource( new File( filename ), path ).into()
+    }
+
+    public static Pipeline json( String name, InputStream stream, String path = null ) {
+        return new JsonSource( name, path, { -> reader( stream ) } ).into()
+    }
+
+    /**
+     * @return a UTF-8 Reader over the stream, decompressing it if it starts with the gzip header.
+     */
+    static Reader reader( InputStream stream ) {
+        BufferedInputStream input = new BufferedInputStream( stream, 64 * 1024 )
+        input.mark( 2 )
+        int b1 = input.read()
+        int b2 = input.read()
+        input.reset()
+        InputStream decoded = b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream( input, 64 * 1024 ) : input
+        return new InputStreamReader( decoded, StandardCharsets.UTF_8 )
+    }
+
+    /**
+     * Only keeps the given fields of each row.  The values of other fields are skipped without being built.
+     */
+    @Override
+    void project(Collection<String> columns) {
+        this.projection = columns != null ? new HashSet<String>( columns ) : null
+    }
+
+    @Override
+    String getFingerprint() {
+        return file ? "json ${path.join('.')}\n${Utilities.fingerprint( file )}" : null
+    }
+
+    @Override
+    void start(Pipeline pipeline) {
+        JsonParser parser = new JsonParser( open.call() )
+        try {
+            Reading reading = new Reading( name, parser, path, projection, pipeline )
+            Token token
+            while( (token = parser.next()) != Token.END ) {
+                if( !reading.emit( token, 0 ) ) break
+            }
+        } finally {
+            parser.close()
+        }
+    }
+
+    /**
+     * Reads rows from a document.  The parser can be changed between documents to read several documents into the
+     * same Pipeline (ie the pages of {@link HttpSource}), keeping the line numbers and schema.
+     */
+    @CompileStatic
+    static class Reading {
+        final String name
+        JsonParser parser
+        final String[] path
+        final Set<String> projection
+        final Pipeline pipeline
+        final Schema schema = new Schema()
+        int line = 1
+
+        Reading(String name, JsonParser parser, String[] path, Set<String> projection, Pipeline pipeline) {
+            this.name = name
+            this.parser = parser
+            this.path = path
+            this.projection = projection
+            this.pipeline = pipeline
+        }
+
+        /**
+         * Follows the path from the given token and sends the rows at the end of it to the Pipeline.
+         *
+         * @return false if the Pipeline asked to stop
+         */
+        boolean emit( Token token, int level ) {
+            if( level < path.length ) {
+                if( token == Token.START_OBJECT ) {
+                    while( parser.next() != Token.END_OBJECT ) {
+                        String field = parser.text
+                        Token value = parser.next()
+                        if( field == path[level] ) {
+                            if( !emit( value, level + 1 ) ) return false
+                        } else {
+                            parser.skipValue( value )
+                        }
+                    }
+                } else if( token == Token.START_ARRAY ) {
+                    Token element
+                    while( (element = parser.next()) != Token.END_ARRAY ) {
+                        if( !emit( element, level ) ) return false
+                    }
+                }
+                return true
+            }
+
+            if( token == Token.START_ARRAY ) {
+                Token element
+                while( (element = parser.next()) != Token.END_ARRAY ) {
+                    if( element != Token.START_OBJECT ) throw new IOException( "Expected an object in ${name} at offset ${parser.offset} but was ${element}" )
+                    if( pipeline.process( readRow(), line++ ) ) return false
+                }
+                return true
+            } else if( token == Token.START_OBJECT ) {
+                return !pipeline.process( readRow(), line++ )
+            }
+            throw new IOException( "Expected an object or array in ${name} at offset ${parser.offset} but was ${token}" )
+        }
+
+        SchemaRow readRow() {
+            SchemaRow row = new SchemaRow( schema )
+            while( parser.next() != Token.END_OBJECT ) {
+                String field = parser.text
+                Token value = parser.next()
+                if( projection != null && !projection.contains( field ) ) {
+                    parser.skipValue( value )
+                } else {
+                    row.put( field, parser.readValue( value ) )
+                }
+            }
+            return row
+        }
+    }
+}
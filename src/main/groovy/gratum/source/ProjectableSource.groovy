@@ -0,0 +1,15 @@
+package gratum.source
+
+/**
+ * A Source that can skip reading the columns a Pipeline doesn't use.  An optimized Pipeline (see
+ * {@link gratum.etl.Pipeline#optimize()}) tells its Source which columns it needs before starting it.
+ */
+interface ProjectableSource {
+
+    /**
+     * Only read the given columns from now on.  Columns that don't exist in the source are ignored.
+     *
+     * @param columns the columns the Pipeline uses
+     */
+    void project(Collection<String> columns)
+}
@@ -0,0 +1,25 @@
+package gratum.source
+
+/**
+ * A Source that can start reading again from where a previous run left off (see
+ * {@link gratum.etl.Pipeline#checkpoint(java.util.Map)}).
+ */
+interface ResumableSource {
+
+    /**
+     * Called before {@link Source#start(gratum.etl.Pipeline)} when the Pipeline is checkpointed.
+     *
+     * @param position a position returned by {@link #getPosition()} to skip every row up to and including it, or
+     * null to read from the beginning.
+     */
+    void resumeFrom(Object position)
+
+    /**
+     * Only called from within {@link gratum.etl.Pipeline#process(java.util.Map, int)} on the thread running the
+     * Source.
+     *
+     * @return where the row being processed ends.  It's written with {@link gratum.etl.RowOutputStream} so it must be
+     * a value it can write (ie a Number, String, Date, List or Map).
+     */
+    Object getPosition()
+}
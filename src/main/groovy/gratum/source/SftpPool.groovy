@@ -0,0 +1,110 @@
+package gratum.source
+
+import com.jcraft.jsch.ChannelSftp
+import com.jcraft.jsch.Session
+
+/**
+ * A pool of SFTP connections to the same server used by {@link SshSource} to download several files at once.  Each
+ * connection is its own SSH session with one SFTP channel, so every transfer gets its own TCP window instead of
+ * sharing one.  Connections are opened as they're needed up to the size of the pool.
+ */
+class SftpPool implements Closeable {
+
+    static class Connection {
+        final Session session
+        final ChannelSftp channel
+
+        Connection(Session session, ChannelSftp channel) {
+            this.session = session
+            this.channel = channel
+        }
+
+        boolean isConnected() {
+            return session.connected && channel.connected
+        }
+
+        void disconnect() {
+            channel.disconnect()
+            session.disconnect()
+        }
+    }
+
+    final SshSource source
+    final int size
+
+    private final Deque<Connection> idle = new ArrayDeque<>()
+    private final List<Connection> open = []
+    private boolean closed = false
+
+    SftpPool(SshSource source, int size) {
+        this.source = source
+        this.size = size
+    }
+
+    /**
+     * @return an idle connection, a new connection if the pool isn't full, otherwise waits for one to be released
+     */
+    Connection borrow() {
+        synchronized( this ) {
+            while( true ) {
+                if( closed ) throw new IllegalStateException( "The connections to ${source.name} are closed" )
+                if( idle ) return idle.pop()
+                if( open.size() < size ) break
+                wait()
+            }
+            // reserve the slot while connecting outside of the lock
+            open << null
+        }
+        Connection connection = null
+        try {
+            Session session = source.connect()
+            ChannelSftp channel = (ChannelSftp)session.openChannel("sftp")
+            channel.connect()
+            connection = new Connection( session, channel )
+            return connection
+        } finally {
+            synchronized( this ) {
+                open.remove( (Object)null )
+                if( closed ) {
+                    connection?.disconnect()
+                } else if( connection ) {
+                    open << connection
+                }
+                notifyAll()
+            }
+        }
+    }
+
+    /**
+     * Returns the connection to the pool, or drops it if it was disconnected.
+     */
+    synchronized void release(Connection connection) {
+        if( closed || !connection.connected ) {
+            discard( connection )
+        } else {
+            idle.push( connection )
+            notifyAll()
+        }
+    }
+
+    /**
+     * Disconnects a connection that failed so a new one is opened in its place.
+     */
+    synchronized void discard(Connection connection) {
+        open.remove( connection )
+        connection.disconnect()
+        notifyAll()
+    }
+
+    /**
+     * Disconnects every connection, including the ones in use, which fails their transfers.
+     */
+    @Override
+    synchronized void close() {
+        closed = true
+        open.findAll { it != null }*.disconnect()
+        open.clear()
+        idle.clear()
+        notifyAll()
+    }
+}
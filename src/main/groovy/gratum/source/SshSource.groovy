@@ -5,6 +5,16 @@ import com.jcraft.jsch.JSch
 import com.jcraft.jsch.Session
 import com.jcraft.jsch.SftpATTRS
 import gratum.etl.Pipeline
+import gratum.util.DeleteOnCloseInputStream
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * SshSource allows you to connect to a remote SSH server and download one or more paths.  Paths can be either a directory
@@ -40,8 +50,26 @@ import gratum.etl.Pipeline
  *   ...
  *   .go()
  * </code>
+ *
+ * Downloading many files over a slow link:
+ *
+ * <code>
+ * ssh( host )
+ *   .knownHosts( knownHostFile )
+ *   .authPass( username, password )
+ *   .download( "/outbound" )
+ *   .concurrency( 8 )
+ *   .into()
+ *   ...
+ *   .go()
+ * </code>
+ *
+ * With concurrency the files are downloaded over a pool of connections (see {@link SftpPool}) ahead of the Pipeline
+ * into memory, or spool files for files larger than the memory limit (see {@link #spool(java.io.File, long)}), so a
+ * slow step doesn't stall the transfers.  Rows are still produced in the order the files were listed.  A transfer
+ * that fails because the connection dropped is resumed from where it stopped on a new connection.
  */
-class SshSource extends AbstractSource {
+class SshSource extends AbstractSource implements FingerprintedSource {
 
     JSch jsch
     String host
@@ -49,6 +77,11 @@ class SshSource extends AbstractSource {
     String username
     String password
     List<String> paths
+    int concurrency = 1
+    int prefetch = 0
+    File spoolDirectory
+    long memoryLimit = 1024 * 1024
+    int retries = 3
 
     SshSource(String host, int port) {
         this.name = host + ":" + port
@@ -83,29 +116,75 @@ class SshSource extends AbstractSource {
         return this
     }
 
+    /**
+     * Downloads up to connections files at the same time each over its own connection, and downloads up to prefetch
+     * files ahead of the Pipeline.  Each row's stream is read from memory or a spool file, and is only valid until
+     * the next row so the Pipeline shouldn't be run in parallel.
+     *
+     * @param connections the number of connections to the server
+     * @param prefetch the number of files downloaded ahead of the Pipeline (defaults to connections * 2)
+     * @return this SshSource
+     */
+    public SshSource concurrency(int connections, int prefetch = connections * 2) {
+        this.concurrency = connections
+        this.prefetch = Math.max( prefetch, connections )
+        return this
+    }
+
+    /**
+     * Where files downloaded ahead of the Pipeline are kept.  Files up to memoryLimit bytes are kept in memory,
+     * larger files are written to spool files in the directory, and deleted once they've been processed.
+     *
+     * @param directory the directory for spool files (defaults to java.io.tmpdir)
+     * @param memoryLimit the largest file kept in memory (defaults to 1MB)
+     * @return this SshSource
+     */
+    public SshSource spool(File directory, long memoryLimit = 1024 * 1024) {
+        this.spoolDirectory = directory
+        this.memoryLimit = memoryLimit
+        return this
+    }
+
+    /**
+     * @param retries the number of times a transfer is resumed after its connection drops (defaults to 3)
+     * @return this SshSource
+     */
+    public SshSource retries(int retries) {
+        this.retries = retries
+        return this
+    }
+
+    /**
+     * The host and the paths downloaded.  Changes to the remote files can't be seen without connecting, so a cached
+     * download is only read again once the paths change.
+     */
     @Override
-    void start(Pipeline pipeline) {
+    String getFingerprint() {
+        return "ssh ${username}@${host}:${port}\n${paths?.join('\n')}"
+    }
+
+    Session connect() {
         Session jschSession = jsch.getSession(username, host, port)
         if( password ) jschSession.setPassword( password )
         jschSession.setConfig("PreferredAuthentications", "publickey,password")
         jschSession.connect()
+        return jschSession
+    }
+
+    @Override
+    void start(Pipeline pipeline) {
+        if( concurrency > 1 ) {
+            startConcurrent( pipeline )
+            return
+        }
+        Session jschSession = connect()
         try {
             ChannelSftp channel = (ChannelSftp)jschSession.openChannel("sftp")
             channel.connect()
             try {
                 int line = 1
-                paths.each { String path ->
-                    SftpATTRS attributes = channel.stat(path)
-                    if( attributes.isDir() ) {
-                        Vector<ChannelSftp.LsEntry> directory = channel.ls( path )
-                        directory.each { ChannelSftp.LsEntry entry ->
-                            pipeline.process( [ host: host, port: port, filename: entry.filename, stream: channel.get(path + "/" + entry.filename) ], line++ )
-                        }
-                    } else {
-                        Vector<ChannelSftp.LsEntry> entry = channel.ls( path )
-                        String filename = ((ChannelSftp.LsEntry)entry.first()).filename
-                        pipeline.process( [host: host, port: port, filename: filename, stream: channel.get(path) ], line++)
-                    }
+                list( channel ).each { Map remote ->
+                    pipeline.process( [host: host, port: port, filename: remote.filename, stream: channel.get( (String)remote.path )], line++ )
                 }
             } finally {
                 channel.disconnect()
@@ -114,4 +193,119 @@ class SshSource extends AbstractSource {
             jschSession.disconnect()
         }
     }
+
+    private void startConcurrent(Pipeline pipeline) {
+        SftpPool pool = new SftpPool( this, concurrency )
+        List<File> spooled = Collections.synchronizedList( new ArrayList<File>() )
+        AtomicInteger count = new AtomicInteger()
+        ExecutorService executor = Executors.newFixedThreadPool( concurrency, new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable r) {
+                Thread thread = new Thread( r, "gratum-sftp-${host}-${count.incrementAndGet()}" )
+                thread.setDaemon( true )
+                return thread
+            }
+        })
+        try {
+            List<Map> files = list( pool )
+            Deque<Map> window = new ArrayDeque<>()
+            Iterator<Map> remaining = files.iterator()
+            int line = 1
+            boolean halted = false
+            while( !halted && (remaining.hasNext() || window) ) {
+                while( remaining.hasNext() && window.size() < prefetch ) {
+                    Map remote = remaining.next()
+                    window << [remote: remote, download: executor.submit( { transfer( pool, remote, spooled ) } as Callable<Object> )]
+                }
+                Map next = window.poll()
+                Object downloaded
+                try {
+                    downloaded = ((Future<Object>)next.download).get()
+                } catch( ExecutionException ex ) {
+                    throw ex.cause
+                }
+                InputStream stream = downloaded instanceof File ? new DeleteOnCloseInputStream( (File)downloaded ) : new ByteArrayInputStream( (byte[])downloaded )
+                try {
+                    halted = pipeline.process( [host: host, port: port, filename: next.remote.filename, stream: stream], line++ )
+                } finally {
+                    stream.close()
+                }
+            }
+        } finally {
+            // disconnecting fails any transfers still running
+            pool.close()
+            executor.shutdownNow()
+            executor.awaitTermination( 1, TimeUnit.MINUTES )
+            new ArrayList<File>( spooled )*.delete()
+        }
+    }
+
+    private List<Map> list(SftpPool pool) {
+        SftpPool.Connection connection = pool.borrow()
+        try {
+            return list( connection.channel )
+        } finally {
+            pool.release( connection )
+        }
+    }
+
+    /**
+     * @return the path, filename, and size of every file to download.  Directories are listed, but not recursed into.
+     */
+    private List<Map> list(ChannelSftp channel) {
+        List<Map> files = []
+        paths.each { String path ->
+            SftpATTRS attributes = channel.stat(path)
+            if( attributes.isDir() ) {
+                Vector<ChannelSftp.LsEntry> directory = channel.ls( path )
+                directory.each { ChannelSftp.LsEntry entry ->
+                    if( !entry.attrs.isDir() ) files << [path: path + "/" + entry.filename, filename: entry.filename, size: entry.attrs.size]
+                }
+            } else {
+                Vector<ChannelSftp.LsEntry> entry = channel.ls( path )
+                files << [path: path, filename: ((ChannelSftp.LsEntry)entry.first()).filename, size: attributes.size]
+            }
+        }
+        return files
+    }
+
+    /**
+     * Downloads the file into memory or a spool file.  If the connection drops the transfer is resumed from the
+     * bytes already received on a new connection.
+     *
+     * @return the bytes of the file or the spool file
+     */
+    private Object transfer(SftpPool pool, Map remote, List<File> spooled) {
+        ByteArrayOutputStream memory = null
+        File spool = null
+        if( (remote.size as long) <= memoryLimit ) {
+            memory = new ByteArrayOutputStream( remote.size as int )
+        } else {
+            spool = File.createTempFile( "gratum-sftp-", ".part", spoolDirectory )
+            spooled << spool
+        }
+        int attempts = 0
+        while( true ) {
+            long transferred = memory != null ? memory.size() : spool.length()
+            SftpPool.Connection connection = pool.borrow()
+            try {
+                OutputStream out = memory ?: new FileOutputStream( spool, true )
+                try {
+                    connection.channel.get( (String)remote.path, out, null, transferred > 0 ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE, transferred )
+                } finally {
+                    if( spool ) out.close()
+                }
+                pool.release( connection )
+                return memory != null ? memory.toByteArray() : spool
+            } catch( Exception ex ) {
+                if( connection.connected ) {
+                    // the connection is fine so the file itself can't be read
+                    pool.release( connection )
+                    throw ex
+                }
+                pool.discard( connection )
+                if( ++attempts > retries ) throw ex
+            }
+        }
+    }
 }
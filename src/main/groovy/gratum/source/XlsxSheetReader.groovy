@@ -0,0 +1,145 @@
+package gratum.source
+
+import gratum.etl.Schema
+import gratum.etl.SchemaRow
+import groovy.transform.CompileStatic
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable
+import org.xml.sax.Attributes
+import org.xml.sax.SAXException
+import org.xml.sax.helpers.DefaultHandler
+
+import java.time.LocalDateTime
+import java.time.LocalTime
+
+/**
+ * Reads the rows of a worksheet's XML with their native values instead of formatting them to text like
+ * {@link org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler}.  Numbers are Doubles, booleans are Booleans, numbers
+ * with a date style are LocalDates (or LocalDateTimes when they have a time), and everything else is a String.  The
+ * first row is the header, and cells are matched to their header by their column so empty cells don't shift the
+ * columns after them.
+ */
+@CompileStatic
+class XlsxSheetReader extends DefaultHandler {
+
+    /**
+     * Thrown to stop reading once the Pipeline asks to stop.
+     */
+    static class StopReading extends SAXException {
+        StopReading() {
+            super( "Stopped reading the sheet" )
+        }
+    }
+
+    final ReadOnlySharedStringsTable strings
+    final boolean[] dateStyles
+    final Set<String> projection
+    final Closure<Boolean> emit
+
+    private final List<String> headers = []
+    private boolean headerRow = true
+    private Schema schema
+    private SchemaRow current
+    private int rowNum = 0
+    private int column = -1
+    private String type
+    private int style
+    private boolean capture = false
+    private final StringBuilder text = new StringBuilder()
+
+    /**
+     * @param strings the workbook's shared strings
+     * @param dateStyles true for each cell style index whose number format is a date
+     * @param projection the only columns to keep, or null for all of them
+     * @param emit called with each row and its line number, returns true to stop reading
+     */
+    XlsxSheetReader(ReadOnlySharedStringsTable strings, boolean[] dateStyles, Set<String> projection, Closure<Boolean> emit) {
+        this.strings = strings
+        this.dateStyles = dateStyles
+        this.projection = projection
+        this.emit = emit
+    }
+
+    // switch statements are dispatched dynamically even when compiled statically, so elements are compared directly
+    @Override
+    void startElement(String uri, String localName, String qName, Attributes attributes) {
+        String element = localName ?: qName
+        if( element == "c" ) {
+            String ref = attributes.getValue("r")
+            column = ref ? column( ref ) : column + 1
+            type = attributes.getValue("t")
+            String s = attributes.getValue("s")
+            style = s ? Integer.parseInt( s ) : 0
+            text.setLength( 0 )
+        } else if( element == "v" || element == "t" ) {
+            capture = true
+        } else if( element == "row" ) {
+            String r = attributes.getValue("r")
+            rowNum = r ? Integer.parseInt( r ) - 1 : rowNum + 1
+            column = -1
+            if( !headerRow ) current = new SchemaRow( schema )
+        }
+    }
+
+    @Override
+    void characters(char[] ch, int start, int length) {
+        if( capture ) text.append( ch, start, length )
+    }
+
+    @Override
+    void endElement(String uri, String localName, String qName) {
+        String element = localName ?: qName
+        if( element == "v" || element == "t" ) {
+            capture = false
+        } else if( element == "c" ) {
+            Object value = value()
+            if( headerRow ) {
+                while( headers.size() <= column ) headers.add( null )
+                headers.set( column, value?.toString() )
+            } else if( column < headers.size() ) {
+                String header = headers.get( column )
+                if( header != null && (projection == null || projection.contains( header )) ) current.put( header, value )
+            }
+        } else if( element == "row" ) {
+            if( headerRow ) {
+                headerRow = false
+                schema = new Schema( headers.findAll { String header -> header != null && (projection == null || projection.contains( header )) } )
+            } else if( emit.call( current, rowNum ) ) {
+                throw new StopReading()
+            }
+        }
+    }
+
+    private Object value() {
+        if( text.length() == 0 ) return null
+        String raw = text.toString()
+        if( type == null || type == "n" ) {
+            double number = Double.parseDouble( raw )
+            if( style < dateStyles.length && dateStyles[style] && DateUtil.isValidExcelDate( number ) ) {
+                LocalDateTime date = DateUtil.getLocalDateTime( number )
+                return date.toLocalTime() == LocalTime.MIDNIGHT ? date.toLocalDate() : date
+            }
+            return number
+        } else if( type == "s" ) {
+            return strings.getEntryAt( Integer.parseInt( raw ) )
+        } else if( type == "b" ) {
+            return raw == "1"
+        } else {
+            // inlineStr, str (formula results), e (errors), and d (ISO 8601 dates) are kept as text
+            return raw
+        }
+    }
+
+    /**
+     * @return the zero based column of a cell reference (ie 2 for C7)
+     */
+    static int column(String ref) {
+        int column = 0
+        for( int i = 0; i < ref.length(); i++ ) {
+            char c = ref.charAt( i )
+            if( c < ('A' as char) || c > ('Z' as char) ) break
+            column = column * 26 + (c - ('A' as char) + 1)
+        }
+        return column - 1
+    }
+}
@@ -1,25 +1,60 @@
 package gratum.source
 
 import gratum.etl.Pipeline
+import gratum.etl.Schema
+import gratum.etl.SchemaRow
+import gratum.util.Utilities
 import org.apache.poi.openxml4j.opc.OPCPackage
+import org.apache.poi.openxml4j.opc.PackageAccess
 import org.apache.poi.ss.usermodel.DataFormatter
+import org.apache.poi.ss.usermodel.DateUtil
 import org.apache.poi.util.XMLHelper
 import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable
 import org.apache.poi.xssf.eventusermodel.XSSFReader
 import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler
 import org.apache.poi.xssf.model.StylesTable
+import org.apache.poi.xssf.usermodel.XSSFCellStyle
 import org.apache.poi.xssf.usermodel.XSSFComment
 import org.xml.sax.InputSource
 import org.xml.sax.XMLReader
 import org.xml.sax.ContentHandler
 
 import javax.xml.parsers.ParserConfigurationException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
-class XlsxSource extends AbstractSource {
+/**
+ * Reads the rows of an xlsx workbook with a streaming SAX parser.  The first row of a sheet is its header.  By default
+ * the first sheet is read, or the sheet given, or the sheets given to {@link #sheets(java.lang.String [ ])}.
+ *
+ * By default every value is the text Excel would display (see {@link DataFormatter}).  In typed mode
+ * (see {@link #typed(boolean)}) values are read as their native types instead, which skips formatting and
+ * re-parsing them:
+ *
+ * <pre>
+ *     xlsx( new File("monthly.xlsx") ).sheets( "Orders", "Returns" ).typed().parallel( 2 ).into()
+ *         ...
+ *         .go()
+ * </pre>
+ *
+ * A workbook given as a File is opened with random access so only the parts being read are decompressed, while one
+ * given as an InputStream has to be buffered in memory.
+ */
+class XlsxSource extends AbstractSource implements ProjectableSource, FingerprintedSource {
 
     File excelFile
     InputStream stream
     String sheet
+    List<String> sheets
+    Set<String> projection
+    boolean typed = false
+    int threads = 1
 
     XlsxSource(String name, InputStream stream, String sheet = null) {
         this.name = name
@@ -42,36 +77,89 @@ class XlsxSource extends AbstractSource {
         return new XlsxSource( file, sheet )
     }
 
+    /**
+     * Reads each of the given sheets, in the order they're in the workbook.
+     *
+     * @return this XlsxSource
+     */
+    public XlsxSource sheets(String... names) {
+        this.sheets = names.toList()
+        return this
+    }
+
+    /**
+     * Reads native values instead of formatted text: numbers are Doubles, booleans are Booleans, numbers with a
+     * date format are LocalDates (or LocalDateTimes if they have a time), and text is a String (see
+     * {@link XlsxSheetReader}).
+     *
+     * @return this XlsxSource
+     */
+    public XlsxSource typed(boolean typed = true) {
+        this.typed = typed
+        return this
+    }
+
+    /**
+     * Parses up to threads sheets at the same time when reading several sheets.  Each sheet is parsed on its own
+     * thread, and its rows are handed to the Pipeline one at a time, so rows from different sheets arrive interleaved.
+     *
+     * @return this XlsxSource
+     */
+    public XlsxSource parallel(int threads) {
+        this.threads = threads
+        return this
+    }
+
+    @Override
+    String getFingerprint() {
+        return excelFile ? "xlsx ${sheets ? sheets.join(',') : (sheet ?: '')}${typed ? ' typed' : ''}\n${Utilities.fingerprint( excelFile )}" : null
+    }
+
+    /**
+     * Only keeps the given columns of each row.
+     */
+    @Override
+    void project(Collection<String> columns) {
+        this.projection = columns != null ? new HashSet<String>( columns ) : null
+    }
+
     @Override
     void start(Pipeline pipeline) {
         OPCPackage ocp = null
         try {
-            ocp = OPCPackage.open( stream ?: excelFile.newInputStream() )
+            ocp = excelFile ? OPCPackage.open( excelFile, PackageAccess.READ ) : OPCPackage.open( stream )
 
             ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(ocp)
             XSSFReader xssfReader = new XSSFReader(ocp)
             StylesTable styles = xssfReader.getStylesTable()
+            Map<String,InputStream> selected = new LinkedHashMap<>()
             XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator) xssfReader.getSheetsData()
             while( iter.hasNext() ) {
                 InputStream is = iter.next()
                 String name = iter.getSheetName()
-                if( name == this.sheet || this.sheet == null) {
-                    DataFormatter formatter = new DataFormatter()
-                    InputSource sheetSource = new InputSource(is)
-                    try {
-                        XMLReader sheetParser = XMLHelper.newXMLReader()
-                        XslxSheetHandler sheetHandler = new XslxSheetHandler( pipeline )
-                        ContentHandler handler = new XSSFSheetXMLHandler(styles, null, strings, sheetHandler, formatter, false)
-                        sheetParser.setContentHandler(handler)
-                        sheetParser.parse(sheetSource)
-                    } catch(ParserConfigurationException e) {
-                        throw new RuntimeException("SAX parser configuration error: ${e.getMessage()}", e)
-                    }
-                    if( sheet == null ) sheet = name // prevent anymore sheets
+                boolean wanted = sheets != null ? sheets.contains( name ) : (sheet != null ? name == sheet : selected.isEmpty())
+                if( wanted ) {
+                    selected[name] = is
+                } else {
+                    is.close()
+                }
+            }
+            boolean[] dateStyles = typed ? dateStyles( styles ) : null
+
+            if( threads > 1 && selected.size() > 1 ) {
+                readConcurrently( pipeline, selected, styles, strings, dateStyles )
+            } else {
+                Closure<Boolean> emit = { Map row, int line -> pipeline.process( row, line ) }
+                for( Map.Entry<String,InputStream> current : selected.entrySet() ) {
+                    if( !readSheet( current.value, styles, strings, dateStyles, emit ) ) break
                 }
             }
         } finally {
-            ocp?.close()
+            if( excelFile ) {
+                ocp?.revert()
+            } else {
+                ocp?.close()
+            }
         }
 /*
         Workbook wb = null
@@ -129,17 +217,95 @@ class XlsxSource extends AbstractSource {
 */
     }
 
+    private void readConcurrently(Pipeline pipeline, Map<String,InputStream> selected, StylesTable styles, ReadOnlySharedStringsTable strings, boolean[] dateStyles) {
+        AtomicBoolean stopped = new AtomicBoolean()
+        Object lock = new Object()
+        Closure<Boolean> emit = { Map row, int line ->
+            synchronized( lock ) {
+                if( stopped.get() ) return true
+                try {
+                    if( pipeline.process( row, line ) ) stopped.set( true )
+                } catch( Throwable t ) {
+                    stopped.set( true )
+                    throw t
+                }
+                return stopped.get()
+            }
+        }
+        AtomicInteger count = new AtomicInteger()
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, selected.size() ), new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable r) {
+                Thread thread = new Thread( r, "gratum-xlsx-${count.incrementAndGet()}" )
+                thread.setDaemon( true )
+                return thread
+            }
+        })
+        try {
+            List<Future<Boolean>> futures = selected.values().collect { InputStream is ->
+                executor.submit( { readSheet( is, styles, strings, dateStyles, emit ) } as Callable<Boolean> )
+            }
+            for( Future<Boolean> future : futures ) {
+                try {
+                    future.get()
+                } catch( ExecutionException ex ) {
+                    stopped.set( true )
+                    throw ex.cause
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * Parses a sheet, and sends each row to emit.
+     *
+     * @return false if emit asked to stop
+     */
+    private boolean readSheet(InputStream is, StylesTable styles, ReadOnlySharedStringsTable strings, boolean[] dateStyles, Closure<Boolean> emit) {
+        try {
+            XMLReader sheetParser = XMLHelper.newXMLReader()
+            ContentHandler handler = typed ?
+                    new XlsxSheetReader( strings, dateStyles, projection, emit ) :
+                    new XSSFSheetXMLHandler(styles, null, strings, new XslxSheetHandler( emit ), new DataFormatter(), false)
+            sheetParser.setContentHandler(handler)
+            sheetParser.parse(new InputSource(is))
+            return true
+        } catch( XlsxSheetReader.StopReading ignore ) {
+            return false
+        } catch(ParserConfigurationException e) {
+            throw new RuntimeException("SAX parser configuration error: ${e.getMessage()}", e)
+        } finally {
+            is.close()
+        }
+    }
+
+    /**
+     * @return true for each cell style whose number format is a date
+     */
+    private static boolean[] dateStyles(StylesTable styles) {
+        boolean[] dates = new boolean[ styles.numCellStyles ]
+        for( int i = 0; i < dates.length; i++ ) {
+            XSSFCellStyle style = styles.getStyleAt( i )
+            String format = style?.dataFormatString
+            dates[i] = format != null && DateUtil.isADateFormat( style.dataFormat, format )
+        }
+        return dates
+    }
+
     class XslxSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
 
         int headerRow = -1
         List<String> headers
-        Pipeline pipeline
+        Schema schema
+        Closure<Boolean> emit
         Map current
         int col = 0
         int currentRow = 0
 
-        XslxSheetHandler(Pipeline pipeline) {
-            this.pipeline = pipeline
+        XslxSheetHandler(Closure<Boolean> emit) {
+            this.emit = emit
         }
 
         @Override
@@ -148,7 +314,7 @@ class XlsxSource extends AbstractSource {
                 headers = []
                 headerRow = rowNum
             } else {
-                current = [:]
+                current = new SchemaRow( schema )
             }
             currentRow = rowNum
             col = 0
@@ -157,15 +323,21 @@ class XlsxSource extends AbstractSource {
         @Override
         void endRow(int rowNum) {
             if( rowNum != headerRow ) {
-                pipeline.process( current, rowNum)
+                if( emit.call( current, rowNum ) ) throw new XlsxSheetReader.StopReading()
+            } else {
+                schema = new Schema( headers.findAll { it != null && (projection == null || projection.contains( it )) } )
             }
         }
 
         @Override
         void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // empty cells are skipped so use the cell's column rather than counting cells
+            if( cellReference ) col = XlsxSheetReader.column( cellReference )
             if( currentRow != headerRow ) {
-                current[ headers[col] ] = formattedValue
+                String header = col < headers.size() ? headers[col] : null
+                if( header != null && (projection == null || projection.contains( header )) ) current[ header ] = formattedValue
             } else {
+                while( headers.size() < col ) headers.add( null )
                 headers.add( formattedValue )
             }
             col++
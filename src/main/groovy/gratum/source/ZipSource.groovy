@@ -1,12 +1,16 @@
 package gratum.source
 
 import gratum.etl.Pipeline
+import gratum.util.Utilities
 
-import java.util.function.Consumer
 import java.util.zip.ZipEntry
 import java.util.zip.ZipFile
 
-class ZipSource extends AbstractSource {
+/**
+ * Produces a row for each entry in a zip file with the keys filename, file, entry, and stream.  Each entry is read
+ * with random access so the entries can be processed in parallel (see {@link #parallel(int)}).
+ */
+class ZipSource extends AbstractFileSource implements FingerprintedSource {
 
     File file
 
@@ -23,15 +27,20 @@ class ZipSource extends AbstractSource {
         return new ZipSource( zip )
     }
 
+    @Override
+    String getFingerprint() {
+        return "zip\n${Utilities.fingerprint( file )}"
+    }
+
     @Override
     void start(Pipeline pipeline) {
         int line = 1
         ZipFile zip = new ZipFile( file )
-        zip.stream().forEach( new Consumer<ZipEntry>() {
-            @Override
-            void accept(ZipEntry zipEntry) {
-                pipeline.process( [filename: zip.name, file: zip, entry: zipEntry, stream: zip.getInputStream(zipEntry)], line++ )
-            }
-        })
+        Enumeration<? extends ZipEntry> entries = zip.entries()
+        boolean halted = false
+        while( !halted && entries.hasMoreElements() ) {
+            ZipEntry zipEntry = entries.nextElement()
+            halted = pipeline.process( [filename: zip.name, file: zip, entry: zipEntry, stream: zip.getInputStream(zipEntry)], line++ )
+        }
     }
 }
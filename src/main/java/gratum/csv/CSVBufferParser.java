@@ -0,0 +1,383 @@
+package gratum.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses delimited text by scanning a large reusable char[] instead of reading a String per line.  Each record
+ * is described by the offsets of its fields within the buffer, and values are only turned into Strings when
+ * they are asked for.  Quoted fields may contain separators, escaped quotes ("") and real line breaks.
+ *
+ * The rows handed to {@link CSVReader#processRow(List, List)} are views over the buffer and are only valid for
+ * the duration of that call.  Copy them (ie new ArrayList&lt;&gt;(row)) if they need to be kept around.
+ */
+public class CSVBufferParser {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int RECORD = 1;
+    private static final int RESCAN = 2;
+
+    private final Reader reader;
+    private final char separator;
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    private int recordStart = 0;
+    private int recordEnd = 0;
+    private int fieldCount = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private long generation = 0;
+
+    private int lines = 1;
+    private long charOffset = 0;
+    private long byteOffset = -1;
+
+    public CSVBufferParser(Reader reader, char separator) {
+        this(reader, separator, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVBufferParser(Reader reader, char separator, int bufferSize) {
+        this.reader = reader;
+        this.separator = separator;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Counts the UTF-8 bytes consumed so {@link #getByteOffset()} can say where each record ends in the file (ie to
+     * start parsing again from that point later).
+     *
+     * @param start the byte offset in the file the Reader starts at
+     */
+    public void trackBytes( long start ) {
+        this.byteOffset = start;
+    }
+
+    /**
+     * Advances to the next non-empty record.
+     * @return true if a record was read, false if the end of the input was reached.
+     */
+    public boolean next() throws IOException {
+        generation++;
+        while( true ) {
+            if( position >= limit && !fill() ) return false;
+            char c = buffer[position];
+            if( c == '\n' || c == '\r' ) {
+                // skip blank lines
+                consumeLineBreak();
+                continue;
+            }
+            int result;
+            while( (result = scanRecord()) == RESCAN ) {
+                // the record straddled the end of the buffer, and now the buffer has been refilled
+            }
+            if( result == RECORD ) return true;
+        }
+    }
+
+    /**
+     * @return the number of fields in the current record.
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * Materializes the field at the given index of the current record.
+     */
+    public String get(int index) {
+        if( index < 0 || index >= fieldCount ) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fieldCount);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if( !escaped[index] ) return new String( buffer, start, length );
+        return unescape( start, ends[index] );
+    }
+
+    /**
+     * Returns a lazy List view of the current record.  The view is invalidated when {@link #next()} is called.
+     */
+    public List<String> row() {
+        return new Row( generation );
+    }
+
+    /**
+     * @return the text of the current record for diagnostic messages.
+     */
+    public String text() {
+        return new String( buffer, recordStart, Math.max( 0, recordEnd - recordStart ) );
+    }
+
+    /**
+     * @return the physical line number (1 based) the current record ended on.
+     */
+    public int getLine() {
+        return lines;
+    }
+
+    /**
+     * @return the number of chars consumed from the Reader, including line breaks, up to the end of the current record.
+     */
+    public long getCharOffset() {
+        return charOffset + position;
+    }
+
+    /**
+     * @return the byte offset in the file, including line breaks, of the end of the current record.  Only available
+     * after {@link #trackBytes(long)}.
+     */
+    public long getByteOffset() {
+        if( byteOffset < 0 ) throw new IllegalStateException( "trackBytes() wasn't called before parsing" );
+        return byteOffset + utf8Length( 0, position );
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Parses the whole input calling the callback in the same manner as {@link CSVFile#parse(CSVReader)}.  If
+     * headers is null the first record is used as the header.
+     * @return the number of rows processed
+     */
+    public int parse( List<String> headers, CSVReader callback ) throws IOException {
+        int rows = 1;
+        if( headers == null ) {
+            try {
+                if( next() ) {
+                    headers = new ArrayList<>( row() );
+                    callback.processHeaders( headers );
+                }
+                rows++;
+            } catch( Exception ex ) {
+                throw new IOException( "Could not process header " + lines + ": " + text(), ex );
+            }
+        }
+
+        try {
+            while( next() ) {
+                if( callback.processRow( headers, row() ) ) {
+                    return rows;
+                }
+                rows++;
+            }
+            return rows;
+        } catch( HaltPipelineException ex ) {
+            throw ex;
+        } catch( RuntimeException ex ) {
+            throw new RuntimeException( "Could not parse line " + rows + ": " + text(), ex );
+        } catch( Exception ex ) {
+            throw new IOException( "Could not process line " + rows + ": " + text(), ex );
+        } finally {
+            close();
+            callback.afterProcessing();
+        }
+    }
+
+    /**
+     * Scans the record starting at position recording where each field starts and ends.  If the record runs past
+     * the end of the buffer the buffer is compacted (or grown) and refilled and RESCAN is returned so the record
+     * is scanned again from its start.
+     */
+    private int scanRecord() throws IOException {
+        int start = position;
+        fieldCount = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        boolean escapes = false;
+        int newLines = 0;
+        int i = start;
+        while( true ) {
+            if( i >= limit ) {
+                if( !eof ) {
+                    if( !refill() ) eof = true;
+                    return RESCAN;
+                }
+                // last record without a trailing line break
+                if( fieldStart < i || quoted ) addField( fieldStart, i, quoted, escapes );
+                recordStart = start;
+                recordEnd = i;
+                position = i;
+                lines += newLines;
+                return RECORD;
+            }
+            char c = buffer[i];
+            if( c == '"' ) {
+                if( inQuotes && i + 1 < limit && buffer[i + 1] == '"' ) {
+                    escapes = true;
+                    i += 2;
+                    continue;
+                } else if( inQuotes && i + 1 >= limit && !eof ) {
+                    // can't tell if this quote is escaped until we see the next char
+                    if( !refill() ) eof = true;
+                    return RESCAN;
+                }
+                inQuotes = !inQuotes;
+                if( i == fieldStart ) {
+                    quoted = true;
+                } else if( !quoted ) {
+                    // quotes within an unquoted field are kept, but doubled quotes collapse
+                    escapes = true;
+                }
+            } else if( c == '\\' ) {
+                escapes = true;
+            } else if( inQuotes ) {
+                if( c == '\n' ) newLines++;
+            } else if( c == separator ) {
+                addField( fieldStart, i, quoted, escapes );
+                fieldStart = i + 1;
+                quoted = false;
+                escapes = false;
+            } else if( c == '\n' || c == '\r' ) {
+                if( c == '\r' && i + 1 >= limit && !eof ) {
+                    // can't tell if this is \r\n until we see the next char, and filling the buffer from the start
+                    // would overwrite this record
+                    if( !refill() ) eof = true;
+                    return RESCAN;
+                }
+                if( fieldStart < i || quoted ) addField( fieldStart, i, quoted, escapes );
+                recordStart = start;
+                recordEnd = i;
+                position = i;
+                lines += newLines;
+                consumeLineBreak();
+                return RECORD;
+            }
+            i++;
+        }
+    }
+
+    private void addField( int start, int end, boolean quoted, boolean escapes ) {
+        if( fieldCount == starts.length ) {
+            starts = Arrays.copyOf( starts, fieldCount * 2 );
+            ends = Arrays.copyOf( ends, fieldCount * 2 );
+            escaped = Arrays.copyOf( escaped, fieldCount * 2 );
+        }
+        if( quoted ) {
+            start++;
+            end = Math.max( start, end - 1 );
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = escapes;
+        fieldCount++;
+    }
+
+    /**
+     * Consumes the line break at position.  A \r at the end of the buffer refills it from the start, which is only
+     * safe when it isn't the end of a record still being read (see {@link #scanRecord()}).
+     */
+    private void consumeLineBreak() throws IOException {
+        char c = buffer[position++];
+        lines++;
+        if( c == '\r' ) {
+            if( position >= limit ) fill();
+            if( position < limit && buffer[position] == '\n' ) position++;
+        }
+    }
+
+    /**
+     * Reads more data into the buffer when everything in it has been consumed.
+     */
+    private boolean fill() throws IOException {
+        if( eof ) return false;
+        if( byteOffset >= 0 ) byteOffset += utf8Length( 0, limit );
+        charOffset += limit;
+        position = 0;
+        limit = 0;
+        int read = reader.read( buffer, 0, buffer.length );
+        if( read < 0 ) {
+            eof = true;
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    /**
+     * Moves the unconsumed portion of the buffer (starting at position) to the front, growing the buffer if the
+     * current record fills it, then reads more data after it.
+     */
+    private boolean refill() throws IOException {
+        int remaining = limit - position;
+        if( position == 0 && remaining == buffer.length ) {
+            buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+        } else {
+            if( byteOffset >= 0 ) byteOffset += utf8Length( 0, position );
+            System.arraycopy( buffer, position, buffer, 0, remaining );
+            charOffset += position;
+            position = 0;
+            limit = remaining;
+        }
+        int read = reader.read( buffer, limit, buffer.length - limit );
+        if( read < 0 ) return false;
+        limit += read;
+        return true;
+    }
+
+    /**
+     * The number of bytes the chars take in UTF-8.  Each half of a surrogate pair counts as 2 bytes so a pair split
+     * between buffers still adds up to 4.
+     */
+    private long utf8Length( int start, int end ) {
+        long length = end - start;
+        for( int i = start; i < end; i++ ) {
+            char c = buffer[i];
+            if( c >= 0x80 ) length += c < 0x800 || Character.isSurrogate( c ) ? 1 : 2;
+        }
+        return length;
+    }
+
+    private String unescape( int start, int end ) {
+        char[] out = new char[ end - start ];
+        int length = 0;
+        for( int i = start; i < end; i++ ) {
+            char c = buffer[i];
+            if( c == '\\' && i + 1 < end && buffer[i + 1] == 'n' ) {
+                out[length++] = '\n';
+                i++;
+            } else if( c == '"' && i + 1 < end && buffer[i + 1] == '"' ) {
+                out[length++] = '"';
+                i++;
+            } else {
+                out[length++] = c;
+            }
+        }
+        return new String( out, 0, length );
+    }
+
+    private class Row extends AbstractList<String> {
+        private final long rowGeneration;
+        private final String[] values = new String[ fieldCount ];
+
+        Row( long rowGeneration ) {
+            this.rowGeneration = rowGeneration;
+        }
+
+        @Override
+        public String get(int index) {
+            String value = values[index];
+            if( value == null ) {
+                if( rowGeneration != generation ) {
+                    throw new IllegalStateException("Row is no longer backed by the parse buffer.  Copy rows that need to be retained.");
+                }
+                value = CSVBufferParser.this.get( index );
+                values[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package gratum.csv;
 
 import gratum.csv.HaltPipelineException;
-import gratum.util.Utilities;
+import gratum.util.Hash128Set;
+import gratum.util.Murmur3;
 import org.apache.commons.io.input.BOMInputStream;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class CSVFile {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private File file;
     private Reader reader;
     private String separator;
-    private PrintWriter writer;
+    private Writer out;
+    private FileOutputStream stream;
+    private char[] buffer = new char[ BUFFER_SIZE ];
+    private int position = 0;
+    private int rowStart = 0;
+    private boolean quoteAll = false;
     private String lastLine;
 
     private int rows = 0;
     private List<String> columnHeaders;
-    private HashSet<String> rowHashes = new HashSet<String>();
+    private Hash128Set rowHashes;
+    private final Murmur3 hasher = new Murmur3();
+    private long dedupMemory = Long.MAX_VALUE;
+    private File dedupSpillDirectory;
     private boolean allowDuplicateRows=true;
+    private boolean buffered = false;
 
     public CSVFile(String filename, String separator) {
         this( new File(filename), separator );
@@ -35,7 +49,7 @@ public class CSVFile {
     }
 
     public CSVFile(PrintWriter out, String separator) {
-        this.writer = out;
+        this.out = out;
         this.separator = separator;
     }
 
@@ -47,6 +61,46 @@ public class CSVFile {
         return this.allowDuplicateRows;
     }
 
+    /**
+     * Sets how much memory the hashes of written rows can use when duplicate rows aren't allowed.  Once it's exceeded
+     * the hashes are kept in memory mapped files (see {@link Hash128Set}).  By default they're always kept in memory.
+     *
+     * @param memoryBudget the approximate number of bytes of hashes to keep on the heap
+     * @param spillDirectory the directory to write hashes into, or null for java.io.tmpdir
+     */
+    public void setDeduplicationMemory(long memoryBudget, File spillDirectory) {
+        this.dedupMemory = memoryBudget;
+        this.dedupSpillDirectory = spillDirectory;
+    }
+
+    /**
+     * Quote every non-empty field instead of only the fields that need it.
+     *
+     * @param quoteAll true to quote every field
+     */
+    public void setQuoteAll(boolean quoteAll) {
+        this.quoteAll = quoteAll;
+    }
+
+    public boolean isQuoteAll() {
+        return quoteAll;
+    }
+
+    /**
+     * Use the {@link CSVBufferParser} to parse instead of reading line by line.  It avoids creating Strings for
+     * each line and each field until they are asked for, and supports line breaks within quoted fields.  The rows
+     * passed to {@link CSVReader#processRow(List, List)} are only valid during that call when this is enabled.
+     *
+     * @param buffered true to use the buffered parser
+     */
+    public void setBuffered(boolean buffered) {
+        this.buffered = buffered;
+    }
+
+    public boolean isBuffered() {
+        return buffered;
+    }
+
     public int parse( CSVReader callback ) throws IOException {
         if( file != null ) {
             BOMInputStream bom = new BOMInputStream(new FileInputStream(file));
@@ -58,6 +112,26 @@ public class CSVFile {
     }
 
     protected int parse(Reader reader, CSVReader callback) throws IOException {
+        if( buffered ) {
+            CSVBufferParser parser = new CSVBufferParser( reader, separator.charAt(0) );
+            return parser.parse( columnHeaders, new CSVReader() {
+                @Override
+                public void processHeaders(List<String> header) throws Exception {
+                    columnHeaders = header;
+                    callback.processHeaders( header );
+                }
+
+                @Override
+                public boolean processRow(List<String> header, List<String> row) throws Exception {
+                    return callback.processRow( header, row );
+                }
+
+                @Override
+                public void afterProcessing() {
+                    callback.afterProcessing();
+                }
+            });
+        }
         LineNumberReader lineNumberReader = new LineNumberReader(reader);
         int lines = 1;
         if( columnHeaders == null ) {
@@ -172,79 +246,217 @@ public class CSVFile {
         }
         write(rowArray);
     }
+    /**
+     * Writes a row.  Each value is written with its toString(), and null is written as an empty field.  Fields are
+     * only quoted when they contain the separator, a quote, or a line break unless {@link #setQuoteAll(boolean)} is
+     * enabled.  Quotes are doubled and new lines are written as \n.
+     *
+     * Rows are escaped straight into a reusable char buffer that is written to the file's encoder in large chunks,
+     * so no String is built per row.  When duplicate rows aren't allowed the escaped row is hashed and dropped if
+     * its hash has been written before.  Hashing the escaped row instead of the values means the hashes can be
+     * rebuilt from the file (see {@link #resume(long, int)}).
+     */
     public void write( Object... row ) throws IOException {
-        boolean addRow = true;
-        if(!allowDuplicateRows) {
-            String rowString = "";
-            for(Object rowValue : row) {
-                rowString += "_"+rowValue.toString();
+        if( out == null ) {
+            open( false );
+        }
+        for( int i = 0; i < row.length; i++ ) {
+            if( i > 0 ) append( separator );
+            if( row[i] == null ) continue;
+            escape( format( row[i] ) );
+        }
+        if( !allowDuplicateRows ) {
+            if( rowHashes == null ) rowHashes = new Hash128Set( dedupMemory, dedupSpillDirectory );
+            if( !rowHashes.add( hash( buffer, rowStart, position ), hasher.getH2() ) ) {
+                // drop the duplicate row from the buffer
+                position = rowStart;
+                return;
             }
-            String rowHash = Utilities.MD5(rowString);
-            if(!rowHashes.contains(rowHash)) {
-                rowHashes.add(rowHash);
-            }else {
-                addRow = false;
+        }
+        append( LINE_SEPARATOR );
+        rowStart = position;
+        rows++;
+    }
+
+    private long hash( char[] chars, int start, int end ) {
+        hasher.reset();
+        for( int i = start; i < end; i++ ) {
+            hasher.putChar( chars[i] );
+        }
+        return hasher.finish().getH1();
+    }
+
+    private void open( boolean append ) throws IOException {
+        stream = new FileOutputStream( file, append );
+        out = new OutputStreamWriter( stream, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes every row written so far to the disk.
+     *
+     * @return the number of bytes in the file, which can be given to {@link #resume(long, int)} to continue writing
+     * from this point.
+     */
+    public long checkpoint() throws IOException {
+        if( out == null ) return 0;
+        flush();
+        stream.getFD().sync();
+        return stream.getChannel().position();
+    }
+
+    /**
+     * Continues writing a file that was written up to a {@link #checkpoint()}.  Anything written to the file after
+     * the checkpoint is removed, and when duplicate rows aren't allowed the hashes of the rows already in the file
+     * are rebuilt.
+     *
+     * @param length the length returned by {@link #checkpoint()}
+     * @param rows the number of rows (including the header) written up to the checkpoint
+     */
+    public void resume( long length, int rows ) throws IOException {
+        if( out != null ) throw new IllegalStateException( "Can't resume " + file + " after writing to it" );
+        try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+            raf.setLength( length );
+        }
+        this.rows = rows;
+        if( !allowDuplicateRows && length > 0 ) {
+            rowHashes = new Hash128Set( dedupMemory, dedupSpillDirectory );
+            try( Reader reader = new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) {
+                rehash( reader );
             }
         }
+        open( true );
+    }
 
-        if(addRow) {
-            if( writer == null ) {
-                writer = new PrintWriter( new FileWriter(file) );
+    /**
+     * Adds the hash of each line of the file.  Line breaks within fields are written as \n so every row is a single
+     * line ending in the line separator.
+     */
+    private void rehash( Reader reader ) throws IOException {
+        char[] chars = new char[ BUFFER_SIZE ];
+        int length = 0;
+        int read;
+        while( (read = reader.read( chars, length, chars.length - length )) > 0 ) {
+            length += read;
+            int start = 0;
+            int end;
+            while( (end = indexOf( chars, LINE_SEPARATOR, start, length )) >= 0 ) {
+                rowHashes.add( hash( chars, start, end ), hasher.getH2() );
+                start = end + LINE_SEPARATOR.length();
             }
-            StringBuilder buffer = new StringBuilder();
-            for( int i = 0; i < row.length; i++ ) {
-                if( i > 0 ) {
-                    buffer.append(separator);
-                }
-                if( row[i] != null ) {
-                    buffer.append( escape( format( row[i] ) ) );
-                }
+            System.arraycopy( chars, start, chars, 0, length - start );
+            length -= start;
+            if( length == chars.length ) chars = Arrays.copyOf( chars, chars.length * 2 );
+        }
+    }
+
+    private static int indexOf( char[] chars, String separator, int start, int end ) {
+        int length = separator.length();
+        search:
+        for( int i = start; i + length <= end; i++ ) {
+            for( int j = 0; j < length; j++ ) {
+                if( chars[i + j] != separator.charAt(j) ) continue search;
             }
-            writer.println( buffer.toString() );
-            rows++;
+            return i;
         }
+        return -1;
     }
 
     private String format(Object o) {
         return o.toString();
     }
 
-    private CharSequence escape(String source) {
-        if( source.isEmpty() ) return source;
-        StringBuilder builder = new StringBuilder( source.length() + 2 );
-        builder.append('"');
-        int lastIndex = 0;
-        for( int i = 0; i < source.length(); i++ ) {
+    private void escape(String source) throws IOException {
+        int length = source.length();
+        if( length == 0 ) return;
+        if( !quoteAll && !needsQuotes( source ) ) {
+            ensureCapacity( length );
+            source.getChars( 0, length, buffer, position );
+            position += length;
+            return;
+        }
+        ensureCapacity( length * 2 + 2 );
+        char[] buf = buffer;
+        int pos = position;
+        buf[pos++] = '"';
+        for( int i = 0; i < length; i++ ) {
             char c = source.charAt(i);
             switch( c ) {
                 case '"':
-                    builder.append( source, lastIndex, i );
-                    builder.append("\"\"");
-                    lastIndex = i + 1;
+                    buf[pos++] = '"';
+                    buf[pos++] = '"';
                     break;
                 case '\n':
-                    builder.append( source, lastIndex, i );
-                    builder.append("\\n");
-                    lastIndex = i + 1;
+                    buf[pos++] = '\\';
+                    buf[pos++] = 'n';
                     break;
+                default:
+                    buf[pos++] = c;
             }
         }
-        if( lastIndex < source.length() ) {
-            builder.append( source.subSequence(lastIndex, source.length() ) );
+        buf[pos++] = '"';
+        position = pos;
+    }
+
+    private boolean needsQuotes(String source) {
+        char sep = separator.charAt(0);
+        for( int i = 0; i < source.length(); i++ ) {
+            char c = source.charAt(i);
+            if( c == sep || c == '"' || c == '\n' || c == '\r' ) return true;
+        }
+        return separator.length() > 1 && source.contains( separator );
+    }
+
+    private void append(String s) throws IOException {
+        int length = s.length();
+        ensureCapacity( length );
+        s.getChars( 0, length, buffer, position );
+        position += length;
+    }
+
+    /**
+     * Makes room for the given number of chars.  Only whole rows are written out so a duplicate row can still be
+     * dropped, and the buffer grows if a single row doesn't fit.
+     */
+    private void ensureCapacity(int chars) throws IOException {
+        if( position + chars <= buffer.length ) return;
+        if( rowStart > 0 ) {
+            out.write( buffer, 0, rowStart );
+            System.arraycopy( buffer, rowStart, buffer, 0, position - rowStart );
+            position -= rowStart;
+            rowStart = 0;
+        }
+        if( position + chars > buffer.length ) {
+            buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, position + chars ) );
         }
-        builder.append('"');
-        return builder.toString();
     }
 
     public void flush() {
-        if( writer != null ) {
-            writer.flush();
+        if( out != null ) {
+            try {
+                out.write( buffer, 0, rowStart );
+                System.arraycopy( buffer, rowStart, buffer, 0, position - rowStart );
+                position -= rowStart;
+                rowStart = 0;
+                out.flush();
+            } catch( IOException ex ) {
+                throw new UncheckedIOException( "Could not write to " + (file != null ? file : "the writer"), ex );
+            }
         }
     }
+
     public void close() {
-        flush();
-        if( writer != null ) {
-            writer.close();
+        try {
+            flush();
+            if( out != null ) {
+                out.close();
+            }
+        } catch( IOException ex ) {
+            throw new UncheckedIOException( "Could not close " + (file != null ? file : "the writer"), ex );
+        } finally {
+            if( rowHashes != null ) {
+                rowHashes.close();
+                rowHashes = null;
+            }
         }
     }
 
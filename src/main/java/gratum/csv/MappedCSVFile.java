@@ -0,0 +1,287 @@
+package gratum.csv;
+
+import gratum.util.ByteBufferInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a large local UTF-8 file by memory mapping it and splitting it into record aligned chunks that are parsed
+ * concurrently.  A scanner thread walks the mapped bytes to find the chunk boundaries, tracking quotes so a chunk never
+ * starts inside a quoted value, and hands each chunk to a worker as soon as its end is found.  Each chunk is parsed
+ * completely by a {@link CSVBufferParser} on a worker, and the parsed chunks are handed to the {@link CSVReader} on the
+ * calling thread in the same order they appear in the file.  At most a few chunks per thread are in flight at a time
+ * so memory is bounded by the chunk size rather than the size of the file.  That keeps the CSVReader contract exactly
+ * the same as {@link CSVFile#parse(CSVReader)}.
+ *
+ * Files with a UTF-16 or UTF-32 byte order mark can't be split on byte boundaries, and are parsed by
+ * {@link CSVFile} instead.
+ */
+public class MappedCSVFile {
+
+    public static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+    private static final long SCAN_WINDOW = 64L * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 2;
+    private static final Future<List<List<String>>> END = CompletableFuture.completedFuture( null );
+
+    private final File file;
+    private final String separator;
+    private final int threads;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private List<String> columnHeaders;
+
+    public MappedCSVFile(File file, String separator, int threads) {
+        this.file = file;
+        this.separator = separator;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the approximate number of bytes in each chunk.  It's capped at {@link #MAX_CHUNK_SIZE} so a chunk, which
+     * extends to the end of the record it stops in, stays within what a single mapping can hold.
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = Math.max( 1, Math.min( chunkSize, MAX_CHUNK_SIZE ) );
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public List<String> getColumnHeaders() {
+        return columnHeaders;
+    }
+
+    public void setColumnHeaders(List<String> columnHeaders) {
+        this.columnHeaders = columnHeaders;
+    }
+
+    public int parse( CSVReader callback ) throws IOException {
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            int bom = byteOrderMark( channel );
+            if( bom < 0 ) {
+                CSVFile csv = new CSVFile( file, separator );
+                csv.setBuffered( true );
+                csv.setColumnHeaders( columnHeaders );
+                return csv.parse( callback );
+            }
+
+            Scanner scanner = new Scanner( channel, bom, size );
+            if( columnHeaders == null ) {
+                long dataStart = scanner.header();
+                try {
+                    columnHeaders = parseHeader( channel, bom, dataStart );
+                    callback.processHeaders( columnHeaders );
+                } catch( Exception ex ) {
+                    throw new IOException( "Could not process header of " + file, ex );
+                }
+            }
+            return parseChunks( channel, scanner, callback );
+        }
+    }
+
+    private int byteOrderMark( FileChannel channel ) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        channel.read( head, 0 );
+        head.flip();
+        int b0 = head.remaining() > 0 ? head.get(0) & 0xFF : -1;
+        int b1 = head.remaining() > 1 ? head.get(1) & 0xFF : -1;
+        int b2 = head.remaining() > 2 ? head.get(2) & 0xFF : -1;
+        if( b0 == 0xEF && b1 == 0xBB && b2 == 0xBF ) return 3;
+        if( (b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE) || (b0 == 0x00 && b1 == 0x00) ) return -1;
+        return 0;
+    }
+
+    private List<String> parseHeader( FileChannel channel, long start, long end ) throws IOException {
+        if( end <= start ) return Collections.emptyList();
+        CSVBufferParser parser = parser( channel, start, end );
+        try {
+            return parser.next() ? new ArrayList<>( parser.row() ) : Collections.emptyList();
+        } finally {
+            parser.close();
+        }
+    }
+
+    private CSVBufferParser parser( FileChannel channel, long start, long end ) throws IOException {
+        MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+        return new CSVBufferParser( new InputStreamReader( new ByteBufferInputStream( buffer ), StandardCharsets.UTF_8 ), separator.charAt(0) );
+    }
+
+    /**
+     * Parses every row between start and end.
+     */
+    private List<List<String>> parseChunk( FileChannel channel, long start, long end ) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        CSVBufferParser parser = parser( channel, start, end );
+        try {
+            while( parser.next() ) {
+                String[] values = new String[ parser.size() ];
+                for( int i = 0; i < values.length; i++ ) {
+                    values[i] = parser.get(i);
+                }
+                rows.add( Arrays.asList( values ) );
+            }
+        } finally {
+            parser.close();
+        }
+        return rows;
+    }
+
+    private int parseChunks( FileChannel channel, Scanner scanner, CSVReader callback ) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        // one more thread than the workers for the scanner
+        ExecutorService executor = Executors.newFixedThreadPool( threads + 1, (Runnable r) -> {
+            Thread thread = new Thread( r, "gratum-csv-" + file.getName() + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        });
+        // the chunks in file order, which bounds how many chunks are parsed, or waiting to be read, at a time
+        BlockingQueue<Future<List<List<String>>>> pending = new ArrayBlockingQueue<>( Math.max( 1, threads * CHUNKS_PER_THREAD ) );
+        int rows = 1;
+        try {
+            executor.execute( () -> {
+                try {
+                    while( scanner.position < scanner.size ) {
+                        long start = scanner.position;
+                        long end = scanner.next();
+                        pending.put( executor.submit( () -> parseChunk( channel, start, end ) ) );
+                    }
+                    pending.put( END );
+                } catch( InterruptedException | RejectedExecutionException ex ) {
+                    // parsing was stopped
+                } catch( Throwable t ) {
+                    CompletableFuture<List<List<String>>> failed = new CompletableFuture<>();
+                    failed.completeExceptionally( t );
+                    pending.offer( failed );
+                }
+            });
+
+            while( true ) {
+                Future<List<List<String>>> chunk = pending.take();
+                if( chunk == END ) break;
+                List<List<String>> batch;
+                try {
+                    batch = chunk.get();
+                } catch( ExecutionException ex ) {
+                    throw new IOException( "Could not parse " + file + " after line " + rows, ex.getCause() );
+                }
+                for( List<String> row : batch ) {
+                    if( callback.processRow( columnHeaders, row ) ) {
+                        return rows;
+                    }
+                    rows++;
+                }
+            }
+            return rows;
+        } catch( HaltPipelineException ex ) {
+            throw ex;
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while parsing " + file, ex );
+        } catch( IOException ex ) {
+            throw ex;
+        } catch( RuntimeException ex ) {
+            throw new RuntimeException( "Could not parse line " + rows, ex );
+        } catch( Exception ex ) {
+            throw new IOException( "Could not process line " + rows, ex );
+        } finally {
+            executor.shutdownNow();
+            callback.afterProcessing();
+        }
+    }
+
+    /**
+     * Finds the record boundaries one chunk at a time by looking for line breaks that fall after every chunkSize
+     * bytes.  The quote state is tracked the same way the parser tracks it so the boundaries never land within a
+     * quoted value.  The file is mapped a window at a time.
+     */
+    private class Scanner {
+        final FileChannel channel;
+        final long size;
+        volatile long position;
+        boolean inQuotes = false;
+        MappedByteBuffer window;
+        long windowStart = 0;
+        long windowEnd = 0;
+
+        Scanner( FileChannel channel, long start, long size ) {
+            this.channel = channel;
+            this.position = start;
+            this.size = size;
+        }
+
+        /**
+         * Skips past the first record so it can be parsed as the header.
+         *
+         * @return the offset the data starts at
+         */
+        long header() throws IOException {
+            boolean content = false;
+            long offset = position;
+            while( offset < size ) {
+                byte b = at( offset++ );
+                if( b == '"' ) {
+                    inQuotes = !inQuotes;
+                    content = true;
+                } else if( b == '\n' || b == '\r' ) {
+                    if( !inQuotes && content ) {
+                        position = offset;
+                        return offset;
+                    }
+                } else {
+                    content = true;
+                }
+            }
+            // the header is the only record in the file
+            position = size;
+            return size;
+        }
+
+        /**
+         * @return the end of the chunk starting at the current position, which becomes the new position
+         */
+        long next() throws IOException {
+            long chunkStart = position;
+            long offset = chunkStart;
+            while( offset < size ) {
+                byte b = at( offset++ );
+                if( b == '"' ) {
+                    inQuotes = !inQuotes;
+                } else if( b == '\n' && !inQuotes && offset - chunkStart >= chunkSize ) {
+                    position = offset;
+                    return offset;
+                }
+                if( offset - chunkStart >= MAX_MAPPED_SIZE ) {
+                    throw new IOException( "Record after offset " + chunkStart + " of " + file + " is too large to map" );
+                }
+            }
+            position = size;
+            return size;
+        }
+
+        private byte at( long offset ) throws IOException {
+            if( offset >= windowEnd || offset < windowStart ) {
+                windowStart = offset;
+                windowEnd = Math.min( size, offset + SCAN_WINDOW );
+                window = channel.map( FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart );
+            }
+            return window.get( (int)(offset - windowStart) );
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package gratum.etl;
+
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregate function used by {@link Pipeline#aggregate(java.util.List, java.util.Map)}.  Each group gets its own
+ * {@link Accumulator} that only holds the running value for that group (ie a sum and a count), never the rows
+ * themselves.  Accumulators are combinable so partial results that were spilled to disk can be merged back together.
+ *
+ * Static factory methods are provided for the common aggregates:
+ *
+ * <pre>
+ *     import static gratum.etl.Aggregate.*
+ *
+ *     csv("sales.csv")
+ *       .aggregate( ["state"], [total: sum("amount"), orders: count(), largest: max("amount"), average: avg("amount")] )
+ *       .go()
+ * </pre>
+ *
+ * sum and avg accept Numbers or numeric Strings, and ignore nulls and empty Strings.  min and max compare values
+ * using the &lt;=&gt; operator, so convert numeric Strings (ie asDouble) before using them.
+ */
+public abstract class Aggregate {
+
+    protected final String column;
+
+    protected Aggregate(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return a new Accumulator for a group.
+     */
+    public abstract Accumulator newAccumulator();
+
+    /**
+     * Recreates an Accumulator from the value returned by {@link Accumulator#getState()}.
+     */
+    public Accumulator restore( Object state ) {
+        Accumulator accumulator = newAccumulator();
+        accumulator.setState( state );
+        return accumulator;
+    }
+
+    /**
+     * The running value of an aggregate for a single group.
+     */
+    public interface Accumulator {
+        void add( Map row );
+
+        /**
+         * Combines the other Accumulator's running value into this one.  The other Accumulator is from the same
+         * Aggregate.
+         */
+        void merge( Accumulator other );
+
+        Object getResult();
+
+        /**
+         * @return the running value in a form that can be written with {@link RowOutputStream}.
+         */
+        Object getState();
+
+        void setState( Object state );
+    }
+
+    /**
+     * Counts the rows in each group.
+     */
+    public static Aggregate count() {
+        return new Count( null );
+    }
+
+    /**
+     * Counts the rows in each group where the column isn't null or an empty String.
+     */
+    public static Aggregate count( String column ) {
+        return new Count( column );
+    }
+
+    public static Aggregate sum( String column ) {
+        return new Sum( column );
+    }
+
+    public static Aggregate avg( String column ) {
+        return new Average( column );
+    }
+
+    public static Aggregate min( String column ) {
+        return new Extreme( column, -1 );
+    }
+
+    public static Aggregate max( String column ) {
+        return new Extreme( column, 1 );
+    }
+
+    static Number toNumber( Object value ) {
+        if( value == null ) return null;
+        if( value instanceof Number ) return (Number)value;
+        String s = value.toString().trim();
+        if( s.isEmpty() ) return null;
+        try {
+            return Long.parseLong( s );
+        } catch( NumberFormatException ex ) {
+            return Double.parseDouble( s );
+        }
+    }
+
+    static class Count extends Aggregate {
+        Count(String column) {
+            super(column);
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                long count = 0;
+
+                @Override
+                public void add(Map row) {
+                    if( column == null ) {
+                        count++;
+                    } else {
+                        Object value = row.get( column );
+                        if( value != null && !(value instanceof CharSequence && ((CharSequence)value).length() == 0) ) count++;
+                    }
+                }
+
+                @Override
+                public void merge(Accumulator other) {
+                    count += (Long)other.getState();
+                }
+
+                @Override
+                public Object getResult() {
+                    return count;
+                }
+
+                @Override
+                public Object getState() {
+                    return count;
+                }
+
+                @Override
+                public void setState(Object state) {
+                    count = ((Number)state).longValue();
+                }
+            };
+        }
+    }
+
+    /**
+     * Sums into a long while the values are whole numbers, switching to a double for floating point values and to a
+     * BigDecimal for BigDecimals or when a long would overflow.
+     */
+    static class Sum extends Aggregate {
+        Sum(String column) {
+            super(column);
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            return new SumAccumulator();
+        }
+
+        class SumAccumulator implements Accumulator {
+            static final int NONE = 0, LONG = 1, DOUBLE = 2, DECIMAL = 3;
+
+            int mode = NONE;
+            long longSum = 0;
+            double doubleSum = 0.0;
+            BigDecimal decimalSum;
+
+            @Override
+            public void add(Map row) {
+                Number n = toNumber( row.get( column ) );
+                if( n != null ) addNumber( n );
+            }
+
+            void addNumber( Number n ) {
+                if( n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte ) {
+                    long v = n.longValue();
+                    switch( mode ) {
+                        case NONE:
+                            mode = LONG;
+                            longSum = v;
+                            break;
+                        case LONG:
+                            long r = longSum + v;
+                            if( ((longSum ^ r) & (v ^ r)) < 0 ) {
+                                mode = DECIMAL;
+                                decimalSum = BigDecimal.valueOf( longSum ).add( BigDecimal.valueOf( v ) );
+                            } else {
+                                longSum = r;
+                            }
+                            break;
+                        case DOUBLE:
+                            doubleSum += v;
+                            break;
+                        default:
+                            decimalSum = decimalSum.add( BigDecimal.valueOf( v ) );
+                    }
+                } else if( n instanceof BigDecimal || n instanceof BigInteger ) {
+                    BigDecimal v = n instanceof BigDecimal ? (BigDecimal)n : new BigDecimal( (BigInteger)n );
+                    switch( mode ) {
+                        case DOUBLE:
+                            doubleSum += v.doubleValue();
+                            break;
+                        case DECIMAL:
+                            decimalSum = decimalSum.add( v );
+                            break;
+                        default:
+                            decimalSum = mode == LONG ? BigDecimal.valueOf( longSum ).add( v ) : v;
+                            mode = DECIMAL;
+                    }
+                } else {
+                    double v = n.doubleValue();
+                    switch( mode ) {
+                        case NONE:
+                            doubleSum = v;
+                            break;
+                        case LONG:
+                            doubleSum = longSum + v;
+                            break;
+                        case DOUBLE:
+                            doubleSum += v;
+                            break;
+                        default:
+                            doubleSum = decimalSum.doubleValue() + v;
+                    }
+                    mode = DOUBLE;
+                }
+            }
+
+            @Override
+            public void merge(Accumulator other) {
+                Object value = other.getResult();
+                if( value != null ) addNumber( (Number)value );
+            }
+
+            @Override
+            public Object getResult() {
+                switch( mode ) {
+                    case LONG: return longSum;
+                    case DOUBLE: return doubleSum;
+                    case DECIMAL: return decimalSum;
+                    default: return null;
+                }
+            }
+
+            @Override
+            public Object getState() {
+                return getResult();
+            }
+
+            @Override
+            public void setState(Object state) {
+                mode = NONE;
+                if( state != null ) addNumber( (Number)state );
+            }
+        }
+    }
+
+    static class Average extends Aggregate {
+        Average(String column) {
+            super(column);
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                final Sum.SumAccumulator sum = new Sum( column ).new SumAccumulator();
+                long count = 0;
+
+                @Override
+                public void add(Map row) {
+                    Number n = toNumber( row.get( column ) );
+                    if( n != null ) {
+                        sum.addNumber( n );
+                        count++;
+                    }
+                }
+
+                @Override
+                public void merge(Accumulator other) {
+                    List<?> state = (List<?>)other.getState();
+                    if( state.get(0) != null ) sum.addNumber( (Number)state.get(0) );
+                    count += ((Number)state.get(1)).longValue();
+                }
+
+                @Override
+                public Object getResult() {
+                    Object total = sum.getResult();
+                    if( count == 0 || total == null ) return null;
+                    if( total instanceof BigDecimal ) {
+                        return ((BigDecimal)total).divide( BigDecimal.valueOf( count ), MathContext.DECIMAL128 );
+                    }
+                    return ((Number)total).doubleValue() / count;
+                }
+
+                @Override
+                public Object getState() {
+                    return Arrays.asList( sum.getResult(), count );
+                }
+
+                @Override
+                public void setState(Object state) {
+                    List<?> values = (List<?>)state;
+                    sum.setState( values.get(0) );
+                    count = ((Number)values.get(1)).longValue();
+                }
+            };
+        }
+    }
+
+    static class Extreme extends Aggregate {
+        private final int direction;
+
+        Extreme(String column, int direction) {
+            super(column);
+            this.direction = direction;
+        }
+
+        @Override
+        public Accumulator newAccumulator() {
+            return new Accumulator() {
+                Object value;
+
+                @Override
+                public void add(Map row) {
+                    offer( row.get( column ) );
+                }
+
+                void offer( Object v ) {
+                    if( v == null ) return;
+                    if( value == null || DefaultTypeTransformation.compareTo( v, value ) * direction > 0 ) {
+                        value = v;
+                    }
+                }
+
+                @Override
+                public void merge(Accumulator other) {
+                    offer( other.getState() );
+                }
+
+                @Override
+                public Object getResult() {
+                    return value;
+                }
+
+                @Override
+                public Object getState() {
+                    return value;
+                }
+
+                @Override
+                public void setState(Object state) {
+                    value = state;
+                }
+            };
+        }
+    }
+}
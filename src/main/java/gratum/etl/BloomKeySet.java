@@ -0,0 +1,86 @@
+package gratum.etl;
+
+import gratum.util.Murmur3;
+
+/**
+ * A Bloom filter over keys.  It uses a fixed number of bits sized for the expected number of keys and the false
+ * positive rate, no matter how large the keys are.  It never misses a key that was added, but it reports a key that
+ * was never added as present at about the false positive rate, and more often once more keys than expected are added.
+ *
+ * Each key is hashed once with a 128 bit {@link Murmur3} and the two halves are combined to pick its bits.
+ */
+public class BloomKeySet implements KeySet {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashes;
+    private final Murmur3 hasher = new Murmur3();
+    private long added = 0;
+
+    /**
+     * @param expected the number of keys that will be added
+     * @param falsePositiveRate the chance a key that wasn't added is reported as present (ie 0.01)
+     */
+    public BloomKeySet(long expected, double falsePositiveRate) {
+        if( falsePositiveRate <= 0 || falsePositiveRate >= 1 ) {
+            throw new IllegalArgumentException( "falsePositiveRate must be between 0 and 1 but was " + falsePositiveRate );
+        }
+        expected = Math.max( 1, expected );
+        long m = (long)Math.ceil( -expected * Math.log( falsePositiveRate ) / (Math.log( 2 ) * Math.log( 2 )) );
+        m = Math.max( 64, Math.min( m, (long)Integer.MAX_VALUE * 64 ) );
+        this.bits = new long[ (int)((m + 63) >>> 6) ];
+        this.bitCount = (long)bits.length * 64;
+        this.hashes = Math.max( 1, (int)Math.round( (double)bitCount / expected * Math.log( 2 ) ) );
+    }
+
+    @Override
+    public boolean add( CompositeKey key ) {
+        HashedKeySet.hash( hasher, key );
+        long h1 = hasher.getH1();
+        long h2 = hasher.getH2();
+        boolean changed = false;
+        for( int i = 0; i < hashes; i++ ) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int)(bit >>> 6);
+            long mask = 1L << bit;
+            if( (bits[word] & mask) == 0 ) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        if( changed ) added++;
+        return changed;
+    }
+
+    @Override
+    public boolean contains( CompositeKey key ) {
+        Murmur3 h = HashedKeySet.hash( new Murmur3(), key );
+        long h1 = h.getH1();
+        long h2 = h.getH2();
+        for( int i = 0; i < hashes; i++ ) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if( (bits[ (int)(bit >>> 6) ] & (1L << bit)) == 0 ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of keys that set at least one new bit, a slight undercount of the distinct keys added.
+     */
+    @Override
+    public long size() {
+        return added;
+    }
+
+    public int getHashes() {
+        return hashes;
+    }
+
+    public long getBits() {
+        return bitCount;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,183 @@
+package gratum.etl;
+
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A typed key made from the values of one or more columns of a row.  It's used to match rows in join and intersect
+ * without concatenating the values into a String.  The hashCode is computed once.
+ *
+ * Values are compared by value so numbers of different types are equal when they hold the same number (ie
+ * 1 == 1L == 1.0d == 1.0G), and CharSequences (ie GStrings) are compared as Strings.  A String holding a plain decimal
+ * number (ie "42" or "-1.5", but not "007" or "1e3") is compared as that number, so a column read from a CSV file
+ * matches the same column read from a database the way the values' text would.  Keys made with
+ * {@link #exactOf(java.util.Map, java.util.List)} only compare a String as a number when it's exactly how that number
+ * prints, so "2.5" still matches 2.5d, but "2.50", "2.5" and "-0", "0" are different keys (ie for unique and intersect
+ * where the text is the value).
+ *
+ * Keys are ordered using the same rules as the &lt;=&gt; operator with nulls first, so they agree with
+ * {@link Pipeline#sort(java.lang.String[])}.  Two Strings are always ordered as Strings, even when they hold numbers.
+ */
+public final class CompositeKey implements Comparable<CompositeKey> {
+
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    private final Object[] values;
+    // the Strings that were converted to numbers so they can still be ordered as Strings, otherwise null
+    private final Object[] ordered;
+    private final int hash;
+
+    public CompositeKey(Object... values) {
+        this( values.clone(), true );
+    }
+
+    private CompositeKey(Object[] values, boolean numericStrings) {
+        Object[] ordered = null;
+        for( int i = 0; i < values.length; i++ ) {
+            Object value = values[i];
+            if( value instanceof CharSequence && !(value instanceof String) ) {
+                value = value.toString();
+            }
+            Object normalized = normalize( value );
+            if( !numericStrings && value instanceof String && normalized != value && !value.equals( print( normalized ) ) ) {
+                normalized = value;
+            }
+            if( value instanceof String && normalized != value ) {
+                if( ordered == null ) ordered = new Object[ values.length ];
+                ordered[i] = value;
+            }
+            values[i] = normalized;
+        }
+        this.values = values;
+        this.ordered = ordered;
+        this.hash = Arrays.hashCode( values );
+    }
+
+    public static CompositeKey of( Map row, List<String> columns ) {
+        Object[] values = new Object[ columns.size() ];
+        for( int i = 0; i < values.length; i++ ) {
+            values[i] = row.get( columns.get(i) );
+        }
+        return new CompositeKey( values, true );
+    }
+
+    /**
+     * Same as {@link #of(java.util.Map, java.util.List)}, but a String is only compared as a number when it's exactly
+     * how the number prints.
+     */
+    public static CompositeKey exactOf( Map row, List<String> columns ) {
+        Object[] values = new Object[ columns.size() ];
+        for( int i = 0; i < values.length; i++ ) {
+            values[i] = row.get( columns.get(i) );
+        }
+        return new CompositeKey( values, false );
+    }
+
+    /**
+     * Same as {@link #CompositeKey(java.lang.Object...)}, but a String is only compared as a number when it's exactly
+     * how the number prints.
+     */
+    public static CompositeKey exact( Object... values ) {
+        return new CompositeKey( values.clone(), false );
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Object get( int index ) {
+        return values[index];
+    }
+
+    /**
+     * Converts numbers to a single form: whole numbers that fit are Longs, other whole numbers are BigIntegers, and
+     * fractions are BigDecimals without trailing zeros.  Doubles that aren't finite are left as they are.
+     */
+    private static Object normalize( Object value ) {
+        if( value instanceof Long ) {
+            return value;
+        } else if( value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return ((Number)value).longValue();
+        } else if( value instanceof Double || value instanceof Float ) {
+            double d = ((Number)value).doubleValue();
+            if( Double.isNaN( d ) || Double.isInfinite( d ) ) return d;
+            if( d == Math.rint( d ) && Math.abs( d ) <= MAX_EXACT_DOUBLE ) return (long)d;
+            // Float.toString keeps 0.1f as 0.1 instead of its double expansion
+            return normalize( value instanceof Float ? new BigDecimal( value.toString() ) : BigDecimal.valueOf( d ) );
+        } else if( value instanceof BigInteger ) {
+            BigInteger i = (BigInteger)value;
+            return i.bitLength() < 64 ? (Object)i.longValue() : i;
+        } else if( value instanceof BigDecimal ) {
+            BigDecimal d = ((BigDecimal)value).stripTrailingZeros();
+            if( d.scale() <= 0 ) return normalize( d.toBigIntegerExact() );
+            return d;
+        } else if( value instanceof String && isDecimal( (String)value ) ) {
+            return normalize( new BigDecimal( (String)value ) );
+        }
+        return value;
+    }
+
+    private static String print( Object number ) {
+        return number instanceof BigDecimal ? ((BigDecimal)number).toPlainString() : number.toString();
+    }
+
+    /**
+     * @return true if the String is an optional minus sign, digits without leading zeros, and an optional fraction.
+     */
+    private static boolean isDecimal( String value ) {
+        int length = value.length();
+        int i = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        int digits = i;
+        while( i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9' ) i++;
+        if( i == digits || (value.charAt(digits) == '0' && i - digits > 1) ) return false;
+        if( i == length ) return true;
+        if( value.charAt(i) != '.' || ++i == length ) return false;
+        while( i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9' ) i++;
+        return i == length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if( this == o ) return true;
+        if( !(o instanceof CompositeKey) ) return false;
+        CompositeKey other = (CompositeKey)o;
+        return hash == other.hash && Arrays.equals( values, other.values );
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(CompositeKey o) {
+        int length = Math.min( values.length, o.values.length );
+        for( int i = 0; i < length; i++ ) {
+            Object a = values[i];
+            Object b = o.values[i];
+            Object sa = ordered != null && ordered[i] instanceof String ? ordered[i] : a;
+            Object sb = o.ordered != null && o.ordered[i] instanceof String ? o.ordered[i] : b;
+            if( sa instanceof String && sb instanceof String ) {
+                int c = ((String)sa).compareTo( (String)sb );
+                if( c != 0 ) return c;
+                continue;
+            }
+            if( a == b ) continue;
+            if( a == null ) return -1;
+            if( b == null ) return 1;
+            int c = DefaultTypeTransformation.compareTo( a, b );
+            if( c != 0 ) return c;
+        }
+        return Integer.compare( values.length, o.values.length );
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString( values );
+    }
+}
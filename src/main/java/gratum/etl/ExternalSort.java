@@ -0,0 +1,278 @@
+package gratum.etl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sorts rows within a memory budget.  Rows are collected in memory until their estimated size exceeds the budget,
+ * then they are sorted and written to a temporary file (a run) using {@link RowOutputStream}.  Once all the rows
+ * have been added the runs are k-way merged back together.  If the rows never exceed the budget they are sorted
+ * entirely in memory and nothing is written to disk.
+ *
+ * When threads &gt; 0 full buffers are sorted and written on background threads while the next buffer is filled.
+ * The budget is divided between the buffer being filled and the buffers being written.
+ *
+ * The sort is stable: rows that compare equal are returned in the order they were added.
+ */
+public class ExternalSort implements Closeable {
+
+    public static final int MAX_FAN_IN = 64;
+
+    private final Comparator<Map> comparator;
+    private final long bufferBudget;
+    private final File spillDirectory;
+    private final ExecutorService executor;
+    private final Semaphore writers;
+
+    private List<Map> buffer = new ArrayList<>();
+    private long bufferSize = 0;
+    private final List<Future<File>> runs = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+
+    /**
+     * @param comparator the order to sort rows in
+     * @param memoryBudget the approximate number of bytes of rows to hold in memory
+     * @param spillDirectory the directory to write runs into, or null to use java.io.tmpdir
+     * @param threads the number of threads used to sort and write runs (0 to write on the calling thread)
+     */
+    public ExternalSort(Comparator<Map> comparator, long memoryBudget, File spillDirectory, int threads) {
+        this.comparator = comparator;
+        this.bufferBudget = Math.max( 1, memoryBudget / (threads + 1) );
+        this.spillDirectory = spillDirectory;
+        if( threads > 0 ) {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool( threads, (Runnable r) -> {
+                Thread thread = new Thread( r, "gratum-sort-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            });
+            this.writers = new Semaphore( threads );
+        } else {
+            this.executor = null;
+            this.writers = null;
+        }
+    }
+
+    public void add( Map row ) throws IOException {
+        buffer.add( row );
+        bufferSize += estimate( row );
+        if( bufferSize >= bufferBudget ) {
+            spill();
+        }
+    }
+
+    /**
+     * @return the number of runs written to disk so far.
+     */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Passes every row to the consumer in sorted order, and then deletes any runs written to disk.
+     */
+    public void drain( Consumer<Map> consumer ) throws IOException {
+        try {
+            if( runs.isEmpty() ) {
+                List<Map> rows = buffer;
+                buffer = new ArrayList<>();
+                rows.sort( comparator );
+                for( Map row : rows ) {
+                    consumer.accept( row );
+                }
+                return;
+            }
+            if( !buffer.isEmpty() ) spill();
+            List<File> sorted = new ArrayList<>( runs.size() );
+            for( Future<File> run : runs ) {
+                sorted.add( await( run ) );
+            }
+            // merge in rounds so each row is rewritten once per round, keeping runs in order to stay stable
+            while( sorted.size() > MAX_FAN_IN ) {
+                List<File> round = new ArrayList<>( (sorted.size() + MAX_FAN_IN - 1) / MAX_FAN_IN );
+                for( int start = 0; start < sorted.size(); start += MAX_FAN_IN ) {
+                    List<File> group = sorted.subList( start, Math.min( start + MAX_FAN_IN, sorted.size() ) );
+                    round.add( group.size() == 1 ? group.get(0) : mergeRuns( group ) );
+                }
+                sorted = round;
+            }
+            merge( sorted, consumer );
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Merges the runs into a new run, and deletes them.
+     */
+    private File mergeRuns( List<File> group ) throws IOException {
+        File merged = createRunFile();
+        try( RowOutputStream out = new RowOutputStream( merged ) ) {
+            merge( group, row -> {
+                try {
+                    out.writeRow( row );
+                } catch( IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+            });
+        } catch( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        for( File f : group ) delete( f );
+        return merged;
+    }
+
+    /**
+     * Stops any background writers and deletes the runs written to disk.
+     */
+    @Override
+    public void close() {
+        if( executor != null ) executor.shutdownNow();
+        synchronized (files) {
+            for( File f : files ) delete( f );
+            files.clear();
+        }
+    }
+
+    private void spill() throws IOException {
+        List<Map> rows = buffer;
+        buffer = new ArrayList<>();
+        bufferSize = 0;
+        if( executor == null ) {
+            runs.add( CompletableFuture.completedFuture( write( rows ) ) );
+        } else {
+            for( Future<File> run : runs ) {
+                if( run.isDone() ) await( run );
+            }
+            try {
+                writers.acquire();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted while waiting to write sorted run", e );
+            }
+            try {
+                runs.add( executor.submit( () -> {
+                    try {
+                        return write( rows );
+                    } finally {
+                        writers.release();
+                    }
+                }) );
+            } catch( RejectedExecutionException e ) {
+                writers.release();
+                throw e;
+            }
+        }
+    }
+
+    private File write( List<Map> rows ) throws IOException {
+        rows.sort( comparator );
+        File run = createRunFile();
+        try( RowOutputStream out = new RowOutputStream( run ) ) {
+            for( Map row : rows ) {
+                out.writeRow( row );
+            }
+        }
+        return run;
+    }
+
+    private File createRunFile() throws IOException {
+        File run = File.createTempFile( "gratum-sort", ".run", spillDirectory );
+        run.deleteOnExit();
+        synchronized (files) {
+            files.add( run );
+        }
+        return run;
+    }
+
+    private void merge( List<File> sorted, Consumer<Map> consumer ) throws IOException {
+        List<RowInputStream> inputs = new ArrayList<>( sorted.size() );
+        try {
+            PriorityQueue<Head> heads = new PriorityQueue<>( Math.max( 1, sorted.size() ) );
+            for( int i = 0; i < sorted.size(); i++ ) {
+                RowInputStream in = new RowInputStream( sorted.get(i) );
+                inputs.add( in );
+                Map row = in.readRow();
+                if( row != null ) heads.add( new Head( i, in, row ) );
+            }
+            while( !heads.isEmpty() ) {
+                Head head = heads.poll();
+                consumer.accept( head.row );
+                head.row = head.in.readRow();
+                if( head.row != null ) heads.add( head );
+            }
+        } finally {
+            for( RowInputStream in : inputs ) {
+                in.close();
+            }
+        }
+    }
+
+    private File await( Future<File> run ) throws IOException {
+        try {
+            return run.get();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while writing sorted run", e );
+        } catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException ) throw (IOException)cause;
+            if( cause instanceof RuntimeException ) throw (RuntimeException)cause;
+            if( cause instanceof Error ) throw (Error)cause;
+            throw new IOException( cause );
+        }
+    }
+
+    private static void delete( File f ) {
+        if( !f.delete() && f.exists() ) f.deleteOnExit();
+    }
+
+    /**
+     * Roughly estimates the number of bytes a row takes on the heap.
+     */
+    public static long estimate( Map<?,?> row ) {
+        long size = 48;
+        for( Map.Entry<?,?> entry : row.entrySet() ) {
+            size += 32 + estimateValue( entry.getValue() );
+        }
+        return size;
+    }
+
+    static long estimateValue( Object value ) {
+        if( value == null ) return 0;
+        if( value instanceof CharSequence ) return 40 + 2L * ((CharSequence)value).length();
+        if( value instanceof Map ) return estimate( (Map<?,?>)value );
+        if( value instanceof Collection ) {
+            long size = 40;
+            for( Object item : (Collection<?>)value ) {
+                size += 8 + estimateValue( item );
+            }
+            return size;
+        }
+        return 24;
+    }
+
+    private class Head implements Comparable<Head> {
+        final int run;
+        final RowInputStream in;
+        Map row;
+
+        Head(int run, RowInputStream in, Map row) {
+            this.run = run;
+            this.in = in;
+            this.row = row;
+        }
+
+        @Override
+        public int compareTo(Head o) {
+            int value = comparator.compare( row, o.row );
+            return value != 0 ? value : Integer.compare( run, o.run );
+        }
+    }
+}
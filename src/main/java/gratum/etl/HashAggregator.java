@@ -0,0 +1,196 @@
+package gratum.etl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Groups rows by a {@link CompositeKey} keeping only an {@link Aggregate.Accumulator} per aggregate for each group.
+ * When the estimated size of the groups exceeds the memory budget, the partial results are written to partition files
+ * using {@link RowOutputStream} and the groups are cleared.  When finished, each partition is read back and the
+ * partial results for the same group are merged.  Groups that never spilled are emitted in the order they were first
+ * seen.
+ */
+public class HashAggregator implements Closeable {
+
+    public static final int DEFAULT_PARTITIONS = 32;
+
+    private final List<String> keys;
+    private final List<String> names;
+    private final Aggregate[] aggregates;
+    private final long memoryBudget;
+    private final File spillDirectory;
+    private final int partitionCount;
+
+    private Map<CompositeKey,Group> groups = new LinkedHashMap<>();
+    private long memoryUsed = 0;
+    private File[] partitions;
+    private RowOutputStream[] writers;
+
+    /**
+     * @param keys the columns to group by
+     * @param aggregates the name of each aggregate column in the result rows to the aggregate that computes it
+     * @param memoryBudget the approximate number of bytes of groups to hold in memory
+     * @param partitions the number of partitions to spill groups into
+     * @param spillDirectory the directory to write partitions to, or null for java.io.tmpdir
+     */
+    public HashAggregator(List<String> keys, Map<String,Aggregate> aggregates, long memoryBudget, int partitions, File spillDirectory) {
+        this.keys = keys;
+        this.names = new ArrayList<>( aggregates.keySet() );
+        this.aggregates = aggregates.values().toArray( new Aggregate[0] );
+        this.memoryBudget = memoryBudget;
+        this.partitionCount = Math.max( 1, partitions );
+        this.spillDirectory = spillDirectory;
+    }
+
+    public boolean isSpilled() {
+        return partitions != null;
+    }
+
+    public void add( Map row ) throws IOException {
+        CompositeKey key = CompositeKey.of( row, keys );
+        Group group = groups.get( key );
+        if( group == null ) {
+            Object[] values = new Object[ keys.size() ];
+            for( int i = 0; i < values.length; i++ ) {
+                values[i] = row.get( keys.get(i) );
+            }
+            group = new Group( values );
+            for( int i = 0; i < aggregates.length; i++ ) {
+                group.accumulators[i] = aggregates[i].newAccumulator();
+            }
+            groups.put( key, group );
+            memoryUsed += 96 + 48L * aggregates.length;
+            for( Object value : values ) {
+                memoryUsed += 16 + ExternalSort.estimateValue( value );
+            }
+        }
+        for( Aggregate.Accumulator accumulator : group.accumulators ) {
+            accumulator.add( row );
+        }
+        if( memoryUsed > memoryBudget ) {
+            spill();
+        }
+    }
+
+    /**
+     * Emits one row per group containing the group's key columns followed by the aggregate columns.
+     */
+    public void finish( Consumer<Map> consumer ) throws IOException {
+        try {
+            if( partitions == null ) {
+                emit( groups, consumer );
+                groups = null;
+                return;
+            }
+            spill();
+            for( RowOutputStream writer : writers ) {
+                if( writer != null ) writer.close();
+            }
+            writers = null;
+            for( int p = 0; p < partitions.length; p++ ) {
+                if( partitions[p] == null ) continue;
+                Map<CompositeKey,Group> merged = new LinkedHashMap<>();
+                try( RowInputStream in = new RowInputStream( partitions[p] ) ) {
+                    Map row;
+                    while( (row = in.readRow()) != null ) {
+                        List<?> values = (List<?>)row.get( "k" );
+                        List<?> states = (List<?>)row.get( "s" );
+                        CompositeKey key = new CompositeKey( values.toArray() );
+                        Group group = merged.get( key );
+                        if( group == null ) {
+                            group = new Group( values.toArray() );
+                            for( int i = 0; i < aggregates.length; i++ ) {
+                                group.accumulators[i] = aggregates[i].restore( states.get(i) );
+                            }
+                            merged.put( key, group );
+                        } else {
+                            for( int i = 0; i < aggregates.length; i++ ) {
+                                group.accumulators[i].merge( aggregates[i].restore( states.get(i) ) );
+                            }
+                        }
+                    }
+                }
+                delete( partitions[p] );
+                partitions[p] = null;
+                emit( merged, consumer );
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if( writers != null ) {
+            for( RowOutputStream writer : writers ) {
+                try {
+                    if( writer != null ) writer.close();
+                } catch( IOException ignore ) {
+                    // the file is deleted anyway
+                }
+            }
+            writers = null;
+        }
+        if( partitions != null ) {
+            for( File f : partitions ) {
+                if( f != null ) delete( f );
+            }
+        }
+    }
+
+    private void emit( Map<CompositeKey,Group> groups, Consumer<Map> consumer ) {
+        for( Group group : groups.values() ) {
+            Map<String,Object> result = new LinkedHashMap<>();
+            for( int i = 0; i < keys.size(); i++ ) {
+                result.put( keys.get(i), group.values[i] );
+            }
+            for( int i = 0; i < names.size(); i++ ) {
+                result.put( names.get(i), group.accumulators[i].getResult() );
+            }
+            consumer.accept( result );
+        }
+    }
+
+    private void spill() throws IOException {
+        if( partitions == null ) {
+            partitions = new File[ partitionCount ];
+            writers = new RowOutputStream[ partitionCount ];
+        }
+        for( Map.Entry<CompositeKey,Group> entry : groups.entrySet() ) {
+            int h = entry.getKey().hashCode();
+            int p = Math.floorMod( h ^ (h >>> 16), partitionCount );
+            if( writers[p] == null ) {
+                partitions[p] = File.createTempFile( "gratum-aggregate", ".part", spillDirectory );
+                partitions[p].deleteOnExit();
+                writers[p] = new RowOutputStream( partitions[p] );
+            }
+            Group group = entry.getValue();
+            Object[] states = new Object[ aggregates.length ];
+            for( int i = 0; i < states.length; i++ ) {
+                states[i] = group.accumulators[i].getState();
+            }
+            Map<String,Object> row = new LinkedHashMap<>( 4 );
+            row.put( "k", Arrays.asList( group.values ) );
+            row.put( "s", Arrays.asList( states ) );
+            writers[p].writeRow( row );
+        }
+        groups = new LinkedHashMap<>();
+        memoryUsed = 0;
+    }
+
+    private static void delete( File f ) {
+        if( !f.delete() && f.exists() ) f.deleteOnExit();
+    }
+
+    private class Group {
+        final Object[] values;
+        final Aggregate.Accumulator[] accumulators = new Aggregate.Accumulator[ aggregates.length ];
+
+        Group(Object[] values) {
+            this.values = values;
+        }
+    }
+}
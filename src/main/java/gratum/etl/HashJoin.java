@@ -0,0 +1,250 @@
+package gratum.etl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A hybrid hash join.  Rows from the build (right) side are hashed by their {@link CompositeKey} into partitions
+ * held in memory.  When the estimated size of the build side exceeds the memory budget the largest partitions are
+ * written to disk using {@link RowOutputStream}, and any build rows for those partitions that arrive later are
+ * written straight to disk.  Probe (left) rows that land in an in memory partition are joined immediately.  Probe
+ * rows landing in a spilled partition are written to disk and joined by {@link #finish(Consumer, Consumer)} one
+ * partition at a time.  If a spilled partition is still larger than the budget it is partitioned again.
+ *
+ * Rows matching an in memory partition are joined in the order they arrive, but rows in spilled partitions are joined
+ * after all probe rows have been received.
+ */
+public class HashJoin implements Closeable {
+
+    public static final int DEFAULT_PARTITIONS = 32;
+
+    private static final int MAX_LEVEL = 4;
+
+    private final List<String> buildColumns;
+    private final List<String> probeColumns;
+    private final long memoryBudget;
+    private final File spillDirectory;
+    private final int level;
+    private final Partition[] partitions;
+    private long memoryUsed = 0;
+    private List<Object> columns;
+
+    /**
+     * @param buildColumns the columns of the build (right) side rows used to make the key
+     * @param probeColumns the columns of the probe (left) side rows used to make the key
+     * @param memoryBudget the approximate number of bytes of build rows to hold in memory
+     * @param partitions the number of partitions the build rows are split into
+     * @param spillDirectory the directory to write spilled partitions into, or null for java.io.tmpdir
+     */
+    public HashJoin(List<String> buildColumns, List<String> probeColumns, long memoryBudget, int partitions, File spillDirectory) {
+        this( buildColumns, probeColumns, memoryBudget, partitions, spillDirectory, 0 );
+    }
+
+    private HashJoin(List<String> buildColumns, List<String> probeColumns, long memoryBudget, int partitions, File spillDirectory, int level) {
+        this.buildColumns = buildColumns;
+        this.probeColumns = probeColumns;
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.level = level;
+        this.partitions = new Partition[ Math.max( 1, partitions ) ];
+        for( int i = 0; i < this.partitions.length; i++ ) {
+            this.partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * @return the columns of the first build row, or null if there were no build rows.
+     */
+    public List<Object> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of partitions that were written to disk.
+     */
+    public int getSpilledPartitions() {
+        int count = 0;
+        for( Partition p : partitions ) {
+            if( p.spilled ) count++;
+        }
+        return count;
+    }
+
+    public void build( Map row ) throws IOException {
+        if( columns == null ) columns = new ArrayList<>( row.keySet() );
+        CompositeKey key = CompositeKey.of( row, buildColumns );
+        Partition p = partitionOf( key );
+        long size = ExternalSort.estimate( row );
+        p.buildSize += size;
+        if( p.spilled ) {
+            p.build.writeRow( row );
+        } else {
+            p.table.computeIfAbsent( key, k -> new ArrayList<>(1) ).add( row );
+            memoryUsed += size;
+            while( memoryUsed > memoryBudget && spillLargest() ) {
+                // keep spilling until we fit
+            }
+        }
+    }
+
+    /**
+     * Called once all the build rows have been added.
+     */
+    public void finishBuild() throws IOException {
+        for( Partition p : partitions ) {
+            if( p.build != null ) {
+                p.build.close();
+                p.build = null;
+            }
+        }
+    }
+
+    /**
+     * Joins the probe row with the matching build rows.  Each joined row is a copy of the build row with all of the
+     * probe row's columns added.  If the row's partition was spilled it is held until {@link #finish(Consumer, Consumer)}.
+     *
+     * @param row the probe row
+     * @param matched receives each joined row
+     * @param unmatched receives the probe row if there are no matching build rows
+     */
+    public void probe( Map row, Consumer<Map> matched, Consumer<Map> unmatched ) throws IOException {
+        CompositeKey key = CompositeKey.of( row, probeColumns );
+        Partition p = partitionOf( key );
+        if( p.spilled ) {
+            if( p.probe == null ) {
+                p.probeFile = createFile();
+                p.probe = new RowOutputStream( p.probeFile );
+            }
+            p.probe.writeRow( row );
+        } else {
+            join( p.table.get( key ), row, matched, unmatched );
+        }
+    }
+
+    /**
+     * Joins the probe rows held for the spilled partitions.
+     */
+    public void finish( Consumer<Map> matched, Consumer<Map> unmatched ) throws IOException {
+        try {
+            for( Partition p : partitions ) {
+                if( !p.spilled || p.probe == null ) continue;
+                p.probe.close();
+                p.probe = null;
+                if( p.buildSize > memoryBudget && level < MAX_LEVEL ) {
+                    try( HashJoin nested = new HashJoin( buildColumns, probeColumns, memoryBudget, partitions.length, spillDirectory, level + 1 ) ) {
+                        read( p.buildFile, nested::build );
+                        nested.finishBuild();
+                        read( p.probeFile, row -> nested.probe( row, matched, unmatched ) );
+                        nested.finish( matched, unmatched );
+                    }
+                } else {
+                    Map<CompositeKey,List<Map>> table = new HashMap<>();
+                    read( p.buildFile, row -> table.computeIfAbsent( CompositeKey.of( row, buildColumns ), k -> new ArrayList<>(1) ).add( row ) );
+                    read( p.probeFile, row -> join( table.get( CompositeKey.of( row, probeColumns ) ), row, matched, unmatched ) );
+                }
+                delete( p.buildFile );
+                delete( p.probeFile );
+                p.buildFile = null;
+                p.probeFile = null;
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Deletes any files written to disk.
+     */
+    @Override
+    public void close() {
+        for( Partition p : partitions ) {
+            try {
+                if( p.build != null ) p.build.close();
+                if( p.probe != null ) p.probe.close();
+            } catch( IOException ignore ) {
+                // the file is deleted anyway
+            }
+            p.build = null;
+            p.probe = null;
+            if( p.buildFile != null ) delete( p.buildFile );
+            if( p.probeFile != null ) delete( p.probeFile );
+            p.table = null;
+        }
+    }
+
+    private void join( List<Map> matches, Map row, Consumer<Map> matched, Consumer<Map> unmatched ) {
+        if( matches == null ) {
+            unmatched.accept( row );
+        } else {
+            for( Map right : matches ) {
+                Map joined = right instanceof SchemaRow ? ((SchemaRow)right).clone() : new LinkedHashMap( right );
+                joined.putAll( row );
+                matched.accept( joined );
+            }
+        }
+    }
+
+    private Partition partitionOf( CompositeKey key ) {
+        int h = key.hashCode();
+        // use different bits of the hash at each level so a spilled partition splits again
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9 + level * 0x632BE5AB;
+        h ^= (h >>> 15);
+        return partitions[ Math.floorMod( h, partitions.length ) ];
+    }
+
+    private boolean spillLargest() throws IOException {
+        Partition largest = null;
+        for( Partition p : partitions ) {
+            if( !p.spilled && (largest == null || p.buildSize > largest.buildSize) ) largest = p;
+        }
+        if( largest == null || largest.table.isEmpty() ) return false;
+        largest.buildFile = createFile();
+        largest.build = new RowOutputStream( largest.buildFile );
+        for( List<Map> rows : largest.table.values() ) {
+            for( Map row : rows ) {
+                largest.build.writeRow( row );
+            }
+        }
+        largest.table = null;
+        largest.spilled = true;
+        memoryUsed -= largest.buildSize;
+        return true;
+    }
+
+    private File createFile() throws IOException {
+        File f = File.createTempFile( "gratum-join", ".part", spillDirectory );
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static void read( File file, RowConsumer consumer ) throws IOException {
+        try( RowInputStream in = new RowInputStream( file ) ) {
+            Map row;
+            while( (row = in.readRow()) != null ) {
+                consumer.accept( row );
+            }
+        }
+    }
+
+    private static void delete( File f ) {
+        if( !f.delete() && f.exists() ) f.deleteOnExit();
+    }
+
+    private interface RowConsumer {
+        void accept( Map row ) throws IOException;
+    }
+
+    private static class Partition {
+        Map<CompositeKey,List<Map>> table = new HashMap<>();
+        long buildSize = 0;
+        boolean spilled = false;
+        File buildFile;
+        RowOutputStream build;
+        File probeFile;
+        RowOutputStream probe;
+    }
+}
@@ -0,0 +1,93 @@
+package gratum.etl;
+
+import gratum.util.Hash128Set;
+import gratum.util.LongHashSet;
+import gratum.util.Murmur3;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * Keeps keys without keeping their values.  Keys of a single whole number (ie ids) are kept in a {@link LongHashSet}
+ * at 8 bytes of table per slot.  Every other key is hashed with a 128 bit {@link Murmur3} and kept in a
+ * {@link Hash128Set} held in direct ByteBuffers outside of the heap, which moves to memory mapped files once it
+ * exceeds its memory budget.  Two different keys would have to have the same 128 bit hash to be confused, so for
+ * practical purposes it's exact.
+ *
+ * Adding keys isn't thread safe, but once they're added contains can be called from any thread.
+ */
+public class HashedKeySet implements KeySet {
+
+    private final LongHashSet longs = new LongHashSet();
+    private final Hash128Set hashes;
+    private final Murmur3 hasher = new Murmur3();
+
+    /**
+     * @param memoryBudget the approximate number of bytes of hashes to keep in memory
+     * @param spillDirectory the directory to write hashes into once the budget is exceeded, or null for java.io.tmpdir
+     */
+    public HashedKeySet(long memoryBudget, File spillDirectory) {
+        this.hashes = new Hash128Set( memoryBudget, spillDirectory, true );
+    }
+
+    @Override
+    public boolean add( CompositeKey key ) throws IOException {
+        if( key.size() == 1 && key.get(0) instanceof Long ) {
+            return longs.add( (Long)key.get(0) );
+        }
+        hash( hasher, key );
+        return hashes.add( hasher.getH1(), hasher.getH2() );
+    }
+
+    @Override
+    public boolean contains( CompositeKey key ) {
+        if( key.size() == 1 && key.get(0) instanceof Long ) {
+            return longs.contains( (Long)key.get(0) );
+        }
+        Murmur3 h = hash( new Murmur3(), key );
+        return hashes.contains( h.getH1(), h.getH2() );
+    }
+
+    @Override
+    public long size() {
+        return longs.size() + hashes.size();
+    }
+
+    @Override
+    public void close() {
+        hashes.close();
+    }
+
+    /**
+     * Hashes the values of the key.  Each value is tagged with its kind so a String never hashes the same as a
+     * number that prints the same.  Keys that are equal hash the same since CompositeKey has already normalized
+     * their values.
+     */
+    static Murmur3 hash( Murmur3 hasher, CompositeKey key ) {
+        hasher.reset();
+        for( int i = 0; i < key.size(); i++ ) {
+            Object value = key.get(i);
+            if( value == null ) {
+                hasher.putChar( 'N' );
+            } else if( value instanceof Long ) {
+                hasher.putChar( 'L' ).putLong( (Long)value );
+            } else if( value instanceof Double ) {
+                hasher.putChar( 'D' ).putLong( Double.doubleToLongBits( (Double)value ) );
+            } else if( value instanceof String ) {
+                hasher.putChar( 'S' ).putString( (String)value );
+            } else if( value instanceof BigDecimal || value instanceof BigInteger ) {
+                hasher.putChar( 'B' ).putString( value.toString() );
+            } else if( value instanceof Boolean ) {
+                hasher.putChar( (Boolean)value ? 'T' : 'F' );
+            } else if( value instanceof Date ) {
+                hasher.putChar( 'd' ).putLong( ((Date)value).getTime() );
+            } else {
+                hasher.putChar( 'O' ).putString( value.getClass().getName() ).putString( value.toString() );
+            }
+        }
+        return hasher.finish();
+    }
+}
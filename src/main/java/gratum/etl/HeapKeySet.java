@@ -0,0 +1,32 @@
+package gratum.etl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps each key in a HashSet.  It's exact for any kind of key, but it costs an object per key and per value.
+ */
+public class HeapKeySet implements KeySet {
+
+    private final Set<CompositeKey> keys = new HashSet<>();
+
+    @Override
+    public boolean add( CompositeKey key ) {
+        return keys.add( key );
+    }
+
+    @Override
+    public boolean contains( CompositeKey key ) {
+        return keys.contains( key );
+    }
+
+    @Override
+    public long size() {
+        return keys.size();
+    }
+
+    @Override
+    public void close() {
+        keys.clear();
+    }
+}
@@ -0,0 +1,308 @@
+package gratum.etl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Inserts rows into a table using JDBC batches.  Rows are collected into batches of batchSize rows, and each batch is
+ * sent with {@link PreparedStatement#executeBatch()}.  When rowsPerStatement &gt; 1 each statement in the batch is a
+ * multi-row INSERT ... VALUES (?,?), (?,?) which many drivers execute faster than a batch of single row statements.
+ *
+ * When async is true batches are executed on a background thread so the database round trips overlap with the
+ * thread producing the rows.  At most two batches are waiting to be written at a time.
+ *
+ * Auto commit is turned off while writing so each batch can be undone with a savepoint.  If a batch fails it's rolled
+ * back to its savepoint and its rows are retried one at a time.  Each row that still fails is handed to the
+ * {@link FailureHandler} and the remaining rows are inserted.  The FailureHandler is always called on the thread
+ * calling {@link #write(Map)} or {@link #close()}, never the background thread.
+ */
+public class JdbcBatchWriter implements Closeable {
+
+    public interface FailureHandler {
+        void failed( Map row, SQLException ex );
+    }
+
+    private static final Batch END = new Batch( Collections.<Map>emptyList(), Collections.<Object[]>emptyList() );
+
+    private final Connection connection;
+    private final String table;
+    private final List<String> columns;
+    private final int batchSize;
+    private final int rowsPerStatement;
+    private final int commitInterval;
+    private final FailureHandler failureHandler;
+
+    private final boolean autoCommit;
+    private PreparedStatement single;
+    private PreparedStatement multi;
+    private int uncommittedBatches = 0;
+    private long rowsWritten = 0;
+    private long rowsFailed = 0;
+
+    private List<Map> rows;
+    private List<Object[]> values;
+
+    private final BlockingQueue<Batch> queue;
+    private Thread writer;
+    private volatile Throwable failure;
+    private final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param connection the connection to insert with.  It isn't closed by this writer.
+     * @param table the table to insert into
+     * @param columns the columns to insert.  The row's value for each column is used as the parameter.
+     * @param batchSize the number of rows sent to the database at a time
+     * @param rowsPerStatement the number of rows in each INSERT statement (1 for a plain batch)
+     * @param commitInterval the number of batches between commits, or 0 to never commit (ie the caller manages the transaction)
+     * @param async true to execute batches on a background thread
+     * @param failureHandler called for every row that could not be inserted
+     */
+    public JdbcBatchWriter(Connection connection, String table, List<String> columns, int batchSize, int rowsPerStatement,
+                           int commitInterval, boolean async, FailureHandler failureHandler) throws SQLException {
+        this.connection = connection;
+        this.table = table;
+        this.columns = columns;
+        this.batchSize = Math.max( 1, batchSize );
+        this.rowsPerStatement = Math.max( 1, Math.min( rowsPerStatement, this.batchSize ) );
+        this.commitInterval = commitInterval;
+        this.failureHandler = failureHandler;
+        this.autoCommit = connection.getAutoCommit();
+        if( autoCommit ) connection.setAutoCommit( false );
+
+        this.single = connection.prepareStatement( insert( 1 ) );
+        if( this.rowsPerStatement > 1 ) this.multi = connection.prepareStatement( insert( this.rowsPerStatement ) );
+
+        this.queue = async ? new ArrayBlockingQueue<>( 2 ) : null;
+        newBatch();
+    }
+
+    /**
+     * @return the number of rows inserted so far.
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return the number of rows that could not be inserted so far.
+     */
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    public void write( Map row ) throws SQLException {
+        Object[] params = new Object[ columns.size() ];
+        for( int i = 0; i < params.length; i++ ) {
+            params[i] = toJdbc( row.get( columns.get(i) ) );
+        }
+        rows.add( row );
+        values.add( params );
+        if( rows.size() >= batchSize ) flush();
+        reportFailures();
+    }
+
+    /**
+     * Writes any partial batch, waits for the background writer, commits and restores the connection's auto commit.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if( failure == null && !rows.isEmpty() ) flush();
+            if( writer != null ) {
+                queue.put( END );
+                writer.join();
+                writer = null;
+            }
+            reportFailures();
+            rethrow();
+            if( commitInterval > 0 ) {
+                connection.commit();
+            }
+        } catch( SQLException ex ) {
+            throw new IOException( "Could not write to " + table, ex );
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while writing to " + table, ex );
+        } finally {
+            try {
+                single.close();
+                if( multi != null ) multi.close();
+                if( autoCommit ) connection.setAutoCommit( true );
+            } catch( SQLException ex ) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    private void flush() throws SQLException {
+        Batch batch = new Batch( rows, values );
+        newBatch();
+        if( queue == null ) {
+            execute( batch );
+            return;
+        }
+        rethrow();
+        if( writer == null ) start();
+        try {
+            queue.put( batch );
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new SQLException( "Interrupted while writing to " + table, ex );
+        }
+    }
+
+    private void start() {
+        writer = new Thread( () -> {
+            try {
+                Batch batch;
+                while( (batch = queue.take()) != END ) {
+                    if( failure == null ) execute( batch );
+                }
+            } catch( Throwable t ) {
+                failure = t;
+                // the producer calls rethrow() before each put, so it puts at most one more batch and then END,
+                // which fit once the queue is empty.  Exit instead of waiting for END since close() isn't called
+                // when the Pipeline fails.
+                queue.clear();
+            }
+        }, "gratum-jdbc-" + table );
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    private void rethrow() throws SQLException {
+        Throwable t = failure;
+        if( t == null ) return;
+        if( t instanceof SQLException ) throw (SQLException)t;
+        if( t instanceof RuntimeException ) throw (RuntimeException)t;
+        if( t instanceof Error ) throw (Error)t;
+        throw new SQLException( t );
+    }
+
+    private void reportFailures() {
+        Failure f;
+        while( (f = failures.poll()) != null ) {
+            failureHandler.failed( f.row, f.exception );
+        }
+    }
+
+    private void newBatch() {
+        rows = new ArrayList<>( batchSize );
+        values = new ArrayList<>( batchSize );
+    }
+
+    private void execute( Batch batch ) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            int i = 0;
+            int n = batch.values.size();
+            if( multi != null ) {
+                for( ; i + rowsPerStatement <= n; i += rowsPerStatement ) {
+                    int p = 1;
+                    for( int r = i; r < i + rowsPerStatement; r++ ) {
+                        p = bind( multi, p, batch.values.get(r) );
+                    }
+                    multi.addBatch();
+                }
+                if( i > 0 ) multi.executeBatch();
+            }
+            for( ; i < n; i++ ) {
+                bind( single, 1, batch.values.get(i) );
+                single.addBatch();
+            }
+            single.executeBatch();
+            connection.releaseSavepoint( savepoint );
+            rowsWritten += n;
+        } catch( SQLException ex ) {
+            single.clearBatch();
+            if( multi != null ) multi.clearBatch();
+            connection.rollback( savepoint );
+            retry( batch );
+        }
+        if( commitInterval > 0 && ++uncommittedBatches >= commitInterval ) {
+            connection.commit();
+            uncommittedBatches = 0;
+        }
+    }
+
+    /**
+     * Inserts each row of a failed batch one at a time so only the rows that fail are rejected.
+     */
+    private void retry( Batch batch ) throws SQLException {
+        for( int i = 0; i < batch.values.size(); i++ ) {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                bind( single, 1, batch.values.get(i) );
+                single.executeUpdate();
+                connection.releaseSavepoint( savepoint );
+                rowsWritten++;
+            } catch( SQLException ex ) {
+                connection.rollback( savepoint );
+                rowsFailed++;
+                failures.add( new Failure( batch.rows.get(i), ex ) );
+            }
+        }
+    }
+
+    private int bind( PreparedStatement statement, int p, Object[] params ) throws SQLException {
+        for( Object param : params ) {
+            statement.setObject( p++, param );
+        }
+        return p;
+    }
+
+    private String insert( int rowCount ) {
+        StringBuilder sql = new StringBuilder( "INSERT INTO " ).append( table ).append( " (" );
+        StringBuilder params = new StringBuilder( "(" );
+        for( int i = 0; i < columns.size(); i++ ) {
+            if( i > 0 ) {
+                sql.append( ", " );
+                params.append( ", " );
+            }
+            sql.append( columns.get(i) );
+            params.append( "?" );
+        }
+        params.append( ")" );
+        sql.append( ") VALUES " );
+        for( int r = 0; r < rowCount; r++ ) {
+            if( r > 0 ) sql.append( ", " );
+            sql.append( params );
+        }
+        return sql.toString();
+    }
+
+    private static Object toJdbc( Object value ) {
+        if( value instanceof CharSequence && !(value instanceof String) ) return value.toString();
+        if( value != null && value.getClass() == java.util.Date.class ) return new Timestamp( ((java.util.Date)value).getTime() );
+        return value;
+    }
+
+    private static class Failure {
+        final Map row;
+        final SQLException exception;
+
+        Failure(Map row, SQLException exception) {
+            this.row = row;
+            this.exception = exception;
+        }
+    }
+
+    private static class Batch {
+        final List<Map> rows;
+        final List<Object[]> values;
+
+        Batch(List<Map> rows, List<Object[]> values) {
+            this.rows = rows;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package gratum.etl;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The keys remembered by {@link Pipeline#unique(java.util.Map, java.lang.String)} and
+ * {@link Pipeline#intersect(java.util.Map, gratum.etl.Pipeline, java.lang.Object)}.  There are three stores:
+ *
+ * <ul>
+ *     <li>{@link HeapKeySet} - the keys themselves in a HashSet (the default)</li>
+ *     <li>{@link HashedKeySet} - whole number keys in a primitive long set and 128 bit hashes of every other key
+ *     outside of the heap, spilling to memory mapped files</li>
+ *     <li>{@link BloomKeySet} - a Bloom filter using a fixed number of bits that may report keys it never saw</li>
+ * </ul>
+ */
+public interface KeySet extends Closeable {
+
+    /**
+     * @return true if the key wasn't already in the set
+     */
+    boolean add( CompositeKey key ) throws IOException;
+
+    boolean contains( CompositeKey key );
+
+    /**
+     * @return the number of keys added, or an estimate for sets that don't keep the keys.
+     */
+    long size();
+
+    @Override
+    void close();
+}
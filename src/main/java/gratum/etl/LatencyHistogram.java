@@ -0,0 +1,95 @@
+package gratum.etl;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size log-linear histogram of latencies in nanoseconds, similar to HdrHistogram.  Each power of two is split
+ * into 32 linear buckets so any recorded value is reported within about 3% of its actual value.  Values up to about
+ * 18 minutes are recorded, anything larger is counted in the last bucket.  The max is tracked exactly.
+ *
+ * Recording isn't synchronized.  Each histogram is recorded by a single thread and combined with
+ * {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[ BUCKETS ];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record( long nanos ) {
+        if( nanos < 0 ) nanos = 0;
+        counts[ indexOf( nanos ) ]++;
+        count++;
+        sum += nanos;
+        if( nanos > max ) max = nanos;
+    }
+
+    public void add( LatencyHistogram other ) {
+        for( int i = 0; i < BUCKETS; i++ ) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        if( other.max > max ) max = other.max;
+    }
+
+    public void reset() {
+        Arrays.fill( counts, 0 );
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double)sum / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds that the given percentage of the recorded values are less than or equal to.
+     */
+    public long getValueAtPercentile( double percentile ) {
+        if( count == 0 ) return 0;
+        long target = Math.max( 1, (long)Math.ceil( percentile / 100.0 * count ) );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            seen += counts[i];
+            if( seen >= target ) return i == BUCKETS - 1 ? max : Math.min( highestValueIn( i ), max );
+        }
+        return max;
+    }
+
+    static int indexOf( long value ) {
+        if( value < 2 * SUB_BUCKETS ) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        if( exponent > MAX_EXPONENT ) return BUCKETS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int)(value >>> shift) - SUB_BUCKETS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueIn( int index ) {
+        if( index < 2 * SUB_BUCKETS ) return index;
+        int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
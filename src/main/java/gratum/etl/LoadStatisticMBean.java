@@ -0,0 +1,17 @@
+package gratum.etl;
+
+/**
+ * The JMX view of a running Pipeline's {@link LoadStatistic}.
+ */
+public interface LoadStatisticMBean {
+
+    String getName();
+
+    Integer getLoaded();
+
+    Integer getRejections();
+
+    long getElapsed();
+
+    double getRowsPerSecond();
+}
@@ -0,0 +1,111 @@
+package gratum.etl;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the current row of a ResultSet into a {@link SchemaRow}.  The column labels and types are read from the
+ * ResultSetMetaData once, and each value is read with the getter for its column type so common types don't go through
+ * the driver's generic getObject conversion.  Values are the same types getObject would return.  Columns that aren't
+ * in the projection (if one is given) aren't read at all.
+ */
+public class ResultSetReader {
+
+    private static final int OBJECT = 0, STRING = 1, INT = 2, LONG = 3, DOUBLE = 4, BOOLEAN = 5;
+
+    private final Schema schema;
+    private final int[] positions;
+    private final int[] indexes;
+    private final int[] kinds;
+    private final int width;
+
+    public ResultSetReader(Schema schema, ResultSetMetaData md) throws SQLException {
+        this( schema, md, null );
+    }
+
+    /**
+     * @param projection the column labels to read, or null to read every column.
+     */
+    public ResultSetReader(Schema schema, ResultSetMetaData md, Collection<String> projection) throws SQLException {
+        this.schema = schema;
+        List<Integer> read = new ArrayList<>();
+        for( int c = 1; c <= md.getColumnCount(); c++ ) {
+            if( projection == null || projection.contains( md.getColumnLabel( c ) ) ) read.add( c );
+        }
+        this.positions = new int[ read.size() ];
+        this.indexes = new int[ read.size() ];
+        this.kinds = new int[ read.size() ];
+        for( int i = 0; i < positions.length; i++ ) {
+            int c = read.get( i );
+            positions[i] = c;
+            indexes[i] = schema.indexOf( md.getColumnLabel( c ), true );
+            kinds[i] = kindOf( md.getColumnType( c ), md.isSigned( c ) );
+        }
+        this.width = schema.size();
+    }
+
+    /**
+     * @return the values of the ResultSet's current row.
+     */
+    public SchemaRow read( ResultSet rs ) throws SQLException {
+        Object[] values = new Object[ width ];
+        for( int i = 0; i < indexes.length; i++ ) {
+            int c = positions[i];
+            Object value;
+            switch( kinds[i] ) {
+                case STRING:
+                    value = rs.getString( c );
+                    break;
+                case INT:
+                    int n = rs.getInt( c );
+                    value = rs.wasNull() ? null : n;
+                    break;
+                case LONG:
+                    long l = rs.getLong( c );
+                    value = rs.wasNull() ? null : l;
+                    break;
+                case DOUBLE:
+                    double d = rs.getDouble( c );
+                    value = rs.wasNull() ? null : d;
+                    break;
+                case BOOLEAN:
+                    boolean b = rs.getBoolean( c );
+                    value = rs.wasNull() ? null : b;
+                    break;
+                default:
+                    value = rs.getObject( c );
+            }
+            values[ indexes[i] ] = value;
+        }
+        return schema.row( values );
+    }
+
+    private static int kindOf( int type, boolean signed ) {
+        switch( type ) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return STRING;
+            case Types.INTEGER:
+                // unsigned ints don't fit in an Integer
+                return signed ? INT : LONG;
+            case Types.BIGINT:
+                return signed ? LONG : OBJECT;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return DOUBLE;
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                return OBJECT;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package gratum.etl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue between a single producer thread and a single consumer thread backed by an array.  Neither side
+ * takes a lock.  The producer blocks while the buffer is full (backpressure) and the consumer blocks while it's empty.
+ * A blocked thread spins briefly (on multiprocessors), then parks until the other side wakes it.
+ *
+ * The producer calls {@link #close()} once it has put everything, after which {@link #take()} returns null once the
+ * buffer is drained.  Either side can {@link #abort()} to make the other side give up.
+ */
+public class RingBuffer<T> {
+
+    private static final long PARK_NANOS = 1_000_000L;
+    // spinning only helps when the other side is running on another processor
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    /**
+     * @param capacity the number of items buffered before the producer blocks.  Rounded up to a power of two.
+     */
+    public RingBuffer(int capacity) {
+        int size = 2;
+        while( size < capacity ) size <<= 1;
+        this.slots = new Object[ size ];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the item, waiting while the buffer is full.
+     *
+     * @return false if the buffer was aborted and the item wasn't added.
+     */
+    public boolean put( T item ) throws InterruptedException {
+        long t = tail.get();
+        int spins = 0;
+        while( t - head.get() >= slots.length ) {
+            if( aborted ) return false;
+            if( spins++ < SPINS ) {
+                Thread.yield();
+                continue;
+            }
+            waitingProducer = Thread.currentThread();
+            if( t - head.get() >= slots.length && !aborted ) LockSupport.parkNanos( this, PARK_NANOS );
+            waitingProducer = null;
+            if( Thread.interrupted() ) throw new InterruptedException();
+        }
+        if( aborted ) return false;
+        slots[ (int)t & mask ] = item;
+        tail.set( t + 1 );
+        Thread consumer = waitingConsumer;
+        if( consumer != null ) LockSupport.unpark( consumer );
+        return true;
+    }
+
+    /**
+     * Removes the next item, waiting while the buffer is empty.
+     *
+     * @return the next item, or null if the buffer is closed and drained, or aborted.
+     */
+    @SuppressWarnings("unchecked")
+    public T take() throws InterruptedException {
+        long h = head.get();
+        int spins = 0;
+        while( h >= tail.get() ) {
+            if( aborted || (closed && h >= tail.get()) ) return null;
+            if( spins++ < SPINS ) {
+                Thread.yield();
+                continue;
+            }
+            waitingConsumer = Thread.currentThread();
+            if( h >= tail.get() && !closed && !aborted ) LockSupport.parkNanos( this, PARK_NANOS );
+            waitingConsumer = null;
+            if( Thread.interrupted() ) throw new InterruptedException();
+        }
+        if( aborted ) return null;
+        int i = (int)h & mask;
+        T item = (T)slots[i];
+        slots[i] = null;
+        head.set( h + 1 );
+        Thread producer = waitingProducer;
+        if( producer != null ) LockSupport.unpark( producer );
+        return item;
+    }
+
+    /**
+     * Called by the producer once it's done putting items.
+     */
+    public void close() {
+        closed = true;
+        Thread consumer = waitingConsumer;
+        if( consumer != null ) LockSupport.unpark( consumer );
+    }
+
+    /**
+     * Stops both sides.  Blocked calls to {@link #put(Object)} return false and {@link #take()} returns null.
+     */
+    public void abort() {
+        aborted = true;
+        Thread consumer = waitingConsumer;
+        if( consumer != null ) LockSupport.unpark( consumer );
+        Thread producer = waitingProducer;
+        if( producer != null ) LockSupport.unpark( producer );
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public int size() {
+        return (int)(tail.get() - head.get());
+    }
+}
@@ -0,0 +1,149 @@
+package gratum.etl;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gratum.etl.RowOutputStream.*;
+
+/**
+ * Reads rows written by {@link RowOutputStream}.  Rows are read back as LinkedHashMaps with their columns in the
+ * same order they were written.
+ */
+public class RowInputStream implements Closeable {
+
+    private final DataInputStream in;
+    private final List<Object> keys = new ArrayList<>();
+
+    public RowInputStream(InputStream in) {
+        this.in = new DataInputStream( in );
+    }
+
+    public RowInputStream(File file) throws IOException {
+        this( new BufferedInputStream( new FileInputStream( file ), 64 * 1024 ) );
+    }
+
+    /**
+     * @return the next row, or null when the end of the stream has been reached.
+     */
+    public Map<Object,Object> readRow() throws IOException {
+        int first = in.read();
+        if( first < 0 ) return null;
+        int size = readVarInt( first );
+        Map<Object,Object> row = new LinkedHashMap<>( size * 4 / 3 + 1 );
+        for( int i = 0; i < size; i++ ) {
+            Object key = readKey();
+            row.put( key, readValue() );
+        }
+        return row;
+    }
+
+    private Object readKey() throws IOException {
+        int id = readVarInt( in.readUnsignedByte() );
+        if( id == 0 ) {
+            Object key = readValue();
+            keys.add( key );
+            return key;
+        }
+        return keys.get( id - 1 );
+    }
+
+    public Object readValue() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch( tag ) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BIG_DECIMAL:
+                return new BigDecimal( readString() );
+            case DATE:
+                return new java.util.Date( in.readLong() );
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case BIG_INTEGER: {
+                byte[] bytes = new byte[ readVarInt( in.readUnsignedByte() ) ];
+                in.readFully( bytes );
+                return new BigInteger( bytes );
+            }
+            case CHARACTER:
+                return in.readChar();
+            case TIMESTAMP: {
+                java.sql.Timestamp timestamp = new java.sql.Timestamp( in.readLong() );
+                timestamp.setNanos( in.readInt() );
+                return timestamp;
+            }
+            case SQL_DATE:
+                return new java.sql.Date( in.readLong() );
+            case LIST: {
+                int size = readVarInt( in.readUnsignedByte() );
+                List<Object> list = new ArrayList<>( size );
+                for( int i = 0; i < size; i++ ) {
+                    list.add( readValue() );
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readVarInt( in.readUnsignedByte() );
+                Map<Object,Object> map = new LinkedHashMap<>( size * 4 / 3 + 1 );
+                for( int i = 0; i < size; i++ ) {
+                    Object key = readValue();
+                    map.put( key, readValue() );
+                }
+                return map;
+            }
+            case SERIALIZED: {
+                byte[] bytes = new byte[ readVarInt( in.readUnsignedByte() ) ];
+                in.readFully( bytes );
+                try( ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes ) ) ) {
+                    return ois.readObject();
+                } catch( ClassNotFoundException e ) {
+                    throw new IOException( "Could not read serialized value", e );
+                }
+            }
+            default:
+                throw new StreamCorruptedException( "Unknown value type " + tag );
+        }
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[ readVarInt( in.readUnsignedByte() ) ];
+        in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private int readVarInt( int b ) throws IOException {
+        int value = b & 0x7F;
+        int shift = 7;
+        while( (b & 0x80) != 0 ) {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,184 @@
+package gratum.etl;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows in a compact binary format that can be read back with {@link RowInputStream}.  This is used to spill
+ * rows to disk.  Each column name is written once per stream, and afterwards referenced by a small integer id.  Values
+ * are written with a one byte type tag followed by a compact encoding for common types (Strings, numbers, dates,
+ * booleans, nested Lists and Maps).  Any other value is written with Java serialization, and must be Serializable.
+ * Nested Lists and Maps are read back as ArrayLists and LinkedHashMaps, and CharSequences (ie GStrings) as Strings.
+ */
+public class RowOutputStream implements Closeable, Flushable {
+
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int INTEGER = 2;
+    static final int LONG = 3;
+    static final int DOUBLE = 4;
+    static final int TRUE = 5;
+    static final int FALSE = 6;
+    static final int BIG_DECIMAL = 7;
+    static final int DATE = 8;
+    static final int FLOAT = 9;
+    static final int SHORT = 10;
+    static final int BYTE = 11;
+    static final int BIG_INTEGER = 12;
+    static final int CHARACTER = 13;
+    static final int TIMESTAMP = 14;
+    static final int SQL_DATE = 15;
+    static final int LIST = 16;
+    static final int MAP = 17;
+    static final int SERIALIZED = 18;
+
+    private final DataOutputStream out;
+    private final Map<Object,Integer> keys = new HashMap<>();
+    private long rows = 0;
+
+    public RowOutputStream(OutputStream out) {
+        this.out = new DataOutputStream( out );
+    }
+
+    public RowOutputStream(File file) throws IOException {
+        this( new BufferedOutputStream( new FileOutputStream( file ), 64 * 1024 ) );
+    }
+
+    public void writeRow( Map<?,?> row ) throws IOException {
+        writeVarInt( row.size() );
+        for( Map.Entry<?,?> entry : row.entrySet() ) {
+            writeKey( entry.getKey() );
+            writeValue( entry.getValue() );
+        }
+        rows++;
+    }
+
+    /**
+     * @return the number of rows written to this stream.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of bytes written so far (saturates at Integer.MAX_VALUE).
+     */
+    public int size() {
+        return out.size();
+    }
+
+    private void writeKey( Object key ) throws IOException {
+        Integer id = keys.get( key );
+        if( id != null ) {
+            writeVarInt( id + 1 );
+        } else {
+            writeVarInt( 0 );
+            writeValue( key );
+            keys.put( key, keys.size() );
+        }
+    }
+
+    public void writeValue( Object value ) throws IOException {
+        if( value == null ) {
+            out.writeByte( NULL );
+        } else if( value instanceof CharSequence ) {
+            out.writeByte( STRING );
+            writeString( value.toString() );
+        } else if( value instanceof Integer ) {
+            out.writeByte( INTEGER );
+            out.writeInt( (Integer)value );
+        } else if( value instanceof Long ) {
+            out.writeByte( LONG );
+            out.writeLong( (Long)value );
+        } else if( value instanceof Double ) {
+            out.writeByte( DOUBLE );
+            out.writeDouble( (Double)value );
+        } else if( value instanceof Boolean ) {
+            out.writeByte( (Boolean)value ? TRUE : FALSE );
+        } else if( value instanceof BigDecimal ) {
+            out.writeByte( BIG_DECIMAL );
+            writeString( value.toString() );
+        } else if( value instanceof java.sql.Timestamp ) {
+            out.writeByte( TIMESTAMP );
+            out.writeLong( ((java.sql.Timestamp)value).getTime() );
+            out.writeInt( ((java.sql.Timestamp)value).getNanos() );
+        } else if( value instanceof java.sql.Date ) {
+            out.writeByte( SQL_DATE );
+            out.writeLong( ((java.sql.Date)value).getTime() );
+        } else if( value.getClass() == java.util.Date.class ) {
+            out.writeByte( DATE );
+            out.writeLong( ((java.util.Date)value).getTime() );
+        } else if( value instanceof Float ) {
+            out.writeByte( FLOAT );
+            out.writeFloat( (Float)value );
+        } else if( value instanceof Short ) {
+            out.writeByte( SHORT );
+            out.writeShort( (Short)value );
+        } else if( value instanceof Byte ) {
+            out.writeByte( BYTE );
+            out.writeByte( (Byte)value );
+        } else if( value instanceof BigInteger ) {
+            out.writeByte( BIG_INTEGER );
+            byte[] bytes = ((BigInteger)value).toByteArray();
+            writeVarInt( bytes.length );
+            out.write( bytes );
+        } else if( value instanceof Character ) {
+            out.writeByte( CHARACTER );
+            out.writeChar( (Character)value );
+        } else if( value instanceof List ) {
+            List<?> list = (List<?>)value;
+            out.writeByte( LIST );
+            writeVarInt( list.size() );
+            for( Object item : list ) {
+                writeValue( item );
+            }
+        } else if( value instanceof Map ) {
+            Map<?,?> map = (Map<?,?>)value;
+            out.writeByte( MAP );
+            writeVarInt( map.size() );
+            for( Map.Entry<?,?> entry : map.entrySet() ) {
+                writeValue( entry.getKey() );
+                writeValue( entry.getValue() );
+            }
+        } else if( value instanceof Serializable ) {
+            out.writeByte( SERIALIZED );
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try( ObjectOutputStream oos = new ObjectOutputStream( bytes ) ) {
+                oos.writeObject( value );
+            }
+            writeVarInt( bytes.size() );
+            bytes.writeTo( out );
+        } else {
+            throw new NotSerializableException( "Can't write value of type " + value.getClass().getName() );
+        }
+    }
+
+    private void writeString( String value ) throws IOException {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        writeVarInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private void writeVarInt( int value ) throws IOException {
+        while( (value & ~0x7F) != 0 ) {
+            out.writeByte( (value & 0x7F) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,93 @@
+package gratum.etl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A shared dictionary of column names to indexes used by {@link SchemaRow}.  A Source creates one Schema per run
+ * from its header (ie the csv header or the ResultSet's columns), and every row it produces only holds an Object[]
+ * of values indexed by the Schema.  Columns added to a row by a step are appended to the Schema so every row after
+ * it reuses the same index.
+ *
+ * Lookups are lock free, and appending columns is thread safe so rows can be processed in parallel.
+ */
+public class Schema {
+
+    private static final Object NULL_KEY = new Object();
+
+    private final ConcurrentHashMap<Object,Integer> index = new ConcurrentHashMap<>();
+    private volatile Object[] keys = new Object[0];
+
+    public Schema() {
+    }
+
+    public Schema(Collection<?> columns) {
+        for( Object column : columns ) {
+            indexOf( column, true );
+        }
+    }
+
+    /**
+     * Returns the index of the given column.
+     *
+     * @param key the column name
+     * @param add true to append the column if it isn't already part of this schema.
+     * @return the index of the column, or -1 if it isn't part of this schema and add is false.
+     */
+    public int indexOf( Object key, boolean add ) {
+        Object k = key == null ? NULL_KEY : key;
+        Integer i = index.get( k );
+        if( i != null ) return i;
+        if( !add ) return -1;
+        synchronized (this) {
+            i = index.get( k );
+            if( i != null ) return i;
+            int next = keys.length;
+            Object[] grown = Arrays.copyOf( keys, next + 1 );
+            grown[next] = key;
+            keys = grown;
+            index.put( k, next );
+            return next;
+        }
+    }
+
+    /**
+     * Returns the index of each column, appending any columns that aren't already part of this schema.  Duplicate
+     * columns map to the same index.
+     */
+    public int[] indexesOf( List<?> columns ) {
+        int[] indexes = new int[ columns.size() ];
+        for( int i = 0; i < indexes.length; i++ ) {
+            indexes[i] = indexOf( columns.get(i), true );
+        }
+        return indexes;
+    }
+
+    public Object keyAt( int i ) {
+        return keys[i];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public List<Object> getColumns() {
+        return Collections.unmodifiableList( Arrays.asList( keys ) );
+    }
+
+    /**
+     * Creates a new row using this Schema.  The values are used directly (not copied), and are in the same order as
+     * the columns of this Schema.  Passing fewer values than columns leaves the remaining columns absent from the row.
+     */
+    public SchemaRow row( Object... values ) {
+        return new SchemaRow( this, values, values.length );
+    }
+
+    @Override
+    public String toString() {
+        return "Schema" + Arrays.toString( keys );
+    }
+}
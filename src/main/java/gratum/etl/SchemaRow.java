@@ -0,0 +1,195 @@
+package gratum.etl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A row backed by an Object[] of values indexed by a shared {@link Schema}.  It implements Map so steps treat it like
+ * any other row, but it only costs a single array per row instead of an entry per column, and the column names are
+ * shared across all rows from the same Source.
+ *
+ * Iteration order is the order of the columns in the Schema, which is the same as insertion order for rows that add
+ * the same columns in the same order.  Removing a column from a row doesn't remove it from the Schema.
+ */
+public class SchemaRow extends AbstractMap<Object,Object> implements Cloneable {
+
+    private static final Object ABSENT = new Object();
+
+    private final Schema schema;
+    private Object[] values;
+    private int size;
+
+    public SchemaRow(Schema schema) {
+        this( schema, new Object[ schema.size() ], 0 );
+        Arrays.fill( values, ABSENT );
+    }
+
+    SchemaRow(Schema schema, Object[] values, int size) {
+        this.schema = schema;
+        this.values = values;
+        this.size = size;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = schema.indexOf( key, false );
+        return i >= 0 && i < values.length && values[i] != ABSENT;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = schema.indexOf( key, false );
+        if( i < 0 || i >= values.length ) return null;
+        Object value = values[i];
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        int i = schema.indexOf( key, true );
+        if( i >= values.length ) {
+            int length = values.length;
+            values = Arrays.copyOf( values, Math.max( i + 1, schema.size() ) );
+            Arrays.fill( values, length, values.length, ABSENT );
+        }
+        Object previous = values[i];
+        values[i] = value;
+        if( previous == ABSENT ) {
+            size++;
+            return null;
+        }
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = schema.indexOf( key, false );
+        if( i < 0 || i >= values.length || values[i] == ABSENT ) return null;
+        Object previous = values[i];
+        values[i] = ABSENT;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill( values, ABSENT );
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<Object,Object>> entrySet() {
+        return new AbstractSet<Entry<Object,Object>>() {
+            @Override
+            public Iterator<Entry<Object,Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of this row sharing the same Schema.
+     */
+    @Override
+    public SchemaRow clone() {
+        return new SchemaRow( schema, values.clone(), size );
+    }
+
+    private class EntryIterator implements Iterator<Entry<Object,Object>> {
+        private int next = advance( 0 );
+        private int last = -1;
+
+        private int advance(int from) {
+            while( from < values.length && values[from] == ABSENT ) from++;
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public Entry<Object,Object> next() {
+            if( !hasNext() ) throw new NoSuchElementException();
+            last = next;
+            next = advance( next + 1 );
+            return new RowEntry( last );
+        }
+
+        @Override
+        public void remove() {
+            if( last < 0 || values[last] == ABSENT ) throw new IllegalStateException();
+            values[last] = ABSENT;
+            size--;
+        }
+    }
+
+    private class RowEntry implements Map.Entry<Object,Object> {
+        private final int index;
+
+        RowEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Object getKey() {
+            return schema.keyAt( index );
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = values[index];
+            return value == ABSENT ? null : value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object previous = getValue();
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof Map.Entry) ) return false;
+            Map.Entry e = (Map.Entry)o;
+            return eq( getKey(), e.getKey() ) && eq( getValue(), e.getValue() );
+        }
+
+        @Override
+        public int hashCode() {
+            Object key = getKey();
+            Object value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+
+        private boolean eq(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package gratum.etl;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A sort-merge join for inputs that are already sorted on the join columns.  Neither side is held in memory, only the
+ * current group of right rows sharing the same key.  The right rows are produced on another thread and handed over
+ * with {@link #put(Map)}, while the left rows are matched on the calling thread with
+ * {@link #probe(Map, Consumer, Consumer)}.  Both sides must be sorted in ascending order by the join columns the same
+ * way {@link Pipeline#sort(java.lang.String[])} orders them, otherwise an IllegalStateException is thrown.
+ */
+public class SortMergeJoin {
+
+    private static final int BATCH_SIZE = 256;
+    private static final Object END = new Object();
+
+    private final List<String> rightColumns;
+    private final List<String> leftColumns;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>( 16 );
+
+    // producer side
+    private List<Map> pending = new ArrayList<>( BATCH_SIZE );
+
+    // consumer side
+    private Iterator<Map> batch = Collections.emptyIterator();
+    private boolean exhausted = false;
+    private Map lookahead;
+    private CompositeKey groupKey;
+    private List<Map> group = Collections.emptyList();
+    private CompositeKey lastLeft;
+    private List<Object> columns;
+
+    public SortMergeJoin(List<String> rightColumns, List<String> leftColumns) {
+        this.rightColumns = rightColumns;
+        this.leftColumns = leftColumns;
+    }
+
+    /**
+     * @return the columns of the first right row, or null if no right rows have been read.
+     */
+    public List<Object> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Adds the next right row.  Called by the thread producing the right rows, and blocks when the left side falls
+     * behind.
+     */
+    public void put( Map row ) throws InterruptedException {
+        pending.add( row );
+        if( pending.size() >= BATCH_SIZE ) {
+            queue.put( pending );
+            pending = new ArrayList<>( BATCH_SIZE );
+        }
+    }
+
+    /**
+     * Signals there are no more right rows.
+     */
+    public void end() throws InterruptedException {
+        if( !pending.isEmpty() ) queue.put( pending );
+        pending = null;
+        queue.put( END );
+    }
+
+    /**
+     * Signals the right side failed.  The failure is rethrown on the thread calling probe.
+     */
+    public void fail( Throwable t ) throws InterruptedException {
+        pending = null;
+        queue.put( t );
+    }
+
+    /**
+     * Joins the left row with all right rows that have the same key.
+     */
+    public void probe( Map row, Consumer<Map> matched, Consumer<Map> unmatched ) {
+        CompositeKey key = CompositeKey.of( row, leftColumns );
+        if( lastLeft != null && key.compareTo( lastLeft ) < 0 ) {
+            throw new IllegalStateException( "The left side of the join is not sorted by " + leftColumns + ": " + key + " came after " + lastLeft );
+        }
+        lastLeft = key;
+        while( !exhausted && (groupKey == null || groupKey.compareTo( key ) < 0) ) {
+            nextGroup();
+        }
+        if( groupKey != null && groupKey.compareTo( key ) == 0 ) {
+            for( Map right : group ) {
+                Map joined = right instanceof SchemaRow ? ((SchemaRow)right).clone() : new LinkedHashMap( right );
+                joined.putAll( row );
+                matched.accept( joined );
+            }
+        } else {
+            unmatched.accept( row );
+        }
+    }
+
+    /**
+     * Reads the remaining right rows so the thread producing them can finish.
+     */
+    public void finish() {
+        while( !exhausted ) {
+            lookahead = null;
+            next();
+        }
+    }
+
+    private void nextGroup() {
+        Map first = lookahead != null ? lookahead : next();
+        lookahead = null;
+        if( first == null ) {
+            exhausted = true;
+            groupKey = null;
+            group = Collections.emptyList();
+            return;
+        }
+        CompositeKey key = CompositeKey.of( first, rightColumns );
+        if( groupKey != null && key.compareTo( groupKey ) < 0 ) {
+            throw new IllegalStateException( "The right side of the join is not sorted by " + rightColumns + ": " + key + " came after " + groupKey );
+        }
+        group = new ArrayList<>( 1 );
+        group.add( first );
+        groupKey = key;
+        Map row;
+        while( (row = next()) != null ) {
+            CompositeKey k = CompositeKey.of( row, rightColumns );
+            int c = k.compareTo( key );
+            if( c == 0 ) {
+                group.add( row );
+            } else if( c < 0 ) {
+                throw new IllegalStateException( "The right side of the join is not sorted by " + rightColumns + ": " + k + " came after " + key );
+            } else {
+                lookahead = row;
+                break;
+            }
+        }
+    }
+
+    private Map next() {
+        while( !batch.hasNext() ) {
+            if( exhausted ) return null;
+            Object item;
+            try {
+                item = queue.take();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( "Interrupted while waiting for the right side of the join", e );
+            }
+            if( item == END ) {
+                exhausted = true;
+                return null;
+            } else if( item instanceof Throwable ) {
+                exhausted = true;
+                Throwable t = (Throwable)item;
+                if( t instanceof RuntimeException ) throw (RuntimeException)t;
+                if( t instanceof Error ) throw (Error)t;
+                throw new RuntimeException( t );
+            }
+            batch = ((List<Map>)item).iterator();
+        }
+        Map row = batch.next();
+        if( columns == null ) columns = new ArrayList<>( row.keySet() );
+        return row;
+    }
+}
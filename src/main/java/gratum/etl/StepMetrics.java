@@ -0,0 +1,165 @@
+package gratum.etl;
+
+/**
+ * The timings of a single step of a Pipeline.  Every row passed to the step is counted, but only every sampleEvery-th
+ * call is timed with System.nanoTime() and recorded in a {@link LatencyHistogram}.  Totals are estimated from the
+ * sampled calls.
+ *
+ * A Step holds onto its StepMetrics so timing a row never looks the step up by name.  The thread running the
+ * Pipeline records into it directly.  Worker threads of a parallel Pipeline record into their own copy made with
+ * {@link #newLocal()} and {@link #merge(StepMetrics)} it back.  Reading the metrics while the Pipeline is running
+ * (ie from JMX or a MetricsReporter) isn't synchronized with recording, so live values are approximate.
+ */
+public class StepMetrics implements StepMetricsMBean {
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private volatile int sampleEvery;
+    private int countdown = 0;
+    private long calls;
+    private volatile long startMillis;
+    private volatile long endMillis;
+
+    public StepMetrics(String name, int sampleEvery) {
+        this.name = name;
+        this.sampleEvery = Math.max( 1, sampleEvery );
+    }
+
+    /**
+     * @return an empty StepMetrics with the same name and sampling used by a worker thread.
+     */
+    public StepMetrics newLocal() {
+        return new StepMetrics( name, sampleEvery );
+    }
+
+    /**
+     * Counts a call to the step.
+     *
+     * @return true if this call should be timed and passed to {@link #record(long)}.
+     */
+    public boolean sample() {
+        calls++;
+        if( --countdown <= 0 ) {
+            countdown = sampleEvery;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts a call to the step without deciding if it's timed.  Used by steps fused with an earlier step, which
+     * decides if the row is timed for all of them.
+     */
+    public void count() {
+        calls++;
+    }
+
+    public void record( long nanos ) {
+        histogram.record( nanos );
+    }
+
+    /**
+     * Adds the other metrics into this one, and resets the other so it can be reused.
+     */
+    public synchronized void merge( StepMetrics other ) {
+        calls += other.calls;
+        histogram.add( other.histogram );
+        other.calls = 0;
+        other.histogram.reset();
+    }
+
+    public void setSampleEvery( int sampleEvery ) {
+        this.sampleEvery = Math.max( 1, sampleEvery );
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * Sets the start and end of the run used to compute {@link #getRowsPerSecond()}.  An end of 0 means it's still
+     * running.
+     */
+    public void setRun( long startMillis, long endMillis ) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls;
+    }
+
+    @Override
+    public long getSampled() {
+        return histogram.getCount();
+    }
+
+    /**
+     * @return the estimated total time spent in the step in nanoseconds.
+     */
+    public synchronized long getTotalNanos() {
+        long sampled = histogram.getCount();
+        if( sampled == 0 ) return 0;
+        return (long)(histogram.getSum() * ((double)calls / sampled));
+    }
+
+    @Override
+    public long getTotalMillis() {
+        return getTotalNanos() / 1_000_000L;
+    }
+
+    /**
+     * @return the latency in nanoseconds the given percentage of sampled calls took less than or equal to.
+     */
+    public synchronized long getPercentile( double percentile ) {
+        return histogram.getValueAtPercentile( percentile );
+    }
+
+    public synchronized double getMeanNanos() {
+        return histogram.getMean();
+    }
+
+    public synchronized long getMaxNanos() {
+        return histogram.getMax();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getPercentile( 50 ) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getPercentile( 99 ) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        long start = startMillis;
+        if( start == 0 ) return 0.0;
+        long end = endMillis > 0 ? endMillis : System.currentTimeMillis();
+        return calls * 1000.0 / Math.max( 1, end - start );
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%s: %,d rows, %,.3f ms avg, p50 %,.3f ms, p99 %,.3f ms, max %,.3f ms", name, calls,
+                getMeanNanos() / 1e6, getPercentile( 50 ) / 1e6, getPercentile( 99 ) / 1e6, getMaxNanos() / 1e6 );
+    }
+}
@@ -0,0 +1,25 @@
+package gratum.etl;
+
+/**
+ * The JMX view of a {@link StepMetrics}.  Latencies are in microseconds.
+ */
+public interface StepMetricsMBean {
+
+    String getName();
+
+    long getCalls();
+
+    long getSampled();
+
+    long getTotalMillis();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    double getRowsPerSecond();
+}
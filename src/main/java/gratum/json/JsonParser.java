@@ -0,0 +1,383 @@
+package gratum.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An incremental JSON tokenizer.  It reads through a fixed size char buffer and hands back one {@link Token} at a
+ * time, so a document of any size can be read while only holding the value currently being built.  Any number of
+ * top level values may follow each other separated by whitespace, which covers both plain JSON documents and
+ * newline delimited JSON (NDJSON / JSON Lines).
+ *
+ * <pre>
+ *     JsonParser parser = new JsonParser( reader );
+ *     JsonParser.Token token;
+ *     while( (token = parser.next()) != JsonParser.Token.END ) {
+ *         Object value = parser.readValue( token );
+ *     }
+ * </pre>
+ *
+ * Values are built the same as JsonSlurper: objects are LinkedHashMaps, arrays are ArrayLists, and numbers are
+ * Integer, Long, BigInteger or BigDecimal.  Field names that repeat (ie the same keys in every row) reuse the same
+ * String instance.
+ */
+public class JsonParser implements Closeable {
+
+    public enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NAME_CACHE_SIZE = 512;
+
+    private static final byte ARRAY_FIRST = 1;
+    private static final byte ARRAY = 2;
+    private static final byte OBJECT_FIRST = 3;
+    private static final byte OBJECT = 4;
+    private static final byte OBJECT_VALUE = 5;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private long consumed = 0;
+
+    private byte[] stack = new byte[ 32 ];
+    private int depth = 0;
+
+    private final StringBuilder text = new StringBuilder();
+    private final String[] names = new String[ NAME_CACHE_SIZE ];
+    private String value;
+    private Number number;
+    private boolean skipping = false;
+
+    public JsonParser(Reader reader) {
+        this( reader, BUFFER_SIZE );
+    }
+
+    public JsonParser(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[ bufferSize ];
+    }
+
+    /**
+     * @return the next token, or {@link Token#END} once all of the input has been read.
+     */
+    public Token next() throws IOException {
+        int c = skipWhitespace();
+        if( depth == 0 ) {
+            if( c < 0 ) return Token.END;
+            return startValue( c );
+        }
+        switch( stack[ depth - 1 ] ) {
+            case ARRAY_FIRST:
+                if( c == ']' ) return end( Token.END_ARRAY );
+                stack[ depth - 1 ] = ARRAY;
+                return startValue( c );
+            case ARRAY:
+                if( c == ']' ) return end( Token.END_ARRAY );
+                expect( c, ',' );
+                return startValue( skipWhitespace() );
+            case OBJECT_FIRST:
+                if( c == '}' ) return end( Token.END_OBJECT );
+                return fieldName( c );
+            case OBJECT:
+                if( c == '}' ) return end( Token.END_OBJECT );
+                expect( c, ',' );
+                return fieldName( skipWhitespace() );
+            default:
+                stack[ depth - 1 ] = OBJECT;
+                return startValue( c );
+        }
+    }
+
+    /**
+     * @return the field name or string of the last {@link Token#FIELD_NAME} or {@link Token#STRING}.
+     */
+    public String getText() {
+        return value;
+    }
+
+    /**
+     * @return the value of the last {@link Token#NUMBER}.
+     */
+    public Number getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the number of chars read so far.
+     */
+    public long getOffset() {
+        return consumed + position;
+    }
+
+    /**
+     * Reads the whole value starting with the given token (ie everything up to the matching {@link Token#END_OBJECT}
+     * for a {@link Token#START_OBJECT}).
+     */
+    public Object readValue( Token token ) throws IOException {
+        switch( token ) {
+            case START_OBJECT:
+                Map<String,Object> map = new LinkedHashMap<>();
+                Token t;
+                while( (t = next()) != Token.END_OBJECT ) {
+                    String name = value;
+                    map.put( name, readValue( next() ) );
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while( (t = next()) != Token.END_ARRAY ) {
+                    list.add( readValue( t ) );
+                }
+                return list;
+            case STRING:
+                return value;
+            case NUMBER:
+                return number;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                throw error( "Expected a value but was " + token );
+        }
+    }
+
+    /**
+     * Skips the whole value starting with the given token without building it.
+     */
+    public void skipValue( Token token ) throws IOException {
+        if( token != Token.START_OBJECT && token != Token.START_ARRAY ) return;
+        int target = depth - 1;
+        skipping = true;
+        try {
+            while( depth > target ) {
+                if( next() == Token.END ) throw error( "Unexpected end of input" );
+            }
+        } finally {
+            skipping = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Token startValue( int c ) throws IOException {
+        switch( c ) {
+            case '{':
+                position++;
+                push( OBJECT_FIRST );
+                return Token.START_OBJECT;
+            case '[':
+                position++;
+                push( ARRAY_FIRST );
+                return Token.START_ARRAY;
+            case '"':
+                position++;
+                value = readString( false );
+                return Token.STRING;
+            case 't':
+                literal( "true" );
+                return Token.TRUE;
+            case 'f':
+                literal( "false" );
+                return Token.FALSE;
+            case 'n':
+                literal( "null" );
+                return Token.NULL;
+            default:
+                if( c == '-' || (c >= '0' && c <= '9') ) {
+                    readNumber();
+                    return Token.NUMBER;
+                }
+                throw unexpected( c );
+        }
+    }
+
+    private Token fieldName( int c ) throws IOException {
+        if( c != '"' ) throw unexpected( c );
+        position++;
+        value = readString( true );
+        expect( skipWhitespace(), ':' );
+        stack[ depth - 1 ] = OBJECT_VALUE;
+        return Token.FIELD_NAME;
+    }
+
+    private Token end( Token token ) {
+        position++;
+        depth--;
+        return token;
+    }
+
+    private void push( byte state ) {
+        if( depth == stack.length ) stack = Arrays.copyOf( stack, depth * 2 );
+        stack[ depth++ ] = state;
+    }
+
+    private void expect( int c, char expected ) throws IOException {
+        if( c != expected ) throw unexpected( c );
+        position++;
+    }
+
+    private void literal( String literal ) throws IOException {
+        for( int i = 0; i < literal.length(); i++ ) {
+            if( position == limit && !fill() ) throw error( "Unexpected end of input" );
+            if( buffer[ position ] != literal.charAt(i) ) throw unexpected( buffer[ position ] );
+            position++;
+        }
+    }
+
+    /**
+     * Reads a string after its opening quote.  A string entirely within the buffer without escapes is created
+     * straight from the buffer, otherwise it's collected in a StringBuilder.
+     */
+    private String readString( boolean name ) throws IOException {
+        int start = position;
+        int hash = 0;
+        for( int i = start; i < limit; i++ ) {
+            char c = buffer[i];
+            if( c == '"' ) {
+                position = i + 1;
+                if( skipping ) return null;
+                return name ? name( start, i - start, hash ) : new String( buffer, start, i - start );
+            } else if( c == '\\' ) {
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+
+        StringBuilder builder = text;
+        builder.setLength( 0 );
+        while( true ) {
+            if( position == limit && !fill() ) throw error( "Unterminated string" );
+            char c = buffer[ position++ ];
+            if( c == '"' ) {
+                return skipping ? null : builder.toString();
+            } else if( c == '\\' ) {
+                if( position == limit && !fill() ) throw error( "Unterminated string" );
+                char e = buffer[ position++ ];
+                switch( e ) {
+                    case 'n': builder.append( '\n' ); break;
+                    case 't': builder.append( '\t' ); break;
+                    case 'r': builder.append( '\r' ); break;
+                    case 'b': builder.append( '\b' ); break;
+                    case 'f': builder.append( '\f' ); break;
+                    case 'u':
+                        int code = 0;
+                        for( int i = 0; i < 4; i++ ) {
+                            if( position == limit && !fill() ) throw error( "Unterminated string" );
+                            int digit = Character.digit( buffer[ position++ ], 16 );
+                            if( digit < 0 ) throw error( "Invalid unicode escape" );
+                            code = (code << 4) | digit;
+                        }
+                        builder.append( (char)code );
+                        break;
+                    default:
+                        builder.append( e );
+                }
+            } else {
+                builder.append( c );
+            }
+        }
+    }
+
+    private String name( int start, int length, int hash ) {
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = names[ slot ];
+        if( cached != null && cached.length() == length ) {
+            int i = 0;
+            while( i < length && cached.charAt(i) == buffer[ start + i ] ) i++;
+            if( i == length ) return cached;
+        }
+        String name = new String( buffer, start, length );
+        names[ slot ] = name;
+        return name;
+    }
+
+    private void readNumber() throws IOException {
+        StringBuilder builder = text;
+        builder.setLength( 0 );
+        boolean decimal = false;
+        boolean negative = false;
+        long whole = 0;
+        int digits = 0;
+        while( position < limit || fill() ) {
+            char c = buffer[ position ];
+            if( c >= '0' && c <= '9' ) {
+                whole = whole * 10 + (c - '0');
+                digits++;
+            } else if( c == '.' || c == 'e' || c == 'E' || c == '+' ) {
+                decimal = true;
+            } else if( c == '-' ) {
+                if( builder.length() == 0 ) negative = true; else decimal = true;
+            } else {
+                break;
+            }
+            builder.append( c );
+            position++;
+        }
+        if( skipping ) return;
+        if( decimal ) {
+            try {
+                number = new BigDecimal( builder.toString() );
+            } catch( NumberFormatException ex ) {
+                throw error( "Invalid number " + builder );
+            }
+        } else if( digits == 0 ) {
+            throw error( "Invalid number " + builder );
+        } else if( digits <= 18 ) {
+            long n = negative ? -whole : whole;
+            number = n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE ? (Number)(int)n : (Number)n;
+        } else {
+            BigInteger big = new BigInteger( builder.toString() );
+            number = big.bitLength() < 64 ? (Number)big.longValue() : big;
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while( position < limit || fill() ) {
+            char c = buffer[ position ];
+            if( c != ' ' && c != '\n' && c != '\r' && c != '\t' ) return c;
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * Refills the buffer once everything in it has been read.
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        while( (read = reader.read( buffer, 0, buffer.length )) == 0 ) { }
+        if( read < 0 ) return false;
+        limit = read;
+        return true;
+    }
+
+    private IOException unexpected( int c ) {
+        return error( c < 0 ? "Unexpected end of input" : "Unexpected character '" + (char)c + "'" );
+    }
+
+    private IOException error( String message ) {
+        return new IOException( message + " at offset " + getOffset() );
+    }
+}
@@ -0,0 +1,211 @@
+package gratum.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Writes rows as JSON into a reusable char buffer that is written to the underlying Writer in large chunks.  Values
+ * are written the same as JsonOutput (Dates are written as yyyy-MM-dd'T'HH:mm:ssZ in GMT), except non-ASCII
+ * characters aren't escaped since the output is expected to be UTF-8.  Objects JSON doesn't have a type for are
+ * written as their toString().
+ *
+ * <pre>
+ *     try( JsonWriter out = new JsonWriter( writer ) ) {
+ *         out.writeRow( row, null );
+ *         out.newLine();
+ *     }
+ * </pre>
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final char[] buffer = new char[ BUFFER_SIZE ];
+    private int position = 0;
+    private SimpleDateFormat dateFormat;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the row as a JSON object.
+     *
+     * @param row the row to write
+     * @param columns the columns of the row to write in order, or null for all of them
+     */
+    public void writeRow( Map<?,?> row, Collection<?> columns ) throws IOException {
+        if( columns == null ) {
+            writeValue( row );
+            return;
+        }
+        append( '{' );
+        boolean first = true;
+        for( Object column : columns ) {
+            if( !row.containsKey( column ) ) continue;
+            if( !first ) append( ',' );
+            first = false;
+            writeString( String.valueOf( column ) );
+            append( ':' );
+            writeValue( row.get( column ) );
+        }
+        append( '}' );
+    }
+
+    public void writeValue( Object value ) throws IOException {
+        if( value == null ) {
+            append( "null" );
+        } else if( value instanceof CharSequence ) {
+            writeString( (CharSequence)value );
+        } else if( value instanceof Number ) {
+            writeNumber( (Number)value );
+        } else if( value instanceof Boolean ) {
+            append( value.toString() );
+        } else if( value instanceof Map ) {
+            append( '{' );
+            boolean first = true;
+            for( Map.Entry<?,?> entry : ((Map<?,?>)value).entrySet() ) {
+                if( !first ) append( ',' );
+                first = false;
+                writeString( String.valueOf( entry.getKey() ) );
+                append( ':' );
+                writeValue( entry.getValue() );
+            }
+            append( '}' );
+        } else if( value instanceof Iterable ) {
+            append( '[' );
+            boolean first = true;
+            for( Object item : (Iterable<?>)value ) {
+                if( !first ) append( ',' );
+                first = false;
+                writeValue( item );
+            }
+            append( ']' );
+        } else if( value instanceof Object[] ) {
+            append( '[' );
+            Object[] array = (Object[])value;
+            for( int i = 0; i < array.length; i++ ) {
+                if( i > 0 ) append( ',' );
+                writeValue( array[i] );
+            }
+            append( ']' );
+        } else if( value instanceof Date ) {
+            if( dateFormat == null ) {
+                dateFormat = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ssZ" );
+                dateFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+            }
+            writeString( dateFormat.format( (Date)value ) );
+        } else {
+            writeString( value.toString() );
+        }
+    }
+
+    private void writeNumber( Number number ) throws IOException {
+        if( (number instanceof Double && (((Double)number).isNaN() || ((Double)number).isInfinite()))
+                || (number instanceof Float && (((Float)number).isNaN() || ((Float)number).isInfinite())) ) {
+            throw new IllegalArgumentException( number + " can't be written as JSON" );
+        }
+        append( number.toString() );
+    }
+
+    private void writeString( CharSequence value ) throws IOException {
+        int length = value.length();
+        ensureCapacity( length + 2 );
+        char[] buf = buffer;
+        int pos = position;
+        buf[ pos++ ] = '"';
+        for( int i = 0; i < length; i++ ) {
+            char c = value.charAt(i);
+            if( c >= 0x20 && c != '"' && c != '\\' ) {
+                if( pos == buf.length ) {
+                    position = pos;
+                    ensureCapacity( length - i + 1 );
+                    pos = position;
+                }
+                buf[ pos++ ] = c;
+                continue;
+            }
+            position = pos;
+            ensureCapacity( length - i + 6 );
+            pos = position;
+            buf[ pos++ ] = '\\';
+            switch( c ) {
+                case '"': buf[ pos++ ] = '"'; break;
+                case '\\': buf[ pos++ ] = '\\'; break;
+                case '\n': buf[ pos++ ] = 'n'; break;
+                case '\r': buf[ pos++ ] = 'r'; break;
+                case '\t': buf[ pos++ ] = 't'; break;
+                case '\b': buf[ pos++ ] = 'b'; break;
+                case '\f': buf[ pos++ ] = 'f'; break;
+                default:
+                    buf[ pos++ ] = 'u';
+                    buf[ pos++ ] = '0';
+                    buf[ pos++ ] = '0';
+                    buf[ pos++ ] = HEX[ c >> 4 ];
+                    buf[ pos++ ] = HEX[ c & 0xF ];
+            }
+        }
+        position = pos;
+        append( '"' );
+    }
+
+    /**
+     * Writes a line break, ie between the rows of NDJSON.
+     */
+    public void newLine() throws IOException {
+        append( '\n' );
+    }
+
+    public void append( char c ) throws IOException {
+        if( position == buffer.length ) drain();
+        buffer[ position++ ] = c;
+    }
+
+    public void append( String s ) throws IOException {
+        int length = s.length();
+        int offset = 0;
+        while( offset < length ) {
+            if( position == buffer.length ) drain();
+            int count = Math.min( length - offset, buffer.length - position );
+            s.getChars( offset, offset + count, buffer, position );
+            position += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Makes room for up to the given number of chars, or as much as the buffer can hold.
+     */
+    private void ensureCapacity( int chars ) throws IOException {
+        if( position + chars > buffer.length ) drain();
+    }
+
+    private void drain() throws IOException {
+        out.write( buffer, 0, position );
+        position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+}
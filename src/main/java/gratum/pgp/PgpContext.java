@@ -6,13 +6,13 @@ import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.*;
 import org.bouncycastle.openpgp.operator.jcajce.*;
-import org.bouncycastle.util.io.Streams;
 
 import java.io.*;
 import java.security.Provider;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PgpContext {
 
@@ -25,6 +25,11 @@ public class PgpContext {
     private int compressedDataType = PGPCompressedData.ZIP;
     private boolean overwrite = false;
 
+    // looked up once and reused for every file rather than searching the key rings per file
+    private volatile List<PGPPublicKey> encryptionKeys;
+    private final Map<Long, PGPPrivateKey> privateKeys = new ConcurrentHashMap<>();
+    private final Deque<byte[]> buffers = new ArrayDeque<>();
+
     public PgpContext() {
         Provider provider = Security.getProvider("BC");
         if (provider == null) {
@@ -34,36 +39,40 @@ public class PgpContext {
 
     public PgpContext addPublicKeys( PGPPublicKeyRingCollection keys ) {
         this.publicKeys = keys;
+        this.encryptionKeys = null;
         return this;
     }
 
     public PgpContext addSecretKeys( PGPSecretKeyRingCollection keys ) {
         this.secretKeys = keys;
+        this.encryptionKeys = null;
+        this.privateKeys.clear();
         return this;
     }
 
     public PgpContext addPublicKeys( File publicKeyRing ) throws IOException, PGPException {
         try(InputStream stream = new ArmoredInputStream(new FileInputStream(publicKeyRing))) {
-            this.publicKeys = new PGPPublicKeyRingCollection(stream, new JcaKeyFingerprintCalculator());
-            return this;
+            return addPublicKeys( new PGPPublicKeyRingCollection(stream, new JcaKeyFingerprintCalculator()) );
         }
     }
 
     public PgpContext addSecretKeys( File secretKeyRing ) throws IOException, PGPException {
         try(InputStream stream = new ArmoredInputStream(new FileInputStream(secretKeyRing))) {
-            this.secretKeys = new PGPSecretKeyRingCollection(stream, new JcaKeyFingerprintCalculator());
-            return this;
+            return addSecretKeys( new PGPSecretKeyRingCollection(stream, new JcaKeyFingerprintCalculator()) );
         }
     }
 
     public PgpContext identity( String identity, char[] passphrase ) {
         this.identities = Collections.singleton( identity );
         this.passphrase = passphrase;
+        this.encryptionKeys = null;
+        this.privateKeys.clear();
         return this;
     }
 
     public PgpContext identities( Iterable<String> identities ) {
         this.identities = identities;
+        this.encryptionKeys = null;
         return this;
     }
 
@@ -92,6 +101,10 @@ public class PgpContext {
         assert identities != null : "You must have at least 1 identity configured using addIdentities()";
 
         List<PGPPublicKey> keys = getPgpPublicKeys();
+        byte[] encryptBuffer = acquireBuffer();
+        byte[] compressBuffer = acquireBuffer();
+        byte[] literalBuffer = acquireBuffer();
+        byte[] copyBuffer = acquireBuffer();
         try {
             if (asciiArmour) {
                 out = new ArmoredOutputStream(out);
@@ -105,21 +118,48 @@ public class PgpContext {
                 encryptedDataGenerator.addMethod(new JcePublicKeyKeyEncryptionMethodGenerator(key).setProvider("BC"));
             });
 
-            try(OutputStream encryptedOut = encryptedDataGenerator.open(out, new byte[1<<16]) ) {
+            try(OutputStream encryptedOut = encryptedDataGenerator.open(out, encryptBuffer) ) {
                 PGPCompressedDataGenerator compressedDataGenerator = new PGPCompressedDataGenerator(compressedDataType);
-                try( OutputStream compressedOut = compressedDataGenerator.open(encryptedOut, new byte[1 << 16]) ) {
+                try( OutputStream compressedOut = compressedDataGenerator.open(encryptedOut, compressBuffer) ) {
                     PGPLiteralDataGenerator lData = new PGPLiteralDataGenerator();
-                    try (OutputStream pgpOut = lData.open(compressedOut, PGPLiteralData.BINARY, filename, modificationTime, new byte[1 << 16])) {
-                        IOUtils.copy(stream, pgpOut);
+                    try (OutputStream pgpOut = lData.open(compressedOut, PGPLiteralData.BINARY, filename, modificationTime, literalBuffer)) {
+                        IOUtils.copyLarge(stream, pgpOut, copyBuffer);
                     }
                 }
             }
         } finally {
             out.close();
+            releaseBuffer( encryptBuffer, compressBuffer, literalBuffer, copyBuffer );
+        }
+    }
+
+    /**
+     * Buffers are pooled so encrypting or decrypting a lot of files doesn't allocate new ones per file.  The pool only
+     * grows to the number of files being worked on at the same time.
+     */
+    private byte[] acquireBuffer() {
+        synchronized( buffers ) {
+            byte[] buffer = buffers.poll();
+            return buffer != null ? buffer : new byte[1 << 16];
+        }
+    }
+
+    private void releaseBuffer( byte[]... released ) {
+        synchronized( buffers ) {
+            for( byte[] buffer : released ) buffers.push( buffer );
         }
     }
 
     private List<PGPPublicKey> getPgpPublicKeys() throws PGPException {
+        List<PGPPublicKey> keys = encryptionKeys;
+        if( keys == null ) {
+            keys = findPgpPublicKeys();
+            encryptionKeys = keys;
+        }
+        return keys;
+    }
+
+    private List<PGPPublicKey> findPgpPublicKeys() throws PGPException {
         List<PGPPublicKey> keys = new ArrayList<>();
         for( String identity : identities ) {
             PGPPublicKey key;
@@ -131,7 +171,7 @@ public class PgpContext {
                 throw new IllegalArgumentException("No keys for identity: " + identity );
             }
         }
-        return keys;
+        return Collections.unmodifiableList( keys );
     }
 
     private PGPPublicKey getPublicIdentity(String identity) throws PGPException {
@@ -173,14 +213,39 @@ public class PgpContext {
     public void decrypt(InputStream inputStream, OutputStream outputStream ) throws IOException, PGPException {
         assert secretKeys != null : "You must provide a secret key ring using addSecretKeys()";
         assert identities != null : "You must provide an identity to decrypt using addIdentity()";
-        new PgpObjectProcessor(this, passphrase ).onData( (PGPLiteralData pgpLiteralData) -> {
-            Streams.pipeAll(pgpLiteralData.getInputStream(), outputStream);
-            outputStream.flush();
-            return true;
-        }).process( inputStream );
+        byte[] buffer = acquireBuffer();
+        try {
+            new PgpObjectProcessor(this, passphrase ).onData( (PGPLiteralData pgpLiteralData) -> {
+                IOUtils.copyLarge(pgpLiteralData.getInputStream(), outputStream, buffer);
+                outputStream.flush();
+                return true;
+            }).process( inputStream );
+        } finally {
+            releaseBuffer( buffer );
+        }
     }
 
     public PGPSecretKey getSecretKey(long keyID) throws PGPException {
         return secretKeys.getSecretKey(keyID);
     }
+
+    /**
+     * Extracts the private key for the given key id.  Extracting runs the passphrase through the key's S2K function
+     * which is deliberately slow, so keys extracted with the configured passphrase are kept for the next file.
+     *
+     * @return the private key or null if there isn't a secret key with that id
+     */
+    public PGPPrivateKey getPrivateKey(long keyID, char[] passphrase) throws PGPException {
+        PGPPrivateKey key = passphrase == this.passphrase ? privateKeys.get(keyID) : null;
+        if( key != null ) return key;
+        PGPSecretKey secretKey = getSecretKey(keyID);
+        if( secretKey == null ) return null;
+        key = secretKey.extractPrivateKey(
+                new JcePBESecretKeyDecryptorBuilder(new JcaPGPDigestCalculatorProviderBuilder().setProvider("BC").build())
+                        .setProvider("BC")
+                        .build(passphrase)
+        );
+        if( passphrase == this.passphrase ) privateKeys.put(keyID, key);
+        return key;
+    }
 }
@@ -2,8 +2,6 @@ package gratum.pgp;
 
 import org.bouncycastle.openpgp.*;
 import org.bouncycastle.openpgp.operator.jcajce.JcaKeyFingerprintCalculator;
-import org.bouncycastle.openpgp.operator.jcajce.JcaPGPDigestCalculatorProviderBuilder;
-import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder;
 import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyDataDecryptorFactoryBuilder;
 
 import java.io.BufferedInputStream;
@@ -28,14 +26,9 @@ public class PgpObjectProcessor {
             boolean processed = true;
             while (processed && it.hasNext()) {
                 publicKeyEncryptedData = (PGPPublicKeyEncryptedData) it.next();
-                PGPSecretKey pgpSecKey = context.getSecretKey(publicKeyEncryptedData.getKeyID());
+                PGPPrivateKey secretKey = context.getPrivateKey(publicKeyEncryptedData.getKeyID(), passphrase);
 
-                if (pgpSecKey != null) {
-                    PGPPrivateKey secretKey = pgpSecKey.extractPrivateKey(
-                            new JcePBESecretKeyDecryptorBuilder(new JcaPGPDigestCalculatorProviderBuilder().setProvider("BC").build())
-                                    .setProvider("BC")
-                                    .build(passphrase)
-                    );
+                if (secretKey != null) {
                     InputStream clear = publicKeyEncryptedData.getDataStream(
                             new JcePublicKeyDataDecryptorFactoryBuilder()
                                     .setProvider("BC")
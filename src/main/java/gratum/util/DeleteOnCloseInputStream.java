@@ -0,0 +1,27 @@
+package gratum.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads a temporary file and deletes it once the stream is closed.
+ */
+public class DeleteOnCloseInputStream extends FileInputStream {
+
+    private final File file;
+
+    public DeleteOnCloseInputStream(File file) throws IOException {
+        super(file);
+        this.file = file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package gratum.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A set of 128 bit hashes (ie from {@link Murmur3}) stored as pairs of longs in open addressing tables, without
+ * boxing or an object per entry.  The set is split into segments by the top bits of the hash and each segment grows
+ * on its own, so growing only rehashes a fraction of the set.
+ *
+ * While the tables fit in the memory budget they are held on the heap, or in direct ByteBuffers outside of the heap
+ * if asked.  Once growing a segment would exceed the budget the new table is written to a memory mapped file in the
+ * spill directory instead, leaving it to the OS to page it in and out.  The files are deleted on {@link #close()}.
+ */
+public class Hash128Set implements Closeable {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double LOAD_FACTOR = 0.6;
+    // keeps each table under the 2GB limit of a single ByteBuffer
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final long memoryBudget;
+    private final File spillDirectory;
+    private final boolean direct;
+    private final Segment[] segments = new Segment[ 1 << SEGMENT_BITS ];
+    private long memoryUsed = 0;
+    private boolean containsZero = false;
+    private long size = 0;
+
+    public Hash128Set() {
+        this( Long.MAX_VALUE, null );
+    }
+
+    /**
+     * @param memoryBudget the number of bytes of tables to hold on the heap
+     * @param spillDirectory the directory to write tables into once the budget is exceeded, or null for java.io.tmpdir
+     */
+    public Hash128Set(long memoryBudget, File spillDirectory) {
+        this( memoryBudget, spillDirectory, false );
+    }
+
+    /**
+     * @param memoryBudget the number of bytes of tables to hold in memory
+     * @param spillDirectory the directory to write tables into once the budget is exceeded, or null for java.io.tmpdir
+     * @param direct true to hold the tables in direct ByteBuffers outside of the heap instead of on the heap
+     */
+    public Hash128Set(long memoryBudget, File spillDirectory, boolean direct) {
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.direct = direct;
+    }
+
+    /**
+     * @return true if the hash wasn't already in the set
+     */
+    public boolean add( long h1, long h2 ) throws IOException {
+        if( h1 == 0 && h2 == 0 ) {
+            if( containsZero ) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int s = (int)(h1 >>> (64 - SEGMENT_BITS));
+        Segment segment = segments[s];
+        if( segment == null ) {
+            segment = segments[s] = allocate( INITIAL_CAPACITY );
+        } else if( segment.size >= segment.threshold && segment.capacity < MAX_CAPACITY ) {
+            segment = segments[s] = grow( segment );
+        }
+        if( segment.insert( h1, h2 ) ) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains( long h1, long h2 ) {
+        if( h1 == 0 && h2 == 0 ) return containsZero;
+        Segment segment = segments[ (int)(h1 >>> (64 - SEGMENT_BITS)) ];
+        return segment != null && segment.find( h1, h2 ) >= 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if any of the tables are held in files.
+     */
+    public boolean isSpilled() {
+        for( Segment segment : segments ) {
+            if( segment != null && segment.file != null ) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for( int i = 0; i < segments.length; i++ ) {
+            if( segments[i] != null ) {
+                release( segments[i] );
+                segments[i] = null;
+            }
+        }
+        containsZero = false;
+        size = 0;
+    }
+
+    private Segment grow( Segment old ) throws IOException {
+        Segment bigger = allocate( old.capacity * 2 );
+        for( int i = 0; i < old.capacity; i++ ) {
+            long h1 = old.table.get( i << 1 );
+            long h2 = old.table.get( (i << 1) + 1 );
+            if( h1 != 0 || h2 != 0 ) bigger.insert( h1, h2 );
+        }
+        release( old );
+        return bigger;
+    }
+
+    private Segment allocate( int capacity ) throws IOException {
+        long bytes = (long)capacity * 16;
+        if( memoryUsed + bytes <= memoryBudget ) {
+            memoryUsed += bytes;
+            LongBuffer table = direct ? ByteBuffer.allocateDirect( (int)bytes ).order( ByteOrder.nativeOrder() ).asLongBuffer() : LongBuffer.allocate( capacity * 2 );
+            return new Segment( table, capacity, null );
+        }
+        File file = File.createTempFile( "gratum-set", ".table", spillDirectory );
+        file.deleteOnExit();
+        try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+            raf.setLength( bytes );
+            MappedByteBuffer buffer = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, bytes );
+            return new Segment( buffer.order( ByteOrder.nativeOrder() ).asLongBuffer(), capacity, file );
+        }
+    }
+
+    private void release( Segment segment ) {
+        if( segment.file == null ) {
+            memoryUsed -= (long)segment.capacity * 16;
+        } else if( !segment.file.delete() && segment.file.exists() ) {
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private static class Segment {
+        final LongBuffer table;
+        final int capacity;
+        final int mask;
+        final int threshold;
+        final File file;
+        int size = 0;
+
+        Segment(LongBuffer table, int capacity, File file) {
+            this.table = table;
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.threshold = (int)(capacity * LOAD_FACTOR);
+            this.file = file;
+        }
+
+        boolean insert( long h1, long h2 ) {
+            int slot = (int)h2 & mask;
+            while( true ) {
+                long t1 = table.get( slot << 1 );
+                long t2 = table.get( (slot << 1) + 1 );
+                if( t1 == 0 && t2 == 0 ) {
+                    if( size == capacity - 1 ) throw new IllegalStateException( "Hash128Set is full" );
+                    table.put( slot << 1, h1 );
+                    table.put( (slot << 1) + 1, h2 );
+                    size++;
+                    return true;
+                }
+                if( t1 == h1 && t2 == h2 ) return false;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int find( long h1, long h2 ) {
+            int slot = (int)h2 & mask;
+            while( true ) {
+                long t1 = table.get( slot << 1 );
+                long t2 = table.get( (slot << 1) + 1 );
+                if( t1 == 0 && t2 == 0 ) return -1;
+                if( t1 == h1 && t2 == h2 ) return slot;
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+}
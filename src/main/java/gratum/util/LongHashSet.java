@@ -0,0 +1,96 @@
+package gratum.util;
+
+/**
+ * A set of longs stored in an open addressing table of primitive longs, so each key costs 8-14 bytes instead of a
+ * boxed Long and a HashMap entry.  Keys are spread over the table with the MurmurHash3 finalizer so sequential ids
+ * don't cluster.
+ */
+public class LongHashSet {
+
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] table;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+    private boolean containsZero = false;
+
+    public LongHashSet() {
+        this( 1024 );
+    }
+
+    public LongHashSet(int expected) {
+        int capacity = 16;
+        while( capacity * LOAD_FACTOR < expected && capacity < 1 << 30 ) capacity <<= 1;
+        allocate( capacity );
+    }
+
+    /**
+     * @return true if the key wasn't already in the set
+     */
+    public boolean add( long key ) {
+        if( key == 0 ) {
+            if( containsZero ) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        if( size >= threshold ) grow();
+        int slot = slot( key );
+        long current;
+        while( (current = table[slot]) != 0 ) {
+            if( current == key ) return false;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+        size++;
+        return true;
+    }
+
+    public boolean contains( long key ) {
+        if( key == 0 ) return containsZero;
+        int slot = slot( key );
+        long current;
+        while( (current = table[slot]) != 0 ) {
+            if( current == key ) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the table.
+     */
+    public long getMemory() {
+        return (long)table.length * 8;
+    }
+
+    private int slot( long key ) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int)key & mask;
+    }
+
+    private void grow() {
+        if( table.length == 1 << 30 ) throw new IllegalStateException( "LongHashSet is full" );
+        long[] old = table;
+        allocate( old.length * 2 );
+        for( long key : old ) {
+            if( key == 0 ) continue;
+            int slot = slot( key );
+            while( table[slot] != 0 ) slot = (slot + 1) & mask;
+            table[slot] = key;
+        }
+    }
+
+    private void allocate( int capacity ) {
+        table = new long[ capacity ];
+        mask = capacity - 1;
+        threshold = (int)(capacity * LOAD_FACTOR);
+    }
+}
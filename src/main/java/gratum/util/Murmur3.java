@@ -0,0 +1,145 @@
+package gratum.util;
+
+/**
+ * A streaming MurmurHash3 x64 128 bit hash.  Values are fed in a char at a time, and hashed as if they were a
+ * UTF-16LE byte array, so a String can be hashed without encoding it or copying it.  The same hasher is reused by
+ * calling {@link #reset()} before each value.
+ *
+ * <pre>
+ *     hasher.reset()
+ *     hasher.putString( "a" )
+ *     hasher.putString( "b" )
+ *     hasher.finish()
+ *     set.add( hasher.getH1(), hasher.getH2() )
+ * </pre>
+ *
+ * It isn't a cryptographic hash, but collisions between 128 bit hashes are unlikely enough to treat equal hashes as
+ * equal values.
+ */
+public class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final int seed;
+    private long h1;
+    private long h2;
+    private long k1;
+    private long k2;
+    private int units;
+    private long length;
+
+    public Murmur3() {
+        this( 0 );
+    }
+
+    public Murmur3(int seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    public Murmur3 reset() {
+        h1 = seed & 0xFFFFFFFFL;
+        h2 = seed & 0xFFFFFFFFL;
+        k1 = 0;
+        k2 = 0;
+        units = 0;
+        length = 0;
+        return this;
+    }
+
+    public Murmur3 putChar( char c ) {
+        long v = c;
+        if( units < 4 ) {
+            k1 |= v << (units << 4);
+        } else {
+            k2 |= v << ((units - 4) << 4);
+        }
+        if( ++units == 8 ) {
+            mix();
+        }
+        return this;
+    }
+
+    /**
+     * Adds the chars of the given value.  The length is added before the chars so the boundaries between values
+     * are part of the hash ("ab", "c" and "a", "bc" hash differently).
+     */
+    public Murmur3 putString( CharSequence value ) {
+        int len = value.length();
+        putInt( len );
+        for( int i = 0; i < len; i++ ) {
+            putChar( value.charAt(i) );
+        }
+        return this;
+    }
+
+    public Murmur3 putInt( int value ) {
+        putChar( (char)value );
+        putChar( (char)(value >>> 16) );
+        return this;
+    }
+
+    public Murmur3 putLong( long value ) {
+        putInt( (int)value );
+        putInt( (int)(value >>> 32) );
+        return this;
+    }
+
+    /**
+     * Finishes the hash of everything added since the last {@link #reset()}.  The result is read with
+     * {@link #getH1()} and {@link #getH2()}.
+     */
+    public Murmur3 finish() {
+        length += (long)units * 2;
+        if( units > 4 ) {
+            k2 *= C2; k2 = Long.rotateLeft( k2, 33 ); k2 *= C1; h2 ^= k2;
+        }
+        if( units > 0 ) {
+            k1 *= C1; k1 = Long.rotateLeft( k1, 31 ); k1 *= C2; h1 ^= k1;
+        }
+        k1 = 0;
+        k2 = 0;
+        units = 0;
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix( h1 );
+        h2 = fmix( h2 );
+        h1 += h2;
+        h2 += h1;
+        return this;
+    }
+
+    public long getH1() {
+        return h1;
+    }
+
+    public long getH2() {
+        return h2;
+    }
+
+    private void mix() {
+        k1 *= C1; k1 = Long.rotateLeft( k1, 31 ); k1 *= C2; h1 ^= k1;
+        h1 = Long.rotateLeft( h1, 27 ); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2; k2 = Long.rotateLeft( k2, 33 ); k2 *= C1; h2 ^= k2;
+        h2 = Long.rotateLeft( h2, 31 ); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+
+        k1 = 0;
+        k2 = 0;
+        units = 0;
+        length += 16;
+    }
+
+    private static long fmix( long k ) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,184 @@
+package gratum.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An InputStream of the bytes written by a producer running on its own thread, so a stream can be transformed (ie
+ * encrypted) while it's read instead of being written to a temporary file first.  The producer writes into a
+ * bounded queue of chunks, so it only gets ahead of the reader by chunkSize * chunks bytes before it waits for the
+ * reader to catch up.  Chunks are handed back to the producer once they've been read so they're reused.
+ *
+ * A failure in the producer is thrown from read() once the bytes written before it have been read.  Closing the
+ * stream before the end stops the producer the next time it writes.  The stream must be read to the end or closed,
+ * otherwise the producer waits forever.
+ */
+public class ProducerInputStream extends InputStream {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    public interface Producer {
+        void produce( OutputStream out ) throws Exception;
+    }
+
+    private static final Chunk END = new Chunk( new byte[0] );
+
+    private final BlockingQueue<Chunk> queue;
+    private final BlockingQueue<Chunk> free;
+    private final int chunkSize;
+    private final Thread thread;
+    private volatile boolean closed = false;
+    private volatile Throwable failure;
+    private Chunk current;
+    private int position = 0;
+
+    /**
+     * Starts the producer on a new daemon thread.
+     *
+     * @param name the name of the producer's thread
+     * @param chunkSize the size of each chunk
+     * @param chunks the number of chunks the producer can get ahead of the reader
+     * @param producer writes the bytes of the stream
+     */
+    public ProducerInputStream( String name, int chunkSize, int chunks, Producer producer ) {
+        this.chunkSize = chunkSize;
+        this.queue = new ArrayBlockingQueue<>( chunks + 1 );
+        this.free = new ArrayBlockingQueue<>( chunks + 1 );
+        this.thread = new Thread( () -> run( producer ), name );
+        this.thread.setDaemon( true );
+        this.thread.start();
+    }
+
+    private void run( Producer producer ) {
+        try( ChunkOutputStream out = new ChunkOutputStream() ) {
+            producer.produce( out );
+        } catch( Throwable t ) {
+            if( !closed ) failure = t;
+        } finally {
+            try {
+                put( END );
+            } catch( IOException ignore ) {
+                // closed so nothing is waiting for the end
+            }
+        }
+    }
+
+    private void put( Chunk chunk ) throws IOException {
+        try {
+            while( !queue.offer( chunk, 100, TimeUnit.MILLISECONDS ) ) {
+                if( closed ) throw new IOException( "The stream was closed before it was read" );
+            }
+        } catch( InterruptedException ex ) {
+            throw new InterruptedIOException( "Interrupted writing to the stream" );
+        }
+    }
+
+    /**
+     * @return the next chunk with bytes left to read, or END
+     */
+    private Chunk next() throws IOException {
+        if( closed ) throw new IOException( "Stream closed" );
+        if( current != null && position < current.length ) return current;
+        if( current == END ) return END;
+        if( current != null ) free.offer( current );
+        try {
+            current = queue.take();
+        } catch( InterruptedException ex ) {
+            throw new InterruptedIOException( "Interrupted reading the stream" );
+        }
+        position = 0;
+        if( current == END && failure != null ) {
+            throw new IOException( "Could not produce the stream: " + failure.getMessage(), failure );
+        }
+        return current;
+    }
+
+    @Override
+    public int read() throws IOException {
+        Chunk chunk = next();
+        if( chunk == END ) return -1;
+        return chunk.data[ position++ ] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if( len == 0 ) return 0;
+        Chunk chunk = next();
+        if( chunk == END ) return -1;
+        int count = Math.min( len, chunk.length - position );
+        System.arraycopy( chunk.data, position, b, off, count );
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current != null && current != END ? current.length - position : 0;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk( byte[] data ) {
+            this.data = data;
+        }
+    }
+
+    private class ChunkOutputStream extends OutputStream {
+        private Chunk chunk;
+
+        private Chunk chunk() {
+            if( chunk == null ) {
+                chunk = free.poll();
+                if( chunk == null ) chunk = new Chunk( new byte[ chunkSize ] );
+                chunk.length = 0;
+            }
+            return chunk;
+        }
+
+        @Override
+        public void write( int b ) throws IOException {
+            Chunk c = chunk();
+            c.data[ c.length++ ] = (byte)b;
+            if( c.length == c.data.length ) flush();
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            while( len > 0 ) {
+                Chunk c = chunk();
+                int count = Math.min( len, c.data.length - c.length );
+                System.arraycopy( b, off, c.data, c.length, count );
+                c.length += count;
+                off += count;
+                len -= count;
+                if( c.length == c.data.length ) flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if( chunk != null && chunk.length > 0 ) {
+                put( chunk );
+                chunk = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -2,9 +2,11 @@ package gratum.util;
 
 import org.apache.commons.codec.binary.Hex;
 
+import java.io.File;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
  * Created by charliehubbard on 7/12/18.
@@ -21,4 +23,25 @@ public class Utilities {
             throw new RuntimeException( e );
         }
     }
+
+    /**
+     * Describes the given file or directory by its path, size and last modified time so a change to any of them (or
+     * to any file within a directory) changes the description.  It's used to fingerprint sources.
+     */
+    public static String fingerprint(File file) {
+        StringBuilder builder = new StringBuilder();
+        fingerprint( file.getAbsoluteFile(), builder );
+        return builder.toString();
+    }
+
+    private static void fingerprint(File file, StringBuilder builder) {
+        builder.append( file.getPath() ).append( ':' ).append( file.length() ).append( ':' ).append( file.lastModified() ).append( '\n' );
+        File[] children = file.listFiles();
+        if( children != null ) {
+            Arrays.sort( children );
+            for( File child : children ) {
+                fingerprint( child, builder );
+            }
+        }
+    }
 }
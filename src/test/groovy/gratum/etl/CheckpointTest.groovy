@@ -0,0 +1,223 @@
+package gratum.etl
+
+import groovy.sql.Sql
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static gratum.source.CollectionSource.from
+import static gratum.source.CsvSource.csv
+import static gratum.source.JdbcSource.database
+import static junit.framework.TestCase.*
+
+class CheckpointTest {
+
+    File dir
+    File checkpoint
+    Integer failAt
+    List<Integer> seen
+
+    @Before
+    void setUp() {
+        dir = File.createTempDir()
+        checkpoint = new File( dir, "load.checkpoint" )
+        failAt = null
+        seen = []
+    }
+
+    @After
+    void cleanUp() {
+        dir.deleteDir()
+    }
+
+    Pipeline load( File out, long every = 50 ) {
+        return csv("src/test/resources/titanic.csv")
+            .checkpoint( file: checkpoint, every: every )
+            .addStep("fail") { Map row ->
+                int id = row.PassengerId as int
+                seen << id
+                if( failAt != null && id == failAt ) throw new IOException("Lost the connection")
+                return row
+            }
+            .unique("Ticket")
+            .limit( 330, false )
+            .save( out.absolutePath, ",", ["PassengerId", "Name", "Ticket"] )
+    }
+
+    @Test
+    void testResumeCsv() {
+        File expected = new File( dir, "expected.csv" )
+        load( expected ).go()
+        assertFalse( "The checkpoint is removed once it finishes", checkpoint.exists() )
+
+        File out = new File( dir, "out.csv" )
+        failAt = 892 + 220
+        shouldFail( RuntimeException ) { load( out ).go() }
+        assertTrue( checkpoint.exists() )
+
+        failAt = null
+        seen.clear()
+        load( out ).resume()
+        assertEquals( "Resumed after the last checkpoint at row 200", 892 + 200, seen.first() )
+        assertEquals( expected.text, out.text )
+        assertFalse( checkpoint.exists() )
+        assertEquals( [], dir.list().findAll { it.startsWith( checkpoint.name ) } )
+    }
+
+    @Test
+    void testResumeWithoutCheckpoint() {
+        File out = new File( dir, "out.csv" )
+        load( out ).resume()
+        assertEquals( 892, seen.first() )
+        assertEquals( 418, seen.size() )
+    }
+
+    @Test
+    void testGoStartsOver() {
+        File out = new File( dir, "out.csv" )
+        failAt = 892 + 120
+        shouldFail( RuntimeException ) { load( out ).go() }
+        failAt = null
+        seen.clear()
+        load( out ).go()
+        assertEquals( 892, seen.first() )
+    }
+
+    @Test
+    void testDifferentPipeline() {
+        File out = new File( dir, "out.csv" )
+        failAt = 892 + 120
+        shouldFail( RuntimeException ) { load( out ).go() }
+        String message = shouldFail( IllegalStateException ) {
+            csv("src/test/resources/titanic.csv")
+                .checkpoint( file: checkpoint, every: 50 )
+                .save( out.absolutePath )
+                .resume()
+        }
+        assertTrue( message.contains("different steps") )
+    }
+
+    @Test
+    void testNotResumable() {
+        shouldFail( IllegalStateException ) {
+            from( [a: 1] ).checkpoint( file: checkpoint )
+        }
+    }
+
+    @Test
+    void testResumeJdbc() {
+        Sql sql = Sql.newInstance("jdbc:h2:mem:checkpoint;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver")
+        try {
+            sql.execute("create table orders (id int primary key, total int)")
+            sql.withBatch("insert into orders (id, total) values (?, ?)") { stmt ->
+                for( int i = 1000; i > 0; i-- ) stmt.addBatch([ i, i * 10 ])
+            }
+            int min = 0
+            Closure<Pipeline> orders = { ->
+                database( sql )
+                    .query("select id, total from orders where total > ${min}")
+                    .resumeBy("ID")
+                    .into()
+                    .checkpoint( file: checkpoint, every: 100 )
+                    .addStep("collect") { Map row ->
+                        seen << (row.ID as int)
+                        if( failAt != null && row.ID == failAt ) throw new IOException("Lost the connection")
+                        return row
+                    }
+            }
+
+            failAt = 450
+            shouldFail( RuntimeException ) { orders().go() }
+            assertEquals( (1..450).toList(), seen )
+
+            failAt = null
+            seen.clear()
+            LoadStatistic stats = orders().resume()
+            assertEquals( (401..1000).toList(), seen )
+            assertEquals( 600, stats.loaded )
+        } finally {
+            sql.execute("drop table orders")
+            sql.close()
+        }
+    }
+
+    @Test
+    void testResumeCrLf() {
+        File orders = new File( dir, "orders.csv" )
+        orders.withWriter("UTF-8") { Writer w ->
+            // 33 chars for the header and 32 for each row puts a \r at the end of the parser's first buffer
+            w.write("id,customer,total_including_tax\r\n")
+            for( int i = 1; i <= 5000; i++ ) w.write( String.format( "%05d,Customer %05d,%09d\r\n", i, i % 97, i * 3 ) )
+        }
+        Closure<Pipeline> load = { File out ->
+            csv( orders.absolutePath )
+                .checkpoint( file: checkpoint, every: 1000 )
+                .addStep("fail") { Map row ->
+                    int id = row.id as int
+                    seen << id
+                    if( failAt != null && id == failAt ) throw new IOException("Lost the connection")
+                    return row
+                }
+                .save( out.absolutePath )
+        }
+
+        File out = new File( dir, "out.csv" )
+        failAt = 3500
+        shouldFail( RuntimeException ) { load( out ).go() }
+
+        failAt = null
+        seen.clear()
+        load( out ).resume()
+        assertEquals( 3001, seen.first() )
+        assertEquals( orders.readLines(), out.readLines() )
+    }
+
+    @Test
+    void testResumeBranch() {
+        File ids = new File( dir, "ids.csv" )
+        ids.text = "id\n" + (1..10).join("\n") + "\n"
+        File out = new File( dir, "out.csv" )
+        File branched = new File( dir, "branch.csv" )
+        Closure<Pipeline> load = { ->
+            csv( ids.absolutePath )
+                .checkpoint( file: checkpoint, every: 2 )
+                .branch { Pipeline p -> p.save( branched.absolutePath ) }
+                .addStep("fail") { Map row ->
+                    if( failAt != null && row.id as int == failAt ) throw new IOException("Lost the connection")
+                    return row
+                }
+                .save( out.absolutePath )
+        }
+
+        failAt = 7
+        shouldFail( RuntimeException ) { load().go() }
+
+        failAt = null
+        load().resume()
+        assertEquals( (1..10).collect { it.toString() }, out.readLines().drop(1) )
+        assertEquals( "The branch is cut back to the checkpoint too", (1..10).collect { it.toString() }, branched.readLines().drop(1) )
+    }
+
+    @Test
+    void testAsyncBranchNotCheckpointed() {
+        File out = new File( dir, "out.csv" )
+        String message = shouldFail( IllegalStateException ) {
+            csv("src/test/resources/titanic.csv")
+                .checkpoint( file: checkpoint, every: 50 )
+                .asyncBranch { Pipeline p -> p.save( out.absolutePath ) }
+                .go()
+        }
+        assertTrue( message.contains("asyncBranch") )
+    }
+
+    static String shouldFail( Class<? extends Throwable> type, Closure c ) {
+        try {
+            c()
+        } catch( Throwable t ) {
+            if( type.isInstance( t ) ) return t.message
+            throw t
+        }
+        fail( "Expected ${type.simpleName}" )
+        return null
+    }
+}
@@ -0,0 +1,70 @@
+package gratum.etl
+
+import gratum.util.LongHashSet
+import org.junit.Test
+
+import static junit.framework.TestCase.*
+
+class KeySetTest {
+
+    @Test
+    void testHashedKeySet() {
+        File dir = File.createTempDir()
+        try {
+            HashedKeySet keys = new HashedKeySet( 32 * 1024, dir )
+            for( long i = 0; i < 50_000; i++ ) {
+                assertTrue( keys.add( new CompositeKey( i ) ) )
+                assertTrue( keys.add( new CompositeKey( "id-${i}".toString() ) ) )
+            }
+            assertFalse( "Whole numbers of different types are the same key", keys.add( new CompositeKey( 7 ) ) )
+            assertFalse( keys.add( new CompositeKey( "id-7" ) ) )
+            assertFalse( "Numeric Strings are the same key as the number", keys.add( new CompositeKey( "7" ) ) )
+            assertFalse( keys.add( new CompositeKey( 7.0d ) ) )
+            assertTrue( "Leading zeros aren't numbers", keys.add( new CompositeKey( "007" ) ) )
+            assertTrue( keys.add( new CompositeKey( 1, "a" ) ) )
+            assertFalse( keys.add( new CompositeKey( 1L, "a" ) ) )
+            assertTrue( keys.add( new CompositeKey( null, "a" ) ) )
+            assertTrue( keys.contains( new CompositeKey( 49_999 ) ) )
+            assertTrue( keys.contains( new CompositeKey( "id-49999" ) ) )
+            assertFalse( keys.contains( new CompositeKey( 50_000 ) ) )
+            assertEquals( 100_003L, keys.size() )
+            assertTrue( "The hashes spilled to disk", dir.list().length > 0 )
+            keys.close()
+            assertEquals( 0, dir.list().length )
+        } finally {
+            dir.deleteDir()
+        }
+    }
+
+    @Test
+    void testBloomKeySet() {
+        BloomKeySet keys = new BloomKeySet( 100_000, 0.01 )
+        assertEquals( 7, keys.hashes )
+        for( int i = 0; i < 100_000; i++ ) {
+            keys.add( new CompositeKey( "key ${i}".toString() ) )
+        }
+        for( int i = 0; i < 100_000; i++ ) {
+            assertTrue( "Never misses a key", keys.contains( new CompositeKey( "key ${i}".toString() ) ) )
+        }
+        int falsePositives = 0
+        for( int i = 100_000; i < 200_000; i++ ) {
+            if( keys.contains( new CompositeKey( "key ${i}".toString() ) ) ) falsePositives++
+        }
+        assertTrue( "${falsePositives} false positives", falsePositives > 0 && falsePositives < 1500 )
+    }
+
+    @Test
+    void testLongHashSet() {
+        LongHashSet set = new LongHashSet( 10 )
+        Random random = new Random( 11 )
+        Set<Long> expected = new HashSet<>()
+        for( int i = 0; i < 100_000; i++ ) {
+            long value = i % 5 == 0 ? 0L : random.nextInt( 50_000 ) - 25_000L
+            assertEquals( expected.add( value ), set.add( value ) )
+        }
+        assertEquals( expected.size(), set.size() )
+        for( long value = -30_000; value < 30_000; value++ ) {
+            assertEquals( expected.contains( value ), set.contains( value ) )
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package gratum.etl
+
+import org.junit.Test
+
+import static gratum.source.CsvSource.csv
+import static junit.framework.TestCase.*
+
+class OperatorTest {
+
+    @Test
+    void testBuiltInOperators() {
+        Map row = [id: " 1 ", score: "2.5", name: " Bob ", city: "", state: null]
+        assertSame( row, new TrimOperator().apply( row ) )
+        assertEquals( [id: "1", score: "2.5", name: "Bob", city: "", state: null], row )
+
+        new AsIntOperator("id").apply( row )
+        new AsDoubleOperator("score").apply( row )
+        new DefaultValuesOperator([city: "Atlanta", state: "GA", name: "Alice"]).apply( row )
+        new RenameOperator([name: "firstName"]).apply( row )
+        new SetFieldOperator("active", true).apply( row )
+        assertEquals( [id: 1, score: 2.5d, city: "Atlanta", state: "GA", firstName: "Bob", active: true], row )
+
+        Rejection rejection = (Rejection)new AsIntOperator("firstName").apply( row )
+        assertEquals( RejectionCategory.INVALID_FORMAT, rejection.category )
+        assertEquals( "Could not parse Bob to an integer.", rejection.reason )
+        assertTrue( new FilterOperator([firstName: "Alice"]).apply( row ) instanceof Rejection )
+        assertSame( row, new FilterOperator([firstName: ["Alice", "Bob"]]).apply( row ) )
+    }
+
+    @Test
+    void testFusedSteps() {
+        List<Map> rows = []
+        Pipeline pipeline = csv("src/test/resources/titanic.csv")
+            .trim()
+            .asInt("Age")
+            .addStep("adult") { Map row -> !row.Age || row.Age >= 18 ? row : reject("Child", RejectionCategory.IGNORE_ROW) }
+            .filter( Sex: "male" )
+            .setField("checked", true)
+            .addSerialStep("collect") { Map row -> rows << row; row }
+            .renameFields([Pclass: "class"])
+            .defaultValues([Cabin: "none"])
+
+        List<Step> chain = pipeline.chain
+        assertEquals( "Steps up to groupBy are fused, then the rest", 3, chain.size() )
+        assertEquals( 5, chain[0].fused.length )
+        assertTrue( chain[1].serial )
+        assertEquals( 2, chain[2].fused.length )
+
+        LoadStatistic stats = pipeline.go()
+        int invalid = stats.getRejections( RejectionCategory.INVALID_FORMAT, "asInt(Age)" )
+        int children = stats.getRejections( RejectionCategory.IGNORE_ROW, "adult" )
+        assertTrue( "asInt rejects the fractional ages", invalid > 0 )
+        assertEquals( 418L - invalid, stats.steps["adult"].calls )
+        assertEquals( 418L - invalid - children, stats.steps["filter Sex->male"].calls )
+        assertEquals( stats.loaded, stats.steps["setField(checked)"].calls )
+        assertEquals( stats.loaded, rows.size() )
+        assertTrue( rows.every { Map row -> row.checked && row.Sex == "male" && row.Cabin && row["class"] && !row.containsKey("Pclass") } )
+        assertTrue( stats.getRejectionsFor( RejectionCategory.IGNORE_ROW ).containsKey( "filter Sex->male" ) )
+        assertEquals( 418L, stats.steps["trim()"].calls )
+        assertEquals( stats.steps["trim()"].sampled, stats.steps["asInt(Age)"].sampled )
+        assertTrue( stats.stepTimings.containsKey( "setField(checked)" ) )
+    }
+
+    @Test
+    void testFusedStepError() {
+        try {
+            Pipeline.create("error") { Pipeline pipeline -> pipeline.process( [id: "1"] ) }
+                .asInt("id")
+                .addStep("explode") { Map row -> throw new IllegalStateException("boom") }
+                .go()
+            fail( "Expected the step to fail" )
+        } catch( RuntimeException ex ) {
+            assertTrue( ex.message, ex.message.contains( "error.explode" ) )
+            assertTrue( ex.cause instanceof IllegalStateException )
+        }
+    }
+}
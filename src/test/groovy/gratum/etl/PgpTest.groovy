@@ -86,6 +86,62 @@ class PgpTest {
         }
     }
 
+    @Test
+    void testStreamingPgp() {
+        File tmp = File.createTempFile("pgp-streaming", ".csv")
+        try {
+            List<Map> rows = []
+            LoadStatistic stat = from(GratumFixture.people)
+                    .save(tmp.getAbsolutePath())
+                    .encryptPgp(streaming: true, "stream") { PgpContext pgp ->
+                        pgp.addSecretKeys( secretKeyRingFile ).identities(["Sue <sue@boy.com>"])
+                    }
+                    .decryptPgp(streaming: true, buffers: 2, "stream") { PgpContext pgp ->
+                        pgp.addSecretKeys(secretKeyRingFile).identity("sue@boy.com", "SueIsStillABoy!".getChars())
+                    }
+                    .addStep("Assert the same") { Map row ->
+                        assert row.file == null
+                        assert row.filename == tmp.absolutePath
+                        assert (row.stream as InputStream).text == tmp.text
+                        rows << row
+                        return row
+                    }
+                    .go()
+            assert stat.loaded == 1
+            assert rows.size() == 1
+            assert tmp.exists()
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    void testStreamingDecryptionFailure() {
+        File tmp = File.createTempFile("pgp-streaming", ".csv")
+        try {
+            from(GratumFixture.people)
+                    .save(tmp.getAbsolutePath())
+                    .encryptPgp(streaming: true, "stream") { PgpContext pgp ->
+                        pgp.addSecretKeys( secretKeyRingFile ).identities(["Sue <sue@boy.com>"])
+                    }
+                    .decryptPgp(streaming: true, "stream") { PgpContext pgp ->
+                        pgp.addSecretKeys(secretKeyRingFile).identity("sue@boy.com", "wrong".getChars())
+                    }
+                    .addStep("Read") { Map row ->
+                        (row.stream as InputStream).text
+                        return row
+                    }
+                    .go()
+            assert false : "Expected the decryption failure to be thrown by the reader"
+        } catch( RuntimeException ex ) {
+            Throwable cause = ex
+            while( cause != null && !(cause instanceof IOException) ) cause = cause.cause
+            assert cause != null
+        } finally {
+            tmp.delete()
+        }
+    }
+
     @Test
     @Ignore
     void performanceTest() {
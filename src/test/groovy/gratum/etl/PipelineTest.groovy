@@ -1,8 +1,13 @@
 package gratum.etl
 
+import gratum.csv.HaltPipelineException
 import gratum.source.CsvSource
+import groovy.sql.Sql
 import org.junit.Test
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 import static junit.framework.TestCase.*
 import static gratum.source.CsvSource.*
 import static gratum.source.HttpSource.*
@@ -165,6 +170,134 @@ class PipelineTest {
         assertTrue( "Assert that the timings inlude the groupBy(Sex,Pclass) step", statistic.stepTimings.containsKey("groupBy(Sex,Pclass)") )
     }
 
+    @Test
+    void testAggregate() {
+        List<Map> rows = []
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .addStep("Fare as Double") { Map row ->
+                row.Fare = row.Fare ? row.Fare as Double : null
+                return row
+            }
+            .aggregate( ["Sex"], [passengers: Aggregate.count(), ages: Aggregate.count("Age"), fares: Aggregate.sum("Fare"),
+                                  classes: Aggregate.sum("Pclass"), age: Aggregate.avg("Age"), cheapest: Aggregate.min("Fare"), dearest: Aggregate.max("Fare")] )
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assertEquals( 2, stats.loaded )
+        assertEquals( ["male", "female"], rows*.Sex )
+        assertEquals( [266L, 152L], rows*.passengers )
+        assertEquals( ["Sex", "passengers", "ages", "fares", "classes", "age", "cheapest", "dearest"], rows[0].keySet().toList() )
+
+        List<Map> men = []
+        csv("src/test/resources/titanic.csv").filter([Sex: "male"]).addStep("Collect") { Map row ->
+            men << row
+            return row
+        }.go()
+        assertEquals( men.count { it.Age }.longValue(), rows[0].ages )
+        assertEquals( men.sum { it.Pclass as long }, rows[0].classes )
+        assertTrue( rows[0].classes instanceof Long )
+        assertEquals( men.findAll { it.Fare }.sum { it.Fare as double } as double, rows[0].fares as double, 0.0001d )
+        assertEquals( men.findAll { it.Age }.sum { it.Age as double } / men.count { it.Age }, rows[0].age as double, 0.0001d )
+        assertEquals( men.findAll { it.Fare }.collect { it.Fare as double }.min(), rows[0].cheapest )
+        assertEquals( men.findAll { it.Fare }.collect { it.Fare as double }.max(), rows[0].dearest )
+    }
+
+    @Test
+    void testSpilledAggregate() {
+        File spillDir = File.createTempDir()
+        Map<String,Aggregate> aggregates = [passengers: Aggregate.count(), classes: Aggregate.sum("Pclass"), age: Aggregate.avg("Age"), last: Aggregate.max("Name")]
+        List<Map> expected = []
+        csv("src/test/resources/titanic.csv").aggregate( ["Pclass", "Embarked"], aggregates ).addStep("Collect") { Map row ->
+            expected << row
+            return row
+        }.go()
+
+        List<Map> actual = []
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .aggregate( ["Pclass", "Embarked"], aggregates, memory: 512, partitions: 3, spillDir: spillDir )
+            .addStep("Collect") { Map row ->
+                actual << row
+                return row
+            }.go()
+
+        assertEquals( expected.size(), stats.loaded )
+        Comparator order = { Map a, Map b -> a.Pclass <=> b.Pclass ?: a.Embarked <=> b.Embarked } as Comparator
+        assertEquals( expected.sort( order ), actual.sort( order ) )
+        assertEquals( 418L, actual.sum { it.passengers } )
+        assertEquals( "Assert spilled partitions were removed", 0, spillDir.listFiles().length )
+        spillDir.delete()
+    }
+
+    @Test
+    void testToDatabase() {
+        Sql sql = Sql.newInstance("jdbc:h2:mem:toDatabase;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver")
+        try {
+            sql.execute("create table passengers (PassengerId int primary key, Name varchar(255) not null, Sex varchar(10), Age double)")
+            List<Map> results = []
+            LoadStatistic stats = csv("src/test/resources/titanic.csv")
+                .addStep("Age as Double") { Map row ->
+                    row.Age = row.Age ? row.Age as Double : null
+                    return row
+                }
+                .toDatabase( sql, "passengers", ["PassengerId", "Name", "Sex", "Age"], 50, rowsPerStatement: 8, commitEvery: 2 )
+                .addStep("Collect") { Map row ->
+                    results << row
+                    return row
+                }
+                .go()
+
+            assertEquals( 1, stats.loaded )
+            assertEquals( [table: "passengers", rows: 418L, failed: 0L], results[0] )
+            assertEquals( 418, sql.firstRow("select count(*) as c from passengers").c )
+            assertEquals( 266, sql.firstRow("select count(*) as c from passengers where Sex = 'male'").c )
+            assertTrue( "Assert auto commit was restored", sql.connection.autoCommit )
+        } finally {
+            sql.execute("drop table if exists passengers")
+            sql.close()
+        }
+    }
+
+    @Test
+    void testToDatabaseRejectsFailedRows() {
+        Sql sql = Sql.newInstance("jdbc:h2:mem:toDatabaseRejects;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver")
+        try {
+            sql.execute("create table passengers (PassengerId int primary key, Name varchar(255) not null)")
+            sql.execute("insert into passengers (PassengerId, Name) values (900, 'Already here')")
+            List<Map> rejected = []
+            List<Map> results = []
+            csv("src/test/resources/titanic.csv")
+                .addStep("Blank a name") { Map row ->
+                    if( row.PassengerId == "1000" ) row.Name = null
+                    return row
+                }
+                .onRejection { Pipeline rej ->
+                    rej.addStep("Collect rejections") { Map row ->
+                        rejected << row
+                        return row
+                    }
+                    return
+                }
+                .toDatabase( sql, "passengers", ["PassengerId", "Name"], 100, rowsPerStatement: 10 )
+                .addStep("Collect") { Map row ->
+                    results << row
+                    return row
+                }
+                .go()
+
+            assertEquals( [table: "passengers", rows: 416L, failed: 2L], results[0] )
+            assertEquals( ["900", "1000"], rejected*.PassengerId )
+            assertTrue( rejected.every { it.rejectionCategory == RejectionCategory.REJECTION } )
+            assertEquals( 417, sql.firstRow("select count(*) as c from passengers").c )
+            assertEquals( "Already here", sql.firstRow("select Name from passengers where PassengerId = 900").Name )
+        } finally {
+            sql.execute("drop table if exists passengers")
+            sql.close()
+        }
+    }
+
     @Test
     void testEmptyGroupBy() {
         LoadStatistic statistic = csv("src/test/resources/titanic.csv")
@@ -184,7 +317,29 @@ class PipelineTest {
 
     @Test
     void testIntersect() {
+        for( String store : ["heap", "hashed", "bloom"] ) {
+            List<Map> rows = []
+            LoadStatistic stats = from(GratumFixture.people)
+                .intersect( store: store, from([[personId: 2L, hobby: 'Biking'], [personId: 4, hobby: 'Crossfit'], [personId: 9, hobby: 'Chess']]), [id: "personId"] )
+                .addStep("collect") { Map row -> rows << row; row }
+                .go()
 
+            assertEquals( 5, stats.loaded )
+            assertEquals( "${store} store", [false, true, false, true, false], rows*.included )
+        }
+    }
+
+    @Test
+    void testIntersectNumericStrings() {
+        for( String store : ["heap", "hashed", "bloom"] ) {
+            List<Map> rows = []
+            from([[price: "2.50"], [price: "1.1"], [price: "-0"], [price: "7"]])
+                .intersect( store: store, from([[price: "2.5"], [price: "1.10"], [price: "0"], [price: "7"]]), ["price"] )
+                .addStep("collect") { Map row -> rows << row; row }
+                .go()
+
+            assertEquals( "${store} store", [false, false, false, true], rows*.included )
+        }
     }
 
     @Test
@@ -310,6 +465,66 @@ class PipelineTest {
             .go()
     }
 
+    @Test
+    void testAsyncBranch() {
+        CountDownLatch running = new CountDownLatch( 3 )
+        Map<String,List<Map>> branches = [:].withDefault { [] }
+        Set<String> threads = Collections.synchronizedSet( new HashSet<String>() )
+        List<Integer> finished = []
+        Closure<Pipeline> collect = { String name, Pipeline p ->
+            return p.addStep("collect ${name}") { Map row ->
+                threads << Thread.currentThread().name
+                branches[name] << row
+                return row
+            }.after {
+                // only passes if all 3 branches are finishing at the same time
+                running.countDown()
+                assertTrue( running.await( 10, TimeUnit.SECONDS ) )
+                synchronized (finished) { finished << branches[name].size() }
+            }
+        }
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .asyncBranch( [Sex: "male"], 4, collect.curry("male") )
+            .asyncBranch( [Sex: "female"], collect.curry("female") )
+            .asyncBranch( 16, collect.curry("all") )
+            .addStep("change") { Map row ->
+                row.Sex = "changed"
+                return row
+            }
+            .after {
+                assertEquals( "Branches finish before the after callbacks that follow them", 3, finished.size() )
+            }
+            .go()
+
+        assertEquals( 418, stats.loaded )
+        assertEquals( 266, branches.male.size() )
+        assertEquals( 152, branches.female.size() )
+        assertEquals( 418, branches.all.size() )
+        assertTrue( "Branches get a copy of the row", branches.all.every { it.Sex != "changed" } )
+        assertEquals( branches.all*.PassengerId, (0..<418).collect { (892 + it).toString() } )
+        assertTrue( threads.every { it.startsWith("gratum-titanic.csv-branch") } )
+    }
+
+    @Test
+    void testAsyncBranchFailure() {
+        try {
+            csv("src/test/resources/titanic.csv")
+                .asyncBranch( 2 ) { Pipeline p ->
+                    p.addStep("fail") { Map row ->
+                        if( row.PassengerId == "1000" ) throw new IllegalStateException("Bad row")
+                        return row
+                    }
+                }
+                .go()
+            fail("Expected the branch's failure to be rethrown")
+        } catch( RuntimeException ex ) {
+            // the failure is rethrown by the next row handed to the branch or when the branch is joined
+            Throwable cause = ex
+            while( cause.cause != null && !(cause instanceof IllegalStateException) ) cause = cause.cause
+            assertEquals( "Bad row", cause.message )
+        }
+    }
+
     @Test
     void testBranchWithGroupBy() {
         csv("src/test/resources/titanic.csv")
@@ -377,6 +592,120 @@ class PipelineTest {
         assertEquals( 0, stats.rejections )
     }
 
+    @Test
+    void testJoinCsvToNumericKeys() {
+        List<Map> numeric = [
+            [PassengerId: 892, label: "int"],
+            [PassengerId: 893L, label: "long"],
+            [PassengerId: 894.0d, label: "double"],
+            [PassengerId: 895.0G, label: "decimal"]
+        ]
+        [ [:], [memory: 1024, partitions: 2], [strategy: "merge"] ].each { Map options ->
+            List<Map> joined = []
+            // ids past 999 aren't in String order, which the merge join needs
+            LoadStatistic stats = csv("src/test/resources/titanic.csv")
+                .filter { Map row -> row.PassengerId.length() == 3 }
+                .join( options, from(numeric), ["PassengerId"] )
+                .addStep("Collect") { Map row ->
+                    joined << row
+                    return row
+                }
+                .go()
+
+            assertEquals( "Joined with ${options}", 4, stats.loaded )
+            assertEquals( ["892", "893", "894", "895"], joined*.PassengerId )
+            assertEquals( ["int", "long", "double", "decimal"], joined*.label )
+        }
+
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .intersect( from(numeric), ["PassengerId"] )
+            .filter( included: true )
+            .go()
+        assertEquals( 4, stats.loaded )
+    }
+
+    @Test
+    void testSpilledHashJoin() {
+        File spillDir = File.createTempDir()
+        List<Map> expected = []
+        csv("src/test/resources/titanic.csv")
+            .join( csv("src/test/resources/titanic.csv").filter([Sex: "male"]).renameFields([Name: "OtherName"]), ["PassengerId"], true )
+            .addStep("Collect") { Map row ->
+                expected << row
+                return row
+            }
+            .go()
+
+        List<Map> actual = []
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .join( csv("src/test/resources/titanic.csv").filter([Sex: "male"]).renameFields([Name: "OtherName"]), ["PassengerId"], true, memory: 16 * 1024, partitions: 4, spillDir: spillDir )
+            .addStep("Collect") { Map row ->
+                actual << row
+                return row
+            }
+            .go()
+
+        assertEquals( 418, stats.loaded )
+        assertEquals( 418, actual.size() )
+        assertEquals( expected.sort { it.PassengerId }, actual.sort { it.PassengerId } )
+        assertEquals( 266, actual.count { it.OtherName != null } )
+        assertEquals( "Assert spilled partitions were removed", 0, spillDir.listFiles().length )
+        spillDir.delete()
+    }
+
+    @Test
+    void testMergeJoin() {
+        int rejections = 0
+        LoadStatistic stats = from(GratumFixture.people)
+            .join( from(GratumFixture.hobbies).sort("id"), ['id'], strategy: "merge" )
+            .addStep("Assert hobbies") { Map row ->
+                assertNotNull( row.hobby )
+                assertNotNull( row.name )
+                return row
+            }
+            .onRejection { Pipeline pipeline ->
+                pipeline.addStep("Verify rejection") { Map row ->
+                    rejections++
+                    return row
+                }
+                return
+            }
+            .go()
+
+        assertEquals( 8, stats.loaded )
+        assertEquals( 1, stats.rejections )
+        assertEquals( 1, rejections )
+
+        LoadStatistic leftStats = from(GratumFixture.people)
+            .join( from(GratumFixture.hobbies), ['id'], true, strategy: "merge" )
+            .addStep("Assert optional hobbies") { Map row ->
+                if( row.id < 5 ) {
+                    assertNotNull( row.hobby )
+                } else {
+                    assertTrue( row.containsKey("hobby") )
+                    assertNull( row.hobby )
+                }
+                return row
+            }
+            .go()
+
+        assertEquals( 9, leftStats.loaded )
+    }
+
+    @Test
+    void testMergeJoinUnsorted() {
+        try {
+            from(GratumFixture.people).sort("name")
+                .join( from(GratumFixture.hobbies), ['id'], strategy: "merge" )
+                .go()
+            fail("Expected an unsorted join to fail")
+        } catch( RuntimeException ex ) {
+            Throwable cause = ex
+            while( cause.cause ) cause = cause.cause
+            assertTrue( cause instanceof IllegalStateException )
+        }
+    }
+
     @Test
     void testSort() {
         String lastHobby
@@ -389,6 +718,58 @@ class PipelineTest {
         assertNotNull("Assert that lastHobby is not null meaning we executing some portion of the assertions above.", lastHobby)
     }
 
+    @Test
+    void testExternalSort() {
+        File spillDir = File.createTempDir()
+        List<Map> expected = []
+        csv("src/test/resources/titanic.csv").sort("Sex", "Age").addStep("Collect") { Map row ->
+            expected << row
+            return row
+        }.go()
+
+        [0, 2].each { int threads ->
+            List<Map> actual = []
+            LoadStatistic stats = csv("src/test/resources/titanic.csv")
+                .sort(memory: 8 * 1024, spillDir: spillDir, threads: threads, "Sex", "Age")
+                .addStep("Collect") { Map row ->
+                    actual << row
+                    return row
+                }
+                .go()
+
+            assertEquals( 418, stats.loaded )
+            assertEquals( expected.collect { it.PassengerId }, actual.collect { it.PassengerId } )
+            assertEquals( expected[0], actual[0] )
+            assertEquals( "Assert spilled runs were removed", 0, spillDir.listFiles().length )
+        }
+        spillDir.delete()
+    }
+
+    @Test
+    void testExternalSortManyRuns() {
+        File spillDir = File.createTempDir()
+        List<String> expected = []
+        csv("src/test/resources/titanic.csv").sort("Sex").addStep("Collect") { Map row ->
+            expected << row.PassengerId
+            return row
+        }.go()
+
+        // a run per row takes more than one round of merges, and rows with the same Sex must stay in file order
+        List<String> actual = []
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .sort(memory: 1, spillDir: spillDir, "Sex")
+            .addStep("Collect") { Map row ->
+                actual << row.PassengerId
+                return row
+            }
+            .go()
+
+        assertEquals( 418, stats.loaded )
+        assertEquals( expected, actual )
+        assertEquals( "Assert spilled runs were removed", 0, spillDir.listFiles().length )
+        spillDir.delete()
+    }
+
     @Test
     void testUnique() {
         LoadStatistic stats = from(GratumFixture.hobbies).unique("id")
@@ -399,6 +780,28 @@ class PipelineTest {
         assertEquals( 4, stats.getRejections(RejectionCategory.IGNORE_ROW) )
     }
 
+    @Test
+    void testUniqueStores() {
+        for( String store : ["heap", "hashed", "bloom"] ) {
+            LoadStatistic stats = csv("src/test/resources/titanic.csv")
+                .unique( store: store, "Pclass" )
+                .go()
+            assertEquals( "${store} store", 3, stats.loaded )
+            assertEquals( 415, stats.getRejections(RejectionCategory.IGNORE_ROW) )
+        }
+    }
+
+    @Test
+    void testUniqueNumericStrings() {
+        for( String store : ["heap", "hashed", "bloom"] ) {
+            LoadStatistic stats = from([[price: "2.50"], [price: "2.5"], [price: "1.10"], [price: "1.1"], [price: "-0"], [price: "0"], [price: "2.5"]])
+                .unique( store: store, "price" )
+                .go()
+            assertEquals( "${store} store", 6, stats.loaded )
+            assertEquals( 1, stats.getRejections(RejectionCategory.IGNORE_ROW) )
+        }
+    }
+
     @Test
     void testRejections() {
         List<Map> rejections = []
@@ -630,6 +1033,25 @@ class PipelineTest {
         }
     }
 
+    @Test
+    void testSaveUnique() {
+        File tmp = File.createTempFile("classes", ".csv")
+        try {
+            LoadStatistic stats = csv("src/test/resources/titanic.csv")
+                .save(tmp.absolutePath, ",", ["Pclass", "Sex"], unique: true)
+                .go()
+            assertEquals( 1, stats.loaded )
+
+            List<Map> rows = []
+            csv(tmp.absolutePath).addStep("collect") { Map row -> rows << row; row }.go()
+            assertEquals( "3 classes x 2 sexes", 6, rows.size() )
+            assertEquals( 6, rows.collect { "${it.Pclass}${it.Sex}" }.unique().size() )
+            assertFalse( "Fields are only quoted when needed", tmp.text.contains('"') )
+        } finally {
+            tmp.delete()
+        }
+    }
+
     @Test
     public void testEscaping() {
         LoadStatistic stats = csv("src/test/resources/ragged.csv", ",")
@@ -744,4 +1166,137 @@ class PipelineTest {
         assert stats.rejections == 0
         assert headerCallback
     }
+
+    @Test
+    public void testParallel() {
+        int rejected = 0
+        LoadStatistic statistic = csv("src/test/resources/titanic.csv")
+            .parallel(4, false, 16)
+            .filter([Sex:"male"])
+            .asInt("PassengerId")
+            .onRejection { Pipeline rej ->
+                rej.addStep("Count rejections") { Map row ->
+                    rejected++
+                    return row
+                }
+                return
+            }
+            .go()
+
+        assert statistic.loaded == 266
+        assert statistic.rejections == 152
+        assert statistic.getRejections(RejectionCategory.IGNORE_ROW) == 152
+        assert rejected == 152
+    }
+
+    @Test
+    public void testParallelOrdered() {
+        List<Integer> ids = []
+        LoadStatistic statistic = csv("src/test/resources/titanic.csv")
+            .parallel(4, true, 10)
+            .asInt("PassengerId")
+            .addSerialStep("Collect ids") { Map row ->
+                ids << row.PassengerId
+                return row
+            }
+            .go()
+
+        assert statistic.loaded == 418
+        assert ids.size() == 418
+        assert ids == ids.sort(false)
+    }
+
+    @Test
+    public void testParallelLimit() {
+        LoadStatistic statistic = csv("src/test/resources/titanic.csv")
+            .parallel(4, true, 10)
+            .limit(25)
+            .go()
+
+        assert statistic.loaded == 25
+    }
+
+    @Test
+    public void testParallelRunTwice() {
+        boolean failing = true
+        boolean halting = true
+        List<Integer> ids = []
+        Pipeline pipeline = csv("src/test/resources/titanic.csv")
+            .parallel(4, true, 10)
+            .asInt("PassengerId")
+            .addStep("Fail the first run") { Map row ->
+                if( failing && row.PassengerId == 900 ) throw new IllegalStateException("First run")
+                return row
+            }
+            .addSerialStep("Collect ids") { Map row ->
+                if( halting && row.PassengerId == 1000 ) throw new HaltPipelineException("Second run")
+                ids << row.PassengerId
+                return row
+            }
+
+        try {
+            pipeline.go()
+            fail("Expected the first run to fail")
+        } catch( RuntimeException ex ) {
+            Throwable cause = ex
+            while( cause.cause ) cause = cause.cause
+            assertEquals( "First run", cause.message )
+        }
+
+        failing = false
+        ids.clear()
+        pipeline.go()
+        assert ids == (892..999).toList()
+
+        halting = false
+        ids.clear()
+        pipeline.go()
+        assert ids.size() == 418
+        assert ids == ids.sort(false)
+    }
+
+    @Test
+    public void testBufferedCsv() {
+        LoadStatistic statistic = CsvSource.of("src/test/resources/titanic.csv").buffered().into()
+            .filter([Sex:"male"])
+            .go()
+
+        assert statistic.loaded == 266
+        assert statistic.rejections == 152
+
+        LoadStatistic ragged = CsvSource.of("src/test/resources/ragged.csv").buffered().into()
+            .addStep("Assert Row") { Map row ->
+                assert row.containsKey("assignment")
+                switch(row.rank) {
+                    case "Captain":
+                        assert row.assignment == null
+                        assert row.comment == "This is a comment\nwith new lines"
+                        break
+                    case "Sergeant":
+                        assert row.assignment == "Lombok"
+                        assert row.comment == '"This one has quotes"'
+                        break
+                }
+                return row
+            }.go()
+
+        assert ragged.loaded == 4
+        assert ragged.rejections == 0
+    }
+
+    @Test
+    public void testMappedCsv() {
+        List<Integer> ids = []
+        LoadStatistic statistic = CsvSource.of("src/test/resources/titanic.csv").mapped(4, 1024).into()
+            .addStep("Collect ids") { Map row ->
+                ids << (row.PassengerId as Integer)
+                return row
+            }
+            .filter([Sex:"male"])
+            .go()
+
+        assert statistic.loaded == 266
+        assert statistic.rejections == 152
+        assert ids == (892..1309).toList()
+    }
 }
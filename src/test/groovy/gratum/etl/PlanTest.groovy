@@ -0,0 +1,106 @@
+package gratum.etl
+
+import gratum.source.CsvSource
+import org.junit.Test
+
+import static gratum.source.CsvSource.csv
+import static junit.framework.TestCase.*
+
+class PlanTest {
+
+    Pipeline cleaning(List<Map> rows) {
+        return csv("src/test/resources/titanic.csv")
+            .asInt("Age")
+            .asDouble("Fare")
+            .setField("Checked", true)
+            .filter( Sex: "female", Embarked: ["S", "C"] )
+            .clip("Name", "Checked", "Age", "Sex")
+            .addStep("collect") { Map row -> rows << row; row }
+    }
+
+    @Test
+    void testFilterPushdown() {
+        List<Map> declared = []
+        LoadStatistic expected = cleaning( declared ).go()
+
+        List<Map> optimized = []
+        Pipeline pipeline = cleaning( optimized ).optimize()
+        assertEquals( ["filter Sex->female,Embarked->[S, C]", "asInt(Age)", "asDouble(Fare)", "setField(Checked)", "clip(Name,Checked,Age,Sex", "collect"],
+                pipeline.plan.steps*.name )
+        assertEquals( "asInt(Age)", pipeline.plan.moved.values().first().name )
+        LoadStatistic stats = pipeline.go()
+
+        assertEquals( expected.loaded, stats.loaded )
+        assertEquals( declared, optimized )
+        String filter = "filter Sex->female,Embarked->[S, C]"
+        assertEquals( 418L, stats.steps[filter].calls )
+        assertEquals( "Only the filtered rows are converted", 418L - stats.getRejections( RejectionCategory.IGNORE_ROW, filter ), stats.steps["asInt(Age)"].calls )
+    }
+
+    @Test
+    void testFiltersStayAfterChangedColumns() {
+        Pipeline pipeline = csv("src/test/resources/titanic.csv")
+            .asInt("Age")
+            .defaultValues( Sex: "unknown" )
+            .filter( Sex: "male" )
+            .addStep("closure") { Map row -> row }
+            .filter( Embarked: "S" )
+            .asDouble("Fare")
+            .addField("Title") { Map row -> row.Name.toString().contains("Mrs.") ? "Mrs" : "" }
+            .filter( Pclass: "1" )
+            .optimize()
+
+        assertEquals( ["asInt(Age)", "defaultValues for [Sex]", "filter Sex->male", "closure", "filter Embarked->S", "filter Pclass->1", "asDouble(Fare)", "addField(Title)"],
+                pipeline.plan.steps*.name )
+        assertNull( "No clip so every column is read", pipeline.plan.columns )
+    }
+
+    @Test
+    void testProjection() {
+        List<Map> rows = []
+        Pipeline pipeline = cleaning( rows ).optimize()
+        assertEquals( ["Sex", "Embarked", "Age", "Fare", "Name", "Checked"] as Set, pipeline.projection as Set )
+        pipeline.go()
+        assertEquals( ["Name", "Sex", "Age", "Checked"], rows[0].keySet() as List )
+
+        Pipeline rejecting = cleaning( [] ).optimize().onRejection { Pipeline rejections -> rejections }
+        assertNull( "Rejected rows keep every column", rejecting.projection )
+        assertNull( "Nothing is pruned without optimize", cleaning( [] ).projection )
+
+        List<Map> projected = []
+        CsvSource source = CsvSource.of("src/test/resources/titanic.csv")
+        source.project( ["Name", "Age", "Missing"] )
+        source.into().addStep("collect") { Map row -> projected << row; row }.go()
+        assertEquals( 418, projected.size() )
+        assertEquals( ["Name", "Age"], projected[0].keySet() as List )
+    }
+
+    @Test
+    void testExplain() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        PrintStream out = new PrintStream( bytes, true, "UTF-8" )
+        cleaning( [] ).optimize().sort("Age").printRow().explain( out )
+        String plan = bytes.toString("UTF-8")
+
+        assertTrue( plan, plan.contains("titanic.csv (optimized)") )
+        assertTrue( plan, plan.contains("source CsvSource reading Sex, Embarked, Age, Fare, Name, Checked") )
+        assertTrue( plan, plan.contains("1. filter Sex->female,Embarked->[S, C] moved ahead of asInt(Age) testing Sex, Embarked") )
+        assertTrue( plan, plan.contains("1. collect") )
+        assertTrue( plan, plan.contains("source ChainedSource") )
+        assertTrue( "The upstream pipeline is printed first", plan.indexOf("2. sort([Age]) serial") < plan.indexOf("1. print() serial") )
+    }
+
+    @Test
+    void testAdaptiveCondition() {
+        Condition condition = new Condition( [a: "x", b: ["y"], c: { String v -> v != null }, d: ~/z+/] )
+        assertEquals( ["a", "b", "c", "d"], condition.order )
+        condition.adaptive = true
+        int matched = 0
+        for( int i = 0; i < Condition.REORDER_EVERY * 2; i++ ) {
+            Map row = [a: "x", b: i % 10 == 0 ? "y" : "n", c: "c", d: i % 3 == 0 ? "zz" : "q"]
+            if( condition.matches( row ) ) matched++
+        }
+        assertEquals( "Every 30th row matches b and d", Condition.REORDER_EVERY * 2 / 30, matched, 1 )
+        assertEquals( "The most selective columns first, then closures", ["b", "d", "a", "c"], condition.order )
+    }
+}
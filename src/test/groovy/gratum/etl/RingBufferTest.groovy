@@ -0,0 +1,44 @@
+package gratum.etl
+
+import org.junit.Test
+
+import static junit.framework.TestCase.*
+
+class RingBufferTest {
+
+    @Test
+    void testProducerAndConsumer() {
+        RingBuffer<Integer> buffer = new RingBuffer<>( 5 )
+        assertEquals( 8, buffer.capacity() )
+        List<Integer> taken = []
+        Thread consumer = Thread.start {
+            Integer i
+            while( (i = buffer.take()) != null ) {
+                taken << i
+            }
+        }
+        for( int i = 0; i < 100_000; i++ ) {
+            assertTrue( buffer.put( i ) )
+            assertTrue( buffer.size() <= buffer.capacity() )
+        }
+        buffer.close()
+        consumer.join( 10_000 )
+
+        assertFalse( consumer.alive )
+        assertEquals( 100_000, taken.size() )
+        assertEquals( (0..<100_000).toList(), taken )
+    }
+
+    @Test
+    void testAbortWakesProducer() {
+        RingBuffer<String> buffer = new RingBuffer<>( 2 )
+        assertTrue( buffer.put("a") )
+        assertTrue( buffer.put("b") )
+        Thread.start {
+            Thread.sleep( 50 )
+            buffer.abort()
+        }
+        assertFalse( "A full buffer blocks until aborted", buffer.put("c") )
+        assertNull( buffer.take() )
+    }
+}
@@ -0,0 +1,52 @@
+package gratum.etl
+
+import org.junit.Test
+
+import java.sql.Timestamp
+
+import static junit.framework.TestCase.*
+
+class RowStreamTest {
+
+    @Test
+    void testRoundTrip() {
+        Timestamp timestamp = new Timestamp( 1_600_000_000_123L )
+        timestamp.nanos = 123_456_789
+        String name = "Tom"
+        List<Map> rows = [
+            [name: "Tom Hanks", age: 59, salary: 1_000_000L, rating: 8.5d, active: true, born: new Date(-425174400000L)],
+            [name: "${name} Cruise", age: null, salary: new BigDecimal("12.50"), big: new BigInteger("123456789012345678901234567890")],
+            [name: "Meg Ryan", tags: ["a", 1, [nested: true]], stamp: timestamp, day: new java.sql.Date(0L), initial: 'M' as char, uuid: UUID.fromString("00000000-0000-0000-0000-000000000001")],
+            [:]
+        ]
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        RowOutputStream out = new RowOutputStream( bytes )
+        rows.each { out.writeRow( it ) }
+        out.close()
+        assertEquals( 4, out.rows )
+
+        RowInputStream input = new RowInputStream( new ByteArrayInputStream( bytes.toByteArray() ) )
+        List<Map> actual = []
+        Map row
+        while( (row = input.readRow()) != null ) {
+            actual << row
+        }
+
+        assertEquals( 4, actual.size() )
+        assertEquals( rows[0], actual[0] )
+        assertEquals( "Tom Cruise", actual[1].name )
+        assertTrue( actual[1].containsKey("age") )
+        assertEquals( new BigDecimal("12.50"), actual[1].salary )
+        assertEquals( rows[1].big, actual[1].big )
+        assertEquals( rows[2], actual[2] )
+        assertEquals( 123_456_789, actual[2].stamp.nanos )
+        assertEquals( ["name", "tags", "stamp", "day", "initial", "uuid"], actual[2].keySet().toList() )
+        assertEquals( [:], actual[3] )
+    }
+
+    @Test(expected = NotSerializableException)
+    void testNotSerializable() {
+        new RowOutputStream( new ByteArrayOutputStream() ).writeRow( [value: new Object()] )
+    }
+}
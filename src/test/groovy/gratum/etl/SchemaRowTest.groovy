@@ -0,0 +1,80 @@
+package gratum.etl
+
+import org.junit.Test
+
+import static junit.framework.TestCase.*
+
+class SchemaRowTest {
+
+    @Test
+    void testMapBehavior() {
+        Schema schema = new Schema(["name", "age"])
+        SchemaRow row = schema.row("Tom Hanks", "59")
+
+        assertEquals( 2, row.size() )
+        assertEquals( "Tom Hanks", row.name )
+        assertEquals( "59", row["age"] )
+        assertNull( row.birthDate )
+        assertFalse( row.containsKey("birthDate") )
+        assertEquals( [name: "Tom Hanks", age: "59"], row )
+        assertEquals( [name: "Tom Hanks", age: "59"].hashCode(), row.hashCode() )
+
+        row.birthDate = "7/9/1956"
+        assertEquals( 3, row.size() )
+        assertEquals( ["name", "age", "birthDate"], row.keySet().toList() )
+        assertEquals( 3, schema.size() )
+
+        row.remove("age")
+        assertFalse( row.containsKey("age") )
+        assertEquals( ["name", "birthDate"], row.keySet().toList() )
+        assertEquals( 3, schema.size() )
+
+        row.age = null
+        assertTrue( row.containsKey("age") )
+        assertNull( row.age )
+    }
+
+    @Test
+    void testCloneSharesSchema() {
+        Schema schema = new Schema(["a", "b"])
+        SchemaRow row = schema.row(1, 2)
+        SchemaRow copy = row.clone()
+        copy.a = 10
+        copy.c = 3
+
+        assertSame( schema, copy.getSchema() )
+        assertEquals( [a: 1, b: 2], row )
+        assertEquals( [a: 10, b: 2, c: 3], copy )
+
+        // rows created before a column was added don't have it
+        SchemaRow other = schema.row(5, 6)
+        assertFalse( other.containsKey("c") )
+        assertEquals( 2, other.size() )
+    }
+
+    @Test
+    void testEntryUpdates() {
+        SchemaRow row = new Schema(["a", "b", "c"]).row(1, 2, 3)
+        row.entrySet().each { Map.Entry e -> e.value = e.value * 2 }
+        assertEquals( [a: 2, b: 4, c: 6], row )
+
+        Iterator i = row.entrySet().iterator()
+        i.next()
+        i.remove()
+        assertEquals( [b: 4, c: 6], row )
+    }
+
+    @Test
+    void testSourceRowsShareSchema() {
+        Set<Schema> schemas = new HashSet<>()
+        gratum.source.CsvSource.csv("src/test/resources/titanic.csv")
+            .addStep("Collect schema") { Map row ->
+                assertTrue( row instanceof SchemaRow )
+                schemas << ((SchemaRow)row).getSchema()
+                row.survived = true
+                return row
+            }
+            .go()
+        assertEquals( 1, schemas.size() )
+    }
+}
@@ -0,0 +1,102 @@
+package gratum.etl
+
+import org.junit.Test
+
+import javax.management.MBeanServer
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+
+import static gratum.source.CsvSource.csv
+import static junit.framework.TestCase.*
+
+class StepMetricsTest {
+
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram()
+        for( long i = 1; i <= 10000; i++ ) {
+            histogram.record( i * 1000 )
+        }
+        assertEquals( 10000, histogram.count )
+        assertEquals( 10_000_000L, histogram.max )
+        assertEquals( 5_000_500d, histogram.mean, 0.001d )
+        assertEquals( 5_000_000d, histogram.getValueAtPercentile( 50 ) as double, 5_000_000 * 0.035 )
+        assertEquals( 9_900_000d, histogram.getValueAtPercentile( 99 ) as double, 9_900_000 * 0.035 )
+        assertEquals( 10_000_000L, histogram.getValueAtPercentile( 100 ) )
+
+        LatencyHistogram small = new LatencyHistogram()
+        [3L, 7L, 63L].each { small.record( it ) }
+        assertEquals( "Small values are exact", 7L, small.getValueAtPercentile( 50 ) )
+
+        LatencyHistogram huge = new LatencyHistogram()
+        huge.record( Long.MAX_VALUE )
+        assertEquals( Long.MAX_VALUE, huge.getValueAtPercentile( 99 ) )
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        for( long value : [0L, 1L, 63L, 64L, 65L, 1000L, 123_456_789L, 1L << 40] ) {
+            int index = LatencyHistogram.indexOf( value )
+            long highest = LatencyHistogram.highestValueIn( index )
+            assertTrue( "${value} <= ${highest}", value <= highest )
+            assertTrue( "${value} within 3.2% of ${highest}", highest - value <= Math.max( 0L, (long)(value * 0.032) ) )
+            if( index > 0 ) assertTrue( LatencyHistogram.highestValueIn( index - 1 ) < value )
+        }
+    }
+
+    @Test
+    void testSampledSteps() {
+        List<Boolean> finished = []
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .addStep("slow") { Map row ->
+                return row
+            }
+            .filter( Sex: "male" )
+            .groupBy( "Pclass" )
+            .instrument( sampleEvery: 4, reporter: { LoadStatistic s, boolean done -> finished << done } as MetricsReporter )
+            .go()
+
+        StepMetrics slow = stats.steps.slow
+        assertEquals( 418L, slow.calls )
+        assertEquals( "Every 4th row is timed", 105L, slow.sampled )
+        assertEquals( 4, slow.sampleEvery )
+        assertEquals( 266L, stats.steps["groupBy(Pclass)"].calls )
+        assertTrue( slow.rowsPerSecond > 0 )
+        assertTrue( stats.stepTimings.containsKey("slow") )
+        assertEquals( "The reporter is called once when finished", [true], finished )
+    }
+
+    @Test
+    void testParallelSteps() {
+        LoadStatistic stats = csv("src/test/resources/titanic.csv")
+            .parallel( 4, false, 50 )
+            .addStep("work") { Map row -> row }
+            .addSerialStep("serial") { Map row -> row }
+            .go()
+
+        assertEquals( 418L, stats.steps.work.calls )
+        assertEquals( 418L, stats.steps.work.sampled )
+        assertEquals( 418L, stats.steps.serial.calls )
+    }
+
+    @Test
+    void testJmx() {
+        MBeanServer server = ManagementFactory.platformMBeanServer
+        ObjectName query = new ObjectName( "gratum:type=Step,pipeline=${ObjectName.quote("jmx test")},*" )
+        List<Long> live = []
+        LoadStatistic stats = Pipeline.create("jmx test") { Pipeline pipeline ->
+            for( int i = 0; i < 100; i++ ) {
+                pipeline.process( [id: i] )
+            }
+            ObjectName step = server.queryNames( query, null ).find { it.getKeyProperty("name") == ObjectName.quote("count") }
+            live << (server.getAttribute( step, "Calls" ) as Long)
+        }
+            .addStep("count") { Map row -> row }
+            .instrument( jmx: true )
+            .go()
+
+        assertEquals( 100, stats.loaded )
+        assertEquals( [100L], live )
+        assertTrue( "MBeans are unregistered when finished", server.queryNames( query, null ).isEmpty() )
+    }
+}
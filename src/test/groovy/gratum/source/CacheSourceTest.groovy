@@ -0,0 +1,171 @@
+package gratum.source
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static gratum.source.CollectionSource.from
+import static gratum.source.CsvSource.csv
+import static gratum.source.XlsxSource.xlsx
+
+class CacheSourceTest {
+
+    File dir
+    File titanic
+    int upstream
+
+    @Before
+    void setUp() {
+        dir = File.createTempDir()
+        titanic = new File( dir, "titanic.csv" )
+        titanic.bytes = new File("src/test/resources/titanic.csv").bytes
+        upstream = 0
+    }
+
+    @After
+    void cleanUp() {
+        dir.deleteDir()
+    }
+
+    Pipeline titanic( Map options = [:] ) {
+        return csv( titanic )
+            .addStep("count") { Map row -> upstream++; row }
+            .cache( [dir: new File(dir, "cache")] + options, "titanic" )
+    }
+
+    @Test
+    void testCache() {
+        List<Map> first = []
+        LoadStatistic stats = titanic().addStep("collect") { Map row -> first << row; row }.go()
+        assert stats.loaded == 418
+        assert upstream == 418
+        assert new File(dir, "cache").listFiles().length == 1
+
+        upstream = 0
+        List<Map> second = []
+        stats = titanic().addStep("collect") { Map row -> second << row; row }.go()
+        assert upstream == 0
+        assert stats.loaded == 418
+        assert second == first
+    }
+
+    @Test
+    void testRefresh() {
+        titanic().go()
+        upstream = 0
+        LoadStatistic stats = titanic( refresh: true ).go()
+        assert upstream == 418
+        assert stats.loaded == 418
+        assert new File(dir, "cache").listFiles().length == 1
+    }
+
+    @Test
+    void testSourceChanged() {
+        titanic().go()
+        titanic.lastModified = titanic.lastModified() - 60000
+        upstream = 0
+        titanic().go()
+        assert upstream == 418
+
+        upstream = 0
+        Pipeline filtered = csv( titanic )
+            .addStep("count") { Map row -> upstream++; row }
+            .filter( Sex: "female" )
+            .cache( dir: new File(dir, "cache"), "titanic" )
+        LoadStatistic stats = filtered.go()
+        assert upstream == 418
+        assert stats.loaded == 152
+    }
+
+    @Test
+    void testStepArgumentsChanged() {
+        Closure<Pipeline> flagged = { Object value, Map defaults ->
+            csv( titanic )
+                .addStep("count") { Map row -> upstream++; row }
+                .setField( "flag", value )
+                .defaultValues( defaults )
+                .cache( dir: new File(dir, "cache"), "flagged" )
+        }
+        List<Map> rows = []
+        flagged( "yes", [Cabin: "none"] ).go()
+        flagged( "yes", [Cabin: "none"] ).addStep("collect") { Map row -> rows << row; row }.go()
+        assert upstream == 418
+        assert rows[0].flag == "yes"
+
+        rows.clear()
+        flagged( "no", [Cabin: "none"] ).addStep("collect") { Map row -> rows << row; row }.go()
+        assert upstream == 2 * 418
+        assert rows[0].flag == "no"
+
+        rows.clear()
+        flagged( "no", [Cabin: "unknown"] ).addStep("collect") { Map row -> rows << row; row }.go()
+        assert upstream == 3 * 418
+        assert rows[0].Cabin == "unknown"
+    }
+
+    @Test
+    void testHaltedNotCached() {
+        titanic().limit(10).go()
+        upstream = 0
+        titanic().go()
+        assert upstream == 418
+    }
+
+    @Test
+    void testNotFingerprinted() {
+        File cache = new File(dir, "cache")
+        LoadStatistic stats = from([a: 1], [a: 2]).cache( dir: cache, "collection" ).go()
+        assert stats.loaded == 2
+        assert !cache.exists() || cache.listFiles().length == 0
+    }
+
+    @Test
+    void testUnwritableRows() {
+        File cache = new File(dir, "cache")
+        LoadStatistic stats = csv( titanic )
+            .addField("stream") { Map row -> new ByteArrayInputStream( new byte[0] ) }
+            .cache( dir: cache, "streams" )
+            .go()
+        assert stats.loaded == 418
+        assert cache.listFiles().length == 0
+    }
+
+    @Test
+    void testEvict() {
+        File cache = new File(dir, "cache")
+        titanic().go()
+        File old = cache.listFiles()[0]
+        old.lastModified = old.lastModified() - 60000
+
+        csv( titanic ).filter( Sex: "female" ).cache( dir: cache, maxSize: old.length(), "female" ).go()
+        assert cache.listFiles()*.name.every { it.startsWith("female-") }
+        assert cache.listFiles().length == 1
+    }
+
+    @Test
+    void testXlsx() {
+        File workbook = new File( dir, "players.xlsx" )
+        workbook.bytes = new File("src/test/resources/players.xlsx").bytes
+        File cache = new File(dir, "cache")
+
+        Closure<Pipeline> players = { ->
+            xlsx( workbook ).into()
+                .addStep("count") { Map row -> upstream++; row }
+                .cache( dir: cache, "players" )
+        }
+        List<Map> first = []
+        LoadStatistic stats = players().addStep("collect") { Map row -> first << row; row }.go()
+        assert stats.loaded == 6
+        assert upstream == 6
+        assert cache.listFiles().length == 1
+
+        upstream = 0
+        List<Map> second = []
+        stats = players().addStep("collect") { Map row -> second << row; row }.go()
+        assert upstream == 0
+        assert stats.loaded == 6
+        assert second == first
+    }
+}
@@ -1,10 +1,16 @@
 package gratum.source
 
 import gratum.etl.LoadStatistic
+import gratum.etl.RejectionCategory
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
 
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+import static gratum.source.CsvSource.csv
+
 class FileSystemSourceTest {
 
     File dir
@@ -52,4 +58,100 @@ class FileSystemSourceTest {
 
         assert stats.loaded == 2
     }
+
+    @Test
+    void testIncremental() {
+        File state = new File( File.createTempDir(), "files.state" )
+        try {
+            List<File> files = []
+            Closure<LoadStatistic> run = { ->
+                files.clear()
+                FileSystemSource.files( dir ).incremental( state ).into().addStep("Collect") { Map row ->
+                    files << row.file
+                    return row
+                }.go()
+            }
+
+            assert run().loaded == 4
+            assert state.exists()
+            assert run().loaded == 0
+
+            csvFile1.text = "changed"
+            File added = File.createTempFile("gratum", ".txt", dir)
+            assert run().loaded == 2
+            assert files.toSet() == [csvFile1, added].toSet()
+
+            textFile2.lastModified = textFile2.lastModified() - 60000
+            shouldFail( RuntimeException ) {
+                FileSystemSource.files( dir ).incremental( state ).into().addStep("Fail") { Map row ->
+                    throw new IOException("Failed")
+                }.go()
+            }
+            assert run().loaded == 1
+            assert files == [textFile2]
+        } finally {
+            state.parentFile.deleteDir()
+        }
+    }
+
+    static void shouldFail( Class<? extends Throwable> type, Closure c ) {
+        try {
+            c()
+        } catch( Throwable t ) {
+            if( type.isInstance( t ) ) return
+            throw t
+        }
+        assert false : "Expected ${type.simpleName}"
+    }
+
+    @Test
+    void testGlob() {
+        List<File> found = []
+        FileSystemSource.files( dir ).glob("*.csv").into().addStep("Collect") { Map row ->
+            found << row.file
+            return row
+        }.go()
+        assert found.toSet() == [csvFile1, csvFile2].toSet()
+
+        found.clear()
+        FileSystemSource.files( dir ).glob("dir2/*").into().addStep("Collect") { Map row ->
+            found << row.file
+            return row
+        }.go()
+        assert found.toSet() == [csvFile2, textFile2].toSet()
+    }
+
+    @Test
+    void testParallel() {
+        File drop = new File( dir, "drop" )
+        drop.mkdir()
+        Set<String> expected = [] as Set
+        for( int i = 0; i < 40; i++ ) {
+            new File( drop, "part-${i}.csv.gz" ).withOutputStream { OutputStream out ->
+                new GZIPOutputStream( out ).withWriter { Writer writer ->
+                    writer.write("file,row,value\n")
+                    for( int r = 0; r < 25; r++ ) {
+                        writer.write("${i},${r},${r == 0 ? '' : r}\n")
+                        if( r > 0 ) expected << "${i}-${r}".toString()
+                    }
+                }
+            }
+        }
+
+        Set<String> seen = Collections.synchronizedSet( new HashSet<String>() )
+        LoadStatistic stats = FileSystemSource.files( drop ).glob("*.csv.gz").parallel( 4 ).into()
+            .exchange { Map row ->
+                csv( row.file.name, new GZIPInputStream( row.stream as InputStream ) )
+                    .filter { Map current -> current.value }
+            }
+            .addStep("Collect") { Map row ->
+                seen << "${row.file}-${row.row}".toString()
+                return row
+            }
+            .go()
+
+        assert seen == expected
+        assert stats.loaded == 40 * 24
+        assert stats.getRejections( RejectionCategory.IGNORE_ROW ) == 40
+    }
 }
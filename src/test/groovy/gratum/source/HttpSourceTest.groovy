@@ -0,0 +1,207 @@
+package gratum.source
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import gratum.etl.LoadStatistic
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import static gratum.source.HttpSource.http
+
+class HttpSourceTest {
+
+    static final int TOTAL = 1234
+
+    HttpServer server
+    String base
+    AtomicInteger requests = new AtomicInteger()
+    AtomicInteger failures = new AtomicInteger()
+    Random delays = new Random( 7 )
+
+    @Before
+    void setUp() {
+        server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 )
+        server.executor = Executors.newFixedThreadPool( 8 )
+        server.createContext( "/offset" ) { HttpExchange exchange ->
+            Map<String,String> query = query( exchange )
+            int offset = query.offset as int
+            int limit = query.limit as int
+            // answer out of order so the pages finish in a different order than they were requested
+            Thread.sleep( delays.nextInt( 20 ) )
+            respond( exchange, 200, [total: TOTAL, data: people( offset, Math.min( TOTAL, offset + limit ) )] )
+        }
+        server.createContext( "/page" ) { HttpExchange exchange ->
+            int page = query( exchange ).page as int
+            respond( exchange, 200, people( (page - 1) * 50, Math.min( TOTAL, page * 50 ) ) )
+        }
+        server.createContext( "/cursor" ) { HttpExchange exchange ->
+            int start = (query( exchange ).cursor ?: "0") as int
+            int end = Math.min( TOTAL, start + 100 )
+            respond( exchange, 200, [items: people( start, end ), meta: [next: end < TOTAL ? end.toString() : null]] )
+        }
+        server.createContext( "/link" ) { HttpExchange exchange ->
+            int start = (query( exchange ).from ?: "0") as int
+            int end = Math.min( TOTAL, start + 200 )
+            if( end < TOTAL ) exchange.responseHeaders.add( "Link", "</link?from=${end}>; rel=\"next\", </link?from=0>; rel=\"first\"".toString() )
+            respond( exchange, 200, people( start, end ) )
+        }
+        server.createContext( "/flaky" ) { HttpExchange exchange ->
+            if( failures.incrementAndGet() <= 2 ) {
+                exchange.responseHeaders.add( "Retry-After", "0" )
+                respond( exchange, 503, [error: "busy"] )
+            } else {
+                respond( exchange, 200, people( 0, 10 ) )
+            }
+        }
+        server.createContext( "/capped" ) { HttpExchange exchange ->
+            // ignores the limit asked for and never answers with more than 30 rows
+            int page = query( exchange ).page as int
+            respond( exchange, 200, people( (page - 1) * 30, Math.min( TOTAL, page * 30 ) ) )
+        }
+        server.createContext( "/repeating" ) { HttpExchange exchange ->
+            // answers every page past the end with the last page
+            int page = Math.min( 25, query( exchange ).page as int )
+            respond( exchange, 200, people( (page - 1) * 50, Math.min( TOTAL, page * 50 ) ) )
+        }
+        server.createContext( "/down" ) { HttpExchange exchange ->
+            respond( exchange, 503, [error: "down"] )
+        }
+        server.createContext( "/missing" ) { HttpExchange exchange ->
+            respond( exchange, 404, [error: "not found"] )
+        }
+        server.start()
+        base = "http://localhost:${server.address.port}"
+    }
+
+    @After
+    void cleanUp() {
+        server.stop( 0 )
+        ((java.util.concurrent.ExecutorService)server.executor).shutdownNow()
+    }
+
+    static List<Map> people( int start, int end ) {
+        if( start >= end ) return []
+        return (start..<end).collect { int i -> [id: i, name: "Person ${i}".toString()] }
+    }
+
+    static Map<String,String> query( HttpExchange exchange ) {
+        return (exchange.requestURI.query ?: "").tokenize("&").collectEntries { String pair -> pair.tokenize("=") as List }
+    }
+
+    void respond( HttpExchange exchange, int status, Object json ) {
+        requests.incrementAndGet()
+        byte[] body = groovy.json.JsonOutput.toJson( json ).getBytes( "UTF-8" )
+        exchange.responseHeaders.add( "Content-Type", "application/json" )
+        exchange.sendResponseHeaders( status, body.length )
+        exchange.responseBody.withStream { it.write( body ) }
+    }
+
+    List<Integer> load( HttpSource source, int expected = TOTAL ) {
+        List<Integer> ids = []
+        LoadStatistic stats = source.into().addStep("collect") { Map row ->
+            ids << (row.id as int)
+            return row
+        }.go()
+        assert stats.loaded == expected
+        return ids
+    }
+
+    @Test
+    void testOffset() {
+        List<Integer> ids = load( http( "${base}/offset" ).rows("data").paginate( offset: "offset", limit: "limit", size: 100, concurrency: 4 ) )
+        assert ids == (0..<TOTAL).toList()
+    }
+
+    @Test
+    void testPage() {
+        List<Integer> ids = load( http( "${base}/page" ).paginate( page: "page", size: 50, concurrency: 3 ) )
+        assert ids == (0..<TOTAL).toList()
+    }
+
+    @Test
+    void testCursor() {
+        List<Integer> ids = load( http( "${base}/cursor" ).rows("items").paginate( cursor: "cursor", next: "meta.next", concurrency: 2 ) )
+        assert ids == (0..<TOTAL).toList()
+        assert requests.get() == 13
+    }
+
+    @Test
+    void testLink() {
+        List<Integer> ids = load( http( "${base}/link" ).paginate( link: true ) )
+        assert ids == (0..<TOTAL).toList()
+        assert requests.get() == 7
+    }
+
+    @Test
+    void testSingleResponse() {
+        List<Integer> ids = load( http( "${base}/offset?offset=0&limit=20" ).rows("data"), 20 )
+        assert ids == (0..<20).toList()
+    }
+
+    @Test
+    void testRetry() {
+        List<Integer> ids = load( http( "${base}/flaky" ).rows("").retry( 3, 10 ), 10 )
+        assert ids == (0..<10).toList()
+        assert failures.get() == 3
+    }
+
+    @Test
+    void testNotRetried() {
+        try {
+            load( http( "${base}/missing" ).rows("").retry( 3, 10 ) )
+            assert false : "Expected the 404 to fail"
+        } catch( IOException ex ) {
+            assert ex.message.contains("404")
+        }
+        assert requests.get() == 1
+    }
+
+    @Test
+    void testPageSmallerThanSize() {
+        List<Integer> ids = load( http( "${base}/capped" ).paginate( page: "page", limit: "limit", concurrency: 3 ) )
+        assert ids == (0..<TOTAL).toList()
+
+        ids = load( http( "${base}/page" ).paginate( page: "page" ) )
+        assert ids == (0..<TOTAL).toList()
+
+        ids = load( http( "${base}/repeating" ).paginate( page: "page", concurrency: 2 ) )
+        assert ids == (0..<TOTAL).toList()
+    }
+
+    @Test(expected = IllegalArgumentException)
+    void testOffsetRequiresSize() {
+        http( "${base}/offset" ).paginate( offset: "offset" )
+    }
+
+    @Test
+    void testRetriesOnce() {
+        try {
+            load( http( "${base}/down" ).paginate( page: "page" ).retry( 2, 1 ) )
+            assert false : "Expected the 503 to fail"
+        } catch( IOException ex ) {
+            assert ex.message.contains("503")
+        }
+        assert requests.get() == 3
+    }
+
+    @Test
+    void testRateLimit() {
+        long start = System.currentTimeMillis()
+        load( http( "${base}/page" ).paginate( page: "page", size: 50, concurrency: 4 ).rateLimit( 100 ) )
+        // 25 pages plus up to 3 past the end at 10ms apart
+        assert System.currentTimeMillis() - start >= 240
+    }
+
+    @Test
+    void testHalt() {
+        LoadStatistic stats = http( "${base}/cursor" ).rows("items").paginate( cursor: "cursor", next: "meta.next", concurrency: 2 )
+            .into()
+            .limit( 150 )
+            .go()
+        assert stats.loaded == 150
+    }
+}
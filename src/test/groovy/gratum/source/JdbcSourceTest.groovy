@@ -0,0 +1,180 @@
+package gratum.source
+
+import gratum.etl.LoadStatistic
+import groovy.sql.Sql
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static gratum.source.JdbcSource.*
+
+class JdbcSourceTest {
+
+    static final String URL = "jdbc:h2:mem:jdbcSource;DB_CLOSE_DELAY=-1"
+
+    Sql sql
+
+    @Before
+    void setUp() {
+        sql = Sql.newInstance(URL, "sa", "", "org.h2.Driver")
+        sql.execute("create table people (id int primary key, name varchar(100), age int, score double)")
+        sql.withBatch("insert into people (id, name, age, score) values (?, ?, ?, ?)") { stmt ->
+            for( int i = 1; i <= 1000; i++ ) {
+                stmt.addBatch([ i, "Person ${i}".toString(), i % 90, i / 4.0d ])
+            }
+        }
+        sql.execute("insert into people (id, name, age, score) values (0, 'Nobody', null, null)")
+    }
+
+    @After
+    void tearDown() {
+        sql.execute("drop table people")
+        sql.close()
+    }
+
+    @Test
+    void testQueryWithFetchSize() {
+        int minAge = 50
+        List<Map> rows = []
+        LoadStatistic stat = database( sql )
+            .query( "select id, name as who, age, score from people where age >= ${minAge} order by id" )
+            .fetchSize( 100 )
+            .into()
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assert stat.loaded == (1..1000).count { (it % 90) >= 50 }
+        assert rows[0].keySet().toList() == ["ID", "WHO", "AGE", "SCORE"]
+        assert rows[0] == [ID: 50, WHO: "Person 50", AGE: 50, SCORE: 12.5d]
+        assert rows[0].AGE instanceof Integer
+        assert rows[0].SCORE instanceof Double
+        assert sql.connection.autoCommit
+    }
+
+    @Test
+    void testProjection() {
+        List<Map> rows = []
+        database( sql )
+            .query( "select * from people where id < ${10} order by id" )
+            .into()
+            .filter( AGE: 5 )
+            .clip( "ID", "NAME" )
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .optimize()
+            .go()
+
+        assert rows == [[ID: 5, NAME: "Person 5"]]
+        JdbcSource source = database( sql ).query( "select * from people where id = ${5}" )
+        source.project( ["NAME", "AGE"] )
+        source.into().addStep("Collect") { Map row ->
+            assert row == [NAME: "Person 5", AGE: 5]
+            return row
+        }.go()
+    }
+
+    @Test
+    void testQuotedParameter() {
+        String name = "Person 7"
+        List<Map> rows = []
+        database( sql ).query( "select * from people where name = '${name}'" ).into()
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assert rows*.ID == [7]
+    }
+
+    @Test
+    void testPartitionBy() {
+        Set<Integer> ids = [] as Set
+        int minAge = 10
+        LoadStatistic stat = database( URL, "sa", "" )
+            .query( "select * from people where age is null or age >= ${minAge}" )
+            .partitionBy( "id", 4 )
+            .fetchSize( 64 )
+            .into()
+            .addStep("Collect") { Map row ->
+                assert ids.add( row.ID )
+                return row
+            }
+            .go()
+
+        Set<Integer> expected = sql.rows("select id from people where age is null or age >= 10")*.ID as Set
+        assert stat.loaded == expected.size()
+        assert ids == expected
+        assert ids.contains(0)
+    }
+
+    @Test(expected = IllegalStateException)
+    void testPartitionByNeedsConnections() {
+        database( sql ).query( "select * from people where id > ${0}" ).partitionBy( "id", 2 ).into().go()
+    }
+
+    @Test
+    void testFingerprint() {
+        String fingerprint = database( sql ).query( "select * from people where id > ${0}" ).fingerprint
+        assert fingerprint.startsWith( "jdbc jdbc:h2:mem:jdbcSource SA\n" )
+
+        Sql other = Sql.newInstance("jdbc:h2:mem:otherSource;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver")
+        try {
+            assert database( other ).query( "select * from people where id > ${0}" ).fingerprint != fingerprint
+        } finally {
+            other.close()
+        }
+    }
+
+    @Test
+    void testIncremental() {
+        File state = File.createTempFile("people", ".watermark")
+        state.delete()
+        try {
+            int minAge = 0
+            Closure<LoadStatistic> run = { boolean partitioned ->
+                JdbcSource source = database( URL, "sa", "" )
+                    .query( "select id, name from people where age is null or age >= ${minAge}" )
+                    .incremental( "ID", state )
+                if( partitioned ) source.partitionBy( "ID", 3 )
+                return source.into().go()
+            }
+
+            assert run( false ).loaded == 1001
+            assert run( false ).loaded == 0
+
+            sql.withBatch("insert into people (id, name, age, score) values (?, ?, ?, ?)") { stmt ->
+                for( int i = 1001; i <= 1010; i++ ) stmt.addBatch([ i, "Person ${i}".toString(), 20, 1d ])
+            }
+            assert run( true ).loaded == 10
+            assert database( sql ).query( "select id from people where id > ${-1}" ).incremental( "ID", state ).readWatermark() == 1010
+            assert run( false ).loaded == 0
+        } finally {
+            state.delete()
+        }
+    }
+
+    @Test
+    void testIncrementalNotCommittedOnFailure() {
+        File state = File.createTempFile("people", ".watermark")
+        state.delete()
+        try {
+            JdbcSource source = database( sql ).query( "select id from people where id < ${10}" ).incremental( "ID", state )
+            try {
+                source.into().addStep("Fail") { Map row -> throw new IOException("Failed") }.go()
+                assert false : "Should have failed"
+            } catch( RuntimeException ignore ) {
+            }
+            assert !state.exists()
+            assert source.into().go().loaded == 10
+            assert source.readWatermark() == 9
+        } finally {
+            state.delete()
+        }
+    }
+}
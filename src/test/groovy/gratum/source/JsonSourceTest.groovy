@@ -0,0 +1,103 @@
+package gratum.source
+
+import gratum.etl.LoadStatistic
+import groovy.json.JsonSlurper
+import org.junit.Test
+
+import java.util.zip.GZIPInputStream
+
+import static gratum.source.CsvSource.csv
+import static gratum.source.JsonSource.json
+
+class JsonSourceTest {
+
+    static final String RESPONSE = '''{
+        "meta": { "page": 1, "items": [ { "ignored": true } ] },
+        "data": {
+            "count": 3,
+            "items": [
+                { "id": 1, "name": "Alice", "address": { "city": "Portland" } },
+                { "id": 2, "name": "Bob", "tags": ["a", "b"] },
+                { "id": 3, "name": "Carol" }
+            ]
+        }
+    }'''
+
+    @Test
+    void testPath() {
+        List<Map> rows = []
+        LoadStatistic stats = json( "response", new ByteArrayInputStream( RESPONSE.getBytes("UTF-8") ), "data.items" )
+            .addStep("collect") { Map row -> rows << row; row }
+            .go()
+
+        assert stats.loaded == 3
+        assert rows*.id == [1, 2, 3]
+        assert rows[0].address.city == "Portland"
+        assert rows[1].tags == ["a", "b"]
+        assert !rows[2].containsKey("tags")
+    }
+
+    @Test
+    void testObjectAtPath() {
+        List<Map> rows = []
+        json( "response", new ByteArrayInputStream( RESPONSE.getBytes("UTF-8") ), "meta" )
+            .addStep("collect") { Map row -> rows << row; row }
+            .go()
+        assert rows.size() == 1
+        assert rows[0].page == 1
+    }
+
+    @Test
+    void testNdjsonRoundTrip() {
+        File tmp = File.createTempFile("titanic", ".ndjson.gz")
+        try {
+            csv("src/test/resources/titanic.csv")
+                .ndjson( tmp.absolutePath, ["PassengerId", "Name", "Sex"] )
+                .go()
+
+            List<String> lines = new GZIPInputStream( new FileInputStream( tmp ) ).getText("UTF-8").readLines()
+            assert lines.size() == 418
+            assert new JsonSlurper().parseText( lines[0] ).keySet() as List == ["PassengerId", "Name", "Sex"]
+
+            List<Map> rows = []
+            LoadStatistic stats = json( tmp )
+                .filter( Sex: "female" )
+                .addStep("collect") { Map row -> rows << row; row }
+                .go()
+            assert stats.loaded == 152
+            assert rows[0].PassengerId == "893"
+            assert rows[0].Name == "Wilkes, Mrs. James (Ellen Needs)"
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    void testJsonArrayRoundTrip() {
+        File tmp = File.createTempFile("titanic", ".json")
+        try {
+            csv("src/test/resources/titanic.csv")
+                .json( tmp.absolutePath )
+                .go()
+
+            assert (new JsonSlurper().parse( tmp ) as List).size() == 418
+
+            LoadStatistic stats = json( tmp ).limit( 10 ).go()
+            assert stats.loaded == 10
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    @Test
+    void testProjection() {
+        List<Map> rows = []
+        json( "response", new ByteArrayInputStream( RESPONSE.getBytes("UTF-8") ), "data.items" )
+            .optimize()
+            .filter( name: "Bob" )
+            .clip( "id", "name" )
+            .addStep("collect") { Map row -> rows << row; row }
+            .go()
+        assert rows == [[id: 2, name: "Bob"]]
+    }
+}
@@ -1,48 +1,151 @@
 package gratum.source
 
 import gratum.etl.LoadStatistic
-import org.apache.commons.io.IOUtils
-import org.junit.Ignore
+import org.apache.sshd.common.config.keys.PublicKeyEntry
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory
+import org.apache.sshd.server.SshServer
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider
+import org.apache.sshd.server.session.ServerSession
+import org.apache.sshd.sftp.server.FileHandle
+import org.apache.sshd.sftp.server.SftpEventListener
+import org.apache.sshd.sftp.server.SftpSubsystemFactory
+import org.junit.After
+import org.junit.Before
 import org.junit.Test
 
+import java.security.PublicKey
+import java.util.concurrent.ConcurrentHashMap
+
+import static gratum.source.SshSource.ssh
+
 class SshSourceTest {
 
+    File dir
+    File remote
+    File knownHosts
+    SshServer server
+    Map<String,Long> firstReads = new ConcurrentHashMap<>()
+    String dropFile
+    long dropAt
+
+    @Before
+    void setUp() {
+        dir = File.createTempDir()
+        remote = new File( dir, "remote" )
+        new File( remote, "outbound" ).mkdirs()
+
+        SftpSubsystemFactory sftp = new SftpSubsystemFactory()
+        sftp.addSftpEventListener( new SftpEventListener() {
+            @Override
+            void reading(ServerSession session, String remoteHandle, FileHandle localHandle, long offset, byte[] data, int dataOffset, int dataLen) {
+                String name = localHandle.file.fileName.toString()
+                firstReads.putIfAbsent( "${name}@${session.ioSession.id}".toString(), offset )
+                if( name == dropFile && offset >= dropAt ) {
+                    dropFile = null
+                    session.close( true )
+                    throw new IOException( "Dropped the connection" )
+                }
+            }
+        })
+
+        server = SshServer.setUpDefaultServer()
+        server.host = "localhost"
+        server.port = 0
+        SimpleGeneratorHostKeyProvider keys = new SimpleGeneratorHostKeyProvider()
+        keys.algorithm = "RSA"
+        server.keyPairProvider = keys
+        server.passwordAuthenticator = { String username, String password, ServerSession session -> username == "vendor" && password == "secret" }
+        server.subsystemFactories = [sftp]
+        server.fileSystemFactory = new VirtualFileSystemFactory( remote.toPath() )
+        server.start()
+
+        PublicKey key = keys.loadKeys( null ).first().public
+        knownHosts = new File( dir, "known_hosts" )
+        knownHosts.text = "[localhost]:${server.port} ${PublicKeyEntry.toString( key )}\n"
+    }
+
+    @After
+    void cleanUp() {
+        server.stop( true )
+        dir.deleteDir()
+    }
+
+    SshSource source() {
+        return ssh( "localhost", server.port ).knownHosts( knownHosts ).authPass( "vendor", "secret" )
+    }
+
+    Map<String,byte[]> remoteFiles( int count, int size ) {
+        Random random = new Random( 42 )
+        Map<String,byte[]> files = [:]
+        for( int i = 0; i < count; i++ ) {
+            byte[] bytes = new byte[ size + i ]
+            random.nextBytes( bytes )
+            String name = String.format( "file-%03d.bin", i )
+            new File( remote, "outbound/${name}" ).bytes = bytes
+            files[name] = bytes
+        }
+        return files
+    }
+
+    Map<String,byte[]> download( SshSource source ) {
+        Map<String,byte[]> downloaded = new LinkedHashMap<>()
+        LoadStatistic stats = source.into().addStep("Collect") { Map row ->
+            downloaded[ row.filename as String ] = (row.stream as InputStream).bytes
+            return row
+        }.go()
+        assert stats.loaded == downloaded.size()
+        return downloaded
+    }
+
+    @Test
+    void testDownload() {
+        Map<String,byte[]> expected = remoteFiles( 5, 1000 )
+        Map<String,byte[]> actual = download( source().download( "/outbound" ) )
+        assert actual.keySet() == expected.keySet()
+        expected.each { String name, byte[] bytes -> assert Arrays.equals( bytes, actual[name] ) }
+    }
+
     @Test
-    @Ignore
-    void testSsh() {
-        String host = "uknown.host.com"
-        String user = "user1"
-        String password = "DontHardCodeIt"
-        String path = "/some/dir/path.txt"
-
-        File tmp = File.createTempFile("ulti-test", ".txt")
-        File knownHosts = File.createTempFile("known_hosts", ".txt")
-        knownHosts.withPrintWriter { it.println("output from ssh-keyscan -H ${host}") }
+    void testConcurrentDownload() {
+        Map<String,byte[]> expected = remoteFiles( 20, 40_000 )
+        File spool = new File( dir, "spool" )
+        spool.mkdir()
+        Map<String,byte[]> actual = download( source()
+                .download( "/outbound" )
+                .concurrency( 4 )
+                .spool( spool, 50_000 ) )
+
+        List<String> listed = download( source().download( "/outbound" ) ).keySet().toList()
+        assert actual.keySet().toList() == listed : "Files are produced in the order they're listed"
+        assert actual.keySet() == expected.keySet()
+        expected.each { String name, byte[] bytes -> assert Arrays.equals( bytes, actual[name] ) }
+        assert spool.list().length == 0 : "Spool files are deleted once processed"
+    }
+
+    @Test
+    void testResumeDroppedTransfer() {
+        Map<String,byte[]> expected = remoteFiles( 3, 300_000 )
+        dropFile = "file-001.bin"
+        dropAt = 100_000
+        Map<String,byte[]> actual = download( source()
+                .download( "/outbound" )
+                .concurrency( 2 )
+                .spool( new File( dir, "spool" ).with { mkdir(); it }, 10_000 ) )
+
+        expected.each { String name, byte[] bytes -> assert Arrays.equals( bytes, actual[name] ) }
+        List<Long> starts = firstReads.findAll { String key, Long offset -> key.startsWith("file-001.bin@") }.values().sort()
+        assert starts.size() == 2
+        assert starts[0] == 0
+        assert starts[1] >= 100_000 : "The second connection resumed where the first stopped"
+    }
+
+    @Test
+    void testMissingFile() {
         try {
-            tmp.withOutputStream { OutputStream out ->
-                LoadStatistic stats = SshSource.ssh(host)
-                        .authPass(user, password)
-                        .knownHosts( knownHosts )
-                        .download(path)
-                        .into()
-                        .addStep("Download") { Map row ->
-                            assert row.filename == path.substring( path.lastIndexOf("/") + 1)
-                            assert row.host == host
-                            assert row.stream != null
-                            try {
-                                int length = IOUtils.copy(row.stream as InputStream, out)
-                                //assert tmp.length() == length
-                                return row
-                            } finally {
-                                row.stream.close()
-                            }
-                        }
-                        .go()
-                println( stats )
-            }
-        } finally {
-            tmp.delete()
-            knownHosts.delete()
+            download( source().download( "/outbound/missing.bin", "/outbound" ).concurrency( 2 ) )
+            assert false : "Expected the missing file to fail"
+        } catch( Exception ex ) {
+            assert ex.message.contains("No such file") || ex.class.simpleName == "SftpException"
         }
     }
 }
@@ -1,8 +1,16 @@
 package gratum.source
 
 import gratum.etl.LoadStatistic
+import org.apache.poi.ss.usermodel.CellStyle
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
 import org.junit.Test
 
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.util.concurrent.ConcurrentHashMap
+
 class XlsxSourceTest {
 
     @Test
@@ -40,4 +48,154 @@ class XlsxSourceTest {
         assert stat.loaded == 1
         assert stat.rejections == 0
     }
+
+    @Test
+    void testTypedValues() {
+        File workbook = workbook()
+        List<Map> rows = []
+        LoadStatistic stat = XlsxSource.xlsx( workbook, "Orders" ).typed().into()
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assert stat.loaded == 3
+        assert rows[0].id == 1.0d
+        assert rows[0].ordered == LocalDate.of( 2024, 3, 1 )
+        assert rows[0].shipped == LocalDateTime.of( 2024, 3, 2, 14, 30 )
+        assert rows[0].paid == true
+        assert rows[0].note == "first"
+        assert rows[1].paid == false
+        assert rows[1].note == null
+        assert rows[2].amount == 3.5d
+        assert !rows[0].containsKey( null )
+    }
+
+    @Test
+    void testFormattedValuesWithGaps() {
+        File workbook = workbook()
+        List<Map> rows = []
+        XlsxSource.xlsx( workbook ).into()
+            .addStep("Collect") { Map row ->
+                rows << row
+                return row
+            }
+            .go()
+
+        assert rows.size() == 3
+        assert rows[0].id == "1"
+        assert rows[0].paid == "TRUE"
+        // the blank column between paid and note must not shift note
+        assert rows[0].note == "first"
+        assert rows[1].note == null
+    }
+
+    @Test
+    void testTypedProjection() {
+        XlsxSource source = XlsxSource.xlsx( workbook(), "Orders" ).typed()
+        source.project( ["id", "note"] )
+        List<Map> rows = []
+        source.into().addStep("Collect") { Map row ->
+            rows << row
+            return row
+        }.go()
+
+        assert rows.size() == 3
+        assert rows[0].keySet() == ["id", "note"] as Set
+    }
+
+    @Test
+    void testParallelSheets() {
+        Set<String> threads = ConcurrentHashMap.newKeySet()
+        Map<String,Integer> counts = [:]
+        LoadStatistic stat = XlsxSource.xlsx( workbook() ).sheets( "Orders", "Returns" ).typed().parallel( 2 ).into()
+            .addStep("Count") { Map row ->
+                threads << Thread.currentThread().name
+                String kind = row.containsKey("reason") ? "Returns" : "Orders"
+                counts[kind] = (counts[kind] ?: 0) + 1
+                return row
+            }
+            .go()
+
+        assert stat.loaded == 503
+        assert counts.Orders == 3
+        assert counts.Returns == 500
+        assert threads.every { it.startsWith("gratum-xlsx-") }
+    }
+
+    @Test
+    void testParallelSheetsStopEarly() {
+        LoadStatistic stat = XlsxSource.xlsx( "Workbook", new FileInputStream( workbook() ) ).sheets( "Orders", "Returns" ).parallel( 2 ).into()
+            .limit( 10 )
+            .go()
+
+        assert stat.loaded == 10
+    }
+
+    @Test
+    void testParallelSheetsFailure() {
+        try {
+            XlsxSource.xlsx( workbook() ).sheets( "Orders", "Returns" ).parallel( 2 ).into()
+                .addStep("Fail") { Map row ->
+                    if( row.reason == "reason 250" ) throw new IllegalStateException("Bad row")
+                    return row
+                }
+                .go()
+            assert false : "Expected the failure to be rethrown"
+        } catch( RuntimeException ex ) {
+            assert ex.cause instanceof IllegalStateException
+            assert ex.cause.message == "Bad row"
+        }
+    }
+
+    private static File workbook() {
+        File file = File.createTempFile( "gratum", ".xlsx" )
+        file.deleteOnExit()
+        XSSFWorkbook wb = new XSSFWorkbook()
+        try {
+            CellStyle date = wb.createCellStyle()
+            date.setDataFormat( wb.creationHelper.createDataFormat().getFormat("yyyy-mm-dd") )
+            CellStyle timestamp = wb.createCellStyle()
+            timestamp.setDataFormat( wb.creationHelper.createDataFormat().getFormat("yyyy-mm-dd hh:mm") )
+
+            Sheet orders = wb.createSheet("Orders")
+            Row header = orders.createRow(0)
+            // column 5 is left blank on purpose
+            ["id", "ordered", "shipped", "amount", "paid"].eachWithIndex { String name, int i -> header.createCell(i).setCellValue( name ) }
+            header.createCell(6).setCellValue("note")
+            3.times { int i ->
+                Row row = orders.createRow( i + 1 )
+                row.createCell(0).setCellValue( (double)(i + 1) )
+                row.createCell(1).with {
+                    setCellValue( LocalDate.of( 2024, 3, i + 1 ) )
+                    setCellStyle( date )
+                }
+                row.createCell(2).with {
+                    setCellValue( LocalDateTime.of( 2024, 3, i + 2, 14, 30 ) )
+                    setCellStyle( timestamp )
+                }
+                row.createCell(3).setCellValue( 1.5d + i )
+                row.createCell(4).setCellValue( i % 2 == 0 )
+                if( i != 1 ) row.createCell(6).setCellValue( i == 0 ? "first" : "last" )
+            }
+
+            Sheet returns = wb.createSheet("Returns")
+            header = returns.createRow(0)
+            header.createCell(0).setCellValue("order")
+            header.createCell(1).setCellValue("reason")
+            500.times { int i ->
+                Row row = returns.createRow( i + 1 )
+                row.createCell(0).setCellValue( (double)i )
+                row.createCell(1).setCellValue( "reason ${i}".toString() )
+            }
+
+            wb.createSheet("Ignored").createRow(0).createCell(0).setCellValue("nothing")
+
+            file.withOutputStream { OutputStream out -> wb.write( out ) }
+        } finally {
+            wb.close()
+        }
+        return file
+    }
 }
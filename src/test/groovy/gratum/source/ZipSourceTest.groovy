@@ -0,0 +1,78 @@
+package gratum.source
+
+import gratum.etl.LoadStatistic
+import gratum.etl.Pipeline
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+import static gratum.source.CsvSource.csv
+
+class ZipSourceTest {
+
+    File dir
+    File zip
+    Set<String> expected
+
+    @Before
+    void setUp() {
+        dir = File.createTempDir()
+        zip = new File( dir, "drop.zip" )
+        expected = [] as Set
+        new ZipOutputStream( zip.newOutputStream() ).withCloseable { ZipOutputStream out ->
+            for( int i = 0; i < 30; i++ ) {
+                out.putNextEntry( new ZipEntry( "part-${i}.csv" ) )
+                StringBuilder builder = new StringBuilder("file,row\n")
+                for( int r = 0; r < 50; r++ ) {
+                    builder.append("${i},${r}\n")
+                    expected << "${i}-${r}".toString()
+                }
+                out.write( builder.toString().getBytes("UTF-8") )
+                out.closeEntry()
+            }
+        }
+    }
+
+    @After
+    void cleanUp() {
+        dir.deleteDir()
+    }
+
+    Set<String> load( AbstractFileSource source ) {
+        Set<String> seen = Collections.synchronizedSet( new HashSet<String>() )
+        LoadStatistic stats = source.into()
+            .exchange { Map row -> csv( row.entry.name as String, row.stream as InputStream ) }
+            .addStep("Collect") { Map row ->
+                seen << "${row.file}-${row.row}".toString()
+                return row
+            }
+            .go()
+        assert stats.loaded == expected.size()
+        return seen
+    }
+
+    @Test
+    void testZip() {
+        assert load( ZipSource.unzip( zip ) ) == expected
+    }
+
+    @Test
+    void testParallelZip() {
+        assert load( ZipSource.unzip( zip ).parallel( 4 ) ) == expected
+    }
+
+    @Test
+    void testParallelArchive() {
+        assert load( ArchivedSource.unzip( zip ).parallel( 4 ) ) == expected
+    }
+
+    @Test
+    void testParallelHalt() {
+        Pipeline pipeline = ZipSource.unzip( zip ).parallel( 4 ).into().limit( 5 )
+        LoadStatistic stats = pipeline.go()
+        assert stats.loaded == 5
+    }
+}
@@ -158,6 +158,7 @@ public class CSVFileTest extends TestCase {
         StringWriter writer = new StringWriter();
         PrintWriter out = new PrintWriter( writer );
         CSVFile csv = new CSVFile( out, "|");
+        csv.setQuoteAll( true );
 
         List<String> header = Arrays.asList(
                 "name",
@@ -201,4 +202,266 @@ public class CSVFileTest extends TestCase {
         assertTrue( output.contains("Taylor\"||")); // verify that it wrote out nothing for a null
         assertTrue( output.contains("\\n") );
     }
+
+    public void testWriteOnlyQuotesWhenNeeded() throws IOException {
+        StringWriter writer = new StringWriter();
+        CSVFile csv = new CSVFile( new PrintWriter( writer ), "," );
+        csv.write( "name", "comment", "count" );
+        csv.write( "Tom Hanks", "Hello, world", 59 );
+        csv.write( "Jill \"The Thrill\" Ryan", "two\nlines", null );
+        csv.write( "", "plain", "" );
+        csv.close();
+
+        String nl = System.lineSeparator();
+        assertEquals( "name,comment,count" + nl
+                + "Tom Hanks,\"Hello, world\",59" + nl
+                + "\"Jill \"\"The Thrill\"\" Ryan\",\"two\\nlines\"," + nl
+                + ",plain," + nl, writer.toString() );
+        assertEquals( 4, csv.getRows() );
+
+        List<List<String>> rows = new ArrayList<>();
+        new CSVFile( (File)null, "," ).parse( new StringReader( writer.toString() ), new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) {
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) {
+                rows.add( row );
+                return false;
+            }
+
+            @Override
+            public void afterProcessing() {
+            }
+        });
+        assertEquals( Arrays.asList( "Tom Hanks", "Hello, world", "59" ), rows.get(0) );
+        assertEquals( Arrays.asList( "Jill \"The Thrill\" Ryan", "two\nlines" ), rows.get(1) );
+    }
+
+    public void testWriteLargeRows() throws IOException {
+        StringWriter writer = new StringWriter();
+        CSVFile csv = new CSVFile( new PrintWriter( writer ), "|" );
+        char[] chars = new char[ 100_000 ];
+        Arrays.fill( chars, 'x' );
+        String large = new String( chars );
+        for( int i = 0; i < 10; i++ ) {
+            csv.write( i, large );
+        }
+        csv.close();
+
+        String[] lines = writer.toString().split( System.lineSeparator() );
+        assertEquals( 10, lines.length );
+        assertEquals( "9|" + large, lines[9] );
+    }
+
+    public void testWriteDuplicateRows() throws IOException {
+        StringWriter writer = new StringWriter();
+        CSVFile csv = new CSVFile( new PrintWriter( writer ), "," );
+        csv.setAllowDuplicateRows( false );
+        csv.write( "a", "b", "c" );
+        csv.write( "a", "b", "c" );
+        csv.write( "ab", "", "c" );
+        csv.write( "a", "bc", "" );
+        csv.write( "a", "bc", null );
+        csv.write( "a", "bc", null );
+        csv.write( "ab", "", "c" );
+        csv.close();
+
+        String nl = System.lineSeparator();
+        assertEquals( "a,b,c" + nl + "ab,,c" + nl + "a,bc," + nl, writer.toString() );
+        assertEquals( "An empty string and null are written the same", 3, csv.getRows() );
+    }
+
+    public void testCheckpointAndResume() throws IOException {
+        File file = File.createTempFile( "checkpoint", ".csv" );
+        try {
+            CSVFile csv = new CSVFile( file, "," );
+            csv.setAllowDuplicateRows( false );
+            csv.write( "name", "city" );
+            csv.write( "Alice", "Portland, OR" );
+            csv.write( "Bob", "Seattle" );
+            long length = csv.checkpoint();
+            int rows = csv.getRows();
+            csv.write( "Carol", "Boise" );
+            csv.close();
+
+            CSVFile resumed = new CSVFile( file, "," );
+            resumed.setAllowDuplicateRows( false );
+            resumed.resume( length, rows );
+            resumed.write( "Alice", "Portland, OR" );
+            resumed.write( "Carol", "Boise" );
+            resumed.write( "Bob", "Seattle" );
+            resumed.close();
+
+            String nl = System.lineSeparator();
+            assertEquals( "name,city" + nl + "Alice,\"Portland, OR\"" + nl + "Bob,Seattle" + nl + "Carol,Boise" + nl,
+                    new String( java.nio.file.Files.readAllBytes( file.toPath() ), "UTF-8" ) );
+            assertEquals( 4, resumed.getRows() );
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testBufferedByteOffset() throws IOException {
+        String src = "name,city\n\"Ren\u00e9e\",Montr\u00e9al\r\n\u4e2d\u6587,\ud83d\ude00\n\nlast,row";
+        byte[] bytes = src.getBytes( "UTF-8" );
+        CSVBufferParser parser = new CSVBufferParser( new StringReader( src ), ',', 4 );
+        parser.trackBytes( 0 );
+        List<Long> offsets = new ArrayList<>();
+        while( parser.next() ) {
+            offsets.add( parser.getByteOffset() );
+        }
+        int first = "name,city\n".getBytes( "UTF-8" ).length;
+        int second = first + "\"Ren\u00e9e\",Montr\u00e9al\r\n".getBytes( "UTF-8" ).length;
+        int third = second + "\u4e2d\u6587,\ud83d\ude00\n".getBytes( "UTF-8" ).length;
+        assertEquals( Arrays.asList( (long)first, (long)second, (long)third, (long)bytes.length ), offsets );
+    }
+
+    public void testBufferedCsv() throws IOException {
+        String[] sources = {
+                "name,age,birthDate\n"
+                        + "Tom Hanks,59,7/9/1956\n"
+                        + "Meg Ryan,54,11/19/1961\n"
+                        + "Tom Cruise,53,7/3/1962\n",
+                "\"name\",\"age\",\"birthDate\"\r\n"
+                        + "\"Tom Hanks\",\"59\",\"7/9/1956\"\r\n"
+                        + "\"Meg Ryan\",\"54\",\"11/19/1961\"\r\n"
+                        + "\"Tom Cruise\",\"53\",\"7/3/1962\"",
+                "name,\"age\",birthDate\n"
+                        + "\n"
+                        + "Tom Hanks,\"59\",\"7/9/1956\"\n"
+                        + "\"Meg Ryan\",54,\"11/19/1961\"\n"
+                        + "Tom Cruise,53,7/3/1962\n"
+        };
+        for( String src : sources ) {
+            CSVFile f = new CSVFile((File)null,",");
+            f.setBuffered(true);
+            assertCsvDataAsExpected(f, src);
+        }
+    }
+
+    public void testBufferedMatchesLineParser() throws IOException {
+        File titanic = new File("src/test/resources/titanic.csv");
+        List<List<String>> lines = new ArrayList<>();
+        new CSVFile( titanic, "," ).parse( collect( lines ) );
+
+        CSVFile buffered = new CSVFile( titanic, "," );
+        buffered.setBuffered( true );
+        List<List<String>> rows = new ArrayList<>();
+        buffered.parse( collect( rows ) );
+
+        assertEquals( 418, lines.size() );
+        assertEquals( lines, rows );
+    }
+
+    private CSVReader collect( List<List<String>> rows ) {
+        return new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) {
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) {
+                rows.add( new ArrayList<>(row) );
+                return false;
+            }
+
+            @Override
+            public void afterProcessing() {
+            }
+        };
+    }
+
+    public void testBufferedCrLfAtBufferEnd() throws IOException {
+        CSVBufferParser tiny = new CSVBufferParser( new StringReader( "abcdefghijklmno\r\nXYZ1234567890Q\r\nlast\r\n" ), ',', 16 );
+        List<List<String>> rows = new ArrayList<>();
+        while( tiny.next() ) rows.add( new ArrayList<>( tiny.row() ) );
+        assertEquals( Arrays.asList( Collections.singletonList("abcdefghijklmno"), Collections.singletonList("XYZ1234567890Q"), Collections.singletonList("last") ), rows );
+
+        // a record whose \r is the last char of the default buffer
+        StringBuilder src = new StringBuilder( "id,name\r\n" );
+        int id = 0;
+        while( src.length() < CSVBufferParser.DEFAULT_BUFFER_SIZE - 100 ) {
+            src.append( id ).append( ",name " ).append( id++ ).append( "\r\n" );
+        }
+        String prefix = id++ + ",";
+        String filler = new String( new char[ CSVBufferParser.DEFAULT_BUFFER_SIZE - 1 - src.length() - prefix.length() ] ).replace( '\0', 'x' );
+        src.append( prefix ).append( filler ).append( "\r\n" );
+        assertEquals( '\r', src.charAt( CSVBufferParser.DEFAULT_BUFFER_SIZE - 1 ) );
+        for( int i = 0; i < 100; i++ ) {
+            src.append( id ).append( ",name " ).append( id++ ).append( "\r\n" );
+        }
+
+        List<List<String>> buffered = new ArrayList<>();
+        new CSVBufferParser( new StringReader( src.toString() ), ',' ).parse( null, collect( buffered ) );
+        List<List<String>> lines = new ArrayList<>();
+        new CSVFile( (File)null, "," ).parse( new StringReader( src.toString() ), collect( lines ) );
+
+        assertEquals( id, buffered.size() );
+        assertEquals( lines, buffered );
+        assertEquals( Arrays.asList( String.valueOf( id - 101 ), filler ), buffered.get( id - 101 ) );
+    }
+
+    public void testBufferedEmbeddedNewlines() throws IOException {
+        String src = "name,comment,rank\n"
+                + "Hank Gaston,\"This is a comment\nwith a real new line\",Captain\n"
+                + "Linda Jules,\"\"\"This one has quotes\"\", and a comma\",Sergeant\n"
+                + "Ronald James,\"Escaped\\nnew line\",\n";
+        List<List<String>> rows = new ArrayList<>();
+        // a tiny buffer forces records to straddle the end of the buffer
+        CSVBufferParser parser = new CSVBufferParser( new StringReader(src), ',', 8 );
+        parser.parse( null, new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) throws Exception {
+                assertEquals( Arrays.asList("name", "comment", "rank"), header );
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) throws Exception {
+                rows.add( new ArrayList<>(row) );
+                return false;
+            }
+
+            @Override
+            public void afterProcessing() {
+            }
+        });
+
+        assertEquals( 3, rows.size() );
+        assertEquals( "This is a comment\nwith a real new line", rows.get(0).get(1) );
+        assertEquals( "Captain", rows.get(0).get(2) );
+        assertEquals( "\"This one has quotes\", and a comma", rows.get(1).get(1) );
+        assertEquals( "Sergeant", rows.get(1).get(2) );
+        assertEquals( "Escaped\nnew line", rows.get(2).get(1) );
+        assertEquals( 2, rows.get(2).size() );
+    }
+
+    public void testBufferedReluctantPhrase() throws IOException {
+        String src = "\"01-APR-2014\"|\"INV SVC -G\"|\"\"\"\"|\"\"|Tom \"\"Big\"\" Hanks";
+        CSVFile f = new CSVFile((File)null,"|");
+        f.setBuffered(true);
+        f.setColumnHeaders(Collections.emptyList() );
+
+        f.parse( new StringReader(src), new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) throws Exception {
+                fail("Header should not be called.");
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) throws Exception {
+                assertEquals("01-APR-2014", row.get(0));
+                assertEquals("INV SVC -G", row.get(1));
+                assertEquals("\"", row.get(2));
+                assertEquals("", row.get(3));
+                assertEquals("Tom \"Big\" Hanks", row.get(4));
+                return true;
+            }
+
+            @Override
+            public void afterProcessing() {
+            }
+        });
+    }
 }
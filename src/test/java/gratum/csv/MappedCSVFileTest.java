@@ -0,0 +1,162 @@
+package gratum.csv;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class MappedCSVFileTest extends TestCase {
+
+    public void testMatchesBufferedParser() throws IOException {
+        File file = new File("src/test/resources/titanic.csv");
+        List<List<String>> expected = parseBuffered( file );
+
+        MappedCSVFile mapped = new MappedCSVFile( file, ",", 3 );
+        mapped.setChunkSize( 512 );
+        List<List<String>> actual = new ArrayList<>();
+        List<String> headers = new ArrayList<>();
+        int rows = mapped.parse( collect( headers, actual ) );
+
+        assertEquals( Arrays.asList("PassengerId", "Pclass", "Name", "Sex", "Age", "SibSp", "Parch", "Ticket", "Fare", "Cabin", "Embarked"), headers.subList(0, 11) );
+        assertEquals( expected.size(), actual.size() );
+        assertEquals( expected, actual );
+        assertEquals( expected.size() + 1, rows );
+    }
+
+    public void testQuotedLineBreaksAcrossChunks() throws IOException {
+        StringBuilder src = new StringBuilder("\uFEFFid,comment\r\n");
+        for( int i = 0; i < 200; i++ ) {
+            src.append( i ).append( ",\"line one\nline, two\"\r\n" );
+        }
+        File file = write( src.toString() );
+
+        MappedCSVFile mapped = new MappedCSVFile( file, ",", 4 );
+        mapped.setChunkSize( 64 );
+        List<List<String>> rows = new ArrayList<>();
+        List<String> headers = new ArrayList<>();
+        mapped.parse( collect( headers, rows ) );
+
+        assertEquals( Arrays.asList("id", "comment"), headers );
+        assertEquals( 200, rows.size() );
+        for( int i = 0; i < rows.size(); i++ ) {
+            assertEquals( String.valueOf(i), rows.get(i).get(0) );
+            assertEquals( "line one\nline, two", rows.get(i).get(1) );
+        }
+    }
+
+    public void testStopEarly() throws IOException {
+        MappedCSVFile mapped = new MappedCSVFile( new File("src/test/resources/titanic.csv"), ",", 2 );
+        mapped.setChunkSize( 256 );
+        final int[] count = { 0 };
+        final boolean[] after = { false };
+        mapped.parse( new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) {
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) {
+                return ++count[0] == 10;
+            }
+
+            @Override
+            public void afterProcessing() {
+                after[0] = true;
+            }
+        });
+        assertEquals( 10, count[0] );
+        assertTrue( after[0] );
+    }
+
+    public void testManyRowsPerChunk() throws IOException {
+        StringBuilder src = new StringBuilder("id,name\n");
+        for( int i = 0; i < 50000; i++ ) {
+            src.append( i ).append( ",name " ).append( i ).append( '\n' );
+        }
+        File file = write( src.toString() );
+
+        MappedCSVFile mapped = new MappedCSVFile( file, ",", 3 );
+        mapped.setChunkSize( 128 * 1024 );
+        List<List<String>> rows = new ArrayList<>();
+        int count = mapped.parse( collect( new ArrayList<String>(), rows ) );
+
+        assertEquals( 50000, rows.size() );
+        assertEquals( 50001, count );
+        for( int i = 0; i < rows.size(); i++ ) {
+            assertEquals( String.valueOf(i), rows.get(i).get(0) );
+        }
+    }
+
+    public void testCrLfLargerThanBuffer() throws IOException {
+        StringBuilder src = new StringBuilder("id,name,comment\r\n");
+        for( int i = 0; src.length() < 2 * 1024 * 1024; i++ ) {
+            src.append( i ).append( ",name " ).append( i ).append( ',' ).append( "comment ".substring( 0, i % 8 ) ).append( "\r\n" );
+        }
+        File file = write( src.toString() );
+
+        CSVFile csv = new CSVFile( file, "," );
+        List<List<String>> expected = new ArrayList<>();
+        csv.parse( collect( new ArrayList<String>(), expected ) );
+
+        MappedCSVFile mapped = new MappedCSVFile( file, ",", 3 );
+        mapped.setChunkSize( 256 * 1024 );
+        List<List<String>> rows = new ArrayList<>();
+        mapped.parse( collect( new ArrayList<String>(), rows ) );
+
+        assertTrue( file.length() > CSVBufferParser.DEFAULT_BUFFER_SIZE );
+        assertEquals( expected.size(), rows.size() );
+        assertEquals( expected, rows );
+    }
+
+    public void testChunkSizeIsCapped() {
+        MappedCSVFile mapped = new MappedCSVFile( new File("src/test/resources/titanic.csv"), ",", 2 );
+        mapped.setChunkSize( Long.MAX_VALUE );
+        assertEquals( MappedCSVFile.MAX_CHUNK_SIZE, mapped.getChunkSize() );
+    }
+
+    public void testHeaderOnly() throws IOException {
+        File file = write( "a,b,c\n" );
+        List<String> headers = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        new MappedCSVFile( file, ",", 2 ).parse( collect( headers, rows ) );
+        assertEquals( Arrays.asList("a", "b", "c"), headers );
+        assertTrue( rows.isEmpty() );
+    }
+
+    private File write( String content ) throws IOException {
+        File file = File.createTempFile( "mapped", ".csv" );
+        file.deleteOnExit();
+        try( Writer writer = new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) ) {
+            writer.write( content );
+        }
+        return file;
+    }
+
+    private List<List<String>> parseBuffered( File file ) throws IOException {
+        CSVFile csv = new CSVFile( file, "," );
+        csv.setBuffered( true );
+        List<List<String>> rows = new ArrayList<>();
+        csv.parse( collect( new ArrayList<String>(), rows ) );
+        return rows;
+    }
+
+    private CSVReader collect( final List<String> headers, final List<List<String>> rows ) {
+        return new CSVReader() {
+            @Override
+            public void processHeaders(List<String> header) {
+                headers.addAll( header );
+            }
+
+            @Override
+            public boolean processRow(List<String> header, List<String> row) {
+                rows.add( new ArrayList<>( row ) );
+                return false;
+            }
+
+            @Override
+            public void afterProcessing() {
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package gratum.json;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+public class JsonParserTest extends TestCase {
+
+    private static final String DOCUMENT = "{ \"name\": \"Tom \\\"Big\\\" Hanks\", \"age\": 59, \"height\": 1.83,\n"
+            + "  \"tags\": [\"actor\", \"dir\\u00e9ctor\", \"tab\\there\"], \"big\": 12345678901234567890,\n"
+            + "  \"long\": 9876543210, \"negative\": -42, \"exp\": 1.5e3, \"active\": true, \"retired\": false,\n"
+            + "  \"spouse\": null, \"films\": [ { \"title\": \"Big\", \"year\": 1988 }, {} ], \"empty\": [] }";
+
+    public void testReadValue() throws IOException {
+        // a tiny buffer makes every token cross the end of the buffer at some point
+        for( int size : new int[] { 1, 3, 7, 64 * 1024 } ) {
+            JsonParser parser = new JsonParser( new StringReader( DOCUMENT ), size );
+            Map<String,Object> row = asMap( parser.readValue( parser.next() ) );
+            assertEquals( JsonParser.Token.END, parser.next() );
+
+            assertEquals( "Tom \"Big\" Hanks", row.get("name") );
+            assertEquals( 59, row.get("age") );
+            assertEquals( new BigDecimal("1.83"), row.get("height") );
+            assertEquals( Arrays.asList( "actor", "dir\u00e9ctor", "tab\there" ), row.get("tags") );
+            assertEquals( new BigInteger("12345678901234567890"), row.get("big") );
+            assertEquals( 9876543210L, row.get("long") );
+            assertEquals( -42, row.get("negative") );
+            assertEquals( new BigDecimal("1.5e3"), row.get("exp") );
+            assertEquals( Boolean.TRUE, row.get("active") );
+            assertEquals( Boolean.FALSE, row.get("retired") );
+            assertTrue( row.containsKey("spouse") );
+            assertNull( row.get("spouse") );
+            List<Object> films = asList( row.get("films") );
+            assertEquals( 2, films.size() );
+            assertEquals( "Big", asMap( films.get(0) ).get("title") );
+            assertEquals( Collections.emptyMap(), films.get(1) );
+            assertEquals( Collections.emptyList(), row.get("empty") );
+            assertEquals( Arrays.asList( "name", "age", "height", "tags", "big", "long", "negative", "exp", "active",
+                    "retired", "spouse", "films", "empty" ), new ArrayList<>( row.keySet() ) );
+        }
+    }
+
+    public void testSkipValue() throws IOException {
+        JsonParser parser = new JsonParser( new StringReader( "{\"skip\": {\"a\": [1, {\"b\": \"}]\"}]}, \"keep\": 1}" ), 5 );
+        assertEquals( JsonParser.Token.START_OBJECT, parser.next() );
+        assertEquals( JsonParser.Token.FIELD_NAME, parser.next() );
+        parser.skipValue( parser.next() );
+        assertEquals( JsonParser.Token.FIELD_NAME, parser.next() );
+        assertEquals( "keep", parser.getText() );
+        assertEquals( JsonParser.Token.NUMBER, parser.next() );
+        assertEquals( 1, parser.getNumber() );
+        assertEquals( JsonParser.Token.END_OBJECT, parser.next() );
+        assertEquals( JsonParser.Token.END, parser.next() );
+    }
+
+    public void testTopLevelValues() throws IOException {
+        JsonParser parser = new JsonParser( new StringReader( "{\"id\":1}\n{\"id\":2}\r\n\n{\"id\":3}\n" ) );
+        List<Object> ids = new ArrayList<>();
+        JsonParser.Token token;
+        while( (token = parser.next()) != JsonParser.Token.END ) {
+            ids.add( asMap( parser.readValue( token ) ).get("id") );
+        }
+        assertEquals( Arrays.asList( 1, 2, 3 ), ids );
+    }
+
+    public void testErrors() {
+        for( String bad : new String[] { "{\"a\" 1}", "[1 2]", "{\"a\": tru}", "[\"open", "{\"a\": 1,}", "[-]" } ) {
+            try {
+                JsonParser parser = new JsonParser( new StringReader( bad ) );
+                JsonParser.Token token;
+                while( (token = parser.next()) != JsonParser.Token.END ) {
+                    parser.readValue( token );
+                }
+                fail( "Expected an error parsing " + bad );
+            } catch( IOException ex ) {
+                assertTrue( ex.getMessage(), ex.getMessage().contains( "at offset" ) );
+            }
+        }
+    }
+
+    public void testWriteRoundTrip() throws IOException {
+        Map<String,Object> row = new LinkedHashMap<>();
+        row.put( "name", "Line one\nLine \"two\"\\ \u0001" );
+        row.put( "count", 3 );
+        row.put( "amount", new BigDecimal( "12.50" ) );
+        row.put( "ok", true );
+        row.put( "nothing", null );
+        row.put( "list", Arrays.asList( 1, "two", Collections.singletonMap( "three", 3 ) ) );
+        row.put( "date", new Date( 0 ) );
+
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter( out );
+        writer.writeRow( row, null );
+        writer.newLine();
+        writer.writeRow( row, Arrays.asList( "ok", "count", "missing" ) );
+        writer.close();
+
+        String[] lines = out.toString().split( "\n" );
+        assertEquals( "{\"ok\":true,\"count\":3}", lines[1] );
+
+        JsonParser parser = new JsonParser( new StringReader( lines[0] ) );
+        Map<String,Object> read = asMap( parser.readValue( parser.next() ) );
+        row.put( "date", "1970-01-01T00:00:00+0000" );
+        assertEquals( row, read );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String,Object> asMap( Object value ) {
+        return (Map<String,Object>)value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList( Object value ) {
+        return (List<Object>)value;
+    }
+}
@@ -0,0 +1,91 @@
+package gratum.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class Hash128SetTest extends TestCase {
+
+    public void testMurmur3() {
+        // expected values are MurmurHash3_x64_128 of the UTF-16LE bytes of each string
+        assertHash( "", 0L, 0L );
+        assertHash( "a", -7591212652331886403L, -5586493512232966275L );
+        assertHash( "hello", -1283840835669994617L, 8904305182133925572L );
+        assertHash( "The quick brown fox jumps over the lazy dog", -4611010704792506804L, -1774630990391116772L );
+        assertHash( "h\u00e9llo w\u00f6rld, \u00fcn\u00efcode", -9109822918784691090L, 2478825727313026951L );
+    }
+
+    private void assertHash( String value, long h1, long h2 ) {
+        Murmur3 hasher = new Murmur3();
+        for( int pass = 0; pass < 2; pass++ ) {
+            hasher.reset();
+            for( int i = 0; i < value.length(); i++ ) {
+                hasher.putChar( value.charAt(i) );
+            }
+            hasher.finish();
+            assertEquals( value, h1, hasher.getH1() );
+            assertEquals( value, h2, hasher.getH2() );
+        }
+    }
+
+    public void testStringBoundaries() {
+        Murmur3 hasher = new Murmur3();
+        hasher.reset().putString( "ab" ).putString( "c" ).finish();
+        long h1 = hasher.getH1();
+        long h2 = hasher.getH2();
+        hasher.reset().putString( "a" ).putString( "bc" ).finish();
+        assertFalse( h1 == hasher.getH1() && h2 == hasher.getH2() );
+    }
+
+    public void testAdd() throws IOException {
+        try( Hash128Set set = new Hash128Set() ) {
+            assertTrue( set.add( 0, 0 ) );
+            assertFalse( set.add( 0, 0 ) );
+            assertTrue( set.add( 1, 2 ) );
+            assertTrue( set.add( 2, 1 ) );
+            assertFalse( set.add( 1, 2 ) );
+            assertTrue( set.contains( 2, 1 ) );
+            assertFalse( set.contains( 3, 3 ) );
+            assertEquals( 3, set.size() );
+
+            Random random = new Random( 42 );
+            for( int i = 0; i < 100_000; i++ ) {
+                assertTrue( set.add( random.nextLong(), random.nextLong() ) );
+            }
+            random = new Random( 42 );
+            for( int i = 0; i < 100_000; i++ ) {
+                assertFalse( set.add( random.nextLong(), random.nextLong() ) );
+            }
+            assertEquals( 100_003, set.size() );
+            assertFalse( set.isSpilled() );
+        }
+    }
+
+    public void testSpill() throws IOException {
+        File dir = Files.createTempDirectory( "hash128" ).toFile();
+        try {
+            Hash128Set set = new Hash128Set( 64 * 1024, dir );
+            Random random = new Random( 7 );
+            for( int i = 0; i < 200_000; i++ ) {
+                assertTrue( set.add( random.nextLong(), random.nextLong() ) );
+            }
+            assertTrue( set.isSpilled() );
+            assertTrue( dir.list().length > 0 );
+
+            random = new Random( 7 );
+            for( int i = 0; i < 200_000; i++ ) {
+                assertTrue( set.contains( random.nextLong(), random.nextLong() ) );
+            }
+            assertFalse( set.add( 0x1234, 0x5678 ) && set.add( 0x1234, 0x5678 ) );
+            assertEquals( 200_001, set.size() );
+
+            set.close();
+            assertEquals( "Spilled tables are deleted", 0, dir.list().length );
+        } finally {
+            dir.delete();
+        }
+    }
+}
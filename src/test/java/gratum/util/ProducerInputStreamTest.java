@@ -0,0 +1,60 @@
+package gratum.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ProducerInputStreamTest extends TestCase {
+
+    public void testRead() throws IOException {
+        byte[] expected = new byte[ 100_000 ];
+        for( int i = 0; i < expected.length; i++ ) expected[i] = (byte)(i * 31);
+
+        try( InputStream in = new ProducerInputStream( "test", 1024, 2, out -> {
+            out.write( expected, 0, 10 );
+            out.write( expected[10] );
+            out.write( expected, 11, expected.length - 11 );
+        }) ) {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            byte[] buffer = new byte[ 777 ];
+            int length;
+            while( (length = in.read( buffer )) >= 0 ) actual.write( buffer, 0, length );
+            assertEquals( -1, in.read() );
+            assertTrue( java.util.Arrays.equals( expected, actual.toByteArray() ) );
+        }
+    }
+
+    public void testFailure() throws IOException {
+        try( InputStream in = new ProducerInputStream( "test", 1024, 2, out -> {
+            out.write( new byte[ 3000 ] );
+            throw new IllegalStateException( "Bad key" );
+        }) ) {
+            int count = 0;
+            try {
+                while( in.read() >= 0 ) count++;
+                fail( "Expected the producer's failure" );
+            } catch( IOException ex ) {
+                assertEquals( "Everything written before the failure is read", 3000, count );
+                assertTrue( ex.getCause() instanceof IllegalStateException );
+            }
+        }
+    }
+
+    public void testCloseStopsProducer() throws Exception {
+        CountDownLatch stopped = new CountDownLatch( 1 );
+        InputStream in = new ProducerInputStream( "test", 1024, 2, out -> {
+            try {
+                while( true ) out.write( new byte[ 1024 ] );
+            } finally {
+                stopped.countDown();
+            }
+        });
+        assertTrue( in.read() >= 0 );
+        in.close();
+        assertTrue( "The producer stops once the stream is closed", stopped.await( 5, TimeUnit.SECONDS ) );
+    }
+}